@@ -0,0 +1,79 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.benchmarks.basic;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.qcadoo.mes.basic.ShiftsService;
+import com.qcadoo.mes.basic.ShiftsServiceImpl;
+import com.qcadoo.mes.benchmarks.fixtures.BenchmarkServices;
+import com.qcadoo.mes.benchmarks.fixtures.InMemoryDataModel;
+import com.qcadoo.mes.benchmarks.fixtures.ShiftCalendarFixtures;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShiftsServiceBenchmark {
+
+    private static final DateTime DATE_FROM = new DateTime(2018, 1, 1, 7, 0);
+
+    @Param({ "1", "3" })
+    public int shifts;
+
+    @Param({ "0", "100" })
+    public int exceptions;
+
+    @Param({ "8", "160", "2000" })
+    public long workingHours;
+
+    private ShiftsService shiftsService;
+
+    @Setup
+    public void setUp() {
+        InMemoryDataModel model = new InMemoryDataModel();
+
+        shiftsService = new ShiftsServiceImpl();
+
+        BenchmarkServices.inject(shiftsService, "dataDefinitionService", model.getDataDefinitionService());
+
+        ShiftCalendarFixtures.createShifts(model, shifts, exceptions, DATE_FROM);
+    }
+
+    @Benchmark
+    public Date findDateToForOrder() {
+        return shiftsService.findDateToForOrder(DATE_FROM.toDate(), TimeUnit.HOURS.toSeconds(workingHours));
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.benchmarks.fixtures;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import org.springframework.util.ReflectionUtils;
+
+import com.qcadoo.model.api.NumberService;
+
+public final class BenchmarkServices {
+
+    private static final MathContext MATH_CONTEXT = MathContext.DECIMAL64;
+
+    private static final int DEFAULT_SCALE = 5;
+
+    private BenchmarkServices() {
+    }
+
+    public static NumberService createNumberService() {
+        return Proxies.create(NumberService.class, new Proxies.Handler() {
+
+            @Override
+            protected Object handle(final Object proxy, final Method method, final Object[] args) {
+                if ("getMathContext".equals(method.getName())) {
+                    return MATH_CONTEXT;
+                } else if ("setScaleWithDefaultMathContext".equals(method.getName()) && args.length == 1) {
+                    return ((BigDecimal) args[0]).setScale(DEFAULT_SCALE, RoundingMode.HALF_EVEN);
+                }
+
+                throw unsupported(method);
+            }
+
+            @Override
+            protected String describe() {
+                return "numberService";
+            }
+
+        });
+    }
+
+    public static <T> T inject(final T target, final String fieldName, final Object value) {
+        return inject(target, target.getClass(), fieldName, value);
+    }
+
+    /**
+     * Sets autowired field declared in given class, also when subclass declares field with the same name
+     */
+    public static <T> T inject(final T target, final Class<?> declaringClass, final String fieldName, final Object value) {
+        Field field = ReflectionUtils.findField(declaringClass, fieldName);
+
+        if (field == null) {
+            throw new IllegalArgumentException("Field " + fieldName + " not found in " + declaringClass.getName());
+        }
+
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+
+        return target;
+    }
+
+}
@@ -0,0 +1,375 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.benchmarks.fixtures;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.EntityList;
+import com.qcadoo.model.api.EntityTree;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchQueryBuilder;
+import com.qcadoo.model.api.search.SearchResult;
+
+/**
+ * In-memory replacement of the data layer, so benchmarks measure service code instead of Hibernate and the database.
+ * 
+ * Entities, lists, trees and data definitions are dynamic proxies backed by plain collections. Searches and queries return all
+ * saved entities of their model in insertion order - restrictions and orders aren't evaluated, so fixtures save only the
+ * entities which the real query would return, already sorted.
+ */
+public class InMemoryDataModel {
+
+    private final Map<String, DataDefinition> dataDefinitions = Maps.newHashMap();
+
+    private final Map<DataDefinition, Map<Long, Entity>> entities = Maps.newHashMap();
+
+    private final DataDefinitionService dataDefinitionService = Proxies.create(DataDefinitionService.class,
+            new Proxies.Handler() {
+
+                @Override
+                protected Object handle(final Object proxy, final Method method, final Object[] args) {
+                    if ("get".equals(method.getName()) && args.length == 2) {
+                        return getDataDefinition((String) args[0], (String) args[1]);
+                    }
+
+                    throw unsupported(method);
+                }
+
+                @Override
+                protected String describe() {
+                    return "dataDefinitionService";
+                }
+
+            });
+
+    private long lastId = 0;
+
+    public DataDefinitionService getDataDefinitionService() {
+        return dataDefinitionService;
+    }
+
+    public DataDefinition getDataDefinition(final String pluginIdentifier, final String modelName) {
+        String key = pluginIdentifier + "." + modelName;
+
+        DataDefinition dataDefinition = dataDefinitions.get(key);
+
+        if (dataDefinition == null) {
+            dataDefinition = Proxies.create(DataDefinition.class, new DataDefinitionHandler(pluginIdentifier, modelName));
+
+            dataDefinitions.put(key, dataDefinition);
+            entities.put(dataDefinition, Maps.newLinkedHashMap());
+        }
+
+        return dataDefinition;
+    }
+
+    public Entity create(final String pluginIdentifier, final String modelName) {
+        DataDefinition dataDefinition = getDataDefinition(pluginIdentifier, modelName);
+
+        return save(dataDefinition, createEntity(dataDefinition, null, Maps.newHashMap()));
+    }
+
+    public static EntityList list(final Collection<Entity> entities) {
+        return Proxies.create(EntityList.class, new CollectionHandler(Lists.newArrayList(entities)));
+    }
+
+    public static EntityTree tree(final List<Entity> nodes) {
+        return Proxies.create(EntityTree.class, new CollectionHandler(Lists.newArrayList(nodes)));
+    }
+
+    private Entity save(final DataDefinition dataDefinition, final Entity entity) {
+        if (entity.getId() == null) {
+            entity.setId(++lastId);
+        }
+
+        entities.get(dataDefinition).put(entity.getId(), entity);
+
+        return entity;
+    }
+
+    private Entity createEntity(final DataDefinition dataDefinition, final Long id, final Map<String, Object> fields) {
+        return Proxies.create(Entity.class, new EntityHandler(dataDefinition, id, fields));
+    }
+
+    private final class DataDefinitionHandler extends Proxies.Handler {
+
+        private final String pluginIdentifier;
+
+        private final String modelName;
+
+        private DataDefinitionHandler(final String pluginIdentifier, final String modelName) {
+            this.pluginIdentifier = pluginIdentifier;
+            this.modelName = modelName;
+        }
+
+        @Override
+        protected Object handle(final Object proxy, final Method method, final Object[] args) {
+            DataDefinition dataDefinition = (DataDefinition) proxy;
+
+            switch (method.getName()) {
+                case "getName":
+                    return modelName;
+                case "getPluginIdentifier":
+                    return pluginIdentifier;
+                case "get":
+                    return entities.get(dataDefinition).get(args[0]);
+                case "create":
+                    return createEntity(dataDefinition, (args.length == 0) ? null : (Long) args[0], Maps.newHashMap());
+                case "save":
+                case "fastSave":
+                    return save(dataDefinition, (Entity) args[0]);
+                case "find":
+                    if (args.length == 0) {
+                        return Proxies.create(SearchCriteriaBuilder.class, new SearchHandler(dataDefinition));
+                    }
+
+                    return Proxies.create(SearchQueryBuilder.class, new SearchHandler(dataDefinition));
+                default:
+                    throw unsupported(method);
+            }
+        }
+
+        @Override
+        protected String describe() {
+            return pluginIdentifier + "." + modelName;
+        }
+
+    }
+
+    private final class SearchHandler extends Proxies.Handler {
+
+        private final DataDefinition dataDefinition;
+
+        private int firstResult = 0;
+
+        private int maxResults = Integer.MAX_VALUE;
+
+        private SearchHandler(final DataDefinition dataDefinition) {
+            this.dataDefinition = dataDefinition;
+        }
+
+        @Override
+        protected Object handle(final Object proxy, final Method method, final Object[] args) {
+            switch (method.getName()) {
+                case "list":
+                    return createSearchResult();
+                case "uniqueResult":
+                    return Iterables.getFirst(getEntities(), null);
+                case "setFirstResult":
+                    firstResult = (Integer) args[0];
+
+                    return proxy;
+                case "setMaxResults":
+                    maxResults = (Integer) args[0];
+
+                    return proxy;
+                default:
+                    if (method.getReturnType().isInstance(proxy)) {
+                        return proxy;
+                    }
+
+                    throw unsupported(method);
+            }
+        }
+
+        private List<Entity> getEntities() {
+            List<Entity> all = Lists.newArrayList(entities.get(dataDefinition).values());
+
+            return all.subList(Math.min(firstResult, all.size()), (int) Math.min((long) firstResult + maxResults, all.size()));
+        }
+
+        private SearchResult createSearchResult() {
+            final List<Entity> result = getEntities();
+            final int totalNumberOfEntities = entities.get(dataDefinition).size();
+
+            return Proxies.create(SearchResult.class, new Proxies.Handler() {
+
+                @Override
+                protected Object handle(final Object proxy, final Method method, final Object[] args) {
+                    if ("getEntities".equals(method.getName())) {
+                        return Lists.newArrayList(result);
+                    } else if ("getTotalNumberOfEntities".equals(method.getName())) {
+                        return totalNumberOfEntities;
+                    }
+
+                    throw unsupported(method);
+                }
+
+                @Override
+                protected String describe() {
+                    return "searchResult of " + dataDefinition;
+                }
+
+            });
+        }
+
+        @Override
+        protected String describe() {
+            return "search in " + dataDefinition;
+        }
+
+    }
+
+    private final class EntityHandler extends Proxies.Handler {
+
+        private final DataDefinition dataDefinition;
+
+        private final Map<String, Object> fields;
+
+        private Long id;
+
+        private EntityHandler(final DataDefinition dataDefinition, final Long id, final Map<String, Object> fields) {
+            this.dataDefinition = dataDefinition;
+            this.id = id;
+            this.fields = fields;
+        }
+
+        @Override
+        protected Object handle(final Object proxy, final Method method, final Object[] args) {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "setId":
+                    id = (Long) args[0];
+
+                    return null;
+                case "getDataDefinition":
+                    return dataDefinition;
+                case "isValid":
+                    return true;
+                case "getFields":
+                    return fields;
+                case "getGlobalErrors":
+                    return Collections.emptyList();
+                case "getErrors":
+                    return Collections.emptyMap();
+                case "copy":
+                    return createEntity(dataDefinition, id, Maps.newHashMap(fields));
+                case "setField":
+                    fields.put((String) args[0], args[1]);
+
+                    return null;
+                case "getField":
+                    return fields.get(args[0]);
+                case "getStringField":
+                    return (String) fields.get(args[0]);
+                case "getDateField":
+                    return (Date) fields.get(args[0]);
+                case "getBelongsToField":
+                    return (Entity) fields.get(args[0]);
+                case "getTreeField":
+                    return (EntityTree) fields.get(args[0]);
+                case "getBooleanField":
+                    return Boolean.TRUE.equals(fields.get(args[0]));
+                case "getIntegerField":
+                    return toInteger(fields.get(args[0]));
+                case "getDecimalField":
+                    return toDecimal(fields.get(args[0]));
+                case "getHasManyField":
+                    return toEntityList(fields.get(args[0]));
+                case "getManyToManyField":
+                    return Lists.newArrayList(toEntityList(fields.get(args[0])));
+                default:
+                    throw unsupported(method);
+            }
+        }
+
+        private Integer toInteger(final Object value) {
+            if (value == null || value instanceof Integer) {
+                return (Integer) value;
+            }
+
+            return ((Number) value).intValue();
+        }
+
+        private BigDecimal toDecimal(final Object value) {
+            if (value == null || value instanceof BigDecimal) {
+                return (BigDecimal) value;
+            }
+
+            return new BigDecimal(value.toString());
+        }
+
+        @SuppressWarnings("unchecked")
+        private EntityList toEntityList(final Object value) {
+            if (value instanceof EntityList) {
+                return (EntityList) value;
+            } else if (value == null) {
+                return list(Collections.emptyList());
+            }
+
+            return list((Collection<Entity>) value);
+        }
+
+        @Override
+        protected String describe() {
+            return dataDefinition + "#" + id;
+        }
+
+    }
+
+    private static final class CollectionHandler extends Proxies.Handler {
+
+        private final List<Entity> entities;
+
+        private CollectionHandler(final List<Entity> entities) {
+            this.entities = entities;
+        }
+
+        @Override
+        protected Object handle(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if ("getRoot".equals(method.getName())) {
+                return Iterables.getFirst(entities, null);
+            } else if (method.getDeclaringClass().isInstance(entities)) {
+                try {
+                    return method.invoke(entities, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            throw unsupported(method);
+        }
+
+        @Override
+        protected String describe() {
+            return entities.toString();
+        }
+
+    }
+
+}
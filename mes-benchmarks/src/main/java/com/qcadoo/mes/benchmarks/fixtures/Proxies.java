@@ -0,0 +1,67 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.benchmarks.fixtures;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+final class Proxies {
+
+    private Proxies() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T create(final Class<T> type, final Handler handler) {
+        return (T) Proxy.newProxyInstance(Proxies.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    abstract static class Handler implements InvocationHandler {
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            Object[] arguments = (args == null) ? new Object[0] : args;
+
+            if ("equals".equals(method.getName()) && arguments.length == 1) {
+                return proxy == arguments[0];
+            } else if ("hashCode".equals(method.getName()) && arguments.length == 0) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(method.getName()) && arguments.length == 0) {
+                return describe();
+            }
+
+            return handle(proxy, method, arguments);
+        }
+
+        protected abstract Object handle(final Object proxy, final Method method, final Object[] args) throws Throwable;
+
+        protected abstract String describe();
+
+        protected UnsupportedOperationException unsupported(final Method method) {
+            return new UnsupportedOperationException(describe() + " doesn't support " + method.getName());
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.benchmarks.fixtures;
+
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ShiftFields;
+import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
+import com.qcadoo.mes.basic.constants.TimetableExceptionType;
+import com.qcadoo.model.api.Entity;
+
+public final class ShiftCalendarFixtures {
+
+    // ShiftsServiceImpl reads exceptions by this name, while Shift and ShiftTimetableExceptions use ShiftFields
+    private static final String L_TIMETABLE_EXCEPTIONS = "timetableExceptions";
+
+    private static final String[] HOURS = { "06:00-14:00", "14:00-22:00", "08:00-12:00, 12:30-16:30" };
+
+    private static final String[] WORKING_DAYS = { ShiftFields.MONDAY_WORKING, ShiftFields.TUESDAY_WORKING,
+            ShiftFields.WENSDAY_WORKING, ShiftFields.THURSDAY_WORKING, ShiftFields.FRIDAY_WORKING };
+
+    private static final String[] WORKING_DAYS_HOURS = { ShiftFields.MONDAY_HOURS, ShiftFields.TUESDAY_HOURS,
+            ShiftFields.WENSDAY_HOURS, ShiftFields.THURSDAY_HOURS, ShiftFields.FRIDAY_HOURS };
+
+    private ShiftCalendarFixtures() {
+    }
+
+    /**
+     * Creates shifts working from monday to friday, sharing given number of timetable exceptions. Exceptions take every second
+     * day starting from given date and alternate between free time and additional work time.
+     * 
+     * @param model
+     *            in-memory model
+     * @param shifts
+     *            number of shifts
+     * @param exceptions
+     *            number of timetable exceptions
+     * @param from
+     *            date of the first exception
+     * @return shifts
+     */
+    public static List<Entity> createShifts(final InMemoryDataModel model, final int shifts, final int exceptions,
+            final DateTime from) {
+        List<Entity> shiftEntities = Lists.newArrayList();
+        List<Entity> timetableExceptions = createTimetableExceptions(model, exceptions, from);
+
+        for (int index = 0; index < shifts; index++) {
+            Entity shift = model.create(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_SHIFT);
+
+            shift.setField(ShiftFields.NAME, "S" + index);
+
+            for (int day = 0; day < WORKING_DAYS.length; day++) {
+                shift.setField(WORKING_DAYS[day], true);
+                shift.setField(WORKING_DAYS_HOURS[day], HOURS[index % HOURS.length]);
+            }
+
+            shift.setField(ShiftFields.SATURDAY_WORKING, false);
+            shift.setField(ShiftFields.SUNDAY_WORKING, false);
+
+            shift.setField(ShiftFields.TIMETABLE_EXCEPTIONS, InMemoryDataModel.list(timetableExceptions));
+            shift.setField(L_TIMETABLE_EXCEPTIONS, InMemoryDataModel.list(timetableExceptions));
+
+            shiftEntities.add(shift);
+        }
+
+        return shiftEntities;
+    }
+
+    private static List<Entity> createTimetableExceptions(final InMemoryDataModel model, final int exceptions,
+            final DateTime from) {
+        List<Entity> timetableExceptions = Lists.newArrayList();
+
+        for (int index = 0; index < exceptions; index++) {
+            Entity timetableException = model.create(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.SHIFT_TIMETABLE_EXCEPTION);
+
+            DateTime day = from.plusDays(index * 2).withTimeAtStartOfDay();
+
+            if (index % 2 == 0) {
+                timetableException.setField(ShiftTimetableExceptionFields.TYPE,
+                        TimetableExceptionType.FREE_TIME.getStringValue());
+                timetableException.setField(ShiftTimetableExceptionFields.FROM_DATE, day.withHourOfDay(9).toDate());
+                timetableException.setField(ShiftTimetableExceptionFields.TO_DATE, day.withHourOfDay(11).toDate());
+            } else {
+                timetableException.setField(ShiftTimetableExceptionFields.TYPE,
+                        TimetableExceptionType.WORK_TIME.getStringValue());
+                timetableException.setField(ShiftTimetableExceptionFields.FROM_DATE, day.withHourOfDay(17).toDate());
+                timetableException.setField(ShiftTimetableExceptionFields.TO_DATE, day.withHourOfDay(23).toDate());
+            }
+
+            timetableExceptions.add(timetableException);
+        }
+
+        return timetableExceptions;
+    }
+
+}
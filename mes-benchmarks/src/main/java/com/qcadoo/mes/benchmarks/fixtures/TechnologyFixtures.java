@@ -0,0 +1,151 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.benchmarks.fixtures;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.technologies.constants.OperationProductInComponentFields;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentEntityType;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.model.api.Entity;
+
+public final class TechnologyFixtures {
+
+    private static final BigDecimal INTERMEDIATE_QUANTITY = new BigDecimal("2");
+
+    private static final BigDecimal MATERIAL_QUANTITY = new BigDecimal("1.5");
+
+    private TechnologyFixtures() {
+    }
+
+    public static Entity createProduct(final InMemoryDataModel model, final String number) {
+        Entity product = model.create(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT);
+
+        product.setField(ProductFields.NUMBER, number);
+        product.setField(ProductFields.UNIT, "szt");
+
+        return product;
+    }
+
+    /**
+     * Creates technology with full operation tree of given depth. Each operation produces one intermediate for its parent,
+     * consumes intermediates of its children and all of the shared materials.
+     * 
+     * @param model
+     *            in-memory model
+     * @param depth
+     *            number of operation levels
+     * @param branching
+     *            number of child operations of each non-leaf operation
+     * @param materials
+     *            number of materials used by each operation
+     * @return technology
+     */
+    public static Entity createTechnology(final InMemoryDataModel model, final int depth, final int branching,
+            final int materials) {
+        Entity technology = model.create(TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_TECHNOLOGY);
+        Entity product = createProduct(model, "P");
+
+        List<Entity> sharedMaterials = Lists.newArrayList();
+
+        for (int index = 0; index < materials; index++) {
+            sharedMaterials.add(createProduct(model, "M" + index));
+        }
+
+        List<Entity> operationComponents = Lists.newArrayList();
+
+        createOperationComponent(model, technology, null, product, 1, depth, branching, sharedMaterials, operationComponents);
+
+        technology.setField(TechnologyFields.PRODUCT, product);
+        technology.setField(TechnologyFields.OPERATION_COMPONENTS, InMemoryDataModel.tree(operationComponents));
+
+        return technology;
+    }
+
+    private static Entity createOperationComponent(final InMemoryDataModel model, final Entity technology, final Entity parent,
+            final Entity outProduct, final int level, final int depth, final int branching, final List<Entity> materials,
+            final List<Entity> operationComponents) {
+        Entity operationComponent = model.create(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_TECHNOLOGY_OPERATION_COMPONENT);
+
+        operationComponent.setField(TechnologyOperationComponentFields.TECHNOLOGY, technology);
+        operationComponent.setField(TechnologyOperationComponentFields.PARENT, parent);
+        operationComponent.setField(TechnologyOperationComponentFields.ENTITY_TYPE,
+                TechnologyOperationComponentEntityType.OPERATION.getStringValue());
+        operationComponent.setField(TechnologyOperationComponentFields.ARE_PRODUCT_QUANTITIES_DIVISIBLE, false);
+        operationComponent.setField(TechnologyOperationComponentFields.IS_TJ_DIVISIBLE, false);
+
+        operationComponents.add(operationComponent);
+
+        List<Entity> operationProductInComponents = Lists.newArrayList();
+        List<Entity> children = Lists.newArrayList();
+
+        if (level < depth) {
+            for (int index = 0; index < branching; index++) {
+                Entity intermediate = createProduct(model, outProduct.getStringField(ProductFields.NUMBER) + "." + index);
+
+                operationProductInComponents.add(createOperationProductComponent(model,
+                        TechnologiesConstants.MODEL_OPERATION_PRODUCT_IN_COMPONENT, operationComponent, intermediate,
+                        INTERMEDIATE_QUANTITY));
+                children.add(createOperationComponent(model, technology, operationComponent, intermediate, level + 1, depth,
+                        branching, materials, operationComponents));
+            }
+        }
+
+        for (Entity material : materials) {
+            operationProductInComponents.add(createOperationProductComponent(model,
+                    TechnologiesConstants.MODEL_OPERATION_PRODUCT_IN_COMPONENT, operationComponent, material, MATERIAL_QUANTITY));
+        }
+
+        Entity operationProductOutComponent = createOperationProductComponent(model,
+                TechnologiesConstants.MODEL_OPERATION_PRODUCT_OUT_COMPONENT, operationComponent, outProduct, BigDecimal.ONE);
+
+        operationComponent.setField(TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS,
+                InMemoryDataModel.list(operationProductInComponents));
+        operationComponent.setField(TechnologyOperationComponentFields.OPERATION_PRODUCT_OUT_COMPONENTS,
+                InMemoryDataModel.list(Collections.singletonList(operationProductOutComponent)));
+        operationComponent.setField(TechnologyOperationComponentFields.CHILDREN, InMemoryDataModel.list(children));
+
+        return operationComponent;
+    }
+
+    private static Entity createOperationProductComponent(final InMemoryDataModel model, final String modelName,
+            final Entity operationComponent, final Entity product, final BigDecimal quantity) {
+        Entity operationProductComponent = model.create(TechnologiesConstants.PLUGIN_IDENTIFIER, modelName);
+
+        operationProductComponent.setField(OperationProductInComponentFields.OPERATION_COMPONENT, operationComponent);
+        operationProductComponent.setField(OperationProductInComponentFields.PRODUCT, product);
+        operationProductComponent.setField(OperationProductInComponentFields.QUANTITY, quantity);
+
+        return operationProductComponent;
+    }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.benchmarks.fixtures;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.materialFlow.constants.LocationFields;
+import com.qcadoo.mes.materialFlow.constants.MaterialFlowConstants;
+import com.qcadoo.mes.materialFlowResources.constants.LocationFieldsMFR;
+import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
+import com.qcadoo.mes.materialFlowResources.constants.ParameterFieldsMFR;
+import com.qcadoo.mes.materialFlowResources.constants.PositionFields;
+import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
+import com.qcadoo.mes.materialFlowResources.constants.WarehouseAlgorithm;
+import com.qcadoo.model.api.Entity;
+
+public final class WarehouseFixtures {
+
+    private static final String L_FILL_RESOURCE_IRRESPECTIVE_OF_CONVERSION = "fillResourceIrrespectiveOfConversion";
+
+    private WarehouseFixtures() {
+    }
+
+    public static Entity createParameter(final InMemoryDataModel model) {
+        Entity documentPositionParameters = model.create(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
+                MaterialFlowResourcesConstants.MODEL_DOCUMENT_POSITION_PARAMETERS);
+
+        documentPositionParameters.setField(L_FILL_RESOURCE_IRRESPECTIVE_OF_CONVERSION, false);
+
+        Entity parameter = model.create(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PARAMETER);
+
+        parameter.setField(ParameterFieldsMFR.DOCUMENT_POSITION_PARAMETERS, documentPositionParameters);
+
+        return parameter;
+    }
+
+    public static Entity createWarehouse(final InMemoryDataModel model, final WarehouseAlgorithm warehouseAlgorithm) {
+        Entity warehouse = model.create(MaterialFlowConstants.PLUGIN_IDENTIFIER, MaterialFlowConstants.MODEL_LOCATION);
+
+        warehouse.setField(LocationFields.NUMBER, "W");
+        warehouse.setField(LocationFieldsMFR.ALGORITHM, warehouseAlgorithm.getStringValue());
+        warehouse.setField(LocationFieldsMFR.DRAFT_MAKES_RESERVATION, false);
+
+        return warehouse;
+    }
+
+    /**
+     * Creates resources of given product in given warehouse, ordered by time, with expiration dates in reverse order.
+     * 
+     * @param model
+     *            in-memory model
+     * @param warehouse
+     *            warehouse
+     * @param product
+     *            product
+     * @param resources
+     *            number of resources
+     * @param from
+     *            time of the first resource
+     * @return resources
+     */
+    public static List<Entity> createResources(final InMemoryDataModel model, final Entity warehouse, final Entity product,
+            final int resources, final DateTime from) {
+        List<Entity> resourceEntities = Lists.newArrayList();
+
+        for (int index = 0; index < resources; index++) {
+            Entity resource = model.create(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
+                    MaterialFlowResourcesConstants.MODEL_RESOURCE);
+
+            BigDecimal quantity = BigDecimal.valueOf(10 + index % 90);
+
+            resource.setField(ResourceFields.NUMBER, "R" + index);
+            resource.setField(ResourceFields.LOCATION, warehouse);
+            resource.setField(ResourceFields.PRODUCT, product);
+            resource.setField(ResourceFields.QUANTITY, quantity);
+            resource.setField(ResourceFields.AVAILABLE_QUANTITY, quantity);
+            resource.setField(ResourceFields.RESERVED_QUANTITY, BigDecimal.ZERO);
+            resource.setField(ResourceFields.CONVERSION, BigDecimal.ONE);
+            resource.setField(ResourceFields.GIVEN_UNIT, product.getStringField(ProductFields.UNIT));
+            resource.setField(ResourceFields.TIME, from.plusHours(index).toDate());
+            resource.setField(ResourceFields.EXPIRATION_DATE, from.plusDays(resources - index).toDate());
+
+            resourceEntities.add(resource);
+        }
+
+        return resourceEntities;
+    }
+
+    public static Entity createPosition(final InMemoryDataModel model, final Entity product, final BigDecimal quantity) {
+        Entity position = model.create(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
+                MaterialFlowResourcesConstants.MODEL_POSITION);
+
+        position.setField(PositionFields.PRODUCT, product);
+        position.setField(PositionFields.QUANTITY, quantity);
+        position.setField(PositionFields.CONVERSION, BigDecimal.ONE);
+        position.setField(PositionFields.GIVEN_UNIT, product.getStringField(ProductFields.UNIT));
+
+        return position;
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.benchmarks.materialFlowResources;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.util.ReflectionUtils;
+
+import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.benchmarks.fixtures.BenchmarkServices;
+import com.qcadoo.mes.benchmarks.fixtures.InMemoryDataModel;
+import com.qcadoo.mes.benchmarks.fixtures.TechnologyFixtures;
+import com.qcadoo.mes.benchmarks.fixtures.WarehouseFixtures;
+import com.qcadoo.mes.materialFlowResources.constants.WarehouseAlgorithm;
+import com.qcadoo.mes.materialFlowResources.service.ResourceManagementServiceImpl;
+import com.qcadoo.model.api.Entity;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResourceManagementServiceBenchmark {
+
+    private static final String L_GET_RESOURCES_METHOD = "getResourcesForWarehouseProductAndAlgorithm";
+
+    private static final DateTime DATE_FROM = new DateTime(2018, 1, 1, 7, 0);
+
+    @Param({ "10", "1000", "10000" })
+    public int resources;
+
+    @Param({ "FIFO", "FEFO" })
+    public WarehouseAlgorithm warehouseAlgorithm;
+
+    private ResourceManagementServiceImpl resourceManagementService;
+
+    private Method getResourcesForWarehouseProductAndAlgorithm;
+
+    private Entity warehouse;
+
+    private Entity product;
+
+    private Entity position;
+
+    @Setup
+    public void setUp() {
+        InMemoryDataModel model = new InMemoryDataModel();
+
+        ParameterService parameterService = BenchmarkServices.inject(new ParameterService(), "dataDefinitionService",
+                model.getDataDefinitionService());
+
+        resourceManagementService = new ResourceManagementServiceImpl();
+
+        BenchmarkServices.inject(resourceManagementService, "dataDefinitionService", model.getDataDefinitionService());
+        BenchmarkServices.inject(resourceManagementService, "numberService", BenchmarkServices.createNumberService());
+        BenchmarkServices.inject(resourceManagementService, "parameterService", parameterService);
+
+        getResourcesForWarehouseProductAndAlgorithm = ReflectionUtils.findMethod(ResourceManagementServiceImpl.class,
+                L_GET_RESOURCES_METHOD, Entity.class, Entity.class, Entity.class,
+                WarehouseAlgorithm.class);
+
+        ReflectionUtils.makeAccessible(getResourcesForWarehouseProductAndAlgorithm);
+
+        WarehouseFixtures.createParameter(model);
+        parameterService.invalidateParameters();
+
+        warehouse = WarehouseFixtures.createWarehouse(model, warehouseAlgorithm);
+        product = TechnologyFixtures.createProduct(model, "P");
+        position = WarehouseFixtures.createPosition(model, product, BigDecimal.valueOf(resources));
+
+        WarehouseFixtures.createResources(model, warehouse, product, resources, DATE_FROM);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Entity> getResourcesForWarehouseProductAndAlgorithm() {
+        return (List<Entity>) ReflectionUtils.invokeMethod(getResourcesForWarehouseProductAndAlgorithm,
+                resourceManagementService, warehouse, product, position, warehouseAlgorithm);
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.benchmarks.productionPerShift;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.basic.TimetableExceptionService;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.benchmarks.fixtures.BenchmarkServices;
+import com.qcadoo.mes.benchmarks.fixtures.InMemoryDataModel;
+import com.qcadoo.mes.benchmarks.fixtures.ShiftCalendarFixtures;
+import com.qcadoo.mes.benchmarks.fixtures.TechnologyFixtures;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.constants.OrdersConstants;
+import com.qcadoo.mes.productionLines.constants.ProductionLineFields;
+import com.qcadoo.mes.productionLines.constants.ProductionLinesConstants;
+import com.qcadoo.mes.productionPerShift.PpsTimeHelper;
+import com.qcadoo.mes.productionPerShift.constants.ParameterFieldsPPS;
+import com.qcadoo.mes.productionPerShift.constants.ProductionPerShiftConstants;
+import com.qcadoo.mes.productionPerShift.constants.ProductionPerShiftFields;
+import com.qcadoo.mes.productionPerShift.domain.ProgressForDaysContainer;
+import com.qcadoo.mes.productionPerShift.services.DailyProgressService;
+import com.qcadoo.mes.productionPerShift.services.PpsBaseAlgorithmService;
+import com.qcadoo.mes.productionPerShift.services.PpsTechNormAlgorithmService;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.NumberService;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PpsAlgorithmBenchmark {
+
+    private static final DateTime START_DATE = new DateTime(2018, 1, 1, 6, 0);
+
+    private static final BigDecimal STANDARD_PERFORMANCE = new BigDecimal("0.5");
+
+    @Param({ "1", "3" })
+    public int shifts;
+
+    @Param({ "0", "100" })
+    public int exceptions;
+
+    @Param({ "1000", "20000" })
+    public int plannedQuantity;
+
+    private PpsBaseAlgorithmService ppsAlgorithmService;
+
+    private Entity productionPerShift;
+
+    @Setup
+    public void setUp() {
+        InMemoryDataModel model = new InMemoryDataModel();
+
+        DataDefinitionService dataDefinitionService = model.getDataDefinitionService();
+        NumberService numberService = BenchmarkServices.createNumberService();
+
+        ParameterService parameterService = BenchmarkServices.inject(new ParameterService(), "dataDefinitionService",
+                dataDefinitionService);
+        TimetableExceptionService timetableExceptionService = BenchmarkServices.inject(new TimetableExceptionService(),
+                "dataDefinitionService", dataDefinitionService);
+        PpsTimeHelper ppsTimeHelper = BenchmarkServices.inject(new PpsTimeHelper(), "timetableExceptionService",
+                timetableExceptionService);
+        DailyProgressService dailyProgressService = BenchmarkServices.inject(new DailyProgressService(),
+                "dataDefinitionService", dataDefinitionService);
+
+        ppsAlgorithmService = new PpsTechNormAlgorithmService();
+
+        BenchmarkServices.inject(ppsAlgorithmService, "numberService", numberService);
+        BenchmarkServices.inject(ppsAlgorithmService, PpsBaseAlgorithmService.class, "numberService", numberService);
+        BenchmarkServices.inject(ppsAlgorithmService, PpsBaseAlgorithmService.class, "dataDefinitionService",
+                dataDefinitionService);
+        BenchmarkServices.inject(ppsAlgorithmService, PpsBaseAlgorithmService.class, "parameterService", parameterService);
+        BenchmarkServices.inject(ppsAlgorithmService, PpsBaseAlgorithmService.class, "ppsTimeHelper", ppsTimeHelper);
+        BenchmarkServices.inject(ppsAlgorithmService, PpsBaseAlgorithmService.class, "dailyProgressService",
+                dailyProgressService);
+
+        Entity parameter = model.create(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PARAMETER);
+
+        parameter.setField(ParameterFieldsPPS.ALLOW_INCOMPLITE_UNITS, false);
+
+        productionPerShift = createProductionPerShift(model);
+    }
+
+    private Entity createProductionPerShift(final InMemoryDataModel model) {
+        List<Entity> shiftEntities = ShiftCalendarFixtures.createShifts(model, shifts, exceptions, START_DATE);
+
+        Entity productionLine = model.create(ProductionLinesConstants.PLUGIN_IDENTIFIER,
+                ProductionLinesConstants.MODEL_PRODUCTION_LINE);
+
+        productionLine.setField(ProductionLineFields.NUMBER, "L");
+        productionLine.setField(ProductionLineFields.SHIFTS, shiftEntities);
+
+        Entity technology = TechnologyFixtures.createTechnology(model, 1, 0, 1);
+
+        technology.setField(TechnologyFields.STANDARD_PERFORMANCE_TECHNOLOGY, STANDARD_PERFORMANCE);
+
+        Entity order = model.create(OrdersConstants.PLUGIN_IDENTIFIER, OrdersConstants.MODEL_ORDER);
+
+        order.setField(OrderFields.START_DATE, START_DATE.toDate());
+        order.setField(OrderFields.PRODUCTION_LINE, productionLine);
+        order.setField(OrderFields.TECHNOLOGY, technology);
+        order.setField(OrderFields.PRODUCT, technology.getBelongsToField(TechnologyFields.PRODUCT));
+        order.setField(OrderFields.PLANNED_QUANTITY, BigDecimal.valueOf(plannedQuantity));
+        order.setField(OrderFields.FINAL_PRODUCTION_TRACKING, false);
+
+        Entity productionPerShift = model.create(ProductionPerShiftConstants.PLUGIN_IDENTIFIER,
+                ProductionPerShiftConstants.MODEL_PRODUCTION_PER_SHIFT);
+
+        productionPerShift.setField(ProductionPerShiftFields.ORDER, order);
+
+        return productionPerShift;
+    }
+
+    @Benchmark
+    public ProgressForDaysContainer generateProgressForDays() {
+        ProgressForDaysContainer progressForDaysContainer = new ProgressForDaysContainer();
+
+        ppsAlgorithmService.generateProgressForDays(progressForDaysContainer, productionPerShift);
+
+        return progressForDaysContainer;
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.benchmarks.technologies;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.qcadoo.mes.benchmarks.fixtures.BenchmarkServices;
+import com.qcadoo.mes.benchmarks.fixtures.InMemoryDataModel;
+import com.qcadoo.mes.benchmarks.fixtures.TechnologyFixtures;
+import com.qcadoo.mes.technologies.ProductQuantitiesService;
+import com.qcadoo.mes.technologies.ProductQuantitiesServiceImpl;
+import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
+import com.qcadoo.mes.technologies.dto.ProductQuantitiesHolder;
+import com.qcadoo.model.api.Entity;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductQuantitiesServiceBenchmark {
+
+    private static final BigDecimal PLANNED_QUANTITY = new BigDecimal("125");
+
+    @Param({ "3", "6", "9" })
+    public int depth;
+
+    @Param({ "2" })
+    public int branching;
+
+    @Param({ "2", "10" })
+    public int materials;
+
+    private ProductQuantitiesService productQuantitiesService;
+
+    private Entity technology;
+
+    @Setup
+    public void setUp() {
+        InMemoryDataModel model = new InMemoryDataModel();
+
+        productQuantitiesService = new ProductQuantitiesServiceImpl();
+
+        BenchmarkServices.inject(productQuantitiesService, "numberService", BenchmarkServices.createNumberService());
+        BenchmarkServices.inject(productQuantitiesService, "dataDefinitionService", model.getDataDefinitionService());
+
+        technology = TechnologyFixtures.createTechnology(model, depth, branching, materials);
+    }
+
+    @Benchmark
+    public ProductQuantitiesHolder getProductComponentQuantities() {
+        return productQuantitiesService.getProductComponentQuantities(technology, PLANNED_QUANTITY);
+    }
+
+    @Benchmark
+    public Map<Long, BigDecimal> getNeededProductQuantities() {
+        return productQuantitiesService.getNeededProductQuantities(technology, PLANNED_QUANTITY, MrpAlgorithm.ONLY_COMPONENTS);
+    }
+
+}
@@ -41,6 +41,7 @@ import com.qcadoo.localization.api.utils.DateUtils;
 import com.qcadoo.mes.avgLaborCostCalcForOrder.AverageCostService;
 import com.qcadoo.mes.avgLaborCostCalcForOrder.constants.AvgLaborCostCalcForOrderConstants;
 import com.qcadoo.mes.avgLaborCostCalcForOrder.constants.AvgLaborCostCalcForOrderFields;
+import com.qcadoo.mes.orders.TechnologyServiceO;
 import com.qcadoo.mes.orders.constants.OrderFields;
 import com.qcadoo.mes.orders.constants.OrdersConstants;
 import com.qcadoo.mes.technologies.constants.TechnologyFields;
@@ -63,6 +64,9 @@ public class AvgLaborCostCalcForOrderDetailsListeners {
     @Autowired
     private AverageCostService averageCostService;
 
+    @Autowired
+    private TechnologyServiceO technologyServiceO;
+
     public void setAvgLaborCostCalcForGivenOrder(final ViewDefinitionState view, final ComponentState state, final String[] args) {
         if (args.length < 2) {
             return;
@@ -121,7 +125,8 @@ public class AvgLaborCostCalcForOrderDetailsListeners {
     public void copyToOperationsNorms(final ViewDefinitionState view, final ComponentState state, final String[] args) {
         FormComponent form = (FormComponent) view.getComponentByReference("form");
         Entity avgLaborCostCalcForOrder = form.getEntity().getDataDefinition().get(form.getEntityId());
-        Entity order = avgLaborCostCalcForOrder.getBelongsToField(AvgLaborCostCalcForOrderFields.ORDER);
+        Entity order = technologyServiceO.materializeTechnologyIfShared(avgLaborCostCalcForOrder
+                .getBelongsToField(AvgLaborCostCalcForOrderFields.ORDER));
         List<Entity> tocs = order.getBelongsToField(OrderFields.TECHNOLOGY)
                 .getHasManyField(TechnologyFields.OPERATION_COMPONENTS);
         for (Entity toc : tocs) {
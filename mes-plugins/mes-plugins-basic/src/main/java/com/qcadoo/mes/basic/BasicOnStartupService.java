@@ -27,6 +27,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.qcadoo.mes.basic.palletnumber.PalletNumberAllocationService;
 import com.qcadoo.plugin.api.Module;
 
 @Component
@@ -56,6 +57,15 @@ public class BasicOnStartupService extends Module {
     @Autowired
     private ExchangeRatesUpdateService exchangeRatesUpdateService;
 
+    @Autowired
+    private PalletNumberAllocationService palletNumberAllocationService;
+
+    @Override
+    @Transactional
+    public void enableOnStartup() {
+        palletNumberAllocationService.synchronizeSequence();
+    }
+
     @Override
     @Transactional
     public void multiTenantEnable() {
@@ -66,6 +76,7 @@ public class BasicOnStartupService extends Module {
         defaultFaultTypesLoader.loadDefaultFaultTypes();
         addressTypeLoader.loadAddressTypes();
         colorLoader.loadColors();
+        palletNumberAllocationService.synchronizeSequence();
 
         exchangeRatesUpdateService.update();
     }
@@ -2,18 +2,18 @@ package com.qcadoo.mes.basic;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
-import com.qcadoo.mes.basic.constants.BasicConstants;
-import com.qcadoo.mes.basic.constants.LogFields;
 import com.qcadoo.mes.basic.constants.LogLevel;
+import com.qcadoo.mes.basic.logging.LogEntry;
+import com.qcadoo.mes.basic.logging.LogWriter;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -29,6 +29,8 @@ public class LogService {
 
     public static final String QCADOO_BOT = "qcadoo_bot";
 
+    private static final long L_DELETE_RANGE_SIZE = 10000L;
+
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
@@ -41,6 +43,11 @@ public class LogService {
     @Autowired
     private NamedParameterJdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private LogWriter logWriter;
+
+    private final ConcurrentMap<Integer, Long> botUserIds = new ConcurrentHashMap<>();
+
     public final static class Builder {
 
         private Builder() {
@@ -130,38 +137,26 @@ public class LogService {
         }
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public Entity add(Builder builder) {
+    public void add(Builder builder) {
         validate(builder);
 
-        DataDefinition logDD = getLogDD();
-        Entity logEntity = logDD.create();
-
-        logEntity.setField(LogFields.ACTION, builder.action);
-        if (builder.createTime == null) {
-            logEntity.setField(LogFields.CREATE_TIME, new Date());
-        } else {
-            logEntity.setField(LogFields.CREATE_TIME, builder.createTime);
-        }
-        logEntity.setField(LogFields.DETAILS, builder.details);
-        logEntity.setField(LogFields.ITEM_1, builder.item1);
-        logEntity.setField(LogFields.ITEM_2, builder.item2);
-        logEntity.setField(LogFields.ITEM_3, builder.item3);
-        logEntity.setField(LogFields.LOG_LEVEL, builder.logLevel.getCode());
-        logEntity.setField(LogFields.MESSAGE, builder.message);
-        logEntity.setField(LogFields.TYPE, builder.type);
-        Long userId;
-        try {
-            userId = securityService.getCurrentUserId();
-        } catch (Exception ex) {
-            userId = findBotUser().getId();
+        Date createTime = builder.createTime;
+        if (createTime == null) {
+            createTime = new Date();
         }
-        logEntity.setField(LogFields.USER, userId);
-        return logDD.save(logEntity);
+
+        int tenantId = multiTenantService.getCurrentTenantId();
+
+        logWriter.write(new LogEntry(tenantId, createTime, getUserId(tenantId), builder.type, builder.action, builder.item1,
+                builder.item2, builder.item3, builder.message, builder.details, builder.logLevel));
     }
 
-    private DataDefinition getLogDD() {
-        return dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_LOG);
+    private Long getUserId(final int tenantId) {
+        try {
+            return securityService.getCurrentUserId();
+        } catch (Exception ex) {
+            return botUserIds.computeIfAbsent(tenantId, id -> findBotUser().getId());
+        }
     }
 
     private Entity findBotUser() {
@@ -195,15 +190,28 @@ public class LogService {
     }
 
     private void deleteOldLogs() {
-        String sqlForViewed = "DELETE FROM basic_viewedactivity " +
-                "WHERE log_id IN (SELECT id FROM basic_log WHERE createtime < (now() - interval '1 month'))";
+        Map<String, Object> params = Maps.newHashMap();
 
-        String sql = "DELETE FROM basic_log WHERE createtime < (now() - interval '1 month');";
+        Long lastId = jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM basic_log WHERE createtime < (now() - interval '1 month')", params, Long.class);
+        Long firstId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM basic_log", params, Long.class);
 
-        Map<String, Object> params = Maps.newHashMap();
+        if ((lastId == null) || (firstId == null)) {
+            return;
+        }
 
-        jdbcTemplate.update(sqlForViewed, params);
-        jdbcTemplate.update(sql, params);
+        // ids grow with insertion order, so everything up to the newest outdated entry is removed in bounded id ranges
+        String sqlForViewed = "DELETE FROM basic_viewedactivity WHERE log_id >= :fromId AND log_id < :toId";
+
+        String sql = "DELETE FROM basic_log WHERE id >= :fromId AND id < :toId";
+
+        for (long fromId = firstId; fromId <= lastId; fromId += L_DELETE_RANGE_SIZE) {
+            params.put("fromId", fromId);
+            params.put("toId", Math.min(fromId + L_DELETE_RANGE_SIZE, lastId + 1));
+
+            jdbcTemplate.update(sqlForViewed, params);
+            jdbcTemplate.update(sql, params);
+        }
     }
 
 }
@@ -23,17 +23,15 @@
  */
 package com.qcadoo.mes.basic;
 
-import java.util.LinkedList;
+import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import com.google.common.collect.Lists;
-import com.qcadoo.mes.basic.constants.BasicConstants;
 import com.qcadoo.mes.basic.constants.PalletNumberFields;
+import com.qcadoo.mes.basic.palletnumber.PalletNumberAllocationService;
 import com.qcadoo.view.api.ViewDefinitionState;
 import com.qcadoo.view.api.utils.NumberGeneratorService;
-import java.util.List;
 
 @Service
 public class PalletNumberGenerator {
@@ -43,6 +41,9 @@ public class PalletNumberGenerator {
     @Autowired
     private NumberGeneratorService numberGeneratorService;
 
+    @Autowired
+    private PalletNumberAllocationService palletNumberAllocationService;
+
     /**
      * Check if should insert number
      *
@@ -62,14 +63,11 @@ public class PalletNumberGenerator {
      * @return number
      */
     public String generate() {
-        return numberGeneratorService.generateNumber(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PALLET_NUMBER, 6);
+        return palletNumberAllocationService.allocate(1).get(0);
     }
 
     /**
-     * Lists pallet numbers
-     *
-     * @param firstNumber
-     *            First number
+     * Generate numbers
      *
      * @param quantity
      *            Quantity
@@ -77,20 +75,8 @@ public class PalletNumberGenerator {
      * @return palletNumbers
      *
      */
-    public List<String> list(final String firstNumber, final int quantity) {
-        LinkedList<String> palletNumbers = Lists.newLinkedList();
-
-        Integer highestNumber = Integer.valueOf(firstNumber);
-
-        for (int i = 0; i < quantity; i++) {
-            Integer nextNumber = highestNumber + i;
-
-            String palletNumber = String.format("%06d", nextNumber);
-
-            palletNumbers.add(palletNumber);
-        }
-
-        return palletNumbers;
+    public List<String> generate(final int quantity) {
+        return palletNumberAllocationService.allocate(quantity);
     }
 
 }
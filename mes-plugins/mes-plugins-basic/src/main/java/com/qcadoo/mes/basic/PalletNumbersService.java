@@ -43,7 +43,7 @@ public interface PalletNumbersService {
     Entity createPalletNumber(final String number);
 
     /**
-     * Creates pallet numbers
+     * Creates pallet numbers in one batch, numbers should come from PalletNumberGenerator
      *
      * @param numbers
      *            Numbers
@@ -24,12 +24,16 @@
 package com.qcadoo.mes.basic;
 
 import java.util.Comparator;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Service;
 
 import com.google.common.collect.Lists;
@@ -41,6 +45,7 @@ import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.plugin.api.RunIfEnabled;
+import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.tenant.api.MultiTenantCallback;
 import com.qcadoo.tenant.api.MultiTenantService;
 
@@ -54,6 +59,12 @@ public class PalletNumbersServiceImpl implements PalletNumbersService {
     @Autowired
     private MultiTenantService multiTenantService;
 
+    @Autowired
+    private SecurityService securityService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
     @Override
     public Entity createPalletNumber(final String number) {
         Entity palletNumber = getPalletNumberDD().create();
@@ -67,15 +78,27 @@ public class PalletNumbersServiceImpl implements PalletNumbersService {
 
     @Override
     public List<Entity> createPalletNumbers(final List<String> numbers) {
-        List<Entity> palletNumbers = Lists.newArrayList();
+        if (numbers.isEmpty()) {
+            return Lists.newArrayList();
+        }
 
-        for (String number : numbers) {
-            Entity palletNumber = createPalletNumber(number);
+        Date now = new Date();
+        String userName = securityService.getCurrentUserName();
 
-            palletNumbers.add(palletNumber);
+        SqlParameterSource[] batchParameters = new SqlParameterSource[numbers.size()];
+        for (int index = 0; index < numbers.size(); index++) {
+            batchParameters[index] = new MapSqlParameterSource("number", numbers.get(index)).addValue("date", now)
+                    .addValue("userName", userName);
         }
 
-        return palletNumbers;
+        jdbcTemplate.batchUpdate("INSERT INTO basic_palletnumber "
+                + "(number, active, createdate, updatedate, createuser, updateuser) VALUES (:number, true, :date, :date, :userName, :userName)", batchParameters);
+
+        List<Entity> palletNumbers = getPalletNumberDD().find().add(SearchRestrictions.in(PalletNumberFields.NUMBER, numbers))
+                .list().getEntities();
+
+        return palletNumbers.stream().sorted(Comparator.comparing(palletNumber -> palletNumber.getStringField(
+                PalletNumberFields.NUMBER))).collect(Collectors.toList());
     }
 
     @Override
@@ -26,18 +26,25 @@ package com.qcadoo.mes.basic;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
 import com.qcadoo.mes.basic.constants.BasicConstants;
 import com.qcadoo.mes.basic.constants.CharType;
 import com.qcadoo.mes.basic.constants.ReportColumnWidthFields;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
+import com.qcadoo.tenant.api.MultiTenantService;
 
 /**
  * Service for accessing parameters
@@ -54,6 +61,13 @@ public class ParameterService {
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    private final ConcurrentMap<Integer, TenantParameters> tenantParameters = new ConcurrentHashMap<>();
+
+    private final Set<String> cachedBelongsToFields = ConcurrentHashMap.newKeySet();
+
     /**
      * Returns basic parameter entity id for current user
      * 
@@ -88,6 +102,55 @@ public class ParameterService {
         return parameter;
     }
 
+    /**
+     * Returns cached, immutable snapshot of basic parameter entity of the current tenant. Use it instead of
+     * {@link #getParameter()} in loops and hooks which only read parameters.
+     * 
+     * @return parameter snapshot
+     * 
+     */
+    public ParameterSnapshot getParameters() {
+        return getTenantParameters().get();
+    }
+
+    /**
+     * Keeps snapshot of the given belongs to field together with parameter snapshot, instead of loading it on each access. Model
+     * of the field has to call {@link #invalidateParameters()} when saved.
+     * 
+     * @param fieldName
+     *            name of parameter belongs to field
+     */
+    public void cacheBelongsToField(final String fieldName) {
+        if (cachedBelongsToFields.add(fieldName)) {
+            tenantParameters.values().forEach(TenantParameters::invalidate);
+        }
+    }
+
+    /**
+     * Drops cached parameter snapshot of the current tenant, now and once again after the current transaction commits, so that
+     * snapshot loaded concurrently from not yet committed data is not kept.
+     */
+    public void invalidateParameters() {
+        TenantParameters parameters = getTenantParameters();
+
+        parameters.invalidate();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    parameters.invalidate();
+                }
+
+            });
+        }
+    }
+
+    private TenantParameters getTenantParameters() {
+        return tenantParameters.computeIfAbsent(multiTenantService.getCurrentTenantId(), tenantId -> new TenantParameters());
+    }
+
     private Entity createParameter(final DataDefinition dataDefinition) {
         Entity parameter = dataDefinition.create();
         parameter = dataDefinition.save(parameter);
@@ -124,4 +187,44 @@ public class ParameterService {
 
         return reportColumnWidthsMap;
     }
+
+    /**
+     * Parameter snapshot of a single tenant. A snapshot loaded while the generation changed is returned to its caller but not
+     * kept, so a load racing with a parameter change can't hide that change.
+     */
+    private final class TenantParameters {
+
+        private ParameterSnapshot parameters;
+
+        private long generation;
+
+        private ParameterSnapshot get() {
+            long loadedGeneration;
+
+            synchronized (this) {
+                if (parameters != null) {
+                    return parameters;
+                }
+
+                loadedGeneration = generation;
+            }
+
+            ParameterSnapshot loadedParameters = new ParameterSnapshot(getParameter(), ImmutableSet.copyOf(cachedBelongsToFields));
+
+            synchronized (this) {
+                if (generation == loadedGeneration) {
+                    parameters = loadedParameters;
+                }
+            }
+
+            return loadedParameters;
+        }
+
+        private synchronized void invalidate() {
+            generation++;
+            parameters = null;
+        }
+
+    }
+
 }
@@ -0,0 +1,281 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Immutable copy of the parameter entity fields, safe to share between threads. Fields are read by name, like entity fields;
+ * flags read in loops and model hooks have typed accessors resolved once per snapshot. Collection fields are left out.
+ * Belongs to fields registered with {@link ParameterService#cacheBelongsToField(String)} are copied into nested snapshots, the
+ * other ones are loaded again on each access, so changes of e.g. default currency are seen without invalidating parameters.
+ * 
+ * @see ParameterService#getParameters()
+ */
+public final class ParameterSnapshot {
+
+    private static final String L_WORKSTATIONS_QUANTITY_FROM_PRODUCTION_LINE = "workstationsQuantityFromProductionLine";
+
+    private static final String L_INCLUDE_TPZ = "includeTpzPS";
+
+    private static final String L_INCLUDE_ADDITIONAL_TIME = "includeAdditionalTimePS";
+
+    private static final String L_REASON_NEEDED_WHEN_CORRECTING_THE_REQUESTED_VOLUME =
+            "reasonNeededWhenCorrectingTheRequestedVolume";
+
+    private static final String L_CREATE_SET_ELEMENTS_ON_ACCEPT = "createSetElementsOnAccept";
+
+    private static final String L_CONSUMPTION_OF_RAW_MATERIALS_BASED_ON_STANDARDS = "consumptionOfRawMaterialsBasedOnStandards";
+
+    private static final String L_ALLOW_CHANGES_TO_USED_QUANTITY_ON_TERMINAL = "allowChangesToUsedQuantityOnTerminal";
+
+    private static final String L_DELIVERED_BIGGER_THAN_ORDERED = "deliveredBiggerThanOrdered";
+
+    private static final String L_INPUT_PRODUCTS_REQUIRED_FOR_TYPE = "inputProductsRequiredForType";
+
+    private static final String L_CHANGE_DATE_WHEN_TRANSFER_TO_WAREHOUSE_TYPE = "changeDateWhenTransferToWarehouseType";
+
+    private static final String L_FILL_RESOURCE_IRRESPECTIVE_OF_CONVERSION = "fillResourceIrrespectiveOfConversion";
+
+    private final Long id;
+
+    private final Map<String, Object> fields;
+
+    private final Map<String, BelongsToReference> belongsToReferences;
+
+    private final Map<String, ParameterSnapshot> belongsToSnapshots;
+
+    private final boolean workstationsQuantityFromProductionLine;
+
+    private final boolean includeTpz;
+
+    private final boolean includeAdditionalTime;
+
+    private final boolean reasonNeededWhenCorrectingTheRequestedVolume;
+
+    private final boolean createSetElementsOnAccept;
+
+    private final boolean consumptionOfRawMaterialsBasedOnStandards;
+
+    private final boolean allowChangesToUsedQuantityOnTerminal;
+
+    private final boolean deliveredBiggerThanOrdered;
+
+    private final String inputProductsRequiredForType;
+
+    private final String changeDateWhenTransferToWarehouseType;
+
+    private final boolean fillResourceIrrespectiveOfConversion;
+
+    public ParameterSnapshot(final Entity entity) {
+        this(entity, Collections.<String> emptySet());
+    }
+
+    public ParameterSnapshot(final Entity entity, final Set<String> cachedBelongsToFields) {
+        Map<String, Object> fields = new HashMap<>();
+        Map<String, BelongsToReference> belongsToReferences = new HashMap<>();
+        Map<String, ParameterSnapshot> belongsToSnapshots = new HashMap<>();
+
+        for (Map.Entry<String, Object> field : entity.getFields().entrySet()) {
+            Object value = field.getValue();
+
+            if (value instanceof Entity) {
+                Entity belongsToEntity = (Entity) value;
+
+                belongsToReferences.put(field.getKey(),
+                        new BelongsToReference(belongsToEntity.getDataDefinition(), belongsToEntity.getId()));
+
+                if (cachedBelongsToFields.contains(field.getKey())) {
+                    belongsToSnapshots.put(field.getKey(), new ParameterSnapshot(belongsToEntity));
+                }
+            } else if (!(value instanceof Collection)) {
+                fields.put(field.getKey(), value);
+            }
+        }
+
+        this.id = entity.getId();
+        this.fields = Collections.unmodifiableMap(fields);
+        this.belongsToReferences = Collections.unmodifiableMap(belongsToReferences);
+        this.belongsToSnapshots = Collections.unmodifiableMap(belongsToSnapshots);
+
+        this.workstationsQuantityFromProductionLine = getBooleanField(L_WORKSTATIONS_QUANTITY_FROM_PRODUCTION_LINE);
+        this.includeTpz = getBooleanField(L_INCLUDE_TPZ);
+        this.includeAdditionalTime = getBooleanField(L_INCLUDE_ADDITIONAL_TIME);
+        this.reasonNeededWhenCorrectingTheRequestedVolume = getBooleanField(L_REASON_NEEDED_WHEN_CORRECTING_THE_REQUESTED_VOLUME);
+        this.createSetElementsOnAccept = getBooleanField(L_CREATE_SET_ELEMENTS_ON_ACCEPT);
+        this.consumptionOfRawMaterialsBasedOnStandards = getBooleanField(L_CONSUMPTION_OF_RAW_MATERIALS_BASED_ON_STANDARDS);
+        this.allowChangesToUsedQuantityOnTerminal = getBooleanField(L_ALLOW_CHANGES_TO_USED_QUANTITY_ON_TERMINAL);
+        this.deliveredBiggerThanOrdered = getBooleanField(L_DELIVERED_BIGGER_THAN_ORDERED);
+        this.inputProductsRequiredForType = getStringField(L_INPUT_PRODUCTS_REQUIRED_FOR_TYPE);
+        this.changeDateWhenTransferToWarehouseType = getStringField(L_CHANGE_DATE_WHEN_TRANSFER_TO_WAREHOUSE_TYPE);
+        this.fillResourceIrrespectiveOfConversion = getBooleanField(L_FILL_RESOURCE_IRRESPECTIVE_OF_CONVERSION);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Object getField(final String fieldName) {
+        return fields.get(fieldName);
+    }
+
+    public String getStringField(final String fieldName) {
+        Object value = getField(fieldName);
+
+        return (value == null) ? null : value.toString();
+    }
+
+    public boolean getBooleanField(final String fieldName) {
+        Object value = getField(fieldName);
+
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+
+        return (value != null) && ("1".equals(value.toString()) || Boolean.parseBoolean(value.toString()));
+    }
+
+    public BigDecimal getDecimalField(final String fieldName) {
+        Object value = getField(fieldName);
+
+        if ((value == null) || (value instanceof BigDecimal)) {
+            return (BigDecimal) value;
+        }
+
+        return new BigDecimal(value.toString());
+    }
+
+    public Integer getIntegerField(final String fieldName) {
+        Object value = getField(fieldName);
+
+        if ((value == null) || (value instanceof Integer)) {
+            return (Integer) value;
+        }
+
+        return Integer.valueOf(value.toString());
+    }
+
+    public Date getDateField(final String fieldName) {
+        Object value = getField(fieldName);
+
+        return (value == null) ? null : new Date(((Date) value).getTime());
+    }
+
+    public Long getBelongsToId(final String fieldName) {
+        BelongsToReference reference = belongsToReferences.get(fieldName);
+
+        return (reference == null) ? null : reference.id;
+    }
+
+    public ParameterSnapshot getBelongsToField(final String fieldName) {
+        BelongsToReference reference = belongsToReferences.get(fieldName);
+
+        if (reference == null) {
+            return null;
+        }
+
+        ParameterSnapshot belongsToSnapshot = belongsToSnapshots.get(fieldName);
+
+        return (belongsToSnapshot == null) ? reference.load() : belongsToSnapshot;
+    }
+
+    public boolean isWorkstationsQuantityFromProductionLine() {
+        return workstationsQuantityFromProductionLine;
+    }
+
+    public boolean isIncludeTpz() {
+        return includeTpz;
+    }
+
+    public boolean isIncludeAdditionalTime() {
+        return includeAdditionalTime;
+    }
+
+    public boolean isReasonNeededWhenCorrectingTheRequestedVolume() {
+        return reasonNeededWhenCorrectingTheRequestedVolume;
+    }
+
+    public boolean isCreateSetElementsOnAccept() {
+        return createSetElementsOnAccept;
+    }
+
+    public boolean isConsumptionOfRawMaterialsBasedOnStandards() {
+        return consumptionOfRawMaterialsBasedOnStandards;
+    }
+
+    public boolean isAllowChangesToUsedQuantityOnTerminal() {
+        return allowChangesToUsedQuantityOnTerminal;
+    }
+
+    public boolean isDeliveredBiggerThanOrdered() {
+        return deliveredBiggerThanOrdered;
+    }
+
+    public String getInputProductsRequiredForType() {
+        return inputProductsRequiredForType;
+    }
+
+    /**
+     * Field of document position parameters, read it from the {@code documentPositionParameters} belongs to snapshot.
+     */
+    public String getChangeDateWhenTransferToWarehouseType() {
+        return changeDateWhenTransferToWarehouseType;
+    }
+
+    /**
+     * Field of document position parameters, read it from the {@code documentPositionParameters} belongs to snapshot.
+     */
+    public boolean isFillResourceIrrespectiveOfConversion() {
+        return fillResourceIrrespectiveOfConversion;
+    }
+
+    private static final class BelongsToReference {
+
+        private final DataDefinition dataDefinition;
+
+        private final Long id;
+
+        private BelongsToReference(final DataDefinition dataDefinition, final Long id) {
+            this.dataDefinition = dataDefinition;
+            this.id = id;
+        }
+
+        private ParameterSnapshot load() {
+            Entity entity = dataDefinition.get(id);
+
+            return (entity == null) ? null : new ParameterSnapshot(entity);
+        }
+
+    }
+
+}
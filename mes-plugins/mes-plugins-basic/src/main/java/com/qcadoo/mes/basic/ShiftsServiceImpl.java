@@ -29,10 +29,10 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.qcadoo.commons.dateTime.TimeRange;
 import com.qcadoo.mes.basic.constants.BasicConstants;
-import com.qcadoo.mes.basic.constants.ShiftFields;
 import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
 import com.qcadoo.mes.basic.constants.TimetableExceptionType;
 import com.qcadoo.mes.basic.shift.Shift;
+import com.qcadoo.mes.basic.shift.ShiftResolver;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -59,7 +59,6 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -104,6 +103,9 @@ public class ShiftsServiceImpl implements ShiftsService {
     @Autowired
     private TimetableExceptionService timetableExceptionService;
 
+    @Autowired
+    private ShiftResolver shiftResolver;
+
     private static final String[] WEEK_DAYS = { L_MONDAY, L_TUESDAY, L_WENSDAY, L_THURSDAY, L_FRIDAY, L_SATURDAY, L_SUNDAY };
 
     private static final Map<Integer, String> DAY_OF_WEEK = buildDayNumToNameMap();
@@ -236,13 +238,10 @@ public class ShiftsServiceImpl implements ShiftsService {
 
     private List<Interval> manageExceptions(List<Interval> shiftWorkTimes, Entity productionLine, final Shift shift,
             final DateTime currentDate, final DateTime baseDate) {
-        List<Entity> _exceptions;
+        LocalDate currentDay = currentDate.toLocalDate();
 
-        if (Objects.isNull(productionLine)) {
-            _exceptions = shift.getEntity().getHasManyField(ShiftFields.TIMETABLE_EXCEPTIONS);
-        } else {
-            _exceptions = timetableExceptionService.findForLineAndShift(productionLine, shift.getEntity());
-        }
+        List<Entity> _exceptions = timetableExceptionService.findForLineAndShift(productionLine, shift.getEntity(),
+                currentDay.toDate(), currentDay.plusDays(1).toDate());
 
         Shift shiftForDay = new Shift(shift.getEntity(), currentDate, false);
 
@@ -375,18 +374,11 @@ public class ShiftsServiceImpl implements ShiftsService {
             }
         }
 
-        List<Entity> exceptions;
+        List<Entity> exceptions = timetableExceptionService.findForLineAndShift(productionLine, shift.getEntity(), date.toDate(),
+                new Date(Long.MAX_VALUE));
 
-        if (Objects.isNull(productionLine)) {
-            exceptions = shift.getEntity().getHasManyField(ShiftFields.TIMETABLE_EXCEPTIONS);
-        } else {
-            exceptions = timetableExceptionService.findForLineAndShift(productionLine, shift.getEntity());
-        }
-
-        return exceptions.stream()
-                .anyMatch(exception -> exception.getStringField(ShiftTimetableExceptionFields.TYPE)
-                        .equals(TimetableExceptionType.WORK_TIME.getStringValue())
-                        && exception.getDateField(ShiftTimetableExceptionFields.TO_DATE).compareTo(date.toDate()) >= 0);
+        return exceptions.stream().anyMatch(exception -> exception.getStringField(ShiftTimetableExceptionFields.TYPE)
+                .equals(TimetableExceptionType.WORK_TIME.getStringValue()));
     }
 
     private DateTime convertToDateTime(final DateTime currentDate, final LocalTime time) {
@@ -824,50 +816,7 @@ public class ShiftsServiceImpl implements ShiftsService {
 
     @Override
     public Entity getShiftFromDateWithTime(final Date date) {
-        List<Entity> shifts = getShiftsWorkingAtDate(date);
-
-        for (Entity shift : shifts) {
-            String stringHours = shift.getStringField(getDayOfWeekName(date) + HOURS_LITERAL);
-            LocalTime[][] dayHours = convertDayHoursToInt(stringHours);
-
-            for (LocalTime[] dayHour : dayHours) {
-                if (dayHour[1].getHourOfDay() < dayHour[0].getHourOfDay()) {
-                    if (checkIfStartDateShiftIsEarlierThanDate(dayHour, date)
-                            || checkIfEndDateShiftIsLaterThanDate(dayHour, date)) {
-                        return shift;
-                    }
-                } else {
-                    if (checkIfStartDateShiftIsEarlierThanDate(dayHour, date)
-                            && checkIfEndDateShiftIsLaterThanDate(dayHour, date)) {
-                        return shift;
-                    }
-                }
-            }
-        }
-
-        return null;
-    }
-
-    private boolean checkIfStartDateShiftIsEarlierThanDate(final LocalTime[] dayHour, final Date date) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(date);
-
-        int hourOfDay = cal.get(Calendar.HOUR_OF_DAY);
-        int minuteOfHour = cal.get(Calendar.MINUTE);
-
-        return dayHour[0].getHourOfDay() < hourOfDay
-                || (dayHour[0].getHourOfDay() == hourOfDay && dayHour[0].getMinuteOfHour() <= minuteOfHour);
-    }
-
-    private boolean checkIfEndDateShiftIsLaterThanDate(final LocalTime[] dayHour, final Date date) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(date);
-
-        int hourOfDay = cal.get(Calendar.HOUR_OF_DAY);
-        int minuteOfHour = cal.get(Calendar.MINUTE);
-
-        return hourOfDay < dayHour[1].getHourOfDay()
-                || (hourOfDay == dayHour[1].getHourOfDay() && minuteOfHour < dayHour[1].getMinuteOfHour());
+        return shiftResolver.findShiftAt(date);
     }
 
     @Override
@@ -1,35 +1,203 @@
 package com.qcadoo.mes.basic;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
+import com.qcadoo.mes.basic.shift.TimetableExceptionIntervals;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
+import com.qcadoo.tenant.api.MultiTenantService;
+import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Timetable exceptions of shifts, served from an interval tree per tenant and shift. A tree is loaded on first use of the shift
+ * and dropped by the shift and timetable exception model hooks.
+ */
 @Service
 public class TimetableExceptionService {
 
+    private static final String L_GET_EXCEPTIONS_FOR_SHIFT = "SELECT timetableException "
+            + "FROM #basic_shiftTimetableException timetableException "
+            + "JOIN timetableException.shifts shift WHERE shift.id = :shift";
+
+    private static final String L_GET_PRODUCTION_LINES_FOR_SHIFT = "SELECT shifttimetableexception_id, productionline_id "
+            + "FROM jointable_productionline_shifttimetableexception WHERE shifttimetableexception_id IN "
+            + "(SELECT shifttimetableexception_id FROM jointable_shift_shifttimetableexception WHERE shift_id = :shiftId)";
+
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    private final ConcurrentMap<Integer, TenantIntervals> tenantIntervals = new ConcurrentHashMap<>();
+
+    /**
+     * @param productionLine
+     *            production line, or null for exceptions of all production lines
+     */
     public List<Entity> findForLineAndShift(Entity productionLine, Entity shift) {
-        StringBuilder query = new StringBuilder();
-        query.append("SELECT timetableException FROM #basic_shiftTimetableException timetableException ");
-        query.append("JOIN timetableException.productionLines productionLine ");
-        query.append("JOIN timetableException.shifts shift ");
-        query.append("WHERE productionLine.id = :productionLine AND shift.id = :shift");
+        return getIntervals(shift).findAll(getId(productionLine));
+    }
+
+    /**
+     * @param productionLine
+     *            production line, or null for exceptions of all production lines
+     * @return exceptions having at least one instant in common with the given range, bounds inclusive
+     */
+    public List<Entity> findForLineAndShift(Entity productionLine, Entity shift, Date from, Date to) {
+        return getIntervals(shift).findOverlapping(getId(productionLine), from, to);
+    }
+
+    /**
+     * @param productionLine
+     *            production line, or null for exceptions of all production lines
+     * @return exceptions covering the whole given range, bounds inclusive
+     */
+    public List<Entity> findContainingForLineAndShift(Entity productionLine, Entity shift, Date from, Date to) {
+        return getIntervals(shift).findContaining(getId(productionLine), from, to);
+    }
+
+    /**
+     * Bulk variant for scheduling loops walking day by day. An exception belongs to every day from the day of its start to the
+     * day of its end.
+     * 
+     * @param productionLine
+     *            production line, or null for exceptions of all production lines
+     * @return exceptions by day, for days from fromDay to toDay inclusive
+     */
+    public ListMultimap<LocalDate, Entity> findForLineAndShiftByDay(Entity productionLine, Entity shift, LocalDate fromDay,
+            LocalDate toDay) {
+        ListMultimap<LocalDate, Entity> exceptionsByDay = ArrayListMultimap.create();
+
+        List<Entity> exceptions = findForLineAndShift(productionLine, shift, fromDay.toDate(), toDay.plusDays(1).toDate());
+
+        for (Entity exception : exceptions) {
+            LocalDate exceptionFromDay = new LocalDate(exception.getDateField(ShiftTimetableExceptionFields.FROM_DATE));
+            LocalDate exceptionToDay = new LocalDate(exception.getDateField(ShiftTimetableExceptionFields.TO_DATE));
+
+            LocalDate day = exceptionFromDay.isBefore(fromDay) ? fromDay : exceptionFromDay;
+            LocalDate lastDay = exceptionToDay.isAfter(toDay) ? toDay : exceptionToDay;
+
+            for (; !day.isAfter(lastDay); day = day.plusDays(1)) {
+                exceptionsByDay.put(day, exception);
+            }
+        }
+
+        return exceptionsByDay;
+    }
+
+    public void invalidate() {
+        TenantIntervals intervals = getTenantIntervals();
+
+        intervals.invalidate();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    intervals.invalidate();
+                }
+
+            });
+        }
+    }
 
-        return getDD().find(query.toString())
-                .setLong("productionLine", productionLine.getId())
-                .setLong("shift", shift.getId())
-                .list().getEntities();
+    private TimetableExceptionIntervals getIntervals(Entity shift) {
+        return getTenantIntervals().get(shift.getId());
+    }
+
+    private TenantIntervals getTenantIntervals() {
+        return tenantIntervals.computeIfAbsent(multiTenantService.getCurrentTenantId(), tenantId -> new TenantIntervals());
+    }
+
+    private TimetableExceptionIntervals loadIntervals(Long shiftId) {
+        List<Entity> exceptions = getDD().find(L_GET_EXCEPTIONS_FOR_SHIFT).setLong("shift", shiftId).list().getEntities();
+
+        ListMultimap<Long, Long> productionLineIds = ArrayListMultimap.create();
+
+        for (Map<String, Object> row : jdbcTemplate.queryForList(L_GET_PRODUCTION_LINES_FOR_SHIFT,
+                new MapSqlParameterSource("shiftId", shiftId))) {
+            productionLineIds.put(((Number) row.get("shifttimetableexception_id")).longValue(),
+                    ((Number) row.get("productionline_id")).longValue());
+        }
+
+        List<TimetableExceptionIntervals.Interval> intervals = Lists.newArrayListWithCapacity(exceptions.size());
+
+        for (Entity exception : exceptions) {
+            intervals.add(new TimetableExceptionIntervals.Interval(exception, productionLineIds.get(exception.getId())));
+        }
+
+        return new TimetableExceptionIntervals(intervals);
+    }
+
+    private Long getId(Entity entity) {
+        return entity == null ? null : entity.getId();
     }
 
     private DataDefinition getDD(){
         return dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.SHIFT_TIMETABLE_EXCEPTION);
     }
 
+    /**
+     * Interval trees of a single tenant. A tree loaded while the generation changed is returned to its caller but not kept, so a
+     * load racing with an exception change can't hide that change.
+     */
+    private final class TenantIntervals {
+
+        private final Map<Long, TimetableExceptionIntervals> intervalsByShift = Maps.newHashMap();
+
+        private long generation;
+
+        private TimetableExceptionIntervals get(final Long shiftId) {
+            long loadedGeneration;
+
+            synchronized (this) {
+                TimetableExceptionIntervals intervals = intervalsByShift.get(shiftId);
+
+                if (intervals != null) {
+                    return intervals;
+                }
+
+                loadedGeneration = generation;
+            }
+
+            TimetableExceptionIntervals loadedIntervals = loadIntervals(shiftId);
+
+            synchronized (this) {
+                if (generation == loadedGeneration) {
+                    intervalsByShift.put(shiftId, loadedIntervals);
+                }
+            }
+
+            return loadedIntervals;
+        }
+
+        private synchronized void invalidate() {
+            generation++;
+            intervalsByShift.clear();
+        }
+
+    }
+
 }
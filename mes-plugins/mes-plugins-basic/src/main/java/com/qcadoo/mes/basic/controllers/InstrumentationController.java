@@ -0,0 +1,133 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.controllers;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.ModelAndView;
+
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.instrumentation.InstrumentationService;
+import com.qcadoo.mes.basic.instrumentation.sql.SqlStatementProfiler;
+import com.qcadoo.security.api.SecurityService;
+
+@Controller
+@RequestMapping(value = BasicConstants.PLUGIN_IDENTIFIER)
+public class InstrumentationController {
+
+    private static final String L_ROLE_SUPERADMIN = "ROLE_SUPERADMIN";
+
+    private static final String L_REDIRECT_TO_INSTRUMENTATION = "redirect:/" + BasicConstants.PLUGIN_IDENTIFIER
+            + "/instrumentation.html";
+
+    @Autowired
+    private InstrumentationService instrumentationService;
+
+    @Autowired
+    private SqlStatementProfiler sqlStatementProfiler;
+
+    @Autowired
+    private SecurityService securityService;
+
+    @RequestMapping(value = "instrumentation", method = RequestMethod.GET)
+    public ModelAndView getInstrumentationView(final HttpServletResponse response) throws IOException {
+        if (!hasAccess(response)) {
+            return null;
+        }
+
+        ModelAndView mav = new ModelAndView();
+
+        mav.addObject("enabled", instrumentationService.isEnabled());
+        mav.addObject("sqlProfilerEnabled", sqlStatementProfiler.isEnabled());
+        mav.addObject("timers", instrumentationService.getTimers());
+
+        mav.setViewName("basic/instrumentation");
+
+        return mav;
+    }
+
+    @ResponseBody
+    @RequestMapping(value = "instrumentation/text", method = RequestMethod.GET, produces = "text/plain;charset=UTF-8")
+    public String getInstrumentationText(final HttpServletResponse response) throws IOException {
+        if (!hasAccess(response)) {
+            return null;
+        }
+
+        return instrumentationService.getTimersAsText();
+    }
+
+    @RequestMapping(value = "instrumentation/enabled", method = RequestMethod.POST)
+    public String setEnabled(@RequestParam("enabled") final boolean enabled, final HttpServletResponse response)
+            throws IOException {
+        if (!hasAccess(response)) {
+            return null;
+        }
+
+        instrumentationService.setEnabled(enabled);
+
+        return L_REDIRECT_TO_INSTRUMENTATION;
+    }
+
+    @RequestMapping(value = "instrumentation/sqlProfilerEnabled", method = RequestMethod.POST)
+    public String setSqlProfilerEnabled(@RequestParam("enabled") final boolean enabled, final HttpServletResponse response)
+            throws IOException {
+        if (!hasAccess(response)) {
+            return null;
+        }
+
+        sqlStatementProfiler.setEnabled(enabled);
+
+        return L_REDIRECT_TO_INSTRUMENTATION;
+    }
+
+    @RequestMapping(value = "instrumentation/reset", method = RequestMethod.POST)
+    public String reset(final HttpServletResponse response) throws IOException {
+        if (!hasAccess(response)) {
+            return null;
+        }
+
+        instrumentationService.reset();
+
+        return L_REDIRECT_TO_INSTRUMENTATION;
+    }
+
+    private boolean hasAccess(final HttpServletResponse response) throws IOException {
+        if (securityService.hasCurrentUserRole(L_ROLE_SUPERADMIN)) {
+            return true;
+        }
+
+        response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+        return false;
+    }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.instrumentation;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * In-process registry of hot-path timers. Times are inclusive, so a hook called from a listener is counted in both.
+ */
+@Service
+public class InstrumentationService {
+
+    private static final String L_SEPARATOR = "\t";
+
+    private static final String L_NEW_LINE = "\n";
+
+    private final ConcurrentMap<String, TimerHistogram> timers = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public TimerHistogram getTimer(final InstrumentationCategory category, final String name) {
+        String key = category.getStringValue() + "." + name;
+
+        TimerHistogram timer = timers.get(key);
+
+        if (timer == null) {
+            TimerHistogram newTimer = new TimerHistogram(category, name);
+
+            timer = timers.putIfAbsent(key, newTimer);
+
+            if (timer == null) {
+                timer = newTimer;
+            }
+        }
+
+        return timer;
+    }
+
+    public void record(final InstrumentationCategory category, final String name, final long nanos) {
+        if (enabled) {
+            getTimer(category, name).record(nanos);
+        }
+    }
+
+    public List<TimerHistogram> getTimers() {
+        return timers.values().stream().filter(timer -> timer.getCount() > 0)
+                .sorted(Comparator.comparingLong(TimerHistogram::getTotalNanos).reversed()).collect(Collectors.toList());
+    }
+
+    public void reset() {
+        timers.values().forEach(TimerHistogram::reset);
+    }
+
+    public String getTimersAsText() {
+        StringBuilder text = new StringBuilder();
+
+        text.append(String.join(L_SEPARATOR, "category", "name", "count", "totalMs", "meanMs", "p50Ms", "p95Ms", "p99Ms",
+                "maxMs"));
+        text.append(L_NEW_LINE);
+
+        for (TimerHistogram timer : getTimers()) {
+            text.append(timer.getCategory().getStringValue()).append(L_SEPARATOR);
+            text.append(timer.getName()).append(L_SEPARATOR);
+            text.append(timer.getCount()).append(L_SEPARATOR);
+            text.append(toMillis(timer.getTotalNanos())).append(L_SEPARATOR);
+            text.append(toMillis(timer.getMeanNanos())).append(L_SEPARATOR);
+            text.append(toMillis(timer.getPercentileNanos(50))).append(L_SEPARATOR);
+            text.append(toMillis(timer.getPercentileNanos(95))).append(L_SEPARATOR);
+            text.append(toMillis(timer.getPercentileNanos(99))).append(L_SEPARATOR);
+            text.append(toMillis(timer.getMaxNanos()));
+            text.append(L_NEW_LINE);
+        }
+
+        return text.toString();
+    }
+
+    private String toMillis(final long nanos) {
+        return String.format("%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1L));
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.instrumentation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free timer keeping call count, total and maximum time and a base-2 logarithmic histogram of durations.
+ * 
+ * Bucket <i>i</i> holds durations shorter than 2<sup>i</sup> microseconds, so percentiles are reported as the upper bound of
+ * the bucket they fall into.
+ */
+public class TimerHistogram {
+
+    private static final int L_BUCKETS = 32;
+
+    private final InstrumentationCategory category;
+
+    private final String name;
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    private final AtomicLongArray buckets = new AtomicLongArray(L_BUCKETS);
+
+    public TimerHistogram(final InstrumentationCategory category, final String name) {
+        this.category = category;
+        this.name = name;
+    }
+
+    public void record(final long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        buckets.incrementAndGet(getBucket(nanos));
+
+        long max = maxNanos.get();
+
+        while ((nanos > max) && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    private int getBucket(final long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+
+        return Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros), L_BUCKETS - 1);
+    }
+
+    public void reset() {
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0L);
+
+        for (int bucket = 0; bucket < L_BUCKETS; bucket++) {
+            buckets.set(bucket, 0L);
+        }
+    }
+
+    public InstrumentationCategory getCategory() {
+        return category;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        long calls = getCount();
+
+        return (calls == 0) ? 0L : (getTotalNanos() / calls);
+    }
+
+    public long getPercentileNanos(final double percentile) {
+        long[] counts = new long[L_BUCKETS];
+        long calls = 0;
+
+        for (int bucket = 0; bucket < L_BUCKETS; bucket++) {
+            counts[bucket] = buckets.get(bucket);
+            calls += counts[bucket];
+        }
+
+        if (calls == 0) {
+            return 0L;
+        }
+
+        long rank = (long) Math.ceil(calls * percentile / 100);
+        long seen = 0;
+
+        for (int bucket = 0; bucket < L_BUCKETS; bucket++) {
+            seen += counts[bucket];
+
+            if (seen >= rank) {
+                return Math.min(TimeUnit.MICROSECONDS.toNanos(1L << bucket), getMaxNanos());
+            }
+        }
+
+        return getMaxNanos();
+    }
+
+}
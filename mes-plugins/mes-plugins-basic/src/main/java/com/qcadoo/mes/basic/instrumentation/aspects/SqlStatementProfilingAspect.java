@@ -0,0 +1,94 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.instrumentation.aspects;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Configurable;
+import org.springframework.util.MethodInvoker;
+
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.instrumentation.sql.SqlStatementProfile;
+import com.qcadoo.mes.basic.instrumentation.sql.SqlStatementProfiler;
+import com.qcadoo.plugin.api.RunIfEnabled;
+
+/**
+ * Opens a SQL statement profile for every HTTP request and every scheduled job.
+ */
+@Aspect
+@Configurable
+@RunIfEnabled(BasicConstants.PLUGIN_IDENTIFIER)
+public class SqlStatementProfilingAspect {
+
+    @Autowired
+    private SqlStatementProfiler sqlStatementProfiler;
+
+    @Pointcut("execution(protected final void org.springframework.web.servlet.FrameworkServlet.processRequest(..)) "
+            + "&& args(request, ..)")
+    public void requestProcessing(final HttpServletRequest request) {
+    }
+
+    @Pointcut("execution(public Object org.springframework.util.MethodInvoker.invoke()) && this(methodInvoker)")
+    public void jobInvocation(final MethodInvoker methodInvoker) {
+    }
+
+    @Pointcut("execution(@org.springframework.scheduling.annotation.Scheduled * com.qcadoo.mes..*.*(..))")
+    public void scheduledExecution() {
+    }
+
+    @Around("requestProcessing(request)")
+    public Object profileRequest(final ProceedingJoinPoint pjp, final HttpServletRequest request) throws Throwable {
+        return profile(pjp, request.getMethod() + " " + request.getRequestURI());
+    }
+
+    @Around("jobInvocation(methodInvoker)")
+    public Object profileJob(final ProceedingJoinPoint pjp, final MethodInvoker methodInvoker) throws Throwable {
+        return profile(pjp, methodInvoker.getTargetClass().getSimpleName() + "." + methodInvoker.getTargetMethod());
+    }
+
+    @Around("scheduledExecution()")
+    public Object profileScheduledExecution(final ProceedingJoinPoint pjp) throws Throwable {
+        return profile(pjp, pjp.getSignature().getDeclaringType().getSimpleName() + "." + pjp.getSignature().getName());
+    }
+
+    private Object profile(final ProceedingJoinPoint pjp, final String name) throws Throwable {
+        if ((sqlStatementProfiler == null) || !sqlStatementProfiler.isEnabled()) {
+            return pjp.proceed();
+        }
+
+        SqlStatementProfile profile = sqlStatementProfiler.begin(name);
+
+        try {
+            return pjp.proceed();
+        } finally {
+            sqlStatementProfiler.end(profile);
+        }
+    }
+
+}
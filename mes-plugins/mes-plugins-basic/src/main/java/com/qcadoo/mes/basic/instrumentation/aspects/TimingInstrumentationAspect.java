@@ -0,0 +1,154 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.instrumentation.aspects;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Configurable;
+
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.instrumentation.InstrumentationCategory;
+import com.qcadoo.mes.basic.instrumentation.InstrumentationService;
+import com.qcadoo.mes.basic.instrumentation.TimerHistogram;
+import com.qcadoo.plugin.api.RunIfEnabled;
+
+/**
+ * Times model hooks, view hooks and listeners, state changes, report generators and resource management calls. Hooks and
+ * listeners are matched by the signatures qcadoo uses to call them, in the hooks, validators and listeners packages, and each
+ * join point resolves its timer only once.
+ */
+@Aspect
+@Configurable
+@RunIfEnabled(BasicConstants.PLUGIN_IDENTIFIER)
+public class TimingInstrumentationAspect {
+
+    @Autowired
+    private InstrumentationService instrumentationService;
+
+    private final ConcurrentMap<JoinPoint.StaticPart, TimerHistogram> timers = new ConcurrentHashMap<>();
+
+    @Pointcut("within(com.qcadoo.mes..hooks..*) || within(com.qcadoo.mes..validators..*) || within(com.qcadoo.mes..*Hooks*)")
+    public void withinHooks() {
+    }
+
+    @Pointcut("within(com.qcadoo.mes..listeners..*)")
+    public void withinListeners() {
+    }
+
+    @Pointcut("withinHooks() && (execution(public * *(com.qcadoo.model.api.DataDefinition, com.qcadoo.model.api.Entity)) "
+            + "|| execution(public boolean *(com.qcadoo.model.api.DataDefinition, com.qcadoo.model.api.FieldDefinition, "
+            + "com.qcadoo.model.api.Entity, Object, Object)))")
+    public void modelHookExecution() {
+    }
+
+    @Pointcut("withinHooks() && execution(public void *(com.qcadoo.view.api.ViewDefinitionState))")
+    public void viewHookExecution() {
+    }
+
+    @Pointcut("withinListeners() && execution(public void *(com.qcadoo.view.api.ViewDefinitionState, "
+            + "com.qcadoo.view.api.ComponentState, String[]))")
+    public void viewListenerExecution() {
+    }
+
+    @Pointcut("execution(public * com.qcadoo.mes.newstates.StateExecutorService.changeState(..))")
+    public void stateChangeExecution() {
+    }
+
+    @Pointcut("within(com.qcadoo.mes..*) && (execution(* com.qcadoo.report.api.pdf.ReportPdfView+.addContent(..)) "
+            + "|| execution(* com.qcadoo.report.api.pdf.PdfDocumentService+.buildPdfContent(..)) "
+            + "|| execution(* com.qcadoo.report.api.xls.ReportXlsView+.addContent(..)) "
+            + "|| execution(* com.qcadoo.report.api.xls.XlsDocumentService+.add*(..)))")
+    public void reportExecution() {
+    }
+
+    @Pointcut("execution(public * com.qcadoo.mes.materialFlowResources.service.ResourceManagementServiceImpl.*(..))")
+    public void resourceManagementExecution() {
+    }
+
+    @Around("modelHookExecution()")
+    public Object timeModelHook(final ProceedingJoinPoint pjp) throws Throwable {
+        return time(pjp, InstrumentationCategory.MODEL_HOOK);
+    }
+
+    @Around("viewHookExecution()")
+    public Object timeViewHook(final ProceedingJoinPoint pjp) throws Throwable {
+        return time(pjp, InstrumentationCategory.VIEW_HOOK);
+    }
+
+    @Around("viewListenerExecution()")
+    public Object timeViewListener(final ProceedingJoinPoint pjp) throws Throwable {
+        return time(pjp, InstrumentationCategory.VIEW_LISTENER);
+    }
+
+    @Around("stateChangeExecution()")
+    public Object timeStateChange(final ProceedingJoinPoint pjp) throws Throwable {
+        return time(pjp, InstrumentationCategory.STATE_CHANGE);
+    }
+
+    @Around("reportExecution()")
+    public Object timeReport(final ProceedingJoinPoint pjp) throws Throwable {
+        return time(pjp, InstrumentationCategory.REPORT);
+    }
+
+    @Around("resourceManagementExecution()")
+    public Object timeResourceManagement(final ProceedingJoinPoint pjp) throws Throwable {
+        return time(pjp, InstrumentationCategory.RESOURCE_MANAGEMENT);
+    }
+
+    private Object time(final ProceedingJoinPoint pjp, final InstrumentationCategory category) throws Throwable {
+        if ((instrumentationService == null) || !instrumentationService.isEnabled()) {
+            return pjp.proceed();
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            return pjp.proceed();
+        } finally {
+            getTimer(pjp.getStaticPart(), category).record(System.nanoTime() - start);
+        }
+    }
+
+    private TimerHistogram getTimer(final JoinPoint.StaticPart staticPart, final InstrumentationCategory category) {
+        TimerHistogram timer = timers.get(staticPart);
+
+        if (timer == null) {
+            String name = staticPart.getSignature().getDeclaringType().getSimpleName() + "."
+                    + staticPart.getSignature().getName();
+
+            timer = instrumentationService.getTimer(category, name);
+            timers.putIfAbsent(staticPart, timer);
+        }
+
+        return timer;
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.instrumentation.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Data source handing out connections whose statements report to {@link SqlStatementProfiler}. Connections are wrapped only
+ * while a profile is running on the current thread, so the disabled profiler adds no per-statement cost.
+ */
+public class ProfilingDataSource extends DelegatingDataSource {
+
+    private static final String L_EXECUTE = "execute";
+
+    private static final String L_BATCH = "batch";
+
+    private static final String L_CLOSE = "close";
+
+    private final SqlStatementProfiler sqlStatementProfiler;
+
+    public ProfilingDataSource(final DataSource targetDataSource, final SqlStatementProfiler sqlStatementProfiler) {
+        super(targetDataSource);
+
+        this.sqlStatementProfiler = sqlStatementProfiler;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    /**
+     * Closes the target data source, which keeps the destroy method declared for the original bean working.
+     */
+    public void close() {
+        Method close = ReflectionUtils.findMethod(getTargetDataSource().getClass(), L_CLOSE);
+
+        if (close != null) {
+            ReflectionUtils.invokeMethod(close, getTargetDataSource());
+        }
+    }
+
+    private Connection wrapConnection(final Connection connection) {
+        if (!sqlStatementProfiler.isProfiling()) {
+            return connection;
+        }
+
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        ConnectionHandler(final Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            Object result = ProfilingDataSource.invoke(connection, method, args);
+
+            if ((result instanceof Statement) && Statement.class.isAssignableFrom(method.getReturnType())) {
+                String sql = ((args != null) && (args.length > 0) && (args[0] instanceof String)) ? (String) args[0] : null;
+
+                return Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+                        new Class<?>[] { method.getReturnType() }, new StatementHandler((Statement) result, sql));
+            }
+
+            return result;
+        }
+
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+
+        private final String preparedSql;
+
+        StatementHandler(final Statement statement, final String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (!method.getName().startsWith(L_EXECUTE)) {
+                return ProfilingDataSource.invoke(statement, method, args);
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                return ProfilingDataSource.invoke(statement, method, args);
+            } finally {
+                sqlStatementProfiler.record(getSql(args), System.nanoTime() - start);
+            }
+        }
+
+        private String getSql(final Object[] args) {
+            if ((args != null) && (args.length > 0) && (args[0] instanceof String)) {
+                return (String) args[0];
+            }
+
+            return (preparedSql == null) ? L_BATCH : preparedSql;
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.instrumentation.sql;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Statements executed by a single HTTP request, job or profiled block. A profile is confined to the thread that started it.
+ */
+public class SqlStatementProfile {
+
+    private static final Pattern L_STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private static final Pattern L_NUMERIC_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    private static final Pattern L_PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+
+    private static final Pattern L_WHITESPACE = Pattern.compile("\\s+");
+
+    private final String name;
+
+    private final long startNanos = System.nanoTime();
+
+    private long endNanos;
+
+    private int statementCount;
+
+    private long statementNanos;
+
+    private final Map<String, Integer> statementCounts = new HashMap<>();
+
+    public SqlStatementProfile(final String name) {
+        this.name = name;
+    }
+
+    public static String normalize(final String sql) {
+        if (sql == null) {
+            return "";
+        }
+
+        String normalizedSql = L_STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalizedSql = L_NUMERIC_LITERAL.matcher(normalizedSql).replaceAll("?");
+        normalizedSql = L_PARAMETER_LIST.matcher(normalizedSql).replaceAll("(?)");
+
+        return L_WHITESPACE.matcher(normalizedSql).replaceAll(" ").trim();
+    }
+
+    void record(final String sql, final long nanos) {
+        statementCount++;
+        statementNanos += nanos;
+        statementCounts.merge(normalize(sql), 1, Integer::sum);
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public long getStatementNanos() {
+        return statementNanos;
+    }
+
+    public long getDurationNanos() {
+        return ((endNanos == 0) ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    public int getDistinctStatementCount() {
+        return statementCounts.size();
+    }
+
+    public int getMaxRepeats() {
+        return statementCounts.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    public int getCount(final String sql) {
+        return statementCounts.getOrDefault(normalize(sql), 0);
+    }
+
+    /**
+     * Normalized statements executed more than once, most repeated first.
+     */
+    public Map<String, Integer> getRepeatedStatements() {
+        Map<String, Integer> repeatedStatements = new LinkedHashMap<>();
+
+        statementCounts.entrySet().stream().filter(entry -> entry.getValue() > 1)
+                .sorted(Map.Entry.<String, Integer> comparingByValue().reversed())
+                .forEach(entry -> repeatedStatements.put(entry.getKey(), entry.getValue()));
+
+        return repeatedStatements;
+    }
+
+}
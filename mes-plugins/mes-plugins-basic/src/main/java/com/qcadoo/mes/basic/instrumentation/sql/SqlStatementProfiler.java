@@ -0,0 +1,153 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.instrumentation.sql;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Counts SQL statements per HTTP request or job and logs the ones exceeding the configured thresholds, together with their
+ * most repeated normalized statements. Statements are seen through {@link ProfilingDataSource}, so both Hibernate sessions
+ * and the JDBC templates are covered.
+ */
+@Service
+public class SqlStatementProfiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SqlStatementProfiler.class);
+
+    private static final int L_LOGGED_SAMPLES = 5;
+
+    private final ThreadLocal<SqlStatementProfile> currentProfile = new ThreadLocal<>();
+
+    private volatile boolean enabled = false;
+
+    @Value("${sqlProfiler.maxStatements:200}")
+    private int maxStatements;
+
+    @Value("${sqlProfiler.maxRepeats:20}")
+    private int maxRepeats;
+
+    @Value("${sqlProfiler.maxStatementMillis:2000}")
+    private long maxStatementMillis;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts a profile on the current thread, unless profiling is disabled or a profile is already running.
+     * 
+     * @return started profile, or null when nothing was started
+     */
+    public SqlStatementProfile begin(final String name) {
+        if (!enabled || (currentProfile.get() != null)) {
+            return null;
+        }
+
+        return start(name);
+    }
+
+    public void end(final SqlStatementProfile profile) {
+        if ((profile == null) || (currentProfile.get() != profile)) {
+            return;
+        }
+
+        currentProfile.remove();
+        profile.finish();
+
+        if (exceedsThresholds(profile)) {
+            logProfile(profile);
+        }
+    }
+
+    /**
+     * Profiles the given action regardless of the runtime switch, e.g. to cap the number of statements in tests.
+     */
+    public SqlStatementProfile profile(final String name, final Runnable action) {
+        SqlStatementProfile outerProfile = currentProfile.get();
+        SqlStatementProfile profile = start(name);
+
+        try {
+            action.run();
+        } finally {
+            profile.finish();
+
+            if (outerProfile == null) {
+                currentProfile.remove();
+            } else {
+                currentProfile.set(outerProfile);
+            }
+        }
+
+        return profile;
+    }
+
+    public boolean isProfiling() {
+        return currentProfile.get() != null;
+    }
+
+    void record(final String sql, final long nanos) {
+        SqlStatementProfile profile = currentProfile.get();
+
+        if (profile != null) {
+            profile.record(sql, nanos);
+        }
+    }
+
+    private SqlStatementProfile start(final String name) {
+        SqlStatementProfile profile = new SqlStatementProfile(name);
+
+        currentProfile.set(profile);
+
+        return profile;
+    }
+
+    private boolean exceedsThresholds(final SqlStatementProfile profile) {
+        return (profile.getStatementCount() > maxStatements) || (profile.getMaxRepeats() > maxRepeats)
+                || (profile.getStatementNanos() > TimeUnit.MILLISECONDS.toNanos(maxStatementMillis));
+    }
+
+    private void logProfile(final SqlStatementProfile profile) {
+        StringBuilder message = new StringBuilder();
+
+        message.append(String.format("%s: %d statements (%d distinct) in %d ms of %d ms", profile.getName(),
+                profile.getStatementCount(), profile.getDistinctStatementCount(),
+                TimeUnit.NANOSECONDS.toMillis(profile.getStatementNanos()),
+                TimeUnit.NANOSECONDS.toMillis(profile.getDurationNanos())));
+
+        profile.getRepeatedStatements().entrySet().stream().limit(L_LOGGED_SAMPLES)
+                .forEach(entry -> message.append(String.format("%n  %dx %s", entry.getValue(), entry.getKey())));
+
+        LOG.warn(message.toString());
+    }
+
+}
@@ -27,20 +27,20 @@ import com.google.common.base.Throwables;
 import com.google.common.io.Files;
 import com.qcadoo.localization.api.TranslationService;
 import com.qcadoo.mes.basic.product.importing.ImportError;
+import com.qcadoo.mes.basic.product.importing.ImportPolicy;
 import com.qcadoo.mes.basic.product.importing.ImportStatus;
 import com.qcadoo.mes.basic.product.importing.XlsxImportService;
 import com.qcadoo.model.api.validators.ErrorMessage;
 import com.qcadoo.view.api.ComponentState;
 import com.qcadoo.view.api.ViewDefinitionState;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Comparator;
@@ -93,8 +93,8 @@ public class ProductImportListeners {
         } else if (!Files.getFileExtension(filePath).equalsIgnoreCase("xlsx")) {
             state.addMessage(translatedErrorMessage("basic.productsImport.error.file.invalid"));
         } else {
-            try (FileInputStream fis = new FileInputStream(filePath)) {
-                final ImportStatus importStatus = xlsxImportService.importFrom(new XSSFWorkbook(fis));
+            try {
+                final ImportStatus importStatus = xlsxImportService.importFrom(new File(filePath), ImportPolicy.ROLLBACK_ALL);
                 if (importStatus.hasErrors()) {
                     // TODO Find out how to present more detailed error messages to the user
                     prepareMessages(importStatus, view);
@@ -0,0 +1,76 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.logging;
+
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Inserts a batch of log entries into basic_log of the current tenant in its own transaction, so entries written by a producer
+ * survive the rollback of the producer's transaction.
+ */
+@Component
+class LogBatchWriter {
+
+    private static final String L_INSERT_LOG = "INSERT INTO basic_log "
+            + "(createtime, user_id, logtype, action, item1, item2, item3, message, details, loglevel) "
+            + "VALUES (:createTime, :userId, :type, :action, :item1, :item2, :item3, :message, :details, :logLevel)";
+
+    private static final int L_SHORT_COLUMN_LENGTH = 255;
+
+    private static final int L_ITEM_COLUMN_LENGTH = 2048;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void writeInNewTransaction(final List<LogEntry> batch) {
+        SqlParameterSource[] batchParameters = new SqlParameterSource[batch.size()];
+        for (int index = 0; index < batch.size(); index++) {
+            batchParameters[index] = toParameters(batch.get(index));
+        }
+
+        jdbcTemplate.batchUpdate(L_INSERT_LOG, batchParameters);
+    }
+
+    private SqlParameterSource toParameters(final LogEntry entry) {
+        return new MapSqlParameterSource("createTime", entry.getCreateTime()).addValue("userId", entry.getUserId())
+                .addValue("type", StringUtils.left(entry.getType(), L_SHORT_COLUMN_LENGTH))
+                .addValue("action", StringUtils.left(entry.getAction(), L_SHORT_COLUMN_LENGTH))
+                .addValue("item1", StringUtils.left(entry.getItem1(), L_ITEM_COLUMN_LENGTH))
+                .addValue("item2", StringUtils.left(entry.getItem2(), L_ITEM_COLUMN_LENGTH))
+                .addValue("item3", StringUtils.left(entry.getItem3(), L_ITEM_COLUMN_LENGTH))
+                .addValue("message", entry.getMessage()).addValue("details", entry.getDetails())
+                .addValue("logLevel", entry.getLogLevel().getCode());
+    }
+
+}
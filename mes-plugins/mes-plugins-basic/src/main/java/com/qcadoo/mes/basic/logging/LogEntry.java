@@ -0,0 +1,114 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.logging;
+
+import java.util.Date;
+
+import com.qcadoo.mes.basic.constants.LogLevel;
+
+public final class LogEntry {
+
+    private final int tenantId;
+
+    private final Date createTime;
+
+    private final Long userId;
+
+    private final String type;
+
+    private final String action;
+
+    private final String item1;
+
+    private final String item2;
+
+    private final String item3;
+
+    private final String message;
+
+    private final String details;
+
+    private final LogLevel logLevel;
+
+    public LogEntry(final int tenantId, final Date createTime, final Long userId, final String type, final String action,
+            final String item1, final String item2, final String item3, final String message, final String details,
+            final LogLevel logLevel) {
+        this.tenantId = tenantId;
+        this.createTime = createTime;
+        this.userId = userId;
+        this.type = type;
+        this.action = action;
+        this.item1 = item1;
+        this.item2 = item2;
+        this.item3 = item3;
+        this.message = message;
+        this.details = details;
+        this.logLevel = logLevel;
+    }
+
+    public int getTenantId() {
+        return tenantId;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getItem1() {
+        return item1;
+    }
+
+    public String getItem2() {
+        return item2;
+    }
+
+    public String getItem3() {
+        return item3;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+    public LogLevel getLogLevel() {
+        return logLevel;
+    }
+
+}
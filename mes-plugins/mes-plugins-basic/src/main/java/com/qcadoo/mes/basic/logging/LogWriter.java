@@ -0,0 +1,219 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.logging;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.constants.LogLevel;
+import com.qcadoo.tenant.api.MultiTenantCallback;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+/**
+ * Queues basic_log entries in memory and writes them in JDBC batches on a single background thread. Each batch is split by the
+ * tenant captured in the entries and written in that tenant's context.
+ * 
+ * When the queue is full producers wait up to logWriter.offerTimeoutMillis. Entries below WARN level which still don't fit are
+ * dropped (and counted), entries of WARN level and above are written synchronously by the producer instead, in a new
+ * transaction.
+ */
+@Service
+public class LogWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogWriter.class);
+
+    private static final long L_DROPPED_WARNING_INTERVAL_MILLIS = 60000L;
+
+    @Value("${logWriter.capacity:10000}")
+    private int capacity;
+
+    @Value("${logWriter.batchSize:500}")
+    private int batchSize;
+
+    @Value("${logWriter.flushIntervalMillis:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${logWriter.offerTimeoutMillis:100}")
+    private long offerTimeoutMillis;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    @Autowired
+    private LogBatchWriter logBatchWriter;
+
+    private final AtomicLong droppedEntries = new AtomicLong();
+
+    private final AtomicLong lastDroppedWarningTime = new AtomicLong();
+
+    private BlockingQueue<LogEntry> queue;
+
+    private Thread flusher;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<LogEntry>(capacity);
+        running = true;
+
+        flusher = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                flushContinuously();
+            }
+
+        }, "basic-log-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flush();
+    }
+
+    public void write(final LogEntry entry) {
+        boolean queued;
+        try {
+            queued = queue.offer(entry, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+
+        if (queued) {
+            return;
+        }
+
+        if (entry.getLogLevel().compareTo(LogLevel.WARN) >= 0) {
+            writeBatch(Lists.newArrayList(entry));
+        } else {
+            onDropped(1);
+        }
+    }
+
+    public void flush() {
+        List<LogEntry> batch = Lists.newArrayListWithCapacity(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatchInTenantContexts(batch);
+            batch.clear();
+        }
+    }
+
+    public long getDroppedEntries() {
+        return droppedEntries.get();
+    }
+
+    private void flushContinuously() {
+        List<LogEntry> batch = Lists.newArrayListWithCapacity(batchSize);
+
+        while (running) {
+            try {
+                LogEntry first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                writeBatchInTenantContexts(batch);
+            } catch (InterruptedException e) {
+                if (running) {
+                    LOG.warn("Log writer interrupted while running", e);
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Unexpected log writer failure", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatchInTenantContexts(final List<LogEntry> batch) {
+        Map<Integer, List<LogEntry>> batchesByTenant = Maps.newLinkedHashMap();
+        for (LogEntry entry : batch) {
+            batchesByTenant.computeIfAbsent(entry.getTenantId(), tenantId -> Lists.newArrayList()).add(entry);
+        }
+
+        for (Map.Entry<Integer, List<LogEntry>> tenantBatch : batchesByTenant.entrySet()) {
+            multiTenantService.doInMultiTenantContext(tenantBatch.getKey(), new MultiTenantCallback() {
+
+                @Override
+                public void invoke() {
+                    writeBatch(tenantBatch.getValue());
+                }
+
+            });
+        }
+    }
+
+    private void writeBatch(final List<LogEntry> batch) {
+        try {
+            logBatchWriter.writeInNewTransaction(batch);
+        } catch (RuntimeException e) {
+            LOG.error("Unable to write " + batch.size() + " log entries", e);
+            onDropped(batch.size());
+        }
+    }
+
+    private void onDropped(final int count) {
+        long dropped = droppedEntries.addAndGet(count);
+        long now = System.currentTimeMillis();
+        long lastWarningTime = lastDroppedWarningTime.get();
+
+        if ((now - lastWarningTime >= L_DROPPED_WARNING_INTERVAL_MILLIS)
+                && lastDroppedWarningTime.compareAndSet(lastWarningTime, now)) {
+            LOG.warn(dropped + " log entries dropped so far");
+        }
+    }
+
+}
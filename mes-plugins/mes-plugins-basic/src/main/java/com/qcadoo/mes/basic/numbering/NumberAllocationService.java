@@ -0,0 +1,189 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.numbering;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.qcadoo.view.api.ViewDefinitionState;
+import com.qcadoo.view.api.components.FieldComponent;
+import com.qcadoo.view.api.utils.NumberGeneratorService;
+
+/**
+ * Allocates entity numbers from per-model database sequences described by {@link NumberSequence}.
+ * 
+ * Plugins call {@link #synchronize(NumberSequence)} when they are enabled and then allocate single numbers or whole ranges for
+ * batch inserts. A sequence which doesn't exist yet (e.g. the plugin was enabled before numbering came in and the server was
+ * only restarted since) is synchronized on its first allocation. Ranges are reserved in their own short transaction, so numbers
+ * are never handed out twice, even if the requester's transaction rolls back later (such numbers are simply skipped).
+ * 
+ * {@link NumberGeneratorService} picks the highest stored number plus one, so it can't see numbers reserved for rows which
+ * aren't committed yet. Forms of sequence backed models should therefore take their numbers from
+ * {@link #generateAndInsertNumber(ViewDefinitionState, NumberSequence, String, String)}. Numbers which are still generated by
+ * NumberGeneratorService can collide with a reserved range until the rows of that range are committed - the colliding entity
+ * fails its unique number validation and has to be saved again.
+ */
+@Service
+public class NumberAllocationService {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NumberGeneratorService numberGeneratorService;
+
+    /**
+     * Creates the sequence if needed and moves it past the highest number with sequence's prefix already stored
+     * 
+     * @param sequence
+     *            Number sequence
+     */
+    public void synchronize(final NumberSequence sequence) {
+        String column = sequence.getColumnName();
+        MapSqlParameterSource params = new MapSqlParameterSource("prefix", sequence.getPrefix()).addValue("prefixLength",
+                sequence.getPrefix().length()).addValue("start", sequence.getPrefix().length() + 1);
+
+        jdbcTemplate.update("CREATE SEQUENCE IF NOT EXISTS " + sequence.getSequenceName() + " MINVALUE 1",
+                Collections.<String, Object> emptyMap());
+        jdbcTemplate.queryForList("SELECT setval('" + sequence.getSequenceName()
+                + "', GREATEST(numbers.maxnumber, 1), numbers.maxnumber > 0) "
+                + "FROM (SELECT COALESCE(MAX(CAST(substring(" + column + " FROM :start) AS bigint)), 0) AS maxnumber "
+                + "FROM " + sequence.getTableName() + " WHERE left(" + column + ", :prefixLength) = :prefix "
+                + "AND substring(" + column + " FROM :start) ~ '^[0-9]{1,18}$') numbers, " + sequence.getSequenceName()
+                + " sequence WHERE numbers.maxnumber >= "
+                + "CASE WHEN sequence.is_called THEN sequence.last_value + 1 ELSE sequence.last_value END", params);
+    }
+
+    /**
+     * Allocates single number
+     * 
+     * @param sequence
+     *            Number sequence
+     * 
+     * @return number
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public String allocate(final NumberSequence sequence) {
+        return allocateRange(sequence, 1).get(0);
+    }
+
+    /**
+     * Allocates quantity numbers, taken as one contiguous range where possible. Numbers which were already entered by hand are
+     * skipped.
+     * 
+     * @param sequence
+     *            Number sequence
+     * 
+     * @param quantity
+     *            Quantity
+     * 
+     * @return numbers
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<String> allocate(final NumberSequence sequence, final int quantity) {
+        return allocateRange(sequence, quantity);
+    }
+
+    /**
+     * Allocates number for a new entity shown in the form, unless the form already has one
+     * 
+     * @param view
+     *            View
+     * 
+     * @param sequence
+     *            Number sequence
+     * 
+     * @param formName
+     *            Form reference name
+     * 
+     * @param fieldName
+     *            Number field reference name
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void generateAndInsertNumber(final ViewDefinitionState view, final NumberSequence sequence, final String formName,
+            final String fieldName) {
+        if (!numberGeneratorService.checkIfShouldInsertNumber(view, formName, fieldName)) {
+            return;
+        }
+
+        FieldComponent numberField = (FieldComponent) view.getComponentByReference(fieldName);
+
+        numberField.setFieldValue(allocateRange(sequence, 1).get(0));
+        numberField.requestComponentUpdateState();
+    }
+
+    private List<String> allocateRange(final NumberSequence sequence, final int quantity) {
+        Preconditions.checkArgument(quantity >= 0, "quantity shouldn't be negative");
+
+        List<String> numbers = Lists.newArrayListWithCapacity(quantity);
+
+        while (numbers.size() < quantity) {
+            List<String> range = reserveRange(sequence, quantity - numbers.size());
+
+            range.removeAll(getExistingNumbers(sequence, range));
+            numbers.addAll(range);
+        }
+
+        return numbers;
+    }
+
+    private List<String> reserveRange(final NumberSequence sequence, final int quantity) {
+        MapSqlParameterSource params = new MapSqlParameterSource("quantity", quantity).addValue("sequence",
+                sequence.getSequenceName());
+        String sequenceName = "'" + sequence.getSequenceName() + "'";
+
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(hashtext(:sequence))", params);
+
+        Boolean sequenceExists = jdbcTemplate.queryForObject("SELECT to_regclass(:sequence) IS NOT NULL", params, Boolean.class);
+
+        if (!sequenceExists) {
+            synchronize(sequence);
+        }
+
+        Long lastValue = jdbcTemplate.queryForObject("SELECT setval(" + sequenceName + ", nextval(" + sequenceName
+                + ") + :quantity - 1)", params, Long.class);
+
+        List<String> range = Lists.newArrayListWithCapacity(quantity);
+        for (long value = lastValue - quantity + 1; value <= lastValue; value++) {
+            range.add(sequence.format(value));
+        }
+
+        return range;
+    }
+
+    private List<String> getExistingNumbers(final NumberSequence sequence, final List<String> numbers) {
+        return jdbcTemplate.queryForList("SELECT " + sequence.getColumnName() + " FROM " + sequence.getTableName() + " WHERE "
+                + sequence.getColumnName() + " IN (:numbers)", new MapSqlParameterSource("numbers", numbers), String.class);
+    }
+
+}
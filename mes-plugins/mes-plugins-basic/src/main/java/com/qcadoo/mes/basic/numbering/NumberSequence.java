@@ -0,0 +1,98 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.numbering;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Describes database sequence backed numbers of a model, e.g. prefix "PZ/" and padding 6 gives PZ/000001, PZ/000002, ...
+ * 
+ * Sequence is named &lt;table&gt;_&lt;field&gt;_seq, like technologies_barcodeoperationcomponent_number_seq.
+ */
+public final class NumberSequence {
+
+    private static final String L_NUMBER = "number";
+
+    private final String pluginIdentifier;
+
+    private final String modelName;
+
+    private final String numberField;
+
+    private final String prefix;
+
+    private final int padding;
+
+    public NumberSequence(final String pluginIdentifier, final String modelName, final String prefix, final int padding) {
+        this(pluginIdentifier, modelName, L_NUMBER, prefix, padding);
+    }
+
+    public NumberSequence(final String pluginIdentifier, final String modelName, final String numberField, final String prefix,
+            final int padding) {
+        Preconditions.checkArgument(padding > 0, "padding should be greater than zero");
+
+        this.pluginIdentifier = pluginIdentifier;
+        this.modelName = modelName;
+        this.numberField = numberField;
+        this.prefix = prefix == null ? "" : prefix;
+        this.padding = padding;
+    }
+
+    public String getPluginIdentifier() {
+        return pluginIdentifier;
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public String getNumberField() {
+        return numberField;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public int getPadding() {
+        return padding;
+    }
+
+    public String getTableName() {
+        return (pluginIdentifier + "_" + modelName).toLowerCase();
+    }
+
+    public String getColumnName() {
+        return numberField.toLowerCase();
+    }
+
+    public String getSequenceName() {
+        return getTableName() + "_" + getColumnName() + "_seq";
+    }
+
+    public String format(final long value) {
+        return prefix + String.format("%0" + padding + "d", value);
+    }
+
+}
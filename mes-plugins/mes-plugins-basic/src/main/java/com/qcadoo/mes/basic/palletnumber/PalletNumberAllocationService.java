@@ -0,0 +1,116 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.palletnumber;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Allocates pallet numbers from the basic_palletnumber_number_seq database sequence.
+ * 
+ * Blocks are reserved in their own short transaction, so numbers are never handed out twice, even if the requester's transaction
+ * rolls back later (such numbers are simply skipped).
+ */
+@Service
+public class PalletNumberAllocationService {
+
+    private static final String L_SEQUENCE = "basic_palletnumber_number_seq";
+
+    private static final int L_NUMBER_LENGTH = 6;
+
+    private static final String L_NUMBER_FORMAT = "%0" + L_NUMBER_LENGTH + "d";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the pallet number sequence if needed and moves it past the highest pallet number already stored
+     */
+    public void synchronizeSequence() {
+        Map<String, Object> params = Collections.emptyMap();
+
+        jdbcTemplate.update("CREATE SEQUENCE IF NOT EXISTS " + L_SEQUENCE + " MINVALUE 1 MAXVALUE 999999", params);
+        jdbcTemplate.queryForList("SELECT setval('" + L_SEQUENCE + "', numbers.maxnumber) "
+                + "FROM (SELECT MAX(CAST(number AS integer)) AS maxnumber FROM basic_palletnumber "
+                + "WHERE number ~ '^[0-9]{1," + L_NUMBER_LENGTH + "}$') numbers, " + L_SEQUENCE + " sequence "
+                + "WHERE numbers.maxnumber >= "
+                + "CASE WHEN sequence.is_called THEN sequence.last_value + 1 ELSE sequence.last_value END", params);
+    }
+
+    /**
+     * Reserves quantity pallet numbers, skipping numbers which were already entered by hand
+     * 
+     * @param quantity
+     *            Quantity
+     * 
+     * @return numbers
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<String> allocate(final int quantity) {
+        Preconditions.checkArgument(quantity >= 0, "quantity shouldn't be negative");
+
+        List<String> numbers = Lists.newArrayListWithCapacity(quantity);
+
+        while (numbers.size() < quantity) {
+            List<String> block = reserveBlock(quantity - numbers.size());
+
+            block.removeAll(getExistingNumbers(block));
+            numbers.addAll(block);
+        }
+
+        return numbers;
+    }
+
+    private List<String> reserveBlock(final int quantity) {
+        MapSqlParameterSource params = new MapSqlParameterSource("quantity", quantity).addValue("sequence", L_SEQUENCE);
+
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(hashtext(:sequence))", params);
+        Long lastNumber = jdbcTemplate.queryForObject("SELECT setval(:sequence, nextval(:sequence) + :quantity - 1)", params,
+                Long.class);
+
+        List<String> block = Lists.newArrayListWithCapacity(quantity);
+        for (long number = lastNumber - quantity + 1; number <= lastNumber; number++) {
+            block.add(String.format(L_NUMBER_FORMAT, number));
+        }
+
+        return block;
+    }
+
+    private List<String> getExistingNumbers(final List<String> numbers) {
+        return jdbcTemplate.queryForList("SELECT number FROM basic_palletnumber WHERE number IN (:numbers)",
+                new MapSqlParameterSource("numbers", numbers), String.class);
+    }
+
+}
@@ -31,7 +31,10 @@ import com.qcadoo.model.api.search.SearchRestrictions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 class AssortmentCellParser implements CellParser {
@@ -59,4 +62,23 @@ class AssortmentCellParser implements CellParser {
             errorsAccessor.addError("qcadooView.validate.field.error.lookupCodeNotFound");
         }
     }
+
+    @Override
+    public CellParser preResolved() {
+        Map<String, Entity> assortmentsByName = getAssortmentDataDefinition()
+                .find()
+                .list()
+                .getEntities()
+                .stream()
+                .collect(Collectors.toMap(entity -> entity.getStringField("name"), Function.identity(),
+                        (first, second) -> first));
+        return (cellValue, errorsAccessor, valueConsumer) -> {
+            Entity entity = assortmentsByName.get(cellValue);
+            if (null != entity) {
+                valueConsumer.accept(entity);
+            } else {
+                errorsAccessor.addError("qcadooView.validate.field.error.lookupCodeNotFound");
+            }
+        };
+    }
 }
@@ -71,7 +71,13 @@ abstract class CellBinder {
         return cellParser;
     }
 
-    abstract void bind(Cell cell, Entity entity, BindingErrorsAccessor errorsAccessor);
+    void bind(Cell cell, Entity entity, BindingErrorsAccessor errorsAccessor) {
+        bind(null == cell ? null : formatCell(cell), entity, errorsAccessor);
+    }
+
+    abstract void bind(String cellValue, Entity entity, BindingErrorsAccessor errorsAccessor);
+
+    abstract CellBinder withCellParser(CellParser cellParser);
 
     public String getFieldName() {
         return fieldName;
@@ -96,11 +102,16 @@ abstract class CellBinder {
         }
 
         @Override
-        public void bind(Cell cell, Entity entity, BindingErrorsAccessor errorsAccessor) {
-            if (cell != null) {
-                getCellParser().parse(formatCell(cell), errorsAccessor, o -> entity.setField(getFieldName(), o));
+        public void bind(String cellValue, Entity entity, BindingErrorsAccessor errorsAccessor) {
+            if (cellValue != null) {
+                getCellParser().parse(cellValue, errorsAccessor, o -> entity.setField(getFieldName(), o));
             }
         }
+
+        @Override
+        CellBinder withCellParser(CellParser cellParser) {
+            return new OptionalCellBinder(getFieldName(), cellParser);
+        }
     }
 
     private static class RequiredCellBinder extends CellBinder {
@@ -114,12 +125,17 @@ abstract class CellBinder {
         }
 
         @Override
-        public void bind(Cell cell, Entity entity, BindingErrorsAccessor errorsAccessor) {
-            if (cell == null) {
+        public void bind(String cellValue, Entity entity, BindingErrorsAccessor errorsAccessor) {
+            if (cellValue == null) {
                 errorsAccessor.addError("qcadooView.validate.field.error.missing");
             } else {
-                getCellParser().parse(formatCell(cell), errorsAccessor, o -> entity.setField(getFieldName(), o));
+                getCellParser().parse(cellValue, errorsAccessor, o -> entity.setField(getFieldName(), o));
             }
         }
+
+        @Override
+        CellBinder withCellParser(CellParser cellParser) {
+            return new RequiredCellBinder(getFieldName(), cellParser);
+        }
     }
 }
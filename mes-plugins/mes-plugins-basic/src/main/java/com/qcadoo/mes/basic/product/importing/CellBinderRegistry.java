@@ -45,5 +45,14 @@ class CellBinderRegistry {
         return cellBinders[index];
     }
 
+    CellBinder[] getPreResolvedCellBinders() {
+        CellBinder[] preResolvedCellBinders = new CellBinder[cellBinders.length];
+        for (int index = 0; index < cellBinders.length; index++) {
+            CellBinder cellBinder = cellBinders[index];
+            preResolvedCellBinders[index] = cellBinder.withCellParser(cellBinder.getCellParser().preResolved());
+        }
+        return preResolvedCellBinders;
+    }
+
 }
 
@@ -27,4 +27,12 @@ import java.util.function.Consumer;
 
 interface CellParser {
     void parse(String cellValue, BindingErrorsAccessor errorsAccessor, Consumer<Object> valueConsumer);
+
+    /**
+     * Returns parser which answers from lookup maps resolved up front, so that a bulk import does not have to query
+     * the database for every single cell. Parsers without any lookups return themselves.
+     */
+    default CellParser preResolved() {
+        return this;
+    }
 }
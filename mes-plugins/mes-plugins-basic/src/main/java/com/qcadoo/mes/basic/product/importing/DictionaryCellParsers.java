@@ -28,7 +28,10 @@ import com.qcadoo.model.api.Entity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.qcadoo.model.api.search.SearchRestrictions.*;
 
@@ -65,6 +68,26 @@ class DictionaryCellParsers {
                     .find()
                     .add(and(eq("name", cellValue), belongsTo("dictionary", getProductCategoryDictionary())))
                     .uniqueResult();
+            parse(categoryItem, cellValue, errorsAccessor, valueConsumer);
+        }
+
+        @Override
+        public CellParser preResolved() {
+            Map<String, Entity> itemsByName = dataDefinitionService
+                    .get("qcadooModel", "dictionaryItem")
+                    .find()
+                    .add(belongsTo("dictionary", getProductCategoryDictionary()))
+                    .list()
+                    .getEntities()
+                    .stream()
+                    .collect(Collectors.toMap(item -> item.getStringField("name"), Function.identity(),
+                            (first, second) -> first));
+            return (cellValue, errorsAccessor, valueConsumer) ->
+                    parse(itemsByName.get(cellValue), cellValue, errorsAccessor, valueConsumer);
+        }
+
+        private void parse(Entity categoryItem, String cellValue, BindingErrorsAccessor errorsAccessor,
+                           Consumer<Object> valueConsumer) {
             if (null == categoryItem) {
                 errorsAccessor.addError("qcadooView.validate.field.error.invalidDictionaryItem");
             } else if (!categoryItem.isActive()) {
@@ -0,0 +1,58 @@
+/*
+ * **************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * **************************************************************************
+ */
+package com.qcadoo.mes.basic.product.importing;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.util.List;
+
+/**
+ * Writes a chunk of rows read by the streaming import. Rows are saved one by one through the product data definition -
+ * a chunk only decides which rows share a transaction.
+ */
+@Component
+class ImportChunkWriter {
+
+    boolean write(final List<RowProcessor> chunk) {
+        boolean valid = true;
+        for (RowProcessor rowProcessor : chunk) {
+            rowProcessor.process();
+            valid &= !rowProcessor.hasErrors();
+        }
+        return valid;
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean writeInNewTransaction(final List<RowProcessor> chunk) {
+        boolean valid = write(chunk);
+        if (!valid) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+        return valid;
+    }
+
+}
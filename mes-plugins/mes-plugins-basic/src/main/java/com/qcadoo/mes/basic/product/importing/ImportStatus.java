@@ -33,6 +33,7 @@ import java.util.Set;
 public class ImportStatus {
 
     private int rowsProcessed;
+    private int rowsImported;
     private Set<ImportError> errors = new HashSet<>();
 
     public int getRowsProcessed() {
@@ -43,6 +44,14 @@ public class ImportStatus {
         rowsProcessed++;
     }
 
+    public int getRowsImported() {
+        return rowsImported;
+    }
+
+    void incrementRowsImportedCounter(int rows) {
+        rowsImported += rows;
+    }
+
     public boolean hasErrors() {
         return !CollectionUtils.isEmpty(errors);
     }
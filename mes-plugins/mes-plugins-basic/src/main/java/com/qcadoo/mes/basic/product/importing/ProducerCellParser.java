@@ -32,7 +32,10 @@ import com.qcadoo.model.api.search.SearchRestrictions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 class ProducerCellParser implements CellParser {
@@ -60,4 +63,23 @@ class ProducerCellParser implements CellParser {
             errorsAccessor.addError("qcadooView.validate.field.error.lookupCodeNotFound");
         }
     }
+
+    @Override
+    public CellParser preResolved() {
+        Map<String, Entity> companiesByNumber = getCompanyDataDefinition()
+                .find()
+                .list()
+                .getEntities()
+                .stream()
+                .collect(Collectors.toMap(entity -> entity.getStringField(CompanyFields.NUMBER), Function.identity(),
+                        (first, second) -> first));
+        return (cellValue, errorsAccessor, valueConsumer) -> {
+            Entity entity = companiesByNumber.get(cellValue);
+            if (null != entity) {
+                valueConsumer.accept(entity);
+            } else {
+                errorsAccessor.addError("qcadooView.validate.field.error.lookupCodeNotFound");
+            }
+        };
+    }
 }
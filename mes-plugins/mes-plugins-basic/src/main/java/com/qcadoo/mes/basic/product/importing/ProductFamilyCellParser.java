@@ -32,7 +32,10 @@ import com.qcadoo.model.api.search.SearchRestrictions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.qcadoo.mes.basic.constants.ProductFamilyElementType.PRODUCTS_FAMILY;
 import static com.qcadoo.mes.basic.constants.ProductFields.ENTITY_TYPE;
@@ -66,4 +69,24 @@ class ProductFamilyCellParser implements CellParser {
             valueConsumer.accept(familyProductCandidate);
         }
     }
+
+    @Override
+    public CellParser preResolved() {
+        Map<String, Entity> familiesByNumber = getProductDataDefinition()
+                .find()
+                .add(SearchRestrictions.eq(ENTITY_TYPE, PRODUCTS_FAMILY.getStringValue()))
+                .list()
+                .getEntities()
+                .stream()
+                .collect(Collectors.toMap(family -> family.getStringField(ProductFields.NUMBER), Function.identity()));
+        return (cellValue, errorsAccessor, valueConsumer) -> {
+            Entity family = familiesByNumber.get(cellValue);
+            if (null == family) {
+                // Misses are errors anyway, so only they pay for the query telling which error it is
+                parse(cellValue, errorsAccessor, valueConsumer);
+            } else {
+                valueConsumer.accept(family);
+            }
+        };
+    }
 }
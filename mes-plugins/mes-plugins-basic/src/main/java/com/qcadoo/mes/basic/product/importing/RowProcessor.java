@@ -31,5 +31,9 @@ public interface RowProcessor {
 
     void append(Cell cell);
 
+    void append(String cellValue);
+
     void process();
+
+    boolean hasErrors();
 }
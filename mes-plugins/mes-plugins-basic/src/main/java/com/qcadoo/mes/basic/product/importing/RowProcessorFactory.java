@@ -38,6 +38,7 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
 
 @Component
 class RowProcessorFactory {
@@ -66,7 +67,15 @@ class RowProcessorFactory {
     }
 
     RowProcessor create(final ImportStatus importStatus, int rowIndex) {
-        return new RowProcessorImpl(importStatus, createEntityWithDefaultValues(), rowIndex);
+        return create(importStatus, rowIndex, cellBinderRegistry::getCellBinder);
+    }
+
+    RowProcessor create(final ImportStatus importStatus, int rowIndex, final CellBinder[] cellBinders) {
+        return create(importStatus, rowIndex, index -> cellBinders[index]);
+    }
+
+    private RowProcessor create(final ImportStatus importStatus, int rowIndex, final IntFunction<CellBinder> cellBinders) {
+        return new RowProcessorImpl(importStatus, createEntityWithDefaultValues(), rowIndex, cellBinders);
     }
 
     private class RowProcessorImpl implements RowProcessor {
@@ -74,15 +83,18 @@ class RowProcessorFactory {
         private final ImportStatus importStatus;
         private final Entity entity;
         private final int currentRow;
+        private final IntFunction<CellBinder> cellBinders;
         private boolean finished;
+        private boolean invalid;
         private int index;
         private boolean empty = true;
         private List<ImportError> rowErrors = new ArrayList<>();
 
-        RowProcessorImpl(ImportStatus importStatus, Entity entity, int rowIndx) {
+        RowProcessorImpl(ImportStatus importStatus, Entity entity, int rowIndx, IntFunction<CellBinder> cellBinders) {
             this.importStatus = importStatus;
             this.entity = entity;
             this.currentRow = rowIndx;
+            this.cellBinders = cellBinders;
         }
 
         @Override
@@ -96,7 +108,7 @@ class RowProcessorFactory {
             if (null != cell) {
                 empty = false;
             }
-            final CellBinder binder = cellBinderRegistry.getCellBinder(index++);
+            final CellBinder binder = cellBinders.apply(index++);
             binder.bind(
                     cell,
                     entity,
@@ -104,6 +116,20 @@ class RowProcessorFactory {
             );
         }
 
+        @Override
+        public void append(final String cellValue) {
+            assureNotProcessedYet();
+            if (null != cellValue) {
+                empty = false;
+            }
+            final CellBinder binder = cellBinders.apply(index++);
+            binder.bind(
+                    cellValue,
+                    entity,
+                    errorCode -> rowErrors.add(new ImportError(currentRow, binder.getFieldName(), errorCode))
+            );
+        }
+
         private void assureNotProcessedYet() {
             if (finished) {
                 throw new IllegalStateException("Row already processed");
@@ -118,6 +144,12 @@ class RowProcessorFactory {
             final Entity savedEntity = getProductDataDefinition().save(entity);
             populateImportStatusWithBindingErrors();
             populateImportStatusWithEntityErrors(savedEntity);
+            invalid = !rowErrors.isEmpty() || !savedEntity.isValid();
+        }
+
+        @Override
+        public boolean hasErrors() {
+            return invalid;
         }
 
         private void populateImportStatusWithBindingErrors() {
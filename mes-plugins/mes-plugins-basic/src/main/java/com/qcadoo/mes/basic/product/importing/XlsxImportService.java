@@ -23,24 +23,56 @@
  */
 package com.qcadoo.mes.basic.product.importing;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 @Service
 public class XlsxImportService {
 
+    private static final int CHUNK_SIZE = 500;
+
     private final RowProcessorFactory rowProcessorFactory;
 
+    private final CellBinderRegistry cellBinderRegistry;
+
+    private final ImportChunkWriter importChunkWriter;
+
     @Autowired
-    public XlsxImportService(RowProcessorFactory rowProcessorFactory) {
+    public XlsxImportService(RowProcessorFactory rowProcessorFactory, CellBinderRegistry cellBinderRegistry,
+                             ImportChunkWriter importChunkWriter) {
         this.rowProcessorFactory = rowProcessorFactory;
+        this.cellBinderRegistry = cellBinderRegistry;
+        this.importChunkWriter = importChunkWriter;
     }
-
     @Transactional
     public ImportStatus importFrom(final XSSFWorkbook workbook) {
 
@@ -65,8 +97,146 @@ public class XlsxImportService {
 
         if (importStatus.hasErrors()) { // We have to rollback transaction here
             TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        } else {
+            importStatus.incrementRowsImportedCounter(importStatus.getRowsProcessed());
         }
         return importStatus;
     }
 
+    /**
+     * Streaming counterpart of {@link #importFrom(XSSFWorkbook)}. Sheet is read with the event (SAX) reader, so the
+     * workbook is never loaded as a whole and dictionary lookups are resolved once per import. Rows are handed to
+     * {@link ImportChunkWriter} in chunks, which are the unit of commit for {@link ImportPolicy#COMMIT_VALID_CHUNKS}; each
+     * row is still saved on its own through the product data definition, so that model hooks and validators run as usual.
+     */
+    @Transactional
+    public ImportStatus importFrom(final File file, final ImportPolicy importPolicy) throws IOException {
+        ImportStatus importStatus = new ImportStatus();
+        ChunkingSheetHandler sheetHandler = new ChunkingSheetHandler(importStatus, importPolicy,
+                cellBinderRegistry.getPreResolvedCellBinders());
+
+        OPCPackage opcPackage;
+        try {
+            opcPackage = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IllegalArgumentException("Given file is not a valid xlsx workbook", e);
+        }
+        try {
+            parseFirstSheet(opcPackage, sheetHandler);
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IllegalArgumentException("Given file is not a valid xlsx workbook", e);
+        } finally {
+            opcPackage.revert();
+        }
+        sheetHandler.flush();
+
+        if (ImportPolicy.ROLLBACK_ALL == importPolicy) {
+            if (importStatus.hasErrors()) { // We have to rollback transaction here
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            } else {
+                importStatus.incrementRowsImportedCounter(importStatus.getRowsProcessed());
+            }
+        }
+        return importStatus;
+    }
+
+    private void parseFirstSheet(final OPCPackage opcPackage, final SheetContentsHandler sheetHandler)
+            throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        XSSFReader xssfReader = new XSSFReader(opcPackage);
+        Locale locale = LocaleContextHolder.getLocale();
+        DataFormatter dataFormatter = new DataFormatter(null == locale ? Locale.getDefault() : locale);
+
+        // sheet comes from an uploaded file, use POI's hardened reader (no DTDs, no external entities)
+        XMLReader xmlReader = SAXHelper.newXMLReader();
+        xmlReader.setContentHandler(new XSSFSheetXMLHandler(xssfReader.getStylesTable(), null,
+                new ReadOnlySharedStringsTable(opcPackage), sheetHandler, dataFormatter, false));
+
+        try (InputStream sheet = xssfReader.getSheetsData().next()) {
+            xmlReader.parse(new InputSource(sheet));
+        } catch (EndOfDataException e) {
+            // The first empty row was reached, the rest of the sheet is ignored
+        }
+    }
+
+    private static class EndOfDataException extends RuntimeException {
+
+        EndOfDataException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private class ChunkingSheetHandler implements SheetContentsHandler {
+
+        private final ImportStatus importStatus;
+        private final ImportPolicy importPolicy;
+        private final CellBinder[] cellBinders;
+        private List<RowProcessor> chunk = new ArrayList<>(CHUNK_SIZE);
+        private String[] cellValues;
+        private int nextColumnIndex;
+        private int expectedRowIndex = SpreadsheetSchemaInfo.START_ROW_INDEX;
+
+        ChunkingSheetHandler(ImportStatus importStatus, ImportPolicy importPolicy, CellBinder[] cellBinders) {
+            this.importStatus = importStatus;
+            this.importPolicy = importPolicy;
+            this.cellBinders = cellBinders;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cellValues = new String[SpreadsheetSchemaInfo.COLUMN_NUMBER];
+            nextColumnIndex = 0;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int columnIndex = null == cellReference ? nextColumnIndex : new CellReference(cellReference).getCol();
+            nextColumnIndex = columnIndex + 1;
+            if (columnIndex < SpreadsheetSchemaInfo.COLUMN_NUMBER) {
+                cellValues[columnIndex] = StringUtils.trimToNull(formattedValue);
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum < SpreadsheetSchemaInfo.START_ROW_INDEX) {
+                return;
+            }
+            if (rowNum != expectedRowIndex) { // This whole row is empty
+                throw new EndOfDataException();
+            }
+            expectedRowIndex++;
+
+            final RowProcessor rowProcessor = rowProcessorFactory.create(importStatus, rowNum, cellBinders);
+            for (String cellValue : cellValues) {
+                rowProcessor.append(cellValue);
+            }
+            if (rowProcessor.isEmpty()) {
+                throw new EndOfDataException(); // We are done. The whole row was empty so stop processing
+            }
+            chunk.add(rowProcessor);
+            if (chunk.size() >= CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+            // headers and footers are not a part of the schema
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            if (ImportPolicy.COMMIT_VALID_CHUNKS == importPolicy) {
+                if (importChunkWriter.writeInNewTransaction(chunk)) {
+                    importStatus.incrementRowsImportedCounter(chunk.size());
+                }
+            } else {
+                importChunkWriter.write(chunk);
+            }
+            chunk = new ArrayList<>(CHUNK_SIZE);
+        }
+    }
+
 }
@@ -0,0 +1,257 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.shift;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.LocalTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.qcadoo.mes.basic.ShiftsService;
+import com.qcadoo.mes.basic.TimetableExceptionService;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
+import com.qcadoo.mes.basic.constants.TimetableExceptionType;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchOrders;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+/**
+ * Answers which shift covers a given instant from per-weekday tables of working hours, built once per tenant from all shifts
+ * and kept until a shift changes. Only the days marked as working are taken into account, minutes are the finest granularity
+ * and the first shift (by id) covering the instant wins. Timetable exceptions of all production lines are applied on top of
+ * the tables, from the interval trees of {@link TimetableExceptionService}: a work time exception makes the shift cover the
+ * instant, a free time exception makes it not cover the instant, even if a work time exception covers it as well.
+ */
+@Service
+public class ShiftResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShiftResolver.class);
+
+    private static final int MINUTES_PER_HOUR = 60;
+
+    private static final Map<Integer, String> DAYS_OF_WEEK = ImmutableMap.<Integer, String> builder()
+            .put(Calendar.MONDAY, "monday").put(Calendar.TUESDAY, "tuesday").put(Calendar.WEDNESDAY, "wensday")
+            .put(Calendar.THURSDAY, "thursday").put(Calendar.FRIDAY, "friday").put(Calendar.SATURDAY, "saturday")
+            .put(Calendar.SUNDAY, "sunday").build();
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private ShiftsService shiftsService;
+
+    @Autowired
+    private TimetableExceptionService timetableExceptionService;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    private final ConcurrentMap<Integer, TenantShiftTable> tenantShiftTables = new ConcurrentHashMap<>();
+
+    public Entity findShiftAt(final Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+
+        int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+        int minuteOfDay = calendar.get(Calendar.HOUR_OF_DAY) * MINUTES_PER_HOUR + calendar.get(Calendar.MINUTE);
+
+        ShiftTable shiftTable = getTenantShiftTable().get();
+
+        for (Entity shift : shiftTable.shifts) {
+            if (worksAt(shift, shiftTable.covers(shift, dayOfWeek, minuteOfDay), date)) {
+                return shift.copy();
+            }
+        }
+
+        return null;
+    }
+
+    public void invalidate() {
+        TenantShiftTable tenantShiftTable = getTenantShiftTable();
+
+        tenantShiftTable.invalidate();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    tenantShiftTable.invalidate();
+                }
+
+            });
+        }
+    }
+
+    private boolean worksAt(final Entity shift, final boolean regularlyWorks, final Date date) {
+        boolean works = regularlyWorks;
+
+        for (Entity exception : timetableExceptionService.findContainingForLineAndShift(null, shift, date, date)) {
+            if (TimetableExceptionType.FREE_TIME.getStringValue().equals(
+                    exception.getStringField(ShiftTimetableExceptionFields.TYPE))) {
+                return false;
+            }
+
+            works = true;
+        }
+
+        return works;
+    }
+
+    private TenantShiftTable getTenantShiftTable() {
+        return tenantShiftTables.computeIfAbsent(multiTenantService.getCurrentTenantId(), tenantId -> new TenantShiftTable());
+    }
+
+    private ShiftTable loadShiftTable() {
+        List<Entity> shifts = dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_SHIFT).find()
+                .addOrder(SearchOrders.asc("id")).list().getEntities();
+
+        ImmutableListMultimap.Builder<Integer, ShiftInterval> intervalsPerDay = ImmutableListMultimap.builder();
+
+        for (Entity shift : shifts) {
+            for (Map.Entry<Integer, String> dayOfWeek : DAYS_OF_WEEK.entrySet()) {
+                if (!shift.getBooleanField(dayOfWeek.getValue() + "Working")) {
+                    continue;
+                }
+
+                try {
+                    for (LocalTime[] hours : shiftsService.convertDayHoursToInt(shift.getStringField(dayOfWeek.getValue()
+                            + "Hours"))) {
+                        intervalsPerDay.put(dayOfWeek.getKey(), new ShiftInterval(shift, hours[0], hours[1]));
+                    }
+                } catch (IllegalStateException e) {
+                    LOG.warn(String.format("Skipping invalid %s hours of shift %d", dayOfWeek.getValue(), shift.getId()), e);
+                }
+            }
+        }
+
+        return new ShiftTable(shifts, intervalsPerDay.build());
+    }
+
+    /**
+     * Shift table of a single tenant. A table loaded while the generation changed is returned to its caller but not kept, so a
+     * load racing with a shift change can't hide that change.
+     */
+    private final class TenantShiftTable {
+
+        private ShiftTable shiftTable;
+
+        private long generation;
+
+        private ShiftTable get() {
+            long loadedGeneration;
+
+            synchronized (this) {
+                if (shiftTable != null) {
+                    return shiftTable;
+                }
+
+                loadedGeneration = generation;
+            }
+
+            ShiftTable loadedShiftTable = loadShiftTable();
+
+            synchronized (this) {
+                if (generation == loadedGeneration) {
+                    shiftTable = loadedShiftTable;
+                }
+            }
+
+            return loadedShiftTable;
+        }
+
+        private synchronized void invalidate() {
+            generation++;
+            shiftTable = null;
+        }
+
+    }
+
+    private static final class ShiftTable {
+
+        private final List<Entity> shifts;
+
+        private final ListMultimap<Integer, ShiftInterval> intervalsPerDay;
+
+        private ShiftTable(final List<Entity> shifts, final ListMultimap<Integer, ShiftInterval> intervalsPerDay) {
+            this.shifts = ImmutableList.copyOf(shifts);
+            this.intervalsPerDay = intervalsPerDay;
+        }
+
+        private boolean covers(final Entity shift, final int dayOfWeek, final int minuteOfDay) {
+            for (ShiftInterval interval : intervalsPerDay.get(dayOfWeek)) {
+                if ((interval.shift == shift) && interval.covers(minuteOfDay)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+    }
+
+    private static final class ShiftInterval {
+
+        private final Entity shift;
+
+        private final int fromMinute;
+
+        private final int toMinute;
+
+        private final boolean overnight;
+
+        private ShiftInterval(final Entity shift, final LocalTime from, final LocalTime to) {
+            this.shift = shift;
+            this.fromMinute = from.getHourOfDay() * MINUTES_PER_HOUR + from.getMinuteOfHour();
+            this.toMinute = to.getHourOfDay() * MINUTES_PER_HOUR + to.getMinuteOfHour();
+            this.overnight = to.getHourOfDay() < from.getHourOfDay();
+        }
+
+        private boolean covers(final int minuteOfDay) {
+            if (overnight) {
+                return fromMinute <= minuteOfDay || minuteOfDay < toMinute;
+            }
+
+            return fromMinute <= minuteOfDay && minuteOfDay < toMinute;
+        }
+
+    }
+
+}
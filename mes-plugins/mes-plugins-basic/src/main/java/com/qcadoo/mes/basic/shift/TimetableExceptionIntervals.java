@@ -0,0 +1,176 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.shift;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Immutable interval tree of timetable exceptions of a single shift. Exceptions are kept sorted by their start, the tree is the
+ * implicit balanced tree over that array, and every node knows the latest end in its subtree, so overlap and containment queries
+ * visit O(log n + k) nodes. Bounds are inclusive, exceptions are returned in order of their start.
+ */
+public final class TimetableExceptionIntervals {
+
+    private final Interval[] intervals;
+
+    private final long[] maxEnds;
+
+    public TimetableExceptionIntervals(final Collection<Interval> intervals) {
+        this.intervals = intervals.toArray(new Interval[intervals.size()]);
+        this.maxEnds = new long[this.intervals.length];
+
+        Arrays.sort(this.intervals, Comparator.comparingLong(Interval::getStart));
+
+        buildMaxEnds(0, this.intervals.length);
+    }
+
+    /**
+     * @param productionLineId
+     *            production line, or null for exceptions of all production lines
+     * @return exceptions having at least one instant in common with the given range
+     */
+    public List<Entity> findOverlapping(final Long productionLineId, final Date from, final Date to) {
+        List<Entity> exceptions = Lists.newArrayList();
+
+        collect(0, intervals.length, to.getTime(), from.getTime(), productionLineId, exceptions);
+
+        return exceptions;
+    }
+
+    /**
+     * @param productionLineId
+     *            production line, or null for exceptions of all production lines
+     * @return exceptions covering the whole given range
+     */
+    public List<Entity> findContaining(final Long productionLineId, final Date from, final Date to) {
+        List<Entity> exceptions = Lists.newArrayList();
+
+        collect(0, intervals.length, from.getTime(), to.getTime(), productionLineId, exceptions);
+
+        return exceptions;
+    }
+
+    public List<Entity> findAll(final Long productionLineId) {
+        List<Entity> exceptions = Lists.newArrayList();
+
+        for (Interval interval : intervals) {
+            if (interval.appliesTo(productionLineId)) {
+                exceptions.add(interval.getException().copy());
+            }
+        }
+
+        return exceptions;
+    }
+
+    public int size() {
+        return intervals.length;
+    }
+
+    private long buildMaxEnds(final int low, final int high) {
+        if (low >= high) {
+            return Long.MIN_VALUE;
+        }
+
+        int middle = (low + high) >>> 1;
+
+        long childrenMaxEnd = Math.max(buildMaxEnds(low, middle), buildMaxEnds(middle + 1, high));
+
+        maxEnds[middle] = Math.max(intervals[middle].getEnd(), childrenMaxEnd);
+
+        return maxEnds[middle];
+    }
+
+    private void collect(final int low, final int high, final long startAtMost, final long endAtLeast,
+            final Long productionLineId, final List<Entity> exceptions) {
+        if (low >= high) {
+            return;
+        }
+
+        int middle = (low + high) >>> 1;
+
+        if (maxEnds[middle] < endAtLeast) {
+            return;
+        }
+
+        collect(low, middle, startAtMost, endAtLeast, productionLineId, exceptions);
+
+        Interval interval = intervals[middle];
+
+        if (interval.getStart() > startAtMost) {
+            return;
+        }
+
+        if ((interval.getEnd() >= endAtLeast) && interval.appliesTo(productionLineId)) {
+            exceptions.add(interval.getException().copy());
+        }
+
+        collect(middle + 1, high, startAtMost, endAtLeast, productionLineId, exceptions);
+    }
+
+    public static final class Interval {
+
+        private final Entity exception;
+
+        private final long start;
+
+        private final long end;
+
+        private final Set<Long> productionLineIds;
+
+        public Interval(final Entity exception, final Collection<Long> productionLineIds) {
+            this.exception = exception;
+            this.start = exception.getDateField(ShiftTimetableExceptionFields.FROM_DATE).getTime();
+            this.end = exception.getDateField(ShiftTimetableExceptionFields.TO_DATE).getTime();
+            this.productionLineIds = ImmutableSet.copyOf(productionLineIds);
+        }
+
+        public Entity getException() {
+            return exception;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        private boolean appliesTo(final Long productionLineId) {
+            return (productionLineId == null) || productionLineIds.contains(productionLineId);
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+<%--
+
+    ***************************************************************************
+    Copyright (c) 2010 Qcadoo Limited
+    Project: Qcadoo MES
+    Version: 1.4
+
+    This file is part of Qcadoo.
+
+    Qcadoo is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as published
+    by the Free Software Foundation; either version 3 of the License,
+    or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty
+    of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+    ***************************************************************************
+
+--%>
+<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
+<%@ taglib prefix="c" uri="http://java.sun.com/jstl/core_rt" %>
+<%@ taglib prefix="fmt" uri="http://java.sun.com/jstl/fmt_rt" %>
+<!DOCTYPE html PUBLIC "-//W3C//DTD HTML 4.01 Transitional//EN" "http://www.w3.org/TR/html4/loose.dtd">
+
+<html>
+<head>
+	<title>Instrumentation</title>
+	<style type="text/css">
+		body { font-family: Arial, sans-serif; font-size: 12px; }
+		table { border-collapse: collapse; }
+		th, td { border: 1px solid #cccccc; padding: 2px 6px; }
+		td.number { text-align: right; }
+		form { display: inline; }
+	</style>
+</head>
+<body>
+	<div>
+		<c:choose>
+			<c:when test="${enabled}">
+				<form method="post" action="${pageContext.request.contextPath}/basic/instrumentation/enabled.html">
+					<input type="hidden" name="enabled" value="false" />
+					<input type="submit" value="Disable" />
+				</form>
+			</c:when>
+			<c:otherwise>
+				<form method="post" action="${pageContext.request.contextPath}/basic/instrumentation/enabled.html">
+					<input type="hidden" name="enabled" value="true" />
+					<input type="submit" value="Enable" />
+				</form>
+			</c:otherwise>
+		</c:choose>
+		<form method="post" action="${pageContext.request.contextPath}/basic/instrumentation/sqlProfilerEnabled.html">
+			<input type="hidden" name="enabled" value="${!sqlProfilerEnabled}" />
+			<input type="submit" value="${sqlProfilerEnabled ? 'Disable' : 'Enable'} SQL profiler" />
+		</form>
+		<form method="post" action="${pageContext.request.contextPath}/basic/instrumentation/reset.html">
+			<input type="submit" value="Reset" />
+		</form>
+		<a href="${pageContext.request.contextPath}/basic/instrumentation/text.html">Plain text</a>
+	</div>
+	<table>
+		<tr>
+			<th>Category</th>
+			<th>Name</th>
+			<th>Count</th>
+			<th>Total [ms]</th>
+			<th>Mean [ms]</th>
+			<th>p50 [ms]</th>
+			<th>p95 [ms]</th>
+			<th>p99 [ms]</th>
+			<th>Max [ms]</th>
+		</tr>
+		<c:forEach items="${timers}" var="timer">
+			<tr>
+				<td>${timer.category.stringValue}</td>
+				<td>${timer.name}</td>
+				<td class="number">${timer.count}</td>
+				<td class="number"><fmt:formatNumber value="${timer.totalNanos / 1000000}" maxFractionDigits="3" /></td>
+				<td class="number"><fmt:formatNumber value="${timer.meanNanos / 1000000}" maxFractionDigits="3" /></td>
+				<td class="number"><fmt:formatNumber value="${timer.getPercentileNanos(50) / 1000000}" maxFractionDigits="3" /></td>
+				<td class="number"><fmt:formatNumber value="${timer.getPercentileNanos(95) / 1000000}" maxFractionDigits="3" /></td>
+				<td class="number"><fmt:formatNumber value="${timer.getPercentileNanos(99) / 1000000}" maxFractionDigits="3" /></td>
+				<td class="number"><fmt:formatNumber value="${timer.maxNanos / 1000000}" maxFractionDigits="3" /></td>
+			</tr>
+		</c:forEach>
+	</table>
+</body>
+</html>
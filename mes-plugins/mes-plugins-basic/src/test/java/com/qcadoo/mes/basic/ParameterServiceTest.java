@@ -25,10 +25,17 @@ package com.qcadoo.mes.basic;
 
 import static com.qcadoo.mes.basic.constants.BasicConstants.MODEL_PARAMETER;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.util.Map;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -36,6 +43,7 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.google.common.collect.ImmutableMap;
 import com.qcadoo.mes.basic.constants.BasicConstants;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
@@ -43,16 +51,24 @@ import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchCriterion;
 import com.qcadoo.model.api.search.SearchQueryBuilder;
+import com.qcadoo.tenant.api.MultiTenantService;
 
 public class ParameterServiceTest {
 
+    private static final String L_WORKSTATIONS_QUANTITY_FROM_PRODUCTION_LINE = "workstationsQuantityFromProductionLine";
+
+    private static final String L_CURRENCY = "currency";
+
     private ParameterService parameterService;
 
     @Mock
     private DataDefinitionService dataDefinitionService;
 
     @Mock
-    private DataDefinition parameterDD;
+    private MultiTenantService multiTenantService;
+
+    @Mock
+    private DataDefinition parameterDD, currencyDD;
 
     @Mock
     private SearchQueryBuilder searchQueryBuilder;
@@ -62,11 +78,13 @@ public class ParameterServiceTest {
         MockitoAnnotations.initMocks(this);
         parameterService = new ParameterService();
         ReflectionTestUtils.setField(parameterService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(parameterService, "multiTenantService", multiTenantService);
 
         given(dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, MODEL_PARAMETER)).willReturn(parameterDD);
         given(parameterDD.find(Mockito.anyString())).willReturn(searchQueryBuilder);
         given(searchQueryBuilder.setMaxResults(Mockito.anyInt())).willReturn(searchQueryBuilder);
         given(searchQueryBuilder.setCacheable(Mockito.anyBoolean())).willReturn(searchQueryBuilder);
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
     }
 
     @Test
@@ -135,4 +153,137 @@ public class ParameterServiceTest {
         parameterService.getParameter();
     }
 
+    @Test
+    public void shouldReturnCachedParameterSnapshot() throws Exception {
+        // given
+        Entity parameter = mockParameter(ImmutableMap.<String, Object> of(L_WORKSTATIONS_QUANTITY_FROM_PRODUCTION_LINE, true));
+        given(searchQueryBuilder.uniqueResult()).willReturn(parameter);
+
+        // when
+        ParameterSnapshot firstSnapshot = parameterService.getParameters();
+        ParameterSnapshot secondSnapshot = parameterService.getParameters();
+
+        // then
+        assertSame(firstSnapshot, secondSnapshot);
+        assertEquals(Long.valueOf(13L), firstSnapshot.getId());
+        assertTrue(firstSnapshot.isWorkstationsQuantityFromProductionLine());
+        verify(searchQueryBuilder, times(1)).uniqueResult();
+    }
+
+    @Test
+    public void shouldReloadParameterSnapshotAfterInvalidation() throws Exception {
+        // given
+        Entity parameter = mockParameter(ImmutableMap.<String, Object> of(L_WORKSTATIONS_QUANTITY_FROM_PRODUCTION_LINE, true));
+        Entity changedParameter = mockParameter(ImmutableMap.<String, Object> of(L_WORKSTATIONS_QUANTITY_FROM_PRODUCTION_LINE,
+                false));
+        given(searchQueryBuilder.uniqueResult()).willReturn(parameter, changedParameter);
+
+        parameterService.getParameters();
+
+        // when
+        parameterService.invalidateParameters();
+
+        ParameterSnapshot snapshot = parameterService.getParameters();
+
+        // then
+        assertFalse(snapshot.isWorkstationsQuantityFromProductionLine());
+        verify(searchQueryBuilder, times(2)).uniqueResult();
+    }
+
+    @Test
+    public void shouldNotKeepSnapshotLoadedWhileParametersWereInvalidated() throws Exception {
+        // given
+        Entity parameter = mockParameter(ImmutableMap.<String, Object> of(L_WORKSTATIONS_QUANTITY_FROM_PRODUCTION_LINE, true));
+        given(searchQueryBuilder.uniqueResult()).willAnswer(invocation -> {
+            parameterService.invalidateParameters();
+            return parameter;
+        }).willReturn(parameter);
+
+        // when
+        parameterService.getParameters();
+        parameterService.getParameters();
+
+        // then
+        verify(searchQueryBuilder, times(2)).uniqueResult();
+    }
+
+    @Test
+    public void shouldKeepSnapshotsPerTenant() throws Exception {
+        // given
+        Entity parameter = mockParameter(ImmutableMap.<String, Object> of(L_WORKSTATIONS_QUANTITY_FROM_PRODUCTION_LINE, true));
+        Entity otherTenantParameter = mockParameter(ImmutableMap.<String, Object> of(
+                L_WORKSTATIONS_QUANTITY_FROM_PRODUCTION_LINE, false));
+        given(searchQueryBuilder.uniqueResult()).willReturn(parameter, otherTenantParameter);
+
+        ParameterSnapshot snapshot = parameterService.getParameters();
+
+        // when
+        given(multiTenantService.getCurrentTenantId()).willReturn(2);
+        ParameterSnapshot otherTenantSnapshot = parameterService.getParameters();
+
+        // then
+        assertNotSame(snapshot, otherTenantSnapshot);
+        assertFalse(otherTenantSnapshot.isWorkstationsQuantityFromProductionLine());
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        assertSame(snapshot, parameterService.getParameters());
+    }
+
+    @Test
+    public void shouldLoadNotCachedBelongsToFieldOnEachAccess() throws Exception {
+        // given
+        Entity currency = mockBelongsTo(3L, currencyDD);
+        given(currencyDD.get(3L)).willReturn(mockBelongsTo(3L, currencyDD), mockBelongsTo(3L, currencyDD));
+        given(searchQueryBuilder.uniqueResult()).willReturn(
+                mockParameter(ImmutableMap.<String, Object> of(L_CURRENCY, currency)));
+
+        ParameterSnapshot snapshot = parameterService.getParameters();
+
+        // when
+        ParameterSnapshot currencySnapshot = snapshot.getBelongsToField(L_CURRENCY);
+        ParameterSnapshot reloadedCurrencySnapshot = snapshot.getBelongsToField(L_CURRENCY);
+
+        // then
+        assertNotSame(currencySnapshot, reloadedCurrencySnapshot);
+        assertEquals(Long.valueOf(3L), snapshot.getBelongsToId(L_CURRENCY));
+        verify(currencyDD, times(2)).get(3L);
+    }
+
+    @Test
+    public void shouldKeepCachedBelongsToFieldWithSnapshot() throws Exception {
+        // given
+        Entity currency = mockBelongsTo(3L, currencyDD);
+        given(searchQueryBuilder.uniqueResult()).willReturn(
+                mockParameter(ImmutableMap.<String, Object> of(L_CURRENCY, currency)));
+
+        parameterService.cacheBelongsToField(L_CURRENCY);
+
+        ParameterSnapshot snapshot = parameterService.getParameters();
+
+        // when
+        ParameterSnapshot currencySnapshot = snapshot.getBelongsToField(L_CURRENCY);
+
+        // then
+        assertSame(currencySnapshot, snapshot.getBelongsToField(L_CURRENCY));
+        assertEquals(Long.valueOf(3L), currencySnapshot.getId());
+        verify(currencyDD, Mockito.never()).get(3L);
+    }
+
+    private Entity mockBelongsTo(final Long id, final DataDefinition dataDefinition) {
+        Entity entity = mock(Entity.class);
+        given(entity.getId()).willReturn(id);
+        given(entity.getDataDefinition()).willReturn(dataDefinition);
+        given(entity.getFields()).willReturn(ImmutableMap.<String, Object> of());
+
+        return entity;
+    }
+
+    private Entity mockParameter(final Map<String, Object> fields) {
+        Entity parameter = mock(Entity.class);
+        given(parameter.getId()).willReturn(13L);
+        given(parameter.getFields()).willReturn(fields);
+
+        return parameter;
+    }
+
 }
@@ -0,0 +1,171 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchQueryBuilder;
+import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+public class TimetableExceptionServiceTest {
+
+    private TimetableExceptionService timetableExceptionService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private MultiTenantService multiTenantService;
+
+    @Mock
+    private DataDefinition timetableExceptionDD;
+
+    @Mock
+    private SearchQueryBuilder searchQueryBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Mock
+    private Entity shift;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        timetableExceptionService = new TimetableExceptionService();
+
+        ReflectionTestUtils.setField(timetableExceptionService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(timetableExceptionService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(timetableExceptionService, "multiTenantService", multiTenantService);
+
+        given(dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.SHIFT_TIMETABLE_EXCEPTION)).willReturn(
+                timetableExceptionDD);
+        given(timetableExceptionDD.find(anyString())).willReturn(searchQueryBuilder);
+        given(searchQueryBuilder.setLong(anyString(), anyLong())).willReturn(searchQueryBuilder);
+        given(searchQueryBuilder.list()).willReturn(searchResult);
+        given(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class))).willReturn(
+                Collections.<Map<String, Object>> emptyList());
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+
+        given(shift.getId()).willReturn(1L);
+    }
+
+    @Test
+    public void shouldLoadExceptionsOfShiftOnce() {
+        // given
+        Entity exception = mockException();
+        given(searchResult.getEntities()).willReturn(Lists.newArrayList(exception));
+
+        // when
+        timetableExceptionService.findForLineAndShift(null, shift);
+        List<Entity> exceptions = timetableExceptionService.findForLineAndShift(null, shift);
+
+        // then
+        assertEquals(Lists.newArrayList(exception), exceptions);
+        verify(searchQueryBuilder, times(1)).list();
+    }
+
+    @Test
+    public void shouldKeepExceptionsPerTenant() {
+        // given
+        Entity exception = mockException();
+        given(searchResult.getEntities()).willReturn(Lists.newArrayList(exception),
+                Collections.<Entity> emptyList());
+
+        timetableExceptionService.findForLineAndShift(null, shift);
+
+        // when
+        given(multiTenantService.getCurrentTenantId()).willReturn(2);
+        List<Entity> otherTenantExceptions = timetableExceptionService.findForLineAndShift(null, shift);
+
+        // then
+        assertTrue(otherTenantExceptions.isEmpty());
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        assertEquals(Lists.newArrayList(exception), timetableExceptionService.findForLineAndShift(null, shift));
+        verify(searchQueryBuilder, times(2)).list();
+    }
+
+    @Test
+    public void shouldNotKeepExceptionsLoadedWhileTheyWereInvalidated() {
+        // given
+        Entity exception = mockException();
+        given(searchResult.getEntities()).willAnswer(invocation -> {
+            timetableExceptionService.invalidate();
+            return Lists.newArrayList(exception);
+        }).willReturn(Collections.<Entity> emptyList());
+
+        // when
+        timetableExceptionService.findForLineAndShift(null, shift);
+        List<Entity> exceptions = timetableExceptionService.findForLineAndShift(null, shift);
+
+        // then
+        assertTrue(exceptions.isEmpty());
+        verify(searchQueryBuilder, times(2)).list();
+    }
+
+    private Entity mockException() {
+        Entity exception = mock(Entity.class);
+
+        given(exception.getId()).willReturn(10L);
+        given(exception.getDateField(ShiftTimetableExceptionFields.FROM_DATE)).willReturn(new Date(1000L));
+        given(exception.getDateField(ShiftTimetableExceptionFields.TO_DATE)).willReturn(new Date(2000L));
+        given(exception.copy()).willReturn(exception);
+
+        return exception;
+    }
+
+}
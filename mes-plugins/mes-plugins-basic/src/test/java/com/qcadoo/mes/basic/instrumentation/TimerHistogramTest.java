@@ -0,0 +1,92 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.instrumentation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerHistogramTest {
+
+    private TimerHistogram timer;
+
+    @Before
+    public void init() {
+        timer = new TimerHistogram(InstrumentationCategory.MODEL_HOOK, "OrderHooks.onSave");
+    }
+
+    @Test
+    public final void shouldReturnZerosWhenNothingRecorded() {
+        // when & then
+        assertEquals(0L, timer.getCount());
+        assertEquals(0L, timer.getMeanNanos());
+        assertEquals(0L, timer.getPercentileNanos(99));
+    }
+
+    @Test
+    public final void shouldRecordCountTotalAndMax() {
+        // when
+        timer.record(TimeUnit.MILLISECONDS.toNanos(1L));
+        timer.record(TimeUnit.MILLISECONDS.toNanos(3L));
+
+        // then
+        assertEquals(2L, timer.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(4L), timer.getTotalNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(2L), timer.getMeanNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(3L), timer.getMaxNanos());
+    }
+
+    @Test
+    public final void shouldReturnBucketUpperBoundAsPercentile() {
+        // given
+        for (int i = 0; i < 99; i++) {
+            timer.record(TimeUnit.MICROSECONDS.toNanos(100L));
+        }
+
+        timer.record(TimeUnit.SECONDS.toNanos(1L));
+
+        // when & then
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(128L), timer.getPercentileNanos(50));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(128L), timer.getPercentileNanos(99));
+        assertEquals(TimeUnit.SECONDS.toNanos(1L), timer.getPercentileNanos(100));
+    }
+
+    @Test
+    public final void shouldClearOnReset() {
+        // given
+        timer.record(TimeUnit.MILLISECONDS.toNanos(5L));
+
+        // when
+        timer.reset();
+
+        // then
+        assertEquals(0L, timer.getCount());
+        assertEquals(0L, timer.getMaxNanos());
+        assertEquals(0L, timer.getPercentileNanos(50));
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.instrumentation.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SqlStatementProfilerTest {
+
+    private static final String L_SELECT_POSITION = "SELECT * FROM materialflowresources_position WHERE document_id = ?";
+
+    private SqlStatementProfiler sqlStatementProfiler;
+
+    private ProfilingDataSource profilingDataSource;
+
+    @Before
+    public void init() throws SQLException {
+        sqlStatementProfiler = new SqlStatementProfiler();
+
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+
+        given(dataSource.getConnection()).willReturn(connection);
+        given(connection.prepareStatement(anyString())).willReturn(mock(PreparedStatement.class));
+        given(connection.createStatement()).willReturn(mock(Statement.class));
+
+        profilingDataSource = new ProfilingDataSource(dataSource, sqlStatementProfiler);
+    }
+
+    @Test
+    public final void shouldCountStatementsAndRepeats() {
+        // when
+        SqlStatementProfile profile = sqlStatementProfiler.profile("documentPositions", () -> {
+            try (Connection connection = profilingDataSource.getConnection()) {
+                for (int i = 0; i < 3; i++) {
+                    PreparedStatement statement = connection.prepareStatement(L_SELECT_POSITION);
+                    statement.setLong(1, i);
+                    statement.executeQuery();
+                }
+
+                connection.createStatement().executeUpdate("UPDATE basic_parameter SET name = 'a' WHERE id = 1");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // then
+        assertEquals(4, profile.getStatementCount());
+        assertEquals(2, profile.getDistinctStatementCount());
+        assertEquals(3, profile.getMaxRepeats());
+        assertEquals(3, profile.getCount(L_SELECT_POSITION));
+        assertEquals(1, profile.getRepeatedStatements().size());
+        assertFalse(sqlStatementProfiler.isProfiling());
+    }
+
+    @Test
+    public final void shouldNotWrapConnectionsOutsideProfile() throws SQLException {
+        // when
+        Connection connection = profilingDataSource.getConnection();
+
+        // then
+        assertFalse(Proxy.isProxyClass(connection.getClass()));
+    }
+
+    @Test
+    public final void shouldNotBeginProfileWhenDisabled() {
+        // when
+        SqlStatementProfile profile = sqlStatementProfiler.begin("request");
+
+        // then
+        assertNull(profile);
+        assertFalse(sqlStatementProfiler.isProfiling());
+    }
+
+    @Test
+    public final void shouldNormalizeLiterals() {
+        // when
+        String sql = SqlStatementProfile.normalize("SELECT id  FROM basic_product\n WHERE number = 'P-1' AND id IN (1, 2, 3)");
+
+        // then
+        assertEquals("SELECT id FROM basic_product WHERE number = ? AND id IN (?)", sql);
+    }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.qcadoo.mes.basic.constants.LogLevel;
+import com.qcadoo.tenant.api.MultiTenantCallback;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+public class LogWriterTest {
+
+    private LogWriter logWriter;
+
+    @Mock
+    private LogBatchWriter logBatchWriter;
+
+    @Mock
+    private MultiTenantService multiTenantService;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        logWriter = new LogWriter();
+
+        ReflectionTestUtils.setField(logWriter, "logBatchWriter", logBatchWriter);
+        ReflectionTestUtils.setField(logWriter, "multiTenantService", multiTenantService);
+        ReflectionTestUtils.setField(logWriter, "batchSize", 2);
+        ReflectionTestUtils.setField(logWriter, "offerTimeoutMillis", 0L);
+        ReflectionTestUtils.setField(logWriter, "queue", new ArrayBlockingQueue<LogEntry>(1));
+
+        doAnswer(invocation -> {
+            ((MultiTenantCallback) invocation.getArguments()[1]).invoke();
+            return null;
+        }).when(multiTenantService).doInMultiTenantContext(anyInt(), any(MultiTenantCallback.class));
+    }
+
+    @Test
+    public final void shouldDropLowLevelEntriesWhenQueueIsFull() {
+        // when
+        logWriter.write(entry(1, LogLevel.INFO));
+        logWriter.write(entry(1, LogLevel.DEBUG));
+
+        // then
+        assertEquals(1L, logWriter.getDroppedEntries());
+        verify(logBatchWriter, never()).writeInNewTransaction(anyListOf(LogEntry.class));
+    }
+
+    @Test
+    public final void shouldWriteErrorEntriesSynchronouslyInNewTransactionWhenQueueIsFull() {
+        // when
+        logWriter.write(entry(1, LogLevel.INFO));
+        logWriter.write(entry(1, LogLevel.ERROR));
+
+        // then
+        assertEquals(0L, logWriter.getDroppedEntries());
+        verify(logBatchWriter).writeInNewTransaction(anyListOf(LogEntry.class));
+        verify(multiTenantService, never()).doInMultiTenantContext(anyInt(), any(MultiTenantCallback.class));
+    }
+
+    @Test
+    public final void shouldCountEntriesWhichCouldNotBeWritten() {
+        // given
+        doThrow(new IllegalStateException()).when(logBatchWriter).writeInNewTransaction(anyListOf(LogEntry.class));
+
+        // when
+        logWriter.write(entry(1, LogLevel.INFO));
+        logWriter.write(entry(1, LogLevel.ERROR));
+
+        // then
+        assertEquals(1L, logWriter.getDroppedEntries());
+    }
+
+    @Test
+    public final void shouldFlushQueuedEntriesInBatches() {
+        // given
+        ReflectionTestUtils.setField(logWriter, "queue", new ArrayBlockingQueue<LogEntry>(10));
+
+        for (int i = 0; i < 5; i++) {
+            logWriter.write(entry(1, LogLevel.ACTIVITY));
+        }
+
+        // when
+        logWriter.flush();
+
+        // then
+        verify(logBatchWriter, times(3)).writeInNewTransaction(anyListOf(LogEntry.class));
+    }
+
+    @Test
+    public final void shouldFlushEntriesOfEachTenantInItsContext() {
+        // given
+        ReflectionTestUtils.setField(logWriter, "queue", new ArrayBlockingQueue<LogEntry>(10));
+        ReflectionTestUtils.setField(logWriter, "batchSize", 10);
+
+        LogEntry firstEntry = entry(1, LogLevel.ACTIVITY);
+        LogEntry otherTenantEntry = entry(2, LogLevel.ACTIVITY);
+        LogEntry secondEntry = entry(1, LogLevel.INFO);
+
+        logWriter.write(firstEntry);
+        logWriter.write(otherTenantEntry);
+        logWriter.write(secondEntry);
+
+        // when
+        logWriter.flush();
+
+        // then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<LogEntry>> batches = (ArgumentCaptor) ArgumentCaptor.forClass(List.class);
+
+        InOrder inOrder = inOrder(multiTenantService, logBatchWriter);
+        inOrder.verify(multiTenantService).doInMultiTenantContext(eq(1), any(MultiTenantCallback.class));
+        inOrder.verify(logBatchWriter).writeInNewTransaction(batches.capture());
+        inOrder.verify(multiTenantService).doInMultiTenantContext(eq(2), any(MultiTenantCallback.class));
+        inOrder.verify(logBatchWriter).writeInNewTransaction(batches.capture());
+
+        assertEquals(2, batches.getAllValues().get(0).size());
+        assertEquals(firstEntry, batches.getAllValues().get(0).get(0));
+        assertEquals(secondEntry, batches.getAllValues().get(0).get(1));
+        assertEquals(1, batches.getAllValues().get(1).size());
+        assertEquals(otherTenantEntry, batches.getAllValues().get(1).get(0));
+    }
+
+    private LogEntry entry(final int tenantId, final LogLevel logLevel) {
+        return new LogEntry(tenantId, new Date(), 1L, "order", "changeState", null, null, null, "message", null, logLevel);
+    }
+
+}
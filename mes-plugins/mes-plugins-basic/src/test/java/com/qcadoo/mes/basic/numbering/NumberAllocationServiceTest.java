@@ -0,0 +1,213 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.numbering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.view.api.ViewDefinitionState;
+import com.qcadoo.view.api.components.FieldComponent;
+import com.qcadoo.view.api.utils.NumberGeneratorService;
+
+public class NumberAllocationServiceTest {
+
+    private static final NumberSequence L_SEQUENCE = new NumberSequence("basic", "palletNumber", "", 6);
+
+    private NumberAllocationService numberAllocationService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private NumberGeneratorService numberGeneratorService;
+
+    @Mock
+    private ViewDefinitionState view;
+
+    @Mock
+    private FieldComponent numberField;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        numberAllocationService = new NumberAllocationService();
+
+        ReflectionTestUtils.setField(numberAllocationService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(numberAllocationService, "numberGeneratorService", numberGeneratorService);
+
+        when(view.getComponentByReference("number")).thenReturn(numberField);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT to_regclass"), any(SqlParameterSource.class), eq(Boolean.class)))
+                .thenReturn(true);
+    }
+
+    @Test
+    public final void shouldAllocateContiguousRange() {
+        // given
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(12L);
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class))).thenReturn(
+                Collections.<String> emptyList());
+
+        // when
+        List<String> numbers = numberAllocationService.allocate(L_SEQUENCE, 3);
+
+        // then
+        assertEquals(Lists.newArrayList("000010", "000011", "000012"), numbers);
+    }
+
+    @Test
+    public final void shouldSkipNumbersEnteredByHand() {
+        // given
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(12L, 13L);
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class))).thenReturn(
+                Lists.newArrayList("000011"), Collections.<String> emptyList());
+
+        // when
+        List<String> numbers = numberAllocationService.allocate(L_SEQUENCE, 3);
+
+        // then
+        assertEquals(Lists.newArrayList("000010", "000012", "000013"), numbers);
+    }
+
+    @Test
+    public final void shouldAllocateNothingForZeroQuantity() {
+        // when
+        List<String> numbers = numberAllocationService.allocate(L_SEQUENCE, 0);
+
+        // then
+        assertEquals(0, numbers.size());
+    }
+
+    @Test
+    public final void shouldCreateMissingSequenceOnFirstAllocation() {
+        // given
+        when(jdbcTemplate.queryForObject(startsWith("SELECT to_regclass"), any(SqlParameterSource.class), eq(Boolean.class)))
+                .thenReturn(false);
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(1L);
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class))).thenReturn(
+                Collections.<String> emptyList());
+
+        // when
+        List<String> numbers = numberAllocationService.allocate(L_SEQUENCE, 1);
+
+        // then
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).update(startsWith("CREATE SEQUENCE IF NOT EXISTS basic_palletnumber_number_seq"), anyMap());
+        inOrder.verify(jdbcTemplate).queryForObject(startsWith("SELECT setval"), any(SqlParameterSource.class), eq(Long.class));
+
+        assertEquals(Lists.newArrayList("000001"), numbers);
+    }
+
+    @Test
+    public final void shouldNotSynchronizeExistingSequenceOnAllocation() {
+        // given
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(5L);
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class))).thenReturn(
+                Collections.<String> emptyList());
+
+        // when
+        numberAllocationService.allocate(L_SEQUENCE, 1);
+
+        // then
+        verify(jdbcTemplate, never()).update(anyString(), anyMap());
+    }
+
+    @Test
+    public final void shouldNotMarkSequenceAsCalledWhenThereAreNoNumbers() {
+        // when
+        numberAllocationService.synchronize(L_SEQUENCE);
+
+        // then
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).queryForList(query.capture(), any(SqlParameterSource.class));
+
+        assertTrue(query.getValue().contains("setval('basic_palletnumber_number_seq', GREATEST(numbers.maxnumber, 1), "
+                + "numbers.maxnumber > 0)"));
+        assertTrue(query.getValue().contains("COALESCE(MAX("));
+    }
+
+    @Test
+    public final void shouldInsertNumberFromSequenceIntoForm() {
+        // given
+        when(numberGeneratorService.checkIfShouldInsertNumber(view, "form", "number")).thenReturn(true);
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(7L);
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class))).thenReturn(
+                Collections.<String> emptyList());
+
+        // when
+        numberAllocationService.generateAndInsertNumber(view, L_SEQUENCE, "form", "number");
+
+        // then
+        verify(numberField).setFieldValue("000007");
+        verify(numberField).requestComponentUpdateState();
+    }
+
+    @Test
+    public final void shouldNotInsertNumberIntoFormWhichAlreadyHasOne() {
+        // given
+        when(numberGeneratorService.checkIfShouldInsertNumber(view, "form", "number")).thenReturn(false);
+
+        // when
+        numberAllocationService.generateAndInsertNumber(view, L_SEQUENCE, "form", "number");
+
+        // then
+        verifyZeroInteractions(jdbcTemplate);
+        verify(numberField, never()).setFieldValue(any());
+    }
+
+    @Test
+    public final void shouldFormatNumberWithPrefixAndPadding() {
+        // given
+        NumberSequence sequence = new NumberSequence("costCalculation", "costCalculation", "KK/", 4);
+
+        // when & then
+        assertEquals("KK/0042", sequence.format(42L));
+        assertEquals("costcalculation_costcalculation_number_seq", sequence.getSequenceName());
+    }
+
+}
@@ -0,0 +1,98 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.palletnumber;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+
+public class PalletNumberAllocationServiceTest {
+
+    private PalletNumberAllocationService palletNumberAllocationService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        palletNumberAllocationService = new PalletNumberAllocationService();
+
+        ReflectionTestUtils.setField(palletNumberAllocationService, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    public final void shouldAllocateContiguousBlock() {
+        // given
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(12L);
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class))).thenReturn(
+                Collections.<String> emptyList());
+
+        // when
+        List<String> numbers = palletNumberAllocationService.allocate(3);
+
+        // then
+        assertEquals(Lists.newArrayList("000010", "000011", "000012"), numbers);
+    }
+
+    @Test
+    public final void shouldSkipNumbersEnteredByHand() {
+        // given
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(12L, 13L);
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class))).thenReturn(
+                Lists.newArrayList("000011"), Collections.<String> emptyList());
+
+        // when
+        List<String> numbers = palletNumberAllocationService.allocate(3);
+
+        // then
+        assertEquals(Lists.newArrayList("000010", "000012", "000013"), numbers);
+    }
+
+    @Test
+    public final void shouldAllocateNothingForZeroQuantity() {
+        // when
+        List<String> numbers = palletNumberAllocationService.allocate(0);
+
+        // then
+        assertEquals(0, numbers.size());
+    }
+
+}
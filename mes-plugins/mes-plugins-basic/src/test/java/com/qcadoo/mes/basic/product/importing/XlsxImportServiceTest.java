@@ -0,0 +1,221 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.product.importing;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.Lists;
+
+public class XlsxImportServiceTest {
+
+    private static final String L_SHEET_ENTRY = "xl/worksheets/sheet1.xml";
+
+    private static final String L_SECRET = "secret";
+
+    private XlsxImportService xlsxImportService;
+
+    @Mock
+    private RowProcessorFactory rowProcessorFactory;
+
+    @Mock
+    private CellBinderRegistry cellBinderRegistry;
+
+    @Mock
+    private ImportChunkWriter importChunkWriter;
+
+    private File file;
+
+    private List<RowProcessor> rowProcessors;
+
+    @Before
+    public void init() throws IOException {
+        MockitoAnnotations.initMocks(this);
+
+        xlsxImportService = new XlsxImportService(rowProcessorFactory, cellBinderRegistry, importChunkWriter);
+
+        when(cellBinderRegistry.getPreResolvedCellBinders()).thenReturn(new CellBinder[SpreadsheetSchemaInfo.COLUMN_NUMBER]);
+        rowProcessors = Lists.newArrayList();
+        when(rowProcessorFactory.create(any(ImportStatus.class), anyInt(), any(CellBinder[].class))).thenAnswer(invocation -> {
+            RowProcessor rowProcessor = mock(RowProcessor.class);
+            rowProcessors.add(rowProcessor);
+            return rowProcessor;
+        });
+        when(importChunkWriter.writeInNewTransaction(anyListOf(RowProcessor.class))).thenReturn(true);
+
+        file = File.createTempFile("productImport", ".xlsx");
+    }
+
+    @After
+    public void cleanUp() {
+        file.delete();
+    }
+
+    @Test
+    public final void shouldWriteRowsInChunksAndCountImportedRows() throws IOException {
+        // given
+        writeWorkbook(file, 501, false);
+
+        // when
+        ImportStatus importStatus = xlsxImportService.importFrom(file, ImportPolicy.COMMIT_VALID_CHUNKS);
+
+        // then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<RowProcessor>> chunks = (ArgumentCaptor) ArgumentCaptor.forClass(List.class);
+        verify(importChunkWriter, times(2)).writeInNewTransaction(chunks.capture());
+        verify(importChunkWriter, never()).write(anyListOf(RowProcessor.class));
+
+        assertEquals(500, chunks.getAllValues().get(0).size());
+        assertEquals(1, chunks.getAllValues().get(1).size());
+        assertEquals(501, importStatus.getRowsImported());
+    }
+
+    @Test
+    public final void shouldStopAtFirstEmptyRow() throws IOException {
+        // given
+        writeWorkbook(file, 3, true);
+
+        // when
+        xlsxImportService.importFrom(file, ImportPolicy.COMMIT_VALID_CHUNKS);
+
+        // then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<RowProcessor>> chunks = (ArgumentCaptor) ArgumentCaptor.forClass(List.class);
+        verify(importChunkWriter).writeInNewTransaction(chunks.capture());
+
+        assertEquals(3, chunks.getValue().size());
+    }
+
+    @Test
+    public final void shouldWriteAllRowsInCallerTransactionForRollbackAll() throws IOException {
+        // given
+        writeWorkbook(file, 2, false);
+
+        // when
+        xlsxImportService.importFrom(file, ImportPolicy.ROLLBACK_ALL);
+
+        // then
+        verify(importChunkWriter).write(anyListOf(RowProcessor.class));
+        verify(importChunkWriter, never()).writeInNewTransaction(anyListOf(RowProcessor.class));
+    }
+
+    @Test
+    public final void shouldNotResolveExternalEntities() throws IOException {
+        // given
+        File secret = File.createTempFile("secret", ".txt");
+        File workbook = File.createTempFile("productImport", ".xlsx");
+        try {
+            Files.write(secret.toPath(), L_SECRET.getBytes(StandardCharsets.UTF_8));
+            writeWorkbook(workbook, 1, false);
+            replaceSheet(workbook, file, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<!DOCTYPE worksheet [<!ENTITY xxe SYSTEM \"" + secret.toURI() + "\">]>"
+                    + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>"
+                    + "<row r=\"2\"><c r=\"A2\" t=\"inlineStr\"><is><t>&xxe;</t></is></c>"
+                    + "<c r=\"B2\" t=\"inlineStr\"><is><t>name</t></is></c></row></sheetData></worksheet>");
+
+            // when
+            try {
+                xlsxImportService.importFrom(file, ImportPolicy.COMMIT_VALID_CHUNKS);
+            } catch (IllegalArgumentException e) {
+                // rejecting the document is fine as well
+            }
+        } finally {
+            secret.delete();
+            workbook.delete();
+        }
+
+        // then
+        for (RowProcessor rowProcessor : rowProcessors) {
+            verify(rowProcessor, never()).append(L_SECRET);
+        }
+    }
+
+    private void writeWorkbook(final File target, final int rows, final boolean emptyRowAfterData) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream outputStream = new FileOutputStream(target)) {
+            XSSFSheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("number");
+
+            for (int index = 0; index < rows; index++) {
+                XSSFRow row = sheet.createRow(SpreadsheetSchemaInfo.START_ROW_INDEX + index);
+                row.createCell(0).setCellValue("P" + index);
+                row.createCell(1).setCellValue("Product " + index);
+            }
+            if (emptyRowAfterData) {
+                sheet.createRow(SpreadsheetSchemaInfo.START_ROW_INDEX + rows + 1).createCell(0).setCellValue("ignored");
+            }
+            workbook.write(outputStream);
+        }
+    }
+
+    private void replaceSheet(final File source, final File target, final String sheetXml) throws IOException {
+        try (ZipFile zipFile = new ZipFile(source);
+                ZipOutputStream outputStream = new ZipOutputStream(Files.newOutputStream(target.toPath()))) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                outputStream.putNextEntry(new ZipEntry(entry.getName()));
+                if (L_SHEET_ENTRY.equals(entry.getName())) {
+                    outputStream.write(sheetXml.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                        IOUtils.copy(inputStream, outputStream);
+                    }
+                }
+                outputStream.closeEntry();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.shift;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.ShiftsService;
+import com.qcadoo.mes.basic.TimetableExceptionService;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
+import com.qcadoo.mes.basic.constants.TimetableExceptionType;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchOrder;
+import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+public class ShiftResolverTest {
+
+    private static final String L_MORNING_HOURS = "06:00-14:00";
+
+    private static final Date L_MONDAY_AT_TEN = new DateTime(2017, 5, 1, 10, 0).toDate();
+
+    private static final Date L_MONDAY_AT_TWENTY = new DateTime(2017, 5, 1, 20, 0).toDate();
+
+    private static final Date L_SUNDAY_AT_TEN = new DateTime(2017, 5, 7, 10, 0).toDate();
+
+    private ShiftResolver shiftResolver;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private ShiftsService shiftsService;
+
+    @Mock
+    private TimetableExceptionService timetableExceptionService;
+
+    @Mock
+    private MultiTenantService multiTenantService;
+
+    @Mock
+    private DataDefinition shiftDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    private Entity morningShift;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        shiftResolver = new ShiftResolver();
+
+        ReflectionTestUtils.setField(shiftResolver, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(shiftResolver, "shiftsService", shiftsService);
+        ReflectionTestUtils.setField(shiftResolver, "timetableExceptionService", timetableExceptionService);
+        ReflectionTestUtils.setField(shiftResolver, "multiTenantService", multiTenantService);
+
+        given(dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_SHIFT)).willReturn(shiftDD);
+        given(shiftDD.find()).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.addOrder(any(SearchOrder.class))).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.list()).willReturn(searchResult);
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        given(shiftsService.convertDayHoursToInt(L_MORNING_HOURS)).willReturn(
+                new LocalTime[][] { { new LocalTime(6, 0), new LocalTime(14, 0) } });
+        given(timetableExceptionService.findContainingForLineAndShift(eq((Entity) null), any(Entity.class), any(Date.class),
+                any(Date.class))).willReturn(Collections.<Entity> emptyList());
+
+        morningShift = mockShift(1L, "monday");
+        given(searchResult.getEntities()).willReturn(Lists.newArrayList(morningShift));
+    }
+
+    @Test
+    public final void shouldFindShiftWorkingAtInstant() {
+        // when & then
+        assertSame(morningShift, shiftResolver.findShiftAt(L_MONDAY_AT_TEN));
+        assertNull(shiftResolver.findShiftAt(L_MONDAY_AT_TWENTY));
+        assertNull(shiftResolver.findShiftAt(L_SUNDAY_AT_TEN));
+    }
+
+    @Test
+    public final void shouldNotFindShiftDuringFreeTimeException() {
+        // given
+        stubExceptions(morningShift, L_MONDAY_AT_TEN, TimetableExceptionType.FREE_TIME);
+
+        // when & then
+        assertNull(shiftResolver.findShiftAt(L_MONDAY_AT_TEN));
+    }
+
+    @Test
+    public final void shouldFindShiftDuringWorkTimeExceptionOnDayOff() {
+        // given
+        stubExceptions(morningShift, L_SUNDAY_AT_TEN, TimetableExceptionType.WORK_TIME);
+
+        // when & then
+        assertSame(morningShift, shiftResolver.findShiftAt(L_SUNDAY_AT_TEN));
+    }
+
+    @Test
+    public final void shouldPreferFreeTimeOverWorkTimeException() {
+        // given
+        stubExceptions(morningShift, L_SUNDAY_AT_TEN, TimetableExceptionType.WORK_TIME, TimetableExceptionType.FREE_TIME);
+
+        // when & then
+        assertNull(shiftResolver.findShiftAt(L_SUNDAY_AT_TEN));
+    }
+
+    @Test
+    public final void shouldPickNextShiftWhenFirstOneIsOff() {
+        // given
+        Entity otherMorningShift = mockShift(2L, "monday");
+        given(searchResult.getEntities()).willReturn(Lists.newArrayList(morningShift, otherMorningShift));
+        stubExceptions(morningShift, L_MONDAY_AT_TEN, TimetableExceptionType.FREE_TIME);
+
+        // when & then
+        assertSame(otherMorningShift, shiftResolver.findShiftAt(L_MONDAY_AT_TEN));
+    }
+
+    @Test
+    public final void shouldKeepShiftTablesUntilInvalidated() {
+        // when
+        shiftResolver.findShiftAt(L_MONDAY_AT_TEN);
+        shiftResolver.findShiftAt(L_MONDAY_AT_TWENTY);
+        shiftResolver.invalidate();
+        shiftResolver.findShiftAt(L_MONDAY_AT_TEN);
+
+        // then
+        verify(searchCriteriaBuilder, times(2)).list();
+    }
+
+    @Test
+    public final void shouldNotKeepShiftTableLoadedWhileShiftWasChanged() {
+        // given
+        given(searchResult.getEntities()).willAnswer(invocation -> {
+            shiftResolver.invalidate();
+            return Lists.newArrayList(morningShift);
+        }).willReturn(Collections.<Entity> emptyList());
+
+        // when
+        Entity loadedDuringChange = shiftResolver.findShiftAt(L_MONDAY_AT_TEN);
+        Entity loadedAfterChange = shiftResolver.findShiftAt(L_MONDAY_AT_TEN);
+
+        // then
+        assertSame(morningShift, loadedDuringChange);
+        assertNull(loadedAfterChange);
+        verify(searchCriteriaBuilder, times(2)).list();
+    }
+
+    @Test
+    public final void shouldKeepShiftTablesPerTenant() {
+        // given
+        shiftResolver.findShiftAt(L_MONDAY_AT_TEN);
+
+        // when
+        given(multiTenantService.getCurrentTenantId()).willReturn(2);
+        given(searchResult.getEntities()).willReturn(Collections.<Entity> emptyList());
+
+        // then
+        assertNull(shiftResolver.findShiftAt(L_MONDAY_AT_TEN));
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        assertSame(morningShift, shiftResolver.findShiftAt(L_MONDAY_AT_TEN));
+    }
+
+    private void stubExceptions(final Entity shift, final Date date, final TimetableExceptionType... types) {
+        List<Entity> exceptions = Lists.newArrayList();
+
+        for (TimetableExceptionType type : types) {
+            Entity exception = mock(Entity.class);
+            given(exception.getStringField(ShiftTimetableExceptionFields.TYPE)).willReturn(type.getStringValue());
+            exceptions.add(exception);
+        }
+
+        given(timetableExceptionService.findContainingForLineAndShift(null, shift, date, date)).willReturn(exceptions);
+    }
+
+    private Entity mockShift(final Long id, final String workingDay) {
+        Entity shift = mock(Entity.class);
+
+        given(shift.getId()).willReturn(id);
+        given(shift.copy()).willReturn(shift);
+        given(shift.getBooleanField(workingDay + "Working")).willReturn(true);
+        given(shift.getStringField(workingDay + "Hours")).willReturn(L_MORNING_HOURS);
+
+        return shift;
+    }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.shift;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
+import com.qcadoo.model.api.Entity;
+
+public class TimetableExceptionIntervalsTest {
+
+    private static final Long L_PRODUCTION_LINE_ID = 1L;
+
+    private Entity firstOfMay, firstWeekOfMay, secondOfMay, june;
+
+    private TimetableExceptionIntervals intervals;
+
+    @Before
+    public final void init() {
+        firstOfMay = mockException(date(1, 6), date(1, 14));
+        firstWeekOfMay = mockException(date(1, 0), date(7, 23));
+        secondOfMay = mockException(date(2, 6), date(2, 14));
+        june = mockException(new DateTime(2017, 6, 1, 0, 0).toDate(), new DateTime(2017, 6, 2, 0, 0).toDate());
+
+        List<TimetableExceptionIntervals.Interval> exceptions = Lists.newArrayList(
+                new TimetableExceptionIntervals.Interval(june, ImmutableList.of(L_PRODUCTION_LINE_ID)),
+                new TimetableExceptionIntervals.Interval(secondOfMay, Collections.<Long> emptyList()),
+                new TimetableExceptionIntervals.Interval(firstWeekOfMay, ImmutableList.of(L_PRODUCTION_LINE_ID)),
+                new TimetableExceptionIntervals.Interval(firstOfMay, ImmutableList.of(L_PRODUCTION_LINE_ID)));
+
+        intervals = new TimetableExceptionIntervals(exceptions);
+    }
+
+    @Test
+    public final void shouldFindOverlappingExceptionsInOrderOfStart() {
+        // when
+        List<Entity> result = intervals.findOverlapping(null, date(1, 12), date(2, 8));
+
+        // then
+        assertEquals(ImmutableList.of(firstWeekOfMay, firstOfMay, secondOfMay), result);
+    }
+
+    @Test
+    public final void shouldTreatBoundsAsInclusive() {
+        // when
+        List<Entity> result = intervals.findOverlapping(null, date(2, 14), date(2, 14));
+
+        // then
+        assertEquals(ImmutableList.of(firstWeekOfMay, secondOfMay), result);
+    }
+
+    @Test
+    public final void shouldFindOnlyExceptionsOfProductionLine() {
+        // when
+        List<Entity> result = intervals.findOverlapping(L_PRODUCTION_LINE_ID, date(1, 12), date(2, 8));
+
+        // then
+        assertEquals(ImmutableList.of(firstWeekOfMay, firstOfMay), result);
+    }
+
+    @Test
+    public final void shouldFindContainingExceptions() {
+        // when
+        List<Entity> result = intervals.findContaining(null, date(2, 7), date(2, 13));
+
+        // then
+        assertEquals(ImmutableList.of(firstWeekOfMay, secondOfMay), result);
+    }
+
+    @Test
+    public final void shouldFindNothingOutsideOfExceptions() {
+        // when
+        List<Entity> result = intervals.findOverlapping(null, date(10, 0), date(20, 0));
+
+        // then
+        assertTrue(result.isEmpty());
+    }
+
+    private Date date(final int dayOfMay, final int hourOfDay) {
+        return new DateTime(2017, 5, dayOfMay, hourOfDay, 0).toDate();
+    }
+
+    private Entity mockException(final Date from, final Date to) {
+        Entity exception = mock(Entity.class);
+
+        given(exception.getDateField(ShiftTimetableExceptionFields.FROM_DATE)).willReturn(from);
+        given(exception.getDateField(ShiftTimetableExceptionFields.TO_DATE)).willReturn(to);
+        given(exception.copy()).willReturn(exception);
+
+        return exception;
+    }
+
+}
@@ -25,6 +25,8 @@ package com.qcadoo.mes.costCalculation;
 
 import java.math.BigDecimal;
 
+import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationCache;
+import com.qcadoo.mes.operationCostCalculations.OperationsCostCalculationCache;
 import com.qcadoo.model.api.Entity;
 
 public interface CostCalculationService {
@@ -39,6 +41,21 @@ public interface CostCalculationService {
      */
     Entity calculateTotalCost(final Entity entity);
 
+    /**
+     * Calculates total cost, reusing product quantities, operation times and cost norms from given caches
+     * 
+     * @param entity
+     *            entity
+     * @param operationsCache
+     *            operations cost calculation cache
+     * @param productsCache
+     *            products cost calculation cache
+     * 
+     * @return entity
+     */
+    Entity calculateTotalCost(final Entity entity, final OperationsCostCalculationCache operationsCache,
+            final ProductsCostCalculationCache productsCache);
+
     /**
      * Calculates operations and products costs
      * 
@@ -37,8 +37,10 @@ import org.springframework.stereotype.Service;
 
 import com.qcadoo.mes.costCalculation.constants.CostCalculationFields;
 import com.qcadoo.mes.costCalculation.constants.SourceOfOperationCosts;
+import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationCache;
 import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationService;
 import com.qcadoo.mes.costNormsForOperation.constants.CalculateOperationCostMode;
+import com.qcadoo.mes.operationCostCalculations.OperationsCostCalculationCache;
 import com.qcadoo.mes.operationCostCalculations.OperationsCostCalculationService;
 import com.qcadoo.mes.technologies.constants.OperationProductOutComponentFields;
 import com.qcadoo.mes.technologies.constants.TechnologyFields;
@@ -64,9 +66,15 @@ public class CostCalculationServiceImpl implements CostCalculationService {
 
     @Override
     public Entity calculateTotalCost(final Entity entity) {
+        return calculateTotalCost(entity, new OperationsCostCalculationCache(), new ProductsCostCalculationCache());
+    }
+
+    @Override
+    public Entity calculateTotalCost(final Entity entity, final OperationsCostCalculationCache operationsCache,
+            final ProductsCostCalculationCache productsCache) {
         entity.setField(CostCalculationFields.DATE, new Date());
         // FIXME MAKU beware of side effects - order of computations matter!
-        calculateOperationsAndProductsCosts(entity);
+        calculateOperationsAndProductsCosts(entity, operationsCache, productsCache);
         final BigDecimal productionCosts = calculateProductionCost(entity);
         calculateMarginsAndOverheads(entity, productionCosts);
         final BigDecimal effectiveQuantity = getEffectiveQuantity(entity);
@@ -78,17 +86,22 @@ public class CostCalculationServiceImpl implements CostCalculationService {
 
     @Override
     public void calculateOperationsAndProductsCosts(final Entity entity) {
+        calculateOperationsAndProductsCosts(entity, new OperationsCostCalculationCache(), new ProductsCostCalculationCache());
+    }
+
+    private void calculateOperationsAndProductsCosts(final Entity entity, final OperationsCostCalculationCache operationsCache,
+            final ProductsCostCalculationCache productsCache) {
         boolean hourlyCostFromOperation = true;
         String sourceOfOperationCosts = entity.getStringField("sourceOfOperationCosts");
         if (sourceOfOperationCosts != null
                 && SourceOfOperationCosts.PARAMETERS.equals(SourceOfOperationCosts.parseString(sourceOfOperationCosts))) {
             hourlyCostFromOperation = false;
         }
-        operationsCostCalculationService.calculateOperationsCost(entity, hourlyCostFromOperation);
+        operationsCostCalculationService.calculateOperationsCost(entity, hourlyCostFromOperation, operationsCache);
 
         final String sourceOfMaterialCosts = entity.getStringField(CostCalculationFields.SOURCE_OF_MATERIAL_COSTS);
 
-        productsCostCalculationService.calculateTotalProductsCost(entity, sourceOfMaterialCosts);
+        productsCostCalculationService.calculateTotalProductsCost(entity, sourceOfMaterialCosts, productsCache);
     }
 
     @Override
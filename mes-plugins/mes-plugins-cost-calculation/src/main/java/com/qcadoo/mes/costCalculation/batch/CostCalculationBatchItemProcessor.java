@@ -0,0 +1,99 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costCalculation.batch;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.costCalculation.CostCalculationService;
+import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationCache;
+import com.qcadoo.mes.operationCostCalculations.OperationsCostCalculationCache;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.exception.EntityRuntimeException;
+
+@Service
+public class CostCalculationBatchItemProcessor {
+
+    @Autowired
+    private CostCalculationService costCalculationService;
+
+    /**
+     * Saves and calculates single, already numbered cost calculation in its own transaction, so failure of one item doesn't roll
+     * back the others.
+     * 
+     * @throws EntityRuntimeException
+     *             if cost calculation is invalid
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Entity calculate(final Entity costCalculation, final OperationsCostCalculationCache operationsCache,
+            final ProductsCostCalculationCache productsCache) {
+        return doCalculate(costCalculation, operationsCache, productsCache);
+    }
+
+    /**
+     * Saves and calculates many, already numbered cost calculations in one transaction. If any of them fails, none of them is
+     * saved.
+     * 
+     * @throws EntityRuntimeException
+     *             if any cost calculation is invalid
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<Entity> calculate(final List<Entity> costCalculations, final OperationsCostCalculationCache operationsCache,
+            final ProductsCostCalculationCache productsCache) {
+        List<Entity> savedCostCalculations = Lists.newArrayListWithCapacity(costCalculations.size());
+
+        for (Entity costCalculation : costCalculations) {
+            savedCostCalculations.add(doCalculate(costCalculation, operationsCache, productsCache));
+        }
+
+        return savedCostCalculations;
+    }
+
+    private Entity doCalculate(final Entity costCalculation, final OperationsCostCalculationCache operationsCache,
+            final ProductsCostCalculationCache productsCache) {
+        Entity savedCostCalculation = checkValid(costCalculation.getDataDefinition().save(costCalculation));
+
+        savedCostCalculation = checkValid(costCalculationService.calculateTotalCost(savedCostCalculation, operationsCache,
+                productsCache));
+
+        costCalculationService.calculateSellPriceOverhead(savedCostCalculation);
+        costCalculationService.calculateSellPrice(savedCostCalculation);
+
+        return checkValid(savedCostCalculation.getDataDefinition().save(savedCostCalculation));
+    }
+
+    private Entity checkValid(final Entity costCalculation) {
+        if (!costCalculation.isValid()) {
+            throw new EntityRuntimeException(costCalculation);
+        }
+
+        return costCalculation;
+    }
+
+}
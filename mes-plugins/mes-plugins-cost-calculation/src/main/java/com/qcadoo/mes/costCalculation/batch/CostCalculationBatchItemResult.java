@@ -0,0 +1,74 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costCalculation.batch;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.validators.ErrorMessage;
+
+public class CostCalculationBatchItemResult {
+
+    private final Entity source;
+
+    private final Entity costCalculation;
+
+    private final List<ErrorMessage> errors;
+
+    private CostCalculationBatchItemResult(final Entity source, final Entity costCalculation, final List<ErrorMessage> errors) {
+        this.source = source;
+        this.costCalculation = costCalculation;
+        this.errors = errors;
+    }
+
+    static CostCalculationBatchItemResult successful(final Entity source, final Entity costCalculation) {
+        return new CostCalculationBatchItemResult(source, costCalculation, Lists.newArrayList());
+    }
+
+    static CostCalculationBatchItemResult failed(final Entity source, final Entity costCalculation,
+            final List<ErrorMessage> errors) {
+        return new CostCalculationBatchItemResult(source, costCalculation, errors);
+    }
+
+    /**
+     * @return technology or order, for which calculation was made
+     */
+    public Entity getSource() {
+        return source;
+    }
+
+    public Entity getCostCalculation() {
+        return costCalculation;
+    }
+
+    public List<ErrorMessage> getErrors() {
+        return errors;
+    }
+
+    public boolean isSuccessful() {
+        return errors.isEmpty();
+    }
+
+}
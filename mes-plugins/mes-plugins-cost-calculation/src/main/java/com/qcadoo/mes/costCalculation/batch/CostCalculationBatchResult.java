@@ -0,0 +1,55 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costCalculation.batch;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+
+public class CostCalculationBatchResult {
+
+    private final List<CostCalculationBatchItemResult> items = Lists.newArrayList();
+
+    void add(final CostCalculationBatchItemResult item) {
+        items.add(item);
+    }
+
+    public List<CostCalculationBatchItemResult> getItems() {
+        return items;
+    }
+
+    public List<CostCalculationBatchItemResult> getSuccessful() {
+        return items.stream().filter(CostCalculationBatchItemResult::isSuccessful).collect(Collectors.toList());
+    }
+
+    public List<CostCalculationBatchItemResult> getFailed() {
+        return items.stream().filter(item -> !item.isSuccessful()).collect(Collectors.toList());
+    }
+
+    public boolean isSuccessful() {
+        return items.stream().allMatch(CostCalculationBatchItemResult::isSuccessful);
+    }
+
+}
@@ -0,0 +1,368 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costCalculation.batch;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.numbering.NumberAllocationService;
+import com.qcadoo.mes.basic.numbering.NumberSequence;
+import com.qcadoo.mes.costCalculation.constants.CostCalculationConstants;
+import com.qcadoo.mes.costCalculation.constants.CostCalculationFields;
+import com.qcadoo.mes.costCalculation.constants.SourceOfMaterialCosts;
+import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationCache;
+import com.qcadoo.mes.operationCostCalculations.OperationsCostCalculationCache;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.technologies.ProductQuantitiesService;
+import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.model.api.BigDecimalUtils;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.exception.EntityRuntimeException;
+import com.qcadoo.model.api.search.SearchRestrictions;
+import com.qcadoo.model.api.validators.ErrorMessage;
+import com.qcadoo.view.api.ViewDefinitionState;
+
+/**
+ * Calculates costs of many technologies or orders at once. Product quantities and operation runs of every distinct technology
+ * and quantity are prepared once, product cost norms are fetched with a single query, then calculations are saved in chunks,
+ * one transaction per chunk, sharing everything prepared before. When a chunk fails, its calculations are saved again one by
+ * one, each in its own transaction, to find out which of them failed. Numbers of all calculations are allocated up front as
+ * one range of the cost calculation number sequence.
+ */
+@Service
+public class CostCalculationBatchService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CostCalculationBatchService.class);
+
+    private static final List<String> L_TEMPLATE_FIELDS = Lists.newArrayList(CostCalculationFields.QUANTITY,
+            CostCalculationFields.PRODUCTION_LINE, CostCalculationFields.INCLUDE_TPZ,
+            CostCalculationFields.INCLUDE_ADDITIONAL_TIME, CostCalculationFields.PRINT_COST_NORMS_OF_MATERIALS,
+            CostCalculationFields.PRINT_OPERATION_NORMS, CostCalculationFields.SOURCE_OF_MATERIAL_COSTS,
+            CostCalculationFields.CALCULATE_MATERIAL_COSTS_MODE, CostCalculationFields.SOURCE_OF_OPERATION_COSTS,
+            CostCalculationFields.CALCULATE_OPERATION_COSTS_MODE, CostCalculationFields.PRODUCTION_COST_MARGIN,
+            CostCalculationFields.MATERIAL_COST_MARGIN, CostCalculationFields.ADDITIONAL_OVERHEAD,
+            CostCalculationFields.REGISTRATION_PRICE_OVERHEAD, CostCalculationFields.PROFIT, CostCalculationFields.DESCRIPTION);
+
+    private static final String L_INTERNAL_ERROR = "qcadooView.errorPage.error.internalError.explanation";
+
+    private static final List<String> L_PARAMETER_FIELDS = Lists.newArrayList(CostCalculationFields.SOURCE_OF_MATERIAL_COSTS,
+            CostCalculationFields.CALCULATE_MATERIAL_COSTS_MODE, CostCalculationFields.SOURCE_OF_OPERATION_COSTS,
+            CostCalculationFields.PRODUCTION_COST_MARGIN, CostCalculationFields.MATERIAL_COST_MARGIN,
+            CostCalculationFields.ADDITIONAL_OVERHEAD, CostCalculationFields.REGISTRATION_PRICE_OVERHEAD,
+            CostCalculationFields.PROFIT);
+
+    private static final String L_PARAMETER_FIELD_SUFFIX = "PB";
+
+    private static final String L_FORM = "form";
+
+    private static final int L_ITEMS_PER_TRANSACTION = 50;
+
+    private static final NumberSequence L_NUMBER_SEQUENCE = new NumberSequence(CostCalculationConstants.PLUGIN_IDENTIFIER,
+            CostCalculationConstants.MODEL_COST_CALCULATION, "", 6);
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private ProductQuantitiesService productQuantitiesService;
+
+    @Autowired
+    private CostCalculationBatchItemProcessor costCalculationBatchItemProcessor;
+
+    @Autowired
+    private NumberAllocationService numberAllocationService;
+
+    @Autowired
+    private ParameterService parameterService;
+
+    /**
+     * Synchronizes cost calculation number sequence with existing cost calculation numbers.
+     */
+    public void synchronizeNumberSequence() {
+        numberAllocationService.synchronize(L_NUMBER_SEQUENCE);
+    }
+
+    /**
+     * Generates number of cost calculation entered by hand from the same sequence as numbers of generated cost calculations.
+     * 
+     * @param view
+     *            View
+     */
+    public void generateAndInsertNumber(final ViewDefinitionState view) {
+        numberAllocationService.generateAndInsertNumber(view, L_NUMBER_SEQUENCE, L_FORM, CostCalculationFields.NUMBER);
+    }
+
+    /**
+     * Creates not saved cost calculation with default settings, taken from parameters the same way as for new cost calculation
+     * entered by hand, for quantity of one.
+     * 
+     * @return template cost calculation
+     */
+    public Entity createTemplate() {
+        Entity template = getCostCalculationDD().create();
+        Entity parameter = parameterService.getParameter();
+
+        for (String fieldName : L_PARAMETER_FIELDS) {
+            Object value = parameter.getField(fieldName + L_PARAMETER_FIELD_SUFFIX);
+
+            if (value != null) {
+                template.setField(fieldName, value);
+            }
+        }
+
+        template.setField(CostCalculationFields.QUANTITY, BigDecimal.ONE);
+
+        return template;
+    }
+
+    /**
+     * Calculates costs of given technologies, with settings and quantity taken from template cost calculation.
+     * 
+     * @param template
+     *            not saved cost calculation with settings
+     * @param technologies
+     *            technologies
+     * @param progressListener
+     *            listener notified after each technology, may be null
+     * 
+     * @return result for every technology
+     */
+    public CostCalculationBatchResult calculateForTechnologies(final Entity template, final Collection<Entity> technologies,
+            final CostCalculationBatchProgressListener progressListener) {
+        Map<Entity, Entity> costCalculations = Maps.newLinkedHashMap();
+
+        for (Entity technology : technologies) {
+            Entity costCalculation = createFromTemplate(template);
+
+            costCalculation.setField(CostCalculationFields.TECHNOLOGY, technology);
+            costCalculation.setField(CostCalculationFields.PRODUCT, technology.getBelongsToField(TechnologyFields.PRODUCT));
+
+            costCalculations.put(technology, costCalculation);
+        }
+
+        return calculate(costCalculations, progressListener);
+    }
+
+    /**
+     * Calculates costs of given orders, for their planned quantities, with settings taken from template cost calculation.
+     * 
+     * @param template
+     *            not saved cost calculation with settings
+     * @param orders
+     *            orders
+     * @param progressListener
+     *            listener notified after each order, may be null
+     * 
+     * @return result for every order
+     */
+    public CostCalculationBatchResult calculateForOrders(final Entity template, final Collection<Entity> orders,
+            final CostCalculationBatchProgressListener progressListener) {
+        Map<Entity, Entity> costCalculations = Maps.newLinkedHashMap();
+
+        for (Entity order : orders) {
+            Entity costCalculation = createFromTemplate(template);
+
+            costCalculation.setField(CostCalculationFields.ORDER, order);
+            costCalculation.setField(CostCalculationFields.TECHNOLOGY, order.getBelongsToField(OrderFields.TECHNOLOGY));
+            costCalculation.setField(CostCalculationFields.PRODUCT, order.getBelongsToField(OrderFields.PRODUCT));
+            costCalculation.setField(CostCalculationFields.QUANTITY, order.getDecimalField(OrderFields.PLANNED_QUANTITY));
+
+            if (order.getBelongsToField(OrderFields.PRODUCTION_LINE) != null) {
+                costCalculation.setField(CostCalculationFields.PRODUCTION_LINE,
+                        order.getBelongsToField(OrderFields.PRODUCTION_LINE));
+            }
+
+            costCalculations.put(order, costCalculation);
+        }
+
+        return calculate(costCalculations, progressListener);
+    }
+
+    private Entity createFromTemplate(final Entity template) {
+        Entity costCalculation = getCostCalculationDD().create();
+
+        for (String fieldName : L_TEMPLATE_FIELDS) {
+            if (template.getField(fieldName) != null) {
+                costCalculation.setField(fieldName, template.getField(fieldName));
+            }
+        }
+
+        return costCalculation;
+    }
+
+    private CostCalculationBatchResult calculate(final Map<Entity, Entity> costCalculationsBySource,
+            final CostCalculationBatchProgressListener progressListener) {
+        OperationsCostCalculationCache operationsCache = new OperationsCostCalculationCache();
+        ProductsCostCalculationCache productsCache = new ProductsCostCalculationCache();
+
+        prepare(costCalculationsBySource.values(), operationsCache, productsCache);
+
+        CostCalculationBatchResult result = new CostCalculationBatchResult();
+
+        int total = costCalculationsBySource.size();
+
+        Iterator<String> numbers = numberAllocationService.allocate(L_NUMBER_SEQUENCE, total).iterator();
+
+        List<Map.Entry<Entity, Entity>> sourcesAndCostCalculations = Lists.newArrayList(costCalculationsBySource.entrySet());
+
+        for (List<Map.Entry<Entity, Entity>> chunk : Lists.partition(sourcesAndCostCalculations, L_ITEMS_PER_TRANSACTION)) {
+            for (Map.Entry<Entity, Entity> sourceAndCostCalculation : chunk) {
+                sourceAndCostCalculation.getValue().setField(CostCalculationFields.NUMBER, numbers.next());
+            }
+
+            for (CostCalculationBatchItemResult item : calculate(chunk, operationsCache, productsCache)) {
+                result.add(item);
+
+                if (progressListener != null) {
+                    progressListener.onItemProcessed(result.getItems().size(), total, item);
+                }
+            }
+        }
+
+        LOG.info(String.format("Cost calculation batch finished: %d of %d calculated, %d failed", result.getSuccessful().size(),
+                total, result.getFailed().size()));
+
+        return result;
+    }
+
+    private List<CostCalculationBatchItemResult> calculate(final List<Map.Entry<Entity, Entity>> chunk,
+            final OperationsCostCalculationCache operationsCache, final ProductsCostCalculationCache productsCache) {
+        if (chunk.size() > 1) {
+            try {
+                List<Entity> savedCostCalculations = costCalculationBatchItemProcessor.calculate(
+                        chunk.stream().map(sourceAndCostCalculation -> sourceAndCostCalculation.getValue().copy())
+                                .collect(Collectors.toList()), operationsCache, productsCache);
+
+                List<CostCalculationBatchItemResult> items = Lists.newArrayListWithCapacity(chunk.size());
+
+                for (int index = 0; index < chunk.size(); index++) {
+                    items.add(CostCalculationBatchItemResult.successful(chunk.get(index).getKey(),
+                            savedCostCalculations.get(index)));
+                }
+
+                return items;
+            } catch (Exception e) {
+                LOG.debug("Cost calculation chunk failed, calculating its items one by one", e);
+            }
+        }
+
+        return chunk.stream().map(sourceAndCostCalculation -> calculate(sourceAndCostCalculation.getKey(),
+                sourceAndCostCalculation.getValue(), operationsCache, productsCache)).collect(Collectors.toList());
+    }
+
+    private CostCalculationBatchItemResult calculate(final Entity source, final Entity costCalculation,
+            final OperationsCostCalculationCache operationsCache, final ProductsCostCalculationCache productsCache) {
+        try {
+            Entity savedCostCalculation = costCalculationBatchItemProcessor.calculate(costCalculation.copy(), operationsCache,
+                    productsCache);
+
+            return CostCalculationBatchItemResult.successful(source, savedCostCalculation);
+        } catch (EntityRuntimeException e) {
+            List<ErrorMessage> errors = Lists.newArrayList(e.getGlobalErrors());
+            errors.addAll(e.getErrors().values());
+
+            return CostCalculationBatchItemResult.failed(source, costCalculation, errors);
+        } catch (Exception e) {
+            LOG.warn("Cost calculation for " + source.getDataDefinition().getName() + " with id " + source.getId()
+                    + " failed", e);
+
+            return CostCalculationBatchItemResult.failed(source, costCalculation,
+                    Lists.newArrayList(new ErrorMessage(L_INTERNAL_ERROR, false)));
+        }
+    }
+
+    private void prepare(final Collection<Entity> costCalculations, final OperationsCostCalculationCache operationsCache,
+            final ProductsCostCalculationCache productsCache) {
+        Map<List<Object>, Entity> distinctCostCalculations = Maps.newLinkedHashMap();
+
+        for (Entity costCalculation : costCalculations) {
+            Entity technology = costCalculation.getBelongsToField(CostCalculationFields.TECHNOLOGY);
+
+            if (technology == null) {
+                continue;
+            }
+
+            distinctCostCalculations.putIfAbsent(Arrays.asList(technology.getId(), getQuantity(costCalculation)
+                    .stripTrailingZeros(), costCalculation.getStringField(CostCalculationFields.SOURCE_OF_MATERIAL_COSTS)),
+                    costCalculation);
+        }
+
+        for (Entity costCalculation : distinctCostCalculations.values()) {
+            prepare(costCalculation, operationsCache, productsCache);
+        }
+
+        Set<Long> productIds = productsCache.getNeededProductIds();
+
+        if (!productIds.isEmpty()) {
+            productsCache.putProducts(getProductDD().find().add(SearchRestrictions.in("id", productIds)).list().getEntities());
+        }
+    }
+
+    private void prepare(final Entity costCalculation, final OperationsCostCalculationCache operationsCache,
+            final ProductsCostCalculationCache productsCache) {
+        Entity technology = costCalculation.getBelongsToField(CostCalculationFields.TECHNOLOGY);
+        BigDecimal quantity = getQuantity(costCalculation);
+
+        operationsCache.getProductQuantities(technology, quantity,
+                () -> productQuantitiesService.getProductComponentQuantities(technology, quantity));
+
+        if (SourceOfMaterialCosts.CURRENT_GLOBAL_DEFINITIONS_IN_PRODUCT.getStringValue().equals(
+                costCalculation.getStringField(CostCalculationFields.SOURCE_OF_MATERIAL_COSTS))) {
+            productsCache.getNeededProductQuantities(technology, quantity, () -> productQuantitiesService
+                    .getNeededProductQuantities(technology, quantity, MrpAlgorithm.ONLY_COMPONENTS));
+        }
+    }
+
+    private BigDecimal getQuantity(final Entity costCalculation) {
+        return BigDecimalUtils.convertNullToZero(costCalculation.getDecimalField(CostCalculationFields.QUANTITY));
+    }
+
+    private DataDefinition getCostCalculationDD() {
+        return dataDefinitionService.get(CostCalculationConstants.PLUGIN_IDENTIFIER,
+                CostCalculationConstants.MODEL_COST_CALCULATION);
+    }
+
+    private DataDefinition getProductDD() {
+        return dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT);
+    }
+
+}
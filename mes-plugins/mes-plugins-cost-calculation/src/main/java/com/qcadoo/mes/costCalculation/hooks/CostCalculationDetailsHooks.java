@@ -38,7 +38,7 @@ import com.qcadoo.commons.functional.Either;
 import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.mes.basic.constants.ProductFields;
 import com.qcadoo.mes.basic.util.CurrencyService;
-import com.qcadoo.mes.costCalculation.constants.CostCalculationConstants;
+import com.qcadoo.mes.costCalculation.batch.CostCalculationBatchService;
 import com.qcadoo.mes.costCalculation.constants.CostCalculationFields;
 import com.qcadoo.mes.costCalculation.constants.SourceOfOperationCosts;
 import com.qcadoo.mes.costNormsForOperation.constants.CalculateOperationCostMode;
@@ -51,7 +51,6 @@ import com.qcadoo.view.api.ViewDefinitionState;
 import com.qcadoo.view.api.components.*;
 import com.qcadoo.view.api.components.lookup.FilterValueHolder;
 import com.qcadoo.view.api.ribbon.RibbonActionItem;
-import com.qcadoo.view.api.utils.NumberGeneratorService;
 
 @Service
 public class CostCalculationDetailsHooks {
@@ -79,7 +78,7 @@ public class CostCalculationDetailsHooks {
     private static final String L_TOTAL_PIECEWORK_COSTS_CURRENCY = "totalPieceworkCostsCurrency";
 
     @Autowired
-    private NumberGeneratorService numberGeneratorService;
+    private CostCalculationBatchService costCalculationBatchService;
 
     @Autowired
     private CurrencyService currencyService;
@@ -216,8 +215,7 @@ public class CostCalculationDetailsHooks {
     }
 
     public void generateNumber(final ViewDefinitionState view) {
-        numberGeneratorService.generateAndInsertNumber(view, CostCalculationConstants.PLUGIN_IDENTIFIER,
-                CostCalculationConstants.MODEL_COST_CALCULATION, L_FORM, CostCalculationFields.NUMBER);
+        costCalculationBatchService.generateAndInsertNumber(view);
     }
 
     public void fillCurrencyFields(final ViewDefinitionState viewDefinitionState) {
@@ -0,0 +1,89 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costCalculation.listeners;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.costCalculation.batch.CostCalculationBatchResult;
+import com.qcadoo.mes.costCalculation.batch.CostCalculationBatchService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.view.api.ComponentState;
+import com.qcadoo.view.api.ComponentState.MessageType;
+import com.qcadoo.view.api.ViewDefinitionState;
+import com.qcadoo.view.api.components.GridComponent;
+
+@Service
+public class CostCalculationBatchListeners {
+
+    private static final String L_NUMBER = "number";
+
+    @Autowired
+    private CostCalculationBatchService costCalculationBatchService;
+
+    public void calculateCostsForSelectedTechnologies(final ViewDefinitionState view, final ComponentState state,
+            final String[] args) {
+        GridComponent technologiesGrid = (GridComponent) state;
+
+        List<Entity> technologies = technologiesGrid.getSelectedEntities();
+
+        if (technologies.isEmpty()) {
+            return;
+        }
+
+        addResultMessages(state, costCalculationBatchService.calculateForTechnologies(
+                costCalculationBatchService.createTemplate(), technologies, null));
+    }
+
+    public void calculateCostsForSelectedOrders(final ViewDefinitionState view, final ComponentState state, final String[] args) {
+        GridComponent ordersGrid = (GridComponent) state;
+
+        List<Entity> orders = ordersGrid.getSelectedEntities();
+
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        addResultMessages(state,
+                costCalculationBatchService.calculateForOrders(costCalculationBatchService.createTemplate(), orders, null));
+    }
+
+    private void addResultMessages(final ComponentState state, final CostCalculationBatchResult result) {
+        if (!result.getSuccessful().isEmpty()) {
+            state.addMessage("costCalculation.costCalculationBatch.info.calculated", MessageType.SUCCESS, false,
+                    String.valueOf(result.getSuccessful().size()));
+        }
+
+        if (!result.isSuccessful()) {
+            String numbers = result.getFailed().stream().map(item -> item.getSource().getStringField(L_NUMBER))
+                    .collect(Collectors.joining(", "));
+
+            state.addMessage("costCalculation.costCalculationBatch.error.notCalculated", MessageType.FAILURE, false, numbers);
+        }
+    }
+
+}
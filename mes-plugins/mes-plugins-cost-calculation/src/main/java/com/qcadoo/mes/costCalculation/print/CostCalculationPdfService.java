@@ -23,6 +23,7 @@
  */
 package com.qcadoo.mes.costCalculation.print;
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.lowagie.text.*;
@@ -39,6 +40,7 @@ import com.qcadoo.mes.costCalculation.print.utils.CostCalculationMaterial;
 import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationService;
 import com.qcadoo.mes.costNormsForOperation.constants.CalculateOperationCostMode;
 import com.qcadoo.mes.costNormsForOperation.constants.CalculationOperationComponentFields;
+import com.qcadoo.mes.costNormsForOperation.constants.CostNormsForOperationConstants;
 import com.qcadoo.mes.costNormsForOperation.constants.TechnologyOperationComponentFieldsCNFO;
 import com.qcadoo.mes.costNormsForProduct.constants.ProductFieldsCNFP;
 import com.qcadoo.mes.orders.constants.OrderFields;
@@ -52,7 +54,9 @@ import com.qcadoo.mes.technologies.dto.OperationProductComponentHolder;
 import com.qcadoo.mes.technologies.tree.ProductStructureTreeService;
 import com.qcadoo.mes.timeNormsForOperations.constants.TechnologyOperationComponentFieldsTNFO;
 import com.qcadoo.model.api.*;
-import com.qcadoo.model.api.utils.EntityTreeUtilsService;
+import com.qcadoo.model.api.search.SearchOrders;
+import com.qcadoo.model.api.search.SearchProjections;
+import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.report.api.FontUtils;
 import com.qcadoo.report.api.pdf.HeaderAlignment;
 import com.qcadoo.report.api.pdf.PdfDocumentService;
@@ -101,6 +105,18 @@ public class CostCalculationPdfService extends PdfDocumentService {
 
     private static final String L_TAB_IN_TEXT = "\t \t \t";
 
+    private static final String L_COST_CALCULATION = "costCalculation";
+
+    private static final String L_ID = "id";
+
+    private static final String L_PARENT = "parent";
+
+    private static final String L_PARENT_ID = "parentId";
+
+    private static final String L_PRIORITY = "priority";
+
+    private static final int L_ROWS_PER_FLUSH = 100;
+
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
@@ -119,9 +135,6 @@ public class CostCalculationPdfService extends PdfDocumentService {
     @Autowired
     private PdfHelper pdfHelper;
 
-    @Autowired
-    private EntityTreeUtilsService entityTreeUtilsService;
-
     @Autowired
     private ProductQuantitiesService productQuantitiesService;
 
@@ -175,8 +188,7 @@ public class CostCalculationPdfService extends PdfDocumentService {
 
         document.add(new Paragraph(translationService
                 .translate("costCalculation.costCalculationDetails.report.paragraph", locale), FontUtils.getDejavuBold11Dark()));
-        PdfPTable materialsTable = addMaterialsTable(costCalculation, locale);
-        document.add(materialsTable);
+        addMaterialsTable(document, costCalculation, locale);
 
         document.add(Chunk.NEWLINE);
         document.add(new Paragraph(translationService.translate("costCalculation.costCalculationDetails.report.paragraph2",
@@ -186,9 +198,9 @@ public class CostCalculationPdfService extends PdfDocumentService {
                 .getStringField(CostCalculationFields.CALCULATE_OPERATION_COSTS_MODE));
 
         if (CalculateOperationCostMode.HOURLY.equals(calculateOperationCostMode)) {
-            document.add(addHourlyCostsTable(costCalculation, locale));
+            addHourlyCostsTable(document, costCalculation, locale);
         } else if (CalculateOperationCostMode.PIECEWORK.equals(calculateOperationCostMode)) {
-            document.add(addTableAboutPieceworkCost(costCalculation, locale));
+            addTableAboutPieceworkCost(document, costCalculation, locale);
         } else {
             throw new IllegalStateException("Unsupported CalculateOperationCostMode");
         }
@@ -600,7 +612,8 @@ public class CostCalculationPdfService extends PdfDocumentService {
         table.addCell(cellTable);
     }
 
-    public PdfPTable addMaterialsTable(final Entity costCalculation, final Locale locale) {
+    public void addMaterialsTable(final Document document, final Entity costCalculation, final Locale locale)
+            throws DocumentException {
         List<String> materialsTableHeader = Lists.newArrayList();
         Map<String, HeaderAlignment> alignments = Maps.newHashMap();
 
@@ -619,6 +632,7 @@ public class CostCalculationPdfService extends PdfDocumentService {
 
         PdfPTable materialsTable = pdfHelper.createTableWithHeader(materialsTableHeader.size(), materialsTableHeader, false,
                 alignments);
+        materialsTable.setComplete(false);
 
         try {
             float[] columnWidths = { 1f, 1f, 0.5f, 1f, 1f, 1.5f };
@@ -645,6 +659,7 @@ public class CostCalculationPdfService extends PdfDocumentService {
         MathContext mathContext = numberService.getMathContext();
         List<CostCalculationMaterial> sortedMaterials = costCalculationMaterialsService.getSortedMaterialsFromProductQuantities(
                 costCalculation, neededProductQuantities, order);
+        int rows = 0;
         for (CostCalculationMaterial material : sortedMaterials) {
 
             materialsTable.addCell(new Phrase(material.getProductNumber(), material.getFont()));
@@ -660,6 +675,8 @@ public class CostCalculationPdfService extends PdfDocumentService {
             materialsTable.addCell(new Phrase(numberService.format(material.getTotalCost()), material.getFont()));
 
             materialsTable.getDefaultCell().setHorizontalAlignment(Element.ALIGN_LEFT);
+
+            flushEveryRowsPerFlush(document, materialsTable, ++rows);
         }
 
         BigDecimal totalMaterialCosts = costCalculation.getDecimalField(CostCalculationFields.TOTAL_MATERIAL_COSTS);
@@ -683,7 +700,8 @@ public class CostCalculationPdfService extends PdfDocumentService {
 
         materialsTable.getDefaultCell().setHorizontalAlignment(Element.ALIGN_LEFT);
 
-        return materialsTable;
+        materialsTable.setComplete(true);
+        document.add(materialsTable);
     }
 
     private Map<Long, BigDecimal> getNeededProductQuantities(final Entity costCalculationOrProductionBalance,
@@ -691,7 +709,8 @@ public class CostCalculationPdfService extends PdfDocumentService {
         return productQuantitiesService.getNeededProductQuantities(technology, quantity, algorithm);
     }
 
-    private PdfPTable addHourlyCostsTable(final Entity costCalculation, final Locale locale) {
+    private void addHourlyCostsTable(final Document document, final Entity costCalculation, final Locale locale)
+            throws DocumentException {
         List<String> hourlyCostsTableHeader = Lists.newArrayList();
 
         hourlyCostsTableHeader.addAll(Arrays
@@ -712,11 +731,9 @@ public class CostCalculationPdfService extends PdfDocumentService {
         alignments.put(translationService.translate(L_COLUMN_HEADER_MARGIN, locale), HeaderAlignment.RIGHT);
         alignments.put(translationService.translate(L_COLUMN_HEADER_TOTAL_COSTS, locale), HeaderAlignment.RIGHT);
 
-        List<Entity> calculationOperationComponents = costCalculation
-                .getHasManyField(CostCalculationFields.CALCULATION_OPERATION_COMPONENTS);
-
         PdfPTable hourlyCostsTable = pdfHelper.createTableWithHeader(hourlyCostsTableHeader.size(), hourlyCostsTableHeader,
                 false, alignments);
+        hourlyCostsTable.setComplete(false);
 
         try {
             float[] columnWidths = { 1f, 0.75f, 1f, 1f, 1f, 1f, 1f, 1.25f };
@@ -726,7 +743,9 @@ public class CostCalculationPdfService extends PdfDocumentService {
             throw new IllegalStateException(e.getMessage(), e);
         }
 
-        if (calculationOperationComponents != null && !calculationOperationComponents.isEmpty()) {
+        Iterable<Entity> calculationOperationComponents = getCalculationOperationComponents(costCalculation);
+
+        if (calculationOperationComponents.iterator().hasNext()) {
             Integer totalMachineWorkTimeSummary = 0;
             Integer totalLaborWorkTimeSummary = 0;
 
@@ -734,6 +753,7 @@ public class CostCalculationPdfService extends PdfDocumentService {
 
             MathContext mathContext = numberService.getMathContext();
 
+            int rows = 0;
             for (Entity calculationOperationComponent : calculationOperationComponents) {
                 Integer machineWorkTime = calculationOperationComponent
                         .getIntegerField(CalculationOperationComponentFields.MACHINE_WORK_TIME);
@@ -771,6 +791,8 @@ public class CostCalculationPdfService extends PdfDocumentService {
                 totalLaborWorkTimeSummary += IntegerUtils.convertNullToZero(laborWorkTime);
 
                 totalOperationCostSummary = totalOperationCostSummary.add(operationCost, mathContext);
+
+                flushEveryRowsPerFlush(document, hourlyCostsTable, ++rows);
             }
 
             BigDecimal productionCostMarginValue = costCalculation
@@ -801,10 +823,12 @@ public class CostCalculationPdfService extends PdfDocumentService {
             hourlyCostsTable.getDefaultCell().setHorizontalAlignment(Element.ALIGN_LEFT);
         }
 
-        return hourlyCostsTable;
+        hourlyCostsTable.setComplete(true);
+        document.add(hourlyCostsTable);
     }
 
-    private PdfPTable addTableAboutPieceworkCost(final Entity costCalculation, final Locale locale) {
+    private void addTableAboutPieceworkCost(final Document document, final Entity costCalculation, final Locale locale)
+            throws DocumentException {
         List<String> pieceworkCostsTableHeader = Lists.newArrayList();
         Map<String, HeaderAlignment> alignments = Maps.newHashMap();
 
@@ -826,11 +850,9 @@ public class CostCalculationPdfService extends PdfDocumentService {
         alignments.put(translationService.translate(L_COLUMN_HEADER_MARGIN, locale), HeaderAlignment.RIGHT);
         alignments.put(translationService.translate(L_COLUMN_HEADER_TOTAL_COSTS, locale), HeaderAlignment.RIGHT);
 
-        List<Entity> calculationOperationComponents = costCalculation
-                .getTreeField(CostCalculationFields.CALCULATION_OPERATION_COMPONENTS);
-
         PdfPTable pieceworkCostsTable = pdfHelper.createTableWithHeader(pieceworkCostsTableHeader.size(),
                 pieceworkCostsTableHeader, false, alignments);
+        pieceworkCostsTable.setComplete(false);
 
         try {
             float[] columnWidths = { 1f, 0.75f, 1f, 1f, 1f, 1.25f };
@@ -839,12 +861,15 @@ public class CostCalculationPdfService extends PdfDocumentService {
             throw new IllegalStateException(e.getMessage(), e);
         }
 
-        if (!calculationOperationComponents.isEmpty()) {
+        Iterable<Entity> calculationOperationComponents = getCalculationOperationComponents(costCalculation);
+
+        if (calculationOperationComponents.iterator().hasNext()) {
             BigDecimal totalOperationCostSummary = BigDecimal.ZERO;
             BigDecimal totalPieces = BigDecimal.ZERO;
 
             MathContext mathContext = numberService.getMathContext();
 
+            int rows = 0;
             for (Entity calculationOperationComponent : calculationOperationComponents) {
                 BigDecimal pieces = calculationOperationComponent.getDecimalField(CalculationOperationComponentFields.PIECES);
                 BigDecimal operationCost = calculationOperationComponent
@@ -870,6 +895,8 @@ public class CostCalculationPdfService extends PdfDocumentService {
                 totalPieces = totalPieces.add(pieces, mathContext);
 
                 totalOperationCostSummary = totalOperationCostSummary.add(operationCost, mathContext);
+
+                flushEveryRowsPerFlush(document, pieceworkCostsTable, ++rows);
             }
 
             BigDecimal productionCostMarginValue = costCalculation
@@ -895,7 +922,85 @@ public class CostCalculationPdfService extends PdfDocumentService {
             pieceworkCostsTable.getDefaultCell().setHorizontalAlignment(Element.ALIGN_LEFT);
         }
 
-        return pieceworkCostsTable;
+        pieceworkCostsTable.setComplete(true);
+        document.add(pieceworkCostsTable);
+    }
+
+    private Iterable<Entity> getCalculationOperationComponents(final Entity costCalculation) {
+        List<List<Long>> pages = Lists.partition(getCalculationOperationComponentIdsInTreeOrder(costCalculation),
+                L_ROWS_PER_FLUSH);
+
+        return () -> new AbstractIterator<Entity>() {
+
+            private final Iterator<List<Long>> pagesIterator = pages.iterator();
+
+            private Iterator<Entity> page = Collections.emptyIterator();
+
+            @Override
+            protected Entity computeNext() {
+                if (!page.hasNext() && pagesIterator.hasNext()) {
+                    page = getCalculationOperationComponentsPage(pagesIterator.next()).iterator();
+                }
+
+                return page.hasNext() ? page.next() : endOfData();
+            }
+        };
+    }
+
+    private List<Long> getCalculationOperationComponentIdsInTreeOrder(final Entity costCalculation) {
+        List<Entity> nodes = getCalculationOperationComponentDD()
+                .find()
+                .setProjection(
+                        SearchProjections.list().add(SearchProjections.alias(SearchProjections.id(), L_ID))
+                                .add(SearchProjections.alias(SearchProjections.field(L_PARENT + "." + L_ID), L_PARENT_ID)))
+                .add(SearchRestrictions.belongsTo(L_COST_CALCULATION, costCalculation)).addOrder(SearchOrders.asc(L_PRIORITY))
+                .list().getEntities();
+
+        Map<Long, List<Long>> childrenByParentId = Maps.newHashMap();
+
+        for (Entity node : nodes) {
+            childrenByParentId.computeIfAbsent((Long) node.getField(L_PARENT_ID), parentId -> Lists.newArrayList()).add(
+                    (Long) node.getField(L_ID));
+        }
+
+        List<Long> ids = Lists.newArrayListWithCapacity(nodes.size());
+        Deque<Long> toVisit = new ArrayDeque<>(Lists.reverse(childrenByParentId.getOrDefault(null,
+                Collections.<Long> emptyList())));
+
+        while (!toVisit.isEmpty()) {
+            Long id = toVisit.pop();
+
+            ids.add(id);
+
+            for (Long childId : Lists.reverse(childrenByParentId.getOrDefault(id, Collections.<Long> emptyList()))) {
+                toVisit.push(childId);
+            }
+        }
+
+        return ids;
+    }
+
+    private List<Entity> getCalculationOperationComponentsPage(final List<Long> ids) {
+        Map<Long, Entity> calculationOperationComponents = Maps.newHashMap();
+
+        for (Entity calculationOperationComponent : getCalculationOperationComponentDD().find()
+                .add(SearchRestrictions.in(L_ID, ids)).list().getEntities()) {
+            calculationOperationComponents.put(calculationOperationComponent.getId(), calculationOperationComponent);
+        }
+
+        return ids.stream().map(calculationOperationComponents::get).collect(Collectors.toList());
+    }
+
+    private DataDefinition getCalculationOperationComponentDD() {
+        return dataDefinitionService.get(CostNormsForOperationConstants.PLUGIN_IDENTIFIER,
+                CostNormsForOperationConstants.MODEL_CALCULATION_OPERATION_COMPONENT);
+    }
+
+    private void flushEveryRowsPerFlush(final Document document, final PdfPTable table, final int rows)
+            throws DocumentException {
+        if (rows % L_ROWS_PER_FLUSH == 0) {
+            document.add(table);
+        }
     }
 
     public PdfPTable addOptionTablePrintCostNormsOfMaterials(final Entity costCalculation, final Locale locale) {
@@ -963,7 +1068,7 @@ public class CostCalculationPdfService extends PdfDocumentService {
                 document.add(Chunk.NEWLINE);
                 document.add(new Paragraph(translationService.translate(
                         "costCalculation.costCalculationDetails.report.paragraph4", locale), FontUtils.getDejavuBold11Dark()));
-                document.add(addOptionTablePrintOperationNormsPiecework(costCalculation, locale));
+                addOptionTablePrintOperationNormsPiecework(document, costCalculation, locale);
             } else if (CalculateOperationCostMode.HOURLY.equals(calculateOperationCostMode)) {
                 document.add(Chunk.NEWLINE);
                 document.add(new Paragraph(translationService.translate(
@@ -982,8 +1087,7 @@ public class CostCalculationPdfService extends PdfDocumentService {
                         L_COST_CALCULATION_COST_CALCULATION_DETAILS_REPORT_COLUMN_HEADER_NAME).stream()
                 .map(translate -> translationService.translate(translate, locale)).collect(Collectors.toList()));
 
-        List<Entity> calculationOperationComponents = entityTreeUtilsService.getSortedEntities(costCalculation
-                .getTreeField(CostCalculationFields.CALCULATION_OPERATION_COMPONENTS));
+        Iterable<Entity> calculationOperationComponents = getCalculationOperationComponents(costCalculation);
 
         for (Entity calculationOperationComponent : calculationOperationComponents) {
             PdfPTable panelTableHeader = pdfHelper.createPanelTable(2);
@@ -1075,7 +1179,8 @@ public class CostCalculationPdfService extends PdfDocumentService {
         }
     }
 
-    public PdfPTable addOptionTablePrintOperationNormsPiecework(final Entity costCalculation, final Locale locale) {
+    public void addOptionTablePrintOperationNormsPiecework(final Document document, final Entity costCalculation,
+            final Locale locale) throws DocumentException {
         List<String> optionTableHeader = Lists.newArrayList();
 
         optionTableHeader.addAll(Arrays
@@ -1085,12 +1190,13 @@ public class CostCalculationPdfService extends PdfDocumentService {
                         "costCalculation.costCalculationDetails.report.columnHeader.forNumberOfOperations").stream()
                 .map(translate -> translationService.translate(translate, locale)).collect(Collectors.toList()));
 
-        List<Entity> calculationOperationComponents = entityTreeUtilsService.getSortedEntities(costCalculation
-                .getTreeField(CostCalculationFields.CALCULATION_OPERATION_COMPONENTS));
+        Iterable<Entity> calculationOperationComponents = getCalculationOperationComponents(costCalculation);
 
         PdfPTable operationNormsTable = pdfHelper.createTableWithHeader(optionTableHeader.size(), optionTableHeader, false);
         operationNormsTable.setSpacingBefore(10);
+        operationNormsTable.setComplete(false);
 
+        int rows = 0;
         for (Entity calculationOperationComponent : calculationOperationComponents) {
             Entity operation = calculationOperationComponent.getBelongsToField(CalculationOperationComponentFields.OPERATION);
 
@@ -1111,9 +1217,12 @@ public class CostCalculationPdfService extends PdfDocumentService {
 
             operationNormsTable.addCell(new Phrase((numberOfOperations == null) ? "" : numberOfOperations.toString(), FontUtils
                     .getDejavuRegular7Dark()));
+
+            flushEveryRowsPerFlush(document, operationNormsTable, ++rows);
         }
 
-        return operationNormsTable;
+        operationNormsTable.setComplete(true);
+        document.add(operationNormsTable);
     }
 
     @Override
@@ -0,0 +1,191 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costCalculation.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.costCalculation.CostCalculationService;
+import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationCache;
+import com.qcadoo.mes.operationCostCalculations.OperationsCostCalculationCache;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.exception.EntityRuntimeException;
+
+public class CostCalculationBatchItemProcessorTest {
+
+    private CostCalculationBatchItemProcessor costCalculationBatchItemProcessor;
+
+    @Mock
+    private CostCalculationService costCalculationService;
+
+    @Mock
+    private DataDefinition costCalculationDD;
+
+    @Mock
+    private Entity costCalculation, savedCostCalculation, calculatedCostCalculation, finalCostCalculation;
+
+    private OperationsCostCalculationCache operationsCache;
+
+    private ProductsCostCalculationCache productsCache;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        costCalculationBatchItemProcessor = new CostCalculationBatchItemProcessor();
+
+        setField(costCalculationBatchItemProcessor, "costCalculationService", costCalculationService);
+
+        operationsCache = new OperationsCostCalculationCache();
+        productsCache = new ProductsCostCalculationCache();
+
+        for (Entity entity : new Entity[] { costCalculation, savedCostCalculation, calculatedCostCalculation,
+                finalCostCalculation }) {
+            when(entity.getDataDefinition()).thenReturn(costCalculationDD);
+            when(entity.isValid()).thenReturn(true);
+        }
+
+        when(costCalculationDD.save(costCalculation)).thenReturn(savedCostCalculation);
+        when(costCalculationService.calculateTotalCost(savedCostCalculation, operationsCache, productsCache)).thenReturn(
+                calculatedCostCalculation);
+        when(costCalculationDD.save(calculatedCostCalculation)).thenReturn(finalCostCalculation);
+    }
+
+    @Test
+    public final void shouldSaveCalculateAndSaveAgainWithSharedCaches() {
+        // when
+        Entity result = costCalculationBatchItemProcessor.calculate(costCalculation, operationsCache, productsCache);
+
+        // then
+        assertSame(finalCostCalculation, result);
+
+        InOrder inOrder = inOrder(costCalculationDD, costCalculationService);
+        inOrder.verify(costCalculationDD).save(costCalculation);
+        inOrder.verify(costCalculationService).calculateTotalCost(savedCostCalculation, operationsCache, productsCache);
+        inOrder.verify(costCalculationService).calculateSellPriceOverhead(calculatedCostCalculation);
+        inOrder.verify(costCalculationService).calculateSellPrice(calculatedCostCalculation);
+        inOrder.verify(costCalculationDD).save(calculatedCostCalculation);
+    }
+
+    @Test(expected = EntityRuntimeException.class)
+    public final void shouldNotCalculateCostCalculationWhichCannotBeSaved() {
+        // given
+        when(savedCostCalculation.isValid()).thenReturn(false);
+
+        // when
+        try {
+            costCalculationBatchItemProcessor.calculate(costCalculation, operationsCache, productsCache);
+        } finally {
+            // then
+            verify(costCalculationService, never()).calculateTotalCost(any(Entity.class),
+                    any(OperationsCostCalculationCache.class), any(ProductsCostCalculationCache.class));
+        }
+    }
+
+    @Test(expected = EntityRuntimeException.class)
+    public final void shouldFailWhenCalculatedCostsAreInvalid() {
+        // given
+        when(calculatedCostCalculation.isValid()).thenReturn(false);
+
+        // when
+        try {
+            costCalculationBatchItemProcessor.calculate(costCalculation, operationsCache, productsCache);
+        } finally {
+            // then
+            verify(costCalculationService, never()).calculateSellPrice(any(Entity.class));
+            verify(costCalculationDD, never()).save(calculatedCostCalculation);
+        }
+    }
+
+    @Test(expected = EntityRuntimeException.class)
+    public final void shouldFailWhenFinalSaveIsInvalid() {
+        // given
+        Entity invalid = mock(Entity.class);
+        when(invalid.isValid()).thenReturn(false);
+        when(costCalculationDD.save(calculatedCostCalculation)).thenReturn(invalid);
+
+        // when
+        costCalculationBatchItemProcessor.calculate(costCalculation, operationsCache, productsCache);
+    }
+
+    @Test
+    public final void shouldCalculateManyCostCalculationsInOrder() {
+        // given
+        Entity otherCostCalculation = mock(Entity.class);
+        Entity otherSavedCostCalculation = mock(Entity.class);
+        Entity otherFinalCostCalculation = mock(Entity.class);
+
+        for (Entity entity : new Entity[] { otherCostCalculation, otherSavedCostCalculation, otherFinalCostCalculation }) {
+            when(entity.getDataDefinition()).thenReturn(costCalculationDD);
+            when(entity.isValid()).thenReturn(true);
+        }
+
+        when(costCalculationDD.save(otherCostCalculation)).thenReturn(otherSavedCostCalculation);
+        when(costCalculationService.calculateTotalCost(otherSavedCostCalculation, operationsCache, productsCache)).thenReturn(
+                otherSavedCostCalculation);
+        when(costCalculationDD.save(otherSavedCostCalculation)).thenReturn(otherFinalCostCalculation);
+
+        // when
+        List<Entity> result = costCalculationBatchItemProcessor.calculate(
+                Lists.newArrayList(costCalculation, otherCostCalculation), operationsCache, productsCache);
+
+        // then
+        assertEquals(Lists.newArrayList(finalCostCalculation, otherFinalCostCalculation), result);
+    }
+
+    @Test(expected = EntityRuntimeException.class)
+    public final void shouldStopCalculatingManyCostCalculationsOnFirstInvalid() {
+        // given
+        Entity otherCostCalculation = mock(Entity.class);
+
+        when(savedCostCalculation.isValid()).thenReturn(false);
+
+        // when
+        try {
+            costCalculationBatchItemProcessor.calculate(Lists.newArrayList(costCalculation, otherCostCalculation),
+                    operationsCache, productsCache);
+        } finally {
+            // then
+            verify(costCalculationDD, never()).save(otherCostCalculation);
+        }
+    }
+
+}
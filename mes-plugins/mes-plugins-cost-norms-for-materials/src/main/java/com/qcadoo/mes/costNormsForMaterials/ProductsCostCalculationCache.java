@@ -0,0 +1,75 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costNormsForMaterials;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Needed component quantities and products with their cost norms, shared between product cost calculations of the same
+ * technology and quantity. Quantities are compared regardless of their scale.
+ */
+public class ProductsCostCalculationCache {
+
+    private final Map<List<Object>, Map<Long, BigDecimal>> neededProductQuantities = Maps.newHashMap();
+
+    private final Map<Long, Entity> products = Maps.newHashMap();
+
+    public Map<Long, BigDecimal> getNeededProductQuantities(final Entity technology, final BigDecimal quantity,
+            final Supplier<Map<Long, BigDecimal>> loader) {
+        return neededProductQuantities.computeIfAbsent(Arrays.asList(technology.getId(), quantity.stripTrailingZeros()),
+                k -> loader.get());
+    }
+
+    public Entity getProduct(final Long productId, final Function<Long, Entity> loader) {
+        return products.computeIfAbsent(productId, loader);
+    }
+
+    public void putProducts(final Collection<Entity> productsToPut) {
+        for (Entity product : productsToPut) {
+            products.put(product.getId(), product);
+        }
+    }
+
+    public Set<Long> getNeededProductIds() {
+        Set<Long> productIds = Sets.newHashSet();
+
+        for (Map<Long, BigDecimal> quantities : neededProductQuantities.values()) {
+            productIds.addAll(quantities.keySet());
+        }
+
+        return productIds;
+    }
+
+}
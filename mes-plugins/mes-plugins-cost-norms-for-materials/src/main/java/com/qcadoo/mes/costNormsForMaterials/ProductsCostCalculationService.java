@@ -31,6 +31,9 @@ public interface ProductsCostCalculationService {
 
     void calculateTotalProductsCost(final Entity costCalculation, final String sourceOfMaterialCosts);
 
+    void calculateTotalProductsCost(final Entity costCalculation, final String sourceOfMaterialCosts,
+            final ProductsCostCalculationCache cache);
+
     BigDecimal calculateProductCostForGivenQuantity(final Entity product, final BigDecimal quantity,
             final String calculateMaterialCostsMode);
 
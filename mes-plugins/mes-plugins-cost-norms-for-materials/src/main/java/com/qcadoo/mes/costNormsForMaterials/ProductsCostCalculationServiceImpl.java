@@ -69,7 +69,14 @@ public class ProductsCostCalculationServiceImpl implements ProductsCostCalculati
 
     @Override
     public void calculateTotalProductsCost(final Entity entity, final String sourceOfMaterialCosts) {
-        Map<Entity, BigDecimal> listProductWithCost = calculateListProductsCostForPlannedQuantity(entity, sourceOfMaterialCosts);
+        calculateTotalProductsCost(entity, sourceOfMaterialCosts, new ProductsCostCalculationCache());
+    }
+
+    @Override
+    public void calculateTotalProductsCost(final Entity entity, final String sourceOfMaterialCosts,
+            final ProductsCostCalculationCache cache) {
+        Map<Entity, BigDecimal> listProductWithCost = calculateListProductsCostForPlannedQuantity(entity, sourceOfMaterialCosts,
+                cache);
         BigDecimal result = BigDecimal.ZERO;
         for (Entry<Entity, BigDecimal> productWithCost : listProductWithCost.entrySet()) {
             result = result.add(productWithCost.getValue(), numberService.getMathContext());
@@ -78,7 +85,7 @@ public class ProductsCostCalculationServiceImpl implements ProductsCostCalculati
     }
 
     private Map<Entity, BigDecimal> calculateListProductsCostForPlannedQuantity(final Entity entity,
-            final String sourceOfMaterialCosts) {
+            final String sourceOfMaterialCosts, final ProductsCostCalculationCache cache) {
         checkArgument(entity != null);
         BigDecimal quantity = BigDecimalUtils.convertNullToZero(entity.getDecimalField("quantity"));
 
@@ -93,7 +100,7 @@ public class ProductsCostCalculationServiceImpl implements ProductsCostCalculati
         if ("02fromOrdersMaterialCosts".equals(sourceOfMaterialCosts)) {
             return getProductWithCostForPlannedQuantities(technology, quantity, calculateMaterialCostsMode, order);
         } else if ("01currentGlobalDefinitionsInProduct".equals(sourceOfMaterialCosts)) {
-            return getProductWithCostForPlannedQuantities(entity, technology, quantity, calculateMaterialCostsMode);
+            return getProductWithCostForPlannedQuantities(technology, quantity, calculateMaterialCostsMode, cache);
         }
 
         throw new IllegalStateException("sourceOfProductCosts is neither FROM_ORDER nor GLOBAL");
@@ -113,13 +120,13 @@ public class ProductsCostCalculationServiceImpl implements ProductsCostCalculati
         return costPerUnit.multiply(quantity, numberService.getMathContext());
     }
 
-    private Map<Entity, BigDecimal> getProductWithCostForPlannedQuantities(final Entity entity, final Entity technology,
-                                                                           final BigDecimal quantity, final String calculateMaterialCostsMode) {
-        Map<Long, BigDecimal> neededProductQuantities = getNeededProductQuantities(entity, technology, quantity,
-                MrpAlgorithm.ONLY_COMPONENTS);
+    private Map<Entity, BigDecimal> getProductWithCostForPlannedQuantities(final Entity technology, final BigDecimal quantity,
+            final String calculateMaterialCostsMode, final ProductsCostCalculationCache cache) {
+        Map<Long, BigDecimal> neededProductQuantities = cache.getNeededProductQuantities(technology, quantity,
+                () -> getNeededProductQuantities(technology, quantity, MrpAlgorithm.ONLY_COMPONENTS));
         Map<Entity, BigDecimal> results = new HashMap<>();
         for (Entry<Long, BigDecimal> productQuantity : neededProductQuantities.entrySet()) {
-            Entity product = productQuantitiesService.getProduct(productQuantity.getKey());
+            Entity product = cache.getProduct(productQuantity.getKey(), productQuantitiesService::getProduct);
             BigDecimal thisProductsCost = calculateProductCostForGivenQuantity(product, productQuantity.getValue(),
                     calculateMaterialCostsMode);
             results.put(product, thisProductsCost);
@@ -127,8 +134,8 @@ public class ProductsCostCalculationServiceImpl implements ProductsCostCalculati
         return results;
     }
 
-    private Map<Long, BigDecimal> getNeededProductQuantities(final Entity entity, final Entity technology,
-            final BigDecimal quantity, final MrpAlgorithm algorithm) {
+    private Map<Long, BigDecimal> getNeededProductQuantities(final Entity technology, final BigDecimal quantity,
+            final MrpAlgorithm algorithm) {
         return productQuantitiesService.getNeededProductQuantities(technology, quantity, algorithm);
     }
 
@@ -0,0 +1,124 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costNormsForMaterials;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.qcadoo.model.api.Entity;
+
+public class ProductsCostCalculationCacheTest {
+
+    private ProductsCostCalculationCache cache;
+
+    @Mock
+    private Supplier<Map<Long, BigDecimal>> neededQuantitiesLoader;
+
+    @Mock
+    private Function<Long, Entity> productLoader;
+
+    private Entity technology;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        cache = new ProductsCostCalculationCache();
+
+        technology = mockEntity(1L);
+    }
+
+    @Test
+    public final void shouldShareNeededQuantitiesRegardlessOfQuantityScale() {
+        // given
+        when(neededQuantitiesLoader.get()).thenReturn(ImmutableMap.of(100L, BigDecimal.ONE));
+
+        // when
+        Map<Long, BigDecimal> first = cache.getNeededProductQuantities(technology, new BigDecimal("2"), neededQuantitiesLoader);
+        Map<Long, BigDecimal> second = cache.getNeededProductQuantities(technology, new BigDecimal("2.000"),
+                neededQuantitiesLoader);
+        cache.getNeededProductQuantities(technology, new BigDecimal("3"), neededQuantitiesLoader);
+
+        // then
+        assertSame(first, second);
+        verify(neededQuantitiesLoader, times(2)).get();
+    }
+
+    @Test
+    public final void shouldCollectNeededProductIdsOfAllTechnologies() {
+        // given
+        when(neededQuantitiesLoader.get()).thenReturn(ImmutableMap.of(100L, BigDecimal.ONE, 101L, BigDecimal.TEN),
+                ImmutableMap.of(101L, BigDecimal.ONE, 102L, BigDecimal.ONE));
+
+        // when
+        cache.getNeededProductQuantities(technology, BigDecimal.ONE, neededQuantitiesLoader);
+        cache.getNeededProductQuantities(mockEntity(2L), BigDecimal.ONE, neededQuantitiesLoader);
+
+        // then
+        assertEquals(Sets.newHashSet(100L, 101L, 102L), cache.getNeededProductIds());
+    }
+
+    @Test
+    public final void shouldLoadOnlyProductsWhichWereNotPutBefore() {
+        // given
+        Entity product = mockEntity(100L);
+        Entity otherProduct = mockEntity(101L);
+        when(productLoader.apply(101L)).thenReturn(otherProduct);
+
+        cache.putProducts(Lists.newArrayList(product));
+
+        // when & then
+        assertSame(product, cache.getProduct(100L, productLoader));
+        assertSame(otherProduct, cache.getProduct(101L, productLoader));
+        assertSame(otherProduct, cache.getProduct(101L, productLoader));
+
+        verify(productLoader, never()).apply(100L);
+        verify(productLoader, times(1)).apply(101L);
+    }
+
+    private Entity mockEntity(final Long id) {
+        Entity entity = mock(Entity.class);
+        when(entity.getId()).thenReturn(id);
+        return entity;
+    }
+
+}
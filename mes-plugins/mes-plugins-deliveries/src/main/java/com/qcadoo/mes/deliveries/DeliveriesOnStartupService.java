@@ -36,11 +36,15 @@ public class DeliveriesOnStartupService extends Module {
     @Autowired
     private DeliveriesColumnLoader deliveriesColumnLoader;
 
+    @Autowired
+    private DeliveryNumberGenerator deliveryNumberGenerator;
+
     @Transactional
     @Override
     public void multiTenantEnable() {
         deliveriesColumnLoader.addColumnsForDeliveries();
         deliveriesColumnLoader.addColumnsForOrders();
+        deliveryNumberGenerator.synchronizeNumberSequence();
     }
 
     @Transactional
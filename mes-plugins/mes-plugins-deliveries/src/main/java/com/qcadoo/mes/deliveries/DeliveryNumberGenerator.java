@@ -0,0 +1,72 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.deliveries;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.basic.numbering.NumberAllocationService;
+import com.qcadoo.mes.basic.numbering.NumberSequence;
+import com.qcadoo.mes.deliveries.constants.DeliveriesConstants;
+import com.qcadoo.mes.deliveries.constants.DeliveryFields;
+import com.qcadoo.view.api.ViewDefinitionState;
+
+@Service
+public class DeliveryNumberGenerator {
+
+    private static final String L_FORM = "form";
+
+    private static final NumberSequence L_DELIVERY_NUMBER_SEQUENCE = new NumberSequence(DeliveriesConstants.PLUGIN_IDENTIFIER,
+            DeliveriesConstants.MODEL_DELIVERY, "", 6);
+
+    @Autowired
+    private NumberAllocationService numberAllocationService;
+
+    /**
+     * Synchronize delivery number sequence with existing delivery numbers
+     */
+    public void synchronizeNumberSequence() {
+        numberAllocationService.synchronize(L_DELIVERY_NUMBER_SEQUENCE);
+    }
+
+    /**
+     * Generate and insert number into delivery form
+     *
+     * @param view
+     *            View
+     */
+    public void generateAndInsertNumber(final ViewDefinitionState view) {
+        numberAllocationService.generateAndInsertNumber(view, L_DELIVERY_NUMBER_SEQUENCE, L_FORM, DeliveryFields.NUMBER);
+    }
+
+    /**
+     * Generate number
+     *
+     * @return number
+     */
+    public String generate() {
+        return numberAllocationService.allocate(L_DELIVERY_NUMBER_SEQUENCE);
+    }
+
+}
@@ -28,8 +28,8 @@ import com.google.common.collect.Lists;
 import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.mes.basic.util.CurrencyService;
 import com.qcadoo.mes.deliveries.DeliveriesService;
+import com.qcadoo.mes.deliveries.DeliveryNumberGenerator;
 import com.qcadoo.mes.deliveries.constants.CompanyFieldsD;
-import com.qcadoo.mes.deliveries.constants.DeliveriesConstants;
 import com.qcadoo.mes.deliveries.constants.DeliveryFields;
 import com.qcadoo.mes.deliveries.roles.DeliveryRole;
 import com.qcadoo.mes.deliveries.states.constants.DeliveryState;
@@ -45,7 +45,6 @@ import com.qcadoo.view.api.components.*;
 import com.qcadoo.view.api.ribbon.Ribbon;
 import com.qcadoo.view.api.ribbon.RibbonActionItem;
 import com.qcadoo.view.api.ribbon.RibbonGroup;
-import com.qcadoo.view.api.utils.NumberGeneratorService;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
@@ -76,7 +75,7 @@ public class DeliveryDetailsHooks {
     private DeliveriesService deliveriesService;
 
     @Autowired
-    private NumberGeneratorService numberGeneratorService;
+    private DeliveryNumberGenerator deliveryNumberGenerator;
 
     @Autowired
     private StateChangeHistoryService stateChangeHistoryService;
@@ -94,8 +93,7 @@ public class DeliveryDetailsHooks {
     private UserService userService;
 
     public void generateDeliveryNumber(final ViewDefinitionState view) {
-        numberGeneratorService.generateAndInsertNumber(view, DeliveriesConstants.PLUGIN_IDENTIFIER,
-                DeliveriesConstants.MODEL_DELIVERY, L_FORM, DeliveryFields.NUMBER);
+        deliveryNumberGenerator.generateAndInsertNumber(view);
     }
 
     public void fillCompanyFieldsForSupplier(final ViewDefinitionState view) {
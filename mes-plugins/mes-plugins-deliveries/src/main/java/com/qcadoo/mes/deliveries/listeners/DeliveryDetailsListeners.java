@@ -55,6 +55,7 @@ import com.qcadoo.mes.basic.constants.ProductFields;
 import com.qcadoo.mes.basic.constants.UnitConversionItemFieldsB;
 import com.qcadoo.mes.deliveries.DeliveredProductMultiPositionService;
 import com.qcadoo.mes.deliveries.DeliveriesService;
+import com.qcadoo.mes.deliveries.DeliveryNumberGenerator;
 import com.qcadoo.mes.deliveries.ReservationService;
 import com.qcadoo.mes.deliveries.constants.DeliveredProductFields;
 import com.qcadoo.mes.deliveries.constants.DeliveredProductMultiPositionFields;
@@ -87,7 +88,6 @@ import com.qcadoo.view.api.ComponentState.MessageType;
 import com.qcadoo.view.api.ViewDefinitionState;
 import com.qcadoo.view.api.components.FormComponent;
 import com.qcadoo.view.api.components.GridComponent;
-import com.qcadoo.view.api.utils.NumberGeneratorService;
 
 @Component
 public class DeliveryDetailsListeners {
@@ -118,7 +118,7 @@ public class DeliveryDetailsListeners {
     private NumberService numberService;
 
     @Autowired
-    private NumberGeneratorService numberGeneratorService;
+    private DeliveryNumberGenerator deliveryNumberGenerator;
 
     @Autowired
     private OrderReportPdf orderReportPdf;
@@ -447,8 +447,7 @@ public class DeliveryDetailsListeners {
         if (!orderedProducts.isEmpty()) {
             relatedDelivery = deliveriesService.getDeliveryDD().create();
 
-            relatedDelivery.setField(DeliveryFields.NUMBER, numberGeneratorService.generateNumber(
-                    DeliveriesConstants.PLUGIN_IDENTIFIER, DeliveriesConstants.MODEL_DELIVERY));
+            relatedDelivery.setField(DeliveryFields.NUMBER, deliveryNumberGenerator.generate());
             relatedDelivery.setField(DeliveryFields.SUPPLIER, delivery.getBelongsToField(DeliveryFields.SUPPLIER));
             relatedDelivery.setField(DeliveryFields.DELIVERY_DATE, new Date());
             relatedDelivery.setField(DeliveryFields.RELATED_DELIVERY, delivery);
@@ -40,6 +40,9 @@ public class DeliveriesOnStartupServiceTest {
     @Mock
     private DeliveriesColumnLoader deliveriesColumnLoader;
 
+    @Mock
+    private DeliveryNumberGenerator deliveryNumberGenerator;
+
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
@@ -47,6 +50,7 @@ public class DeliveriesOnStartupServiceTest {
         deliveriesOnStartupService = new DeliveriesOnStartupService();
 
         ReflectionTestUtils.setField(deliveriesOnStartupService, "deliveriesColumnLoader", deliveriesColumnLoader);
+        ReflectionTestUtils.setField(deliveriesOnStartupService, "deliveryNumberGenerator", deliveryNumberGenerator);
     }
 
     @Test
@@ -59,6 +63,7 @@ public class DeliveriesOnStartupServiceTest {
         // then
         verify(deliveriesColumnLoader).addColumnsForDeliveries();
         verify(deliveriesColumnLoader).addColumnsForOrders();
+        verify(deliveryNumberGenerator).synchronizeNumberSequence();
     }
 
     @Test
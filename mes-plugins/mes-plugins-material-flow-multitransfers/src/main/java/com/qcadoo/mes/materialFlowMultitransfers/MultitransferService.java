@@ -0,0 +1,354 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowMultitransfers;
+
+import static com.qcadoo.mes.materialFlow.constants.TransferFields.LOCATION_FROM;
+import static com.qcadoo.mes.materialFlow.constants.TransferFields.LOCATION_TO;
+import static com.qcadoo.mes.materialFlow.constants.TransferFields.NUMBER;
+import static com.qcadoo.mes.materialFlow.constants.TransferFields.PRODUCT;
+import static com.qcadoo.mes.materialFlow.constants.TransferFields.QUANTITY;
+import static com.qcadoo.mes.materialFlow.constants.TransferFields.STAFF;
+import static com.qcadoo.mes.materialFlow.constants.TransferFields.TIME;
+import static com.qcadoo.mes.materialFlow.constants.TransferFields.TYPE;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.materialFlow.MaterialFlowService;
+import com.qcadoo.mes.materialFlow.constants.MaterialFlowConstants;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferLine;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferRequest;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferResult;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.NumberService;
+import com.qcadoo.model.api.search.SearchRestrictions;
+import com.qcadoo.model.api.validators.ErrorMessage;
+
+/**
+ * Creates all transfers of a multitransfer at once, for the multitransfer view and the REST endpoint used by scanners.
+ * 
+ * Lines are checked together first (products fetched in bulk, duplicates, units, quantities) and transfer numbers are reserved
+ * for all of them with one query per collision round. Each transfer is then saved through the transfer data definition, so its
+ * validators and hooks (dates, resources, stock balance checkpoints) run exactly as for a transfer saved from its form. Errors
+ * of every saved transfer are mapped back to its line, or to the header for header fields, and the whole multitransfer is
+ * rolled back if any of them is invalid.
+ */
+@Service
+public class MultitransferService {
+
+    public static final String L_UNIT = "unit";
+
+    private static final String L_FILL_REQUIRED = "materialFlow.validate.global.error.fillRequired";
+
+    private static final String L_PRODUCT_ALREADY_ADDED = "materialFlow.validate.global.error.productAlreadyAdded";
+
+    private static final String L_PRODUCTS_ARE_REQUIRED = "materialFlowMultitransfers.multitransfer.validation.productsAreRequired";
+
+    private static final String L_NOT_FOUND = "materialFlowMultitransfers.multitransfer.validation.notFound";
+
+    private static final String L_QUANTITY_MUST_BE_GREATER_THAN_ZERO = "materialFlowMultitransfers.multitransfer.validation.quantityMustBeGreaterThanZero";
+
+    private static final String L_UNIT_DOES_NOT_MATCH = "materialFlowMultitransfers.multitransfer.validation.unitDoesNotMatch";
+
+    private static final Set<String> L_HEADER_FIELDS = ImmutableSet.of(TYPE, TIME, LOCATION_FROM, LOCATION_TO, STAFF);
+
+    private static final int L_NUMBER_DIGITS = 3;
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private MaterialFlowService materialFlowService;
+
+    @Autowired
+    private NumberService numberService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public MultitransferResult createMultitransfer(final MultitransferRequest request) {
+        MultitransferResult result = new MultitransferResult();
+
+        Entity locationFrom = getEntity(result, LOCATION_FROM, request.getLocationFrom(), getLocationDD());
+        Entity locationTo = getEntity(result, LOCATION_TO, request.getLocationTo(), getLocationDD());
+        Entity staff = getEntity(result, STAFF, request.getStaff(), getStaffDD());
+
+        List<Entity> products = getProducts(request.getLines());
+
+        validateLines(result, request, products);
+
+        if (!result.isValid()) {
+            return result;
+        }
+
+        List<String> numbers = generateNumbers(products);
+        List<String> transferNumbers = Lists.newArrayListWithCapacity(products.size());
+        Set<String> headerErrors = Sets.newHashSet();
+        DataDefinition transferDD = getTransferDD();
+
+        for (int index = 0; index < products.size(); index++) {
+            Entity transfer = createTransfer(transferDD, numbers.get(index), request, locationFrom, locationTo, staff,
+                    products.get(index), request.getLines().get(index).getQuantity());
+
+            transfer = transferDD.save(transfer);
+
+            if (transfer.isValid()) {
+                transferNumbers.add(transfer.getStringField(NUMBER));
+            } else {
+                addTransferErrors(result, headerErrors, index, transfer);
+            }
+        }
+
+        if (!result.isValid()) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+
+            return result;
+        }
+
+        for (String transferNumber : transferNumbers) {
+            result.addTransferNumber(transferNumber);
+        }
+
+        return result;
+    }
+
+    private Entity getEntity(final MultitransferResult result, final String field, final Long id,
+            final DataDefinition dataDefinition) {
+        if (id == null) {
+            return null;
+        }
+
+        Entity entity = dataDefinition.get(id);
+
+        if (entity == null) {
+            result.addError(field, L_NOT_FOUND);
+        }
+
+        return entity;
+    }
+
+    private void validateLines(final MultitransferResult result, final MultitransferRequest request, final List<Entity> products) {
+        List<MultitransferLine> lines = request.getLines();
+
+        if (lines.isEmpty()) {
+            result.addError(null, L_PRODUCTS_ARE_REQUIRED);
+
+            return;
+        }
+
+        Multiset<Long> productIds = HashMultiset.create();
+
+        for (Entity product : products) {
+            if (product != null) {
+                productIds.add(product.getId());
+            }
+        }
+
+        for (int index = 0; index < lines.size(); index++) {
+            MultitransferLine line = lines.get(index);
+            Entity product = products.get(index);
+            BigDecimal quantity = line.getQuantity();
+
+            if (product == null) {
+                if ((line.getProduct() == null) && StringUtils.isEmpty(line.getProductNumber())) {
+                    result.addLineError(index, PRODUCT, L_FILL_REQUIRED);
+                } else {
+                    result.addLineError(index, PRODUCT, L_NOT_FOUND);
+                }
+            } else if (productIds.count(product.getId()) > 1) {
+                result.addLineError(index, PRODUCT, L_PRODUCT_ALREADY_ADDED);
+            } else if (StringUtils.isNotEmpty(line.getUnit())
+                    && !line.getUnit().equals(product.getStringField(ProductFields.UNIT))) {
+                result.addLineError(index, L_UNIT, L_UNIT_DOES_NOT_MATCH);
+            }
+
+            if (quantity == null) {
+                result.addLineError(index, QUANTITY, L_FILL_REQUIRED);
+            } else if (quantity.signum() <= 0) {
+                result.addLineError(index, QUANTITY, L_QUANTITY_MUST_BE_GREATER_THAN_ZERO);
+            }
+        }
+    }
+
+    private List<Entity> getProducts(final List<MultitransferLine> lines) {
+        Set<Long> ids = Sets.newHashSet();
+        Set<String> numbers = Sets.newHashSet();
+
+        for (MultitransferLine line : lines) {
+            if (line.getProduct() != null) {
+                ids.add(line.getProduct());
+            } else if (StringUtils.isNotEmpty(line.getProductNumber())) {
+                numbers.add(line.getProductNumber());
+            }
+        }
+
+        Map<Long, Entity> productsById = Maps.newHashMap();
+        Map<String, Entity> productsByNumber = Maps.newHashMap();
+
+        if (!ids.isEmpty()) {
+            for (Entity product : getProductDD().find().add(SearchRestrictions.in("id", ids)).list().getEntities()) {
+                productsById.put(product.getId(), product);
+            }
+        }
+
+        if (!numbers.isEmpty()) {
+            for (Entity product : getProductDD().find().add(SearchRestrictions.in(ProductFields.NUMBER, numbers)).list()
+                    .getEntities()) {
+                productsByNumber.put(product.getStringField(ProductFields.NUMBER), product);
+            }
+        }
+
+        List<Entity> products = Lists.newArrayListWithCapacity(lines.size());
+
+        for (MultitransferLine line : lines) {
+            if (line.getProduct() != null) {
+                products.add(productsById.get(line.getProduct()));
+            } else {
+                products.add(productsByNumber.get(line.getProductNumber()));
+            }
+        }
+
+        return products;
+    }
+
+    /**
+     * Numbers transfers like {@link MaterialFlowService#generateNumberFromProduct(Entity, String)}: product number and the next
+     * transfer number. A number which is already taken is moved to the next free one, checking all taken numbers of a round
+     * with one query.
+     */
+    private List<String> generateNumbers(final List<Entity> products) {
+        long firstNumber = Long.parseLong(materialFlowService.generateNumber(MaterialFlowConstants.PLUGIN_IDENTIFIER,
+                MaterialFlowConstants.MODEL_TRANSFER, L_NUMBER_DIGITS));
+
+        List<String> numbers = Lists.newArrayListWithCapacity(products.size());
+        Map<Integer, Long> takenNumbers = Maps.newHashMap();
+
+        for (int index = 0; index < products.size(); index++) {
+            numbers.add(formatNumber(products.get(index), firstNumber));
+            takenNumbers.put(index, firstNumber);
+        }
+
+        while (!takenNumbers.isEmpty()) {
+            List<String> candidates = Lists.newArrayListWithCapacity(takenNumbers.size());
+
+            for (Integer index : takenNumbers.keySet()) {
+                candidates.add(numbers.get(index));
+            }
+
+            Set<String> existingNumbers = getExistingNumbers(candidates);
+
+            takenNumbers.keySet().removeIf(index -> !existingNumbers.contains(numbers.get(index)));
+
+            for (Map.Entry<Integer, Long> takenNumber : takenNumbers.entrySet()) {
+                takenNumber.setValue(takenNumber.getValue() + 1);
+
+                numbers.set(takenNumber.getKey(), formatNumber(products.get(takenNumber.getKey()), takenNumber.getValue()));
+            }
+        }
+
+        return numbers;
+    }
+
+    private String formatNumber(final Entity product, final long number) {
+        return product.getStringField(ProductFields.NUMBER) + "-" + String.format("%0" + L_NUMBER_DIGITS + "d", number);
+    }
+
+    private Set<String> getExistingNumbers(final List<String> numbers) {
+        return Sets.newHashSet(jdbcTemplate.queryForList("SELECT number FROM materialflow_transfer WHERE number IN (:numbers)",
+                new MapSqlParameterSource("numbers", numbers), String.class));
+    }
+
+    private Entity createTransfer(final DataDefinition transferDD, final String number, final MultitransferRequest request,
+            final Entity locationFrom, final Entity locationTo, final Entity staff, final Entity product,
+            final BigDecimal quantity) {
+        Entity transfer = transferDD.create();
+
+        transfer.setField(NUMBER, number);
+        transfer.setField(TYPE, request.getType());
+        transfer.setField(TIME, request.getTime());
+        transfer.setField(LOCATION_FROM, locationFrom);
+        transfer.setField(LOCATION_TO, locationTo);
+        transfer.setField(STAFF, staff);
+        transfer.setField(PRODUCT, product);
+        transfer.setField(QUANTITY, numberService.setScaleWithDefaultMathContext(quantity));
+
+        return transfer;
+    }
+
+    private void addTransferErrors(final MultitransferResult result, final Set<String> headerErrors, final int index,
+            final Entity transfer) {
+        for (Map.Entry<String, ErrorMessage> error : transfer.getErrors().entrySet()) {
+            String field = error.getKey();
+            String message = error.getValue().getMessage();
+
+            if (!L_HEADER_FIELDS.contains(field)) {
+                result.addLineError(index, field, message);
+            } else if (headerErrors.add(field + ":" + message)) {
+                result.addError(field, message);
+            }
+        }
+
+        for (ErrorMessage error : transfer.getGlobalErrors()) {
+            result.addLineError(index, null, error.getMessage());
+        }
+    }
+
+    private DataDefinition getTransferDD() {
+        return dataDefinitionService.get(MaterialFlowConstants.PLUGIN_IDENTIFIER, MaterialFlowConstants.MODEL_TRANSFER);
+    }
+
+    private DataDefinition getLocationDD() {
+        return dataDefinitionService.get(MaterialFlowConstants.PLUGIN_IDENTIFIER, MaterialFlowConstants.MODEL_LOCATION);
+    }
+
+    private DataDefinition getStaffDD() {
+        return dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_STAFF);
+    }
+
+    private DataDefinition getProductDD() {
+        return dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT);
+    }
+
+}
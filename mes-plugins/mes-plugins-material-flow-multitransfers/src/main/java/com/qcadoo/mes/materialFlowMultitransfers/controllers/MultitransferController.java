@@ -0,0 +1,93 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowMultitransfers.controllers;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.localization.api.TranslationService;
+import com.qcadoo.mes.materialFlowMultitransfers.MultitransferService;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferError;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferRequest;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferResult;
+
+@Controller
+@RequestMapping("/rest/multitransfers")
+public class MultitransferController {
+
+    @Autowired
+    private MultitransferService multitransferService;
+
+    @Autowired
+    private TranslationService translationService;
+
+    @ResponseBody
+    @RequestMapping(method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> create(@RequestBody MultitransferRequest request, HttpServletResponse response) {
+        MultitransferResult result = multitransferService.createMultitransfer(request);
+
+        if (!result.isValid()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        }
+
+        Map<String, Object> body = Maps.newHashMap();
+
+        body.put("valid", result.isValid());
+        body.put("transferNumbers", result.getTransferNumbers());
+        body.put("errors", translateErrors(result.getErrors(), LocaleContextHolder.getLocale()));
+
+        return body;
+    }
+
+    private List<Map<String, Object>> translateErrors(final List<MultitransferError> errors, final Locale locale) {
+        List<Map<String, Object>> translatedErrors = Lists.newArrayList();
+
+        for (MultitransferError error : errors) {
+            Map<String, Object> translatedError = Maps.newHashMap();
+
+            translatedError.put("line", error.getLine());
+            translatedError.put("field", error.getField());
+            translatedError.put("message", translationService.translate(error.getMessage(), locale));
+
+            translatedErrors.add(translatedError);
+        }
+
+        return translatedErrors;
+    }
+
+}
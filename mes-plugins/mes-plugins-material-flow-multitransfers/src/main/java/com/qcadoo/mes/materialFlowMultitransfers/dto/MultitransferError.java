@@ -0,0 +1,61 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowMultitransfers.dto;
+
+public final class MultitransferError {
+
+    private final Integer line;
+
+    private final String field;
+
+    private final String message;
+
+    public MultitransferError(final Integer line, final String field, final String message) {
+        this.line = line;
+        this.field = field;
+        this.message = message;
+    }
+
+    /**
+     * @return index of the line, null for errors of the whole multitransfer
+     */
+    public Integer getLine() {
+        return line;
+    }
+
+    /**
+     * @return transfer field, null for global errors
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * @return translation key
+     */
+    public String getMessage() {
+        return message;
+    }
+
+}
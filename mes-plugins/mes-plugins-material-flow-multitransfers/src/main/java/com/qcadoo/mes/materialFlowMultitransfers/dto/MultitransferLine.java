@@ -0,0 +1,81 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowMultitransfers.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Single product of a multitransfer, product is given either by id (view) or by number (scanners)
+ */
+public class MultitransferLine {
+
+    private Long product;
+
+    private String productNumber;
+
+    private BigDecimal quantity;
+
+    private String unit;
+
+    public MultitransferLine() {
+    }
+
+    public MultitransferLine(final Long product, final BigDecimal quantity) {
+        this.product = product;
+        this.quantity = quantity;
+    }
+
+    public Long getProduct() {
+        return product;
+    }
+
+    public void setProduct(final Long product) {
+        this.product = product;
+    }
+
+    public String getProductNumber() {
+        return productNumber;
+    }
+
+    public void setProductNumber(final String productNumber) {
+        this.productNumber = productNumber;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(final BigDecimal quantity) {
+        this.quantity = quantity;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public void setUnit(final String unit) {
+        this.unit = unit;
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowMultitransfers.dto;
+
+import java.util.Date;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+public class MultitransferRequest {
+
+    private String type;
+
+    private Date time;
+
+    private Long locationFrom;
+
+    private Long locationTo;
+
+    private Long staff;
+
+    private List<MultitransferLine> lines = Lists.newArrayList();
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(final String type) {
+        this.type = type;
+    }
+
+    public Date getTime() {
+        return time;
+    }
+
+    public void setTime(final Date time) {
+        this.time = time;
+    }
+
+    public Long getLocationFrom() {
+        return locationFrom;
+    }
+
+    public void setLocationFrom(final Long locationFrom) {
+        this.locationFrom = locationFrom;
+    }
+
+    public Long getLocationTo() {
+        return locationTo;
+    }
+
+    public void setLocationTo(final Long locationTo) {
+        this.locationTo = locationTo;
+    }
+
+    public Long getStaff() {
+        return staff;
+    }
+
+    public void setStaff(final Long staff) {
+        this.staff = staff;
+    }
+
+    public List<MultitransferLine> getLines() {
+        return lines;
+    }
+
+    public void setLines(final List<MultitransferLine> lines) {
+        this.lines = lines;
+    }
+
+}
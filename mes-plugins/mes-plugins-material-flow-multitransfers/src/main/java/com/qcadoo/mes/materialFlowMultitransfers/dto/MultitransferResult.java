@@ -0,0 +1,61 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowMultitransfers.dto;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+public class MultitransferResult {
+
+    private final List<MultitransferError> errors = Lists.newArrayList();
+
+    private final List<String> transferNumbers = Lists.newArrayList();
+
+    public void addError(final String field, final String message) {
+        errors.add(new MultitransferError(null, field, message));
+    }
+
+    public void addLineError(final int line, final String field, final String message) {
+        errors.add(new MultitransferError(line, field, message));
+    }
+
+    public void addTransferNumber(final String transferNumber) {
+        transferNumbers.add(transferNumber);
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    public List<MultitransferError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public List<String> getTransferNumbers() {
+        return Collections.unmodifiableList(transferNumbers);
+    }
+
+}
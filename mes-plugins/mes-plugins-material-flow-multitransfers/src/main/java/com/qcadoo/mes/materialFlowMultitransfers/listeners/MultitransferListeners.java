@@ -27,39 +27,39 @@ import static com.qcadoo.mes.basic.constants.ProductFields.NAME;
 import static com.qcadoo.mes.basic.constants.ProductFields.UNIT;
 import static com.qcadoo.mes.materialFlow.constants.TransferFields.LOCATION_FROM;
 import static com.qcadoo.mes.materialFlow.constants.TransferFields.LOCATION_TO;
-import static com.qcadoo.mes.materialFlow.constants.TransferFields.NUMBER;
 import static com.qcadoo.mes.materialFlow.constants.TransferFields.PRODUCT;
 import static com.qcadoo.mes.materialFlow.constants.TransferFields.PRODUCTS;
 import static com.qcadoo.mes.materialFlow.constants.TransferFields.QUANTITY;
 import static com.qcadoo.mes.materialFlow.constants.TransferFields.STAFF;
 import static com.qcadoo.mes.materialFlow.constants.TransferFields.TIME;
 import static com.qcadoo.mes.materialFlow.constants.TransferFields.TYPE;
-import static com.qcadoo.mes.materialFlow.constants.TransferType.PRODUCTION;
 
 import java.math.BigDecimal;
-import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.qcadoo.localization.api.utils.DateUtils;
+import com.qcadoo.mes.basic.constants.BasicConstants;
 import com.qcadoo.mes.materialFlow.MaterialFlowService;
-import com.qcadoo.mes.materialFlow.constants.MaterialFlowConstants;
+import com.qcadoo.mes.materialFlowMultitransfers.MultitransferService;
 import com.qcadoo.mes.materialFlowMultitransfers.constants.MaterialFlowMultitransfersConstants;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferError;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferLine;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferRequest;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferResult;
 import com.qcadoo.mes.materialFlowResources.MaterialFlowResourcesService;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
-import com.qcadoo.model.api.NumberService;
 import com.qcadoo.model.api.search.SearchOrders;
 import com.qcadoo.model.api.search.SearchRestrictions;
-import com.qcadoo.model.api.validators.ErrorMessage;
 import com.qcadoo.view.api.ComponentState;
 import com.qcadoo.view.api.ComponentState.MessageType;
 import com.qcadoo.view.api.ViewDefinitionState;
@@ -72,8 +72,6 @@ public class MultitransferListeners {
 
     private static final String L_ERROR_INVALID_NUMERIC_FORMAT = "qcadooView.validate.field.error.invalidNumericFormat";
 
-    private static final String L_ERROR_FILL_AT_LEAST_ONE_LOCATION = "materialFlow.validate.global.error.fillAtLeastOneLocation";
-
     private static final String L_FORM = "form";
 
     private static final String L_UNIT = "unit";
@@ -88,14 +86,9 @@ public class MultitransferListeners {
     private DataDefinitionService dataDefinitionService;
 
     @Autowired
-    private NumberService numberService;
+    private MultitransferService multitransferService;
 
-    @Transactional
     public void createMultitransfer(final ViewDefinitionState view, final ComponentState state, final String[] args) {
-        if (!isMultitransferFormValid(view)) {
-            return;
-        }
-
         FormComponent multitransferForm = (FormComponent) view.getComponentByReference(L_FORM);
 
         FieldComponent typeField = (FieldComponent) view.getComponentByReference(TYPE);
@@ -110,210 +103,80 @@ public class MultitransferListeners {
         locationFromField.requestComponentUpdateState();
         staffField.requestComponentUpdateState();
 
-        String type = typeField.getFieldValue().toString();
-        Date time = DateUtils.parseDate(timeField.getFieldValue());
-        Entity locationFrom = materialFlowService.getLocationById((Long) locationFromField.getFieldValue());
-        Entity locationTo = materialFlowService.getLocationById((Long) locationToField.getFieldValue());
-        Entity staff = materialFlowService.getStaffById((Long) staffField.getFieldValue());
-
         AwesomeDynamicListComponent adlc = (AwesomeDynamicListComponent) view.getComponentByReference(PRODUCTS);
 
         List<FormComponent> formComponents = adlc.getFormComponents();
 
-        for (FormComponent formComponent : formComponents) {
-            Entity productQuantity = formComponent.getEntity();
-            BigDecimal quantity = productQuantity.getDecimalField(QUANTITY);
-            Entity product = productQuantity.getBelongsToField(PRODUCT);
-
-            if ((product != null) && (quantity != null)) {
-                Entity transfer = createTransfer(type, time, locationFrom, locationTo, staff, product, quantity);
+        MultitransferRequest request = new MultitransferRequest();
 
-                if (!checkIfTransferIsValid(formComponent, transfer)) {
-                    TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        request.setType((String) typeField.getFieldValue());
+        request.setTime(DateUtils.parseDate(timeField.getFieldValue()));
+        request.setLocationFrom((Long) locationFromField.getFieldValue());
+        request.setLocationTo((Long) locationToField.getFieldValue());
+        request.setStaff((Long) staffField.getFieldValue());
 
-                    return;
-                }
-            }
-        }
-
-        adlc.setFieldValue(null);
+        List<MultitransferLine> lines = Lists.newArrayListWithCapacity(formComponents.size());
 
-        multitransferForm.setEntity(multitransferForm.getEntity());
+        boolean areQuantitiesValid = true;
 
-        state.performEvent(view, "refresh", new String[0]);
-
-        view.getComponentByReference(L_FORM).addMessage("materialFlowMultitransfers.multitransfer.generate.success",
-                MessageType.SUCCESS);
-    }
+        for (FormComponent formComponent : formComponents) {
+            Entity productQuantity = formComponent.getEntity();
+            Entity product = productQuantity.getBelongsToField(PRODUCT);
 
-    public boolean checkIfTransferIsValid(FormComponent formComponent, Entity transfer) {
-        if (!transfer.isValid()) {
-            Map<String, ErrorMessage> errors = transfer.getErrors();
+            BigDecimal quantity = null;
 
-            for (Entry<String, ErrorMessage> error : errors.entrySet()) {
-                String field = error.getKey();
-                ErrorMessage errorMessage = error.getValue();
+            try {
+                quantity = productQuantity.getDecimalField(QUANTITY);
+            } catch (IllegalArgumentException e) {
+                formComponent.findFieldComponentByName(QUANTITY).addMessage(L_ERROR_INVALID_NUMERIC_FORMAT, MessageType.FAILURE);
 
-                if (formComponent.findFieldComponentByName(field) != null) {
-                    formComponent.findFieldComponentByName(field).addMessage(errorMessage);
-                }
+                areQuantitiesValid = false;
             }
 
-            return false;
-        }
-
-        return true;
-    }
-
-    public boolean isMultitransferFormValid(final ViewDefinitionState view) {
-        boolean isValid = true;
-
-        FieldComponent typeField = (FieldComponent) view.getComponentByReference(TYPE);
-        FieldComponent timeField = (FieldComponent) view.getComponentByReference(TIME);
-        FieldComponent locationFromField = (FieldComponent) view.getComponentByReference(LOCATION_FROM);
-        FieldComponent locationToField = (FieldComponent) view.getComponentByReference(LOCATION_TO);
-
-        Entity locationFrom = materialFlowService.getLocationById((Long) locationFromField.getFieldValue());
-        Entity locationTo = materialFlowService.getLocationById((Long) locationToField.getFieldValue());
-
-        if (materialFlowService.checkIfLocationHasExternalNumber(locationFrom)) {
-            locationFromField.addMessage("materialFlow.validate.global.error.externalNumber", MessageType.FAILURE);
-
-            isValid = false;
+            lines.add(new MultitransferLine((product == null) ? null : product.getId(), quantity));
         }
 
-        if (materialFlowService.checkIfLocationHasExternalNumber(locationTo)) {
-            locationToField.addMessage("materialFlow.validate.global.error.externalNumber", MessageType.FAILURE);
-
-            isValid = false;
-        }
-
-        if (typeField.getFieldValue() == null || typeField.getFieldValue().toString().isEmpty()) {
-            typeField.addMessage("materialFlow.validate.global.error.fillType", MessageType.FAILURE);
-
-            isValid = false;
+        if (!areQuantitiesValid) {
+            return;
         }
 
-        if (timeField.getFieldValue() == null || timeField.getFieldValue().toString().isEmpty()) {
-            timeField.addMessage("materialFlow.validate.global.error.fillDate", MessageType.FAILURE);
+        request.setLines(lines);
 
-            isValid = false;
-        } else {
-            Date time = DateUtils.parseDate(timeField.getFieldValue());
+        MultitransferResult result = multitransferService.createMultitransfer(request);
 
-            if (materialFlowResourcesService.shouldValidateDateWhenTransferToWarehouse()
-                    && materialFlowResourcesService.areLocationsWarehouses(locationFrom, locationTo)
-                    && !materialFlowResourcesService.isDateGraterThanResourcesDate(time)) {
-                timeField.addMessage("materialFlowResources.validate.global.error.dateEarlierThanResourcesDate",
-                        MessageType.FAILURE);
+        if (!result.isValid()) {
+            showErrors(view, formComponents, result.getErrors());
 
-                isValid = false;
-            }
-        }
-
-        if ((locationFromField.getFieldValue() == null) && (locationToField.getFieldValue() == null)) {
-            locationFromField.addMessage(L_ERROR_FILL_AT_LEAST_ONE_LOCATION, MessageType.FAILURE);
-            locationToField.addMessage(L_ERROR_FILL_AT_LEAST_ONE_LOCATION, MessageType.FAILURE);
-
-            isValid = false;
+            return;
         }
 
-        AwesomeDynamicListComponent adlc = (AwesomeDynamicListComponent) view.getComponentByReference(PRODUCTS);
-
-        List<FormComponent> formComponents = adlc.getFormComponents();
-
-        if (formComponents.isEmpty()) {
-            view.getComponentByReference(L_FORM).addMessage(
-                    "materialFlowMultitransfers.multitransfer.validation.productsAreRequired", MessageType.FAILURE);
-
-            isValid = false;
-        } else {
-            String type = (String) typeField.getFieldValue();
-
-            for (FormComponent formComponent : formComponents) {
-                Entity productQuantity = formComponent.getEntity();
-
-                BigDecimal quantity = null;
-
-                try {
-                    quantity = productQuantity.getDecimalField(QUANTITY);
-                } catch (IllegalArgumentException e) {
-                    formComponent.findFieldComponentByName(QUANTITY).addMessage(L_ERROR_INVALID_NUMERIC_FORMAT,
-                            MessageType.FAILURE);
-
-                    isValid = false;
-                }
-
-                Entity product = productQuantity.getBelongsToField(PRODUCT);
-
-                if (product == null) {
-                    formComponent.findFieldComponentByName(PRODUCT).addMessage("materialFlow.validate.global.error.fillRequired",
-                            MessageType.FAILURE);
-
-                    isValid = false;
-                } else {
-                    if (isProductAlreadyAdded(formComponents, product)) {
-                        formComponent.findFieldComponentByName(PRODUCT).addMessage(
-                                "materialFlow.validate.global.error.productAlreadyAdded", MessageType.FAILURE);
-
-                        isValid = false;
-                    }
-                }
+        adlc.setFieldValue(null);
 
-                if ((type != null) && !PRODUCTION.getStringValue().equals(type) && (locationFrom != null) && (product != null)
-                        && (quantity != null)
-                        && !materialFlowResourcesService.areResourcesSufficient(locationFrom, product, quantity)) {
-                    formComponent.findFieldComponentByName(QUANTITY).addMessage(
-                            "materialFlowResources.validate.global.error.resourcesArentSufficient", MessageType.FAILURE);
+        multitransferForm.setEntity(multitransferForm.getEntity());
 
-                    isValid = false;
-                }
-            }
-        }
+        state.performEvent(view, "refresh", new String[0]);
 
-        return isValid;
+        view.getComponentByReference(L_FORM).addMessage("materialFlowMultitransfers.multitransfer.generate.success",
+                MessageType.SUCCESS);
     }
 
-    private boolean isProductAlreadyAdded(final List<FormComponent> formComponents, final Entity product) {
-        if ((formComponents != null) && (product != null)) {
-            int count = 0;
-
-            for (FormComponent formComponent : formComponents) {
-                Entity productQuantity = formComponent.getEntity();
-                Entity productAlreadyAdded = productQuantity.getBelongsToField(PRODUCT);
+    private void showErrors(final ViewDefinitionState view, final List<FormComponent> formComponents,
+            final List<MultitransferError> errors) {
+        for (MultitransferError error : errors) {
+            ComponentState component = null;
 
-                if (product.equals(productAlreadyAdded)) {
-                    count++;
-                    if (count > 1) {
-                        return true;
-                    }
-                }
+            if ((error.getLine() != null) && (error.getField() != null)) {
+                component = formComponents.get(error.getLine()).findFieldComponentByName(error.getField());
+            } else if (error.getField() != null) {
+                component = view.getComponentByReference(error.getField());
             }
-        }
-
-        return false;
-    }
 
-    public Entity createTransfer(final String type, final Date time, final Entity locationFrom, final Entity locationTo,
-            final Entity staff, final Entity product, final BigDecimal quantity) {
-        DataDefinition transferDD = dataDefinitionService.get(MaterialFlowConstants.PLUGIN_IDENTIFIER,
-                MaterialFlowConstants.MODEL_TRANSFER);
-
-        Entity transfer = transferDD.create();
-        String number = materialFlowService.generateNumberFromProduct(product, MaterialFlowConstants.MODEL_TRANSFER);
-
-        transfer.setField(NUMBER, number);
-        transfer.setField(TYPE, type);
-        transfer.setField(TIME, time);
-        transfer.setField(LOCATION_FROM, locationFrom);
-        transfer.setField(LOCATION_TO, locationTo);
-        transfer.setField(STAFF, staff);
-        transfer.setField(PRODUCT, product);
-        transfer.setField(QUANTITY, numberService.setScaleWithDefaultMathContext(quantity));
-
-        transfer = transferDD.save(transfer);
+            if (component == null) {
+                component = view.getComponentByReference(L_FORM);
+            }
 
-        return transfer;
+            component.addMessage(error.getMessage(), MessageType.FAILURE);
+        }
     }
 
     public void fillUnitsInADL(final ViewDefinitionState view, final ComponentState componentState, final String[] args) {
@@ -364,8 +227,10 @@ public class MultitransferListeners {
         DataDefinition productQuantityDD = dataDefinitionService.get(MaterialFlowMultitransfersConstants.PLUGIN_IDENTIFIER,
                 MaterialFlowMultitransfersConstants.MODEL_PRODUCT_QUANTITY);
 
+        Map<Long, Entity> products = getTemplatesProducts(templates);
+
         for (Entity template : templates) {
-            Entity product = template.getBelongsToField(PRODUCT);
+            Entity product = products.get(template.getBelongsToField(PRODUCT).getId());
 
             Entity productQuantity = productQuantityDD.create();
 
@@ -382,6 +247,23 @@ public class MultitransferListeners {
                 MessageType.SUCCESS);
     }
 
+    private Map<Long, Entity> getTemplatesProducts(final List<Entity> templates) {
+        Set<Long> productIds = Sets.newHashSet();
+
+        for (Entity template : templates) {
+            productIds.add(template.getBelongsToField(PRODUCT).getId());
+        }
+
+        Map<Long, Entity> products = Maps.newHashMap();
+
+        for (Entity product : dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT).find()
+                .add(SearchRestrictions.in("id", productIds)).list().getEntities()) {
+            products.put(product.getId(), product);
+        }
+
+        return products;
+    }
+
     private List<Entity> getTransferTemplates(final Entity locationFrom, final Entity locationTo) {
         return dataDefinitionService
                 .get(MaterialFlowMultitransfersConstants.PLUGIN_IDENTIFIER,
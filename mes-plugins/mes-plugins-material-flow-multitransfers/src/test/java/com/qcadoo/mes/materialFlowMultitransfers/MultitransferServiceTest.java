@@ -0,0 +1,293 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowMultitransfers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.materialFlow.MaterialFlowService;
+import com.qcadoo.mes.materialFlow.constants.MaterialFlowConstants;
+import com.qcadoo.mes.materialFlow.constants.TransferFields;
+import com.qcadoo.mes.materialFlow.constants.TransferType;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferError;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferLine;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferRequest;
+import com.qcadoo.mes.materialFlowMultitransfers.dto.MultitransferResult;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.NumberService;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.model.api.validators.ErrorMessage;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(TransactionAspectSupport.class)
+public class MultitransferServiceTest {
+
+    private static final String L_RESOURCES_ARENT_SUFFICIENT = "materialFlowResources.validate.global.error.resourcesArentSufficient";
+
+    private static final String L_DATE_EARLIER_THAN_RESOURCES_DATE = "materialFlowResources.validate.global.error.dateEarlierThanResourcesDate";
+
+    private MultitransferService multitransferService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private MaterialFlowService materialFlowService;
+
+    @Mock
+    private NumberService numberService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    @Mock
+    private DataDefinition locationDD, productDD, transferDD;
+
+    @Mock
+    private Entity locationFrom, locationTo, product, otherProduct, transfer, otherTransfer;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        multitransferService = new MultitransferService();
+
+        ReflectionTestUtils.setField(multitransferService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(multitransferService, "materialFlowService", materialFlowService);
+        ReflectionTestUtils.setField(multitransferService, "numberService", numberService);
+        ReflectionTestUtils.setField(multitransferService, "jdbcTemplate", jdbcTemplate);
+
+        PowerMockito.mockStatic(TransactionAspectSupport.class);
+        given(TransactionAspectSupport.currentTransactionStatus()).willReturn(transactionStatus);
+
+        given(dataDefinitionService.get(MaterialFlowConstants.PLUGIN_IDENTIFIER, MaterialFlowConstants.MODEL_LOCATION))
+                .willReturn(locationDD);
+        given(dataDefinitionService.get(MaterialFlowConstants.PLUGIN_IDENTIFIER, MaterialFlowConstants.MODEL_TRANSFER))
+                .willReturn(transferDD);
+        given(dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT)).willReturn(productDD);
+
+        given(locationDD.get(1L)).willReturn(locationTo);
+        given(locationDD.get(3L)).willReturn(locationFrom);
+
+        given(productDD.find()).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.add(any(SearchCriterion.class))).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.list()).willReturn(searchResult);
+        given(searchResult.getEntities()).willReturn(Arrays.asList(product, otherProduct));
+
+        given(product.getId()).willReturn(2L);
+        given(product.getStringField(ProductFields.NUMBER)).willReturn("P1");
+        given(otherProduct.getId()).willReturn(4L);
+        given(otherProduct.getStringField(ProductFields.NUMBER)).willReturn("P2");
+
+        given(materialFlowService.generateNumber(MaterialFlowConstants.PLUGIN_IDENTIFIER, MaterialFlowConstants.MODEL_TRANSFER, 3))
+                .willReturn("005");
+        given(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class))).willReturn(
+                Collections.<String> emptyList());
+        given(numberService.setScaleWithDefaultMathContext(any(BigDecimal.class))).willAnswer(
+                invocation -> invocation.getArguments()[0]);
+
+        given(transferDD.create()).willReturn(transfer, otherTransfer);
+        given(transferDD.save(any(Entity.class))).willAnswer(invocation -> invocation.getArguments()[0]);
+        given(transfer.isValid()).willReturn(true);
+        given(otherTransfer.isValid()).willReturn(true);
+    }
+
+    @Test
+    public void shouldReturnLineErrorsAndNotSaveTransfers() {
+        // given
+        MultitransferRequest request = request(TransferType.PRODUCTION);
+
+        request.setLines(Arrays.asList(new MultitransferLine(2L, BigDecimal.ONE), new MultitransferLine(3L, BigDecimal.ZERO)));
+
+        // when
+        MultitransferResult result = multitransferService.createMultitransfer(request);
+
+        // then
+        assertFalse(result.isValid());
+        assertEquals(2, result.getErrors().size());
+
+        MultitransferError productError = result.getErrors().get(0);
+
+        assertEquals(Integer.valueOf(1), productError.getLine());
+        assertEquals("product", productError.getField());
+        assertEquals("materialFlowMultitransfers.multitransfer.validation.notFound", productError.getMessage());
+
+        MultitransferError quantityError = result.getErrors().get(1);
+
+        assertEquals(Integer.valueOf(1), quantityError.getLine());
+        assertEquals("quantity", quantityError.getField());
+
+        verify(transferDD, never()).save(any(Entity.class));
+    }
+
+    @Test
+    public void shouldSaveEachTransferThroughTransferModelLikeTransferForm() {
+        // given
+        MultitransferRequest request = request(TransferType.TRANSPORT);
+
+        request.setLocationFrom(3L);
+        request.setLines(Arrays.asList(new MultitransferLine(2L, BigDecimal.ONE), new MultitransferLine(4L, BigDecimal.TEN)));
+
+        given(transfer.getStringField(TransferFields.NUMBER)).willReturn("P1-005");
+        given(otherTransfer.getStringField(TransferFields.NUMBER)).willReturn("P2-005");
+
+        // when
+        MultitransferResult result = multitransferService.createMultitransfer(request);
+
+        // then
+        assertTrue(result.isValid());
+        assertEquals(Lists.newArrayList("P1-005", "P2-005"), result.getTransferNumbers());
+
+        verify(transferDD).save(transfer);
+        verify(transferDD).save(otherTransfer);
+
+        verify(transfer).setField(TransferFields.NUMBER, "P1-005");
+        verify(transfer).setField(TransferFields.TYPE, TransferType.TRANSPORT.getStringValue());
+        verify(transfer).setField(TransferFields.TIME, request.getTime());
+        verify(transfer).setField(TransferFields.LOCATION_FROM, locationFrom);
+        verify(transfer).setField(TransferFields.LOCATION_TO, locationTo);
+        verify(transfer).setField(TransferFields.PRODUCT, product);
+        verify(transfer).setField(TransferFields.QUANTITY, BigDecimal.ONE);
+        verify(otherTransfer).setField(TransferFields.NUMBER, "P2-005");
+        verify(otherTransfer).setField(TransferFields.PRODUCT, otherProduct);
+        verify(otherTransfer).setField(TransferFields.QUANTITY, BigDecimal.TEN);
+
+        verify(transactionStatus, never()).setRollbackOnly();
+    }
+
+    @Test
+    public void shouldMapTransferModelErrorsToLinesAndHeaderAndRollBack() {
+        // given
+        MultitransferRequest request = request(TransferType.TRANSPORT);
+
+        request.setLocationFrom(3L);
+        request.setLines(Arrays.asList(new MultitransferLine(2L, BigDecimal.ONE), new MultitransferLine(4L, BigDecimal.TEN)));
+
+        ErrorMessage dateError = new ErrorMessage(L_DATE_EARLIER_THAN_RESOURCES_DATE);
+
+        given(transfer.isValid()).willReturn(false);
+        given(transfer.getErrors()).willReturn(ImmutableMap.of(TransferFields.TIME, dateError));
+        given(otherTransfer.isValid()).willReturn(false);
+        given(otherTransfer.getErrors()).willReturn(ImmutableMap.of(TransferFields.TIME, dateError, TransferFields.QUANTITY,
+                new ErrorMessage(L_RESOURCES_ARENT_SUFFICIENT)));
+
+        // when
+        MultitransferResult result = multitransferService.createMultitransfer(request);
+
+        // then
+        assertFalse(result.isValid());
+        assertEquals(2, result.getErrors().size());
+        assertTrue(result.getTransferNumbers().isEmpty());
+
+        MultitransferError timeError = result.getErrors().get(0);
+
+        assertEquals(null, timeError.getLine());
+        assertEquals(TransferFields.TIME, timeError.getField());
+        assertEquals(L_DATE_EARLIER_THAN_RESOURCES_DATE, timeError.getMessage());
+
+        MultitransferError quantityError = result.getErrors().get(1);
+
+        assertEquals(Integer.valueOf(1), quantityError.getLine());
+        assertEquals(TransferFields.QUANTITY, quantityError.getField());
+        assertEquals(L_RESOURCES_ARENT_SUFFICIENT, quantityError.getMessage());
+
+        verify(transactionStatus).setRollbackOnly();
+    }
+
+    @Test
+    public void shouldCheckTakenNumbersOfAllLinesTogether() {
+        // given
+        MultitransferRequest request = request(TransferType.PRODUCTION);
+
+        request.setLines(Arrays.asList(new MultitransferLine(2L, BigDecimal.ONE), new MultitransferLine(4L, BigDecimal.TEN)));
+
+        given(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class))).willReturn(
+                Lists.newArrayList("P1-005", "P2-005"), Lists.newArrayList("P2-006"), Collections.<String> emptyList());
+
+        // when
+        multitransferService.createMultitransfer(request);
+
+        // then
+        verify(jdbcTemplate, times(3)).queryForList(anyString(), any(SqlParameterSource.class), eq(String.class));
+        verify(transfer).setField(TransferFields.NUMBER, "P1-006");
+        verify(otherTransfer).setField(TransferFields.NUMBER, "P2-007");
+        verify(materialFlowService, never()).numberAlreadyExist(anyString(), anyString());
+    }
+
+    private MultitransferRequest request(final TransferType type) {
+        MultitransferRequest request = new MultitransferRequest();
+
+        request.setType(type.getStringValue());
+        request.setTime(new Date());
+        request.setLocationTo(1L);
+
+        return request;
+    }
+
+}
@@ -27,7 +27,7 @@ import com.qcadoo.mes.basic.controllers.dataProvider.dto.ProductDTO;
 import com.qcadoo.mes.basic.controllers.dataProvider.responses.DataResponse;
 import com.qcadoo.mes.materialFlowResources.constants.DocumentState;
 import com.qcadoo.mes.materialFlowResources.constants.DocumentType;
-import com.qcadoo.mes.materialFlowResources.service.ReservationsService;
+import com.qcadoo.mes.materialFlowResources.reservations.ReservationsMaintainer;
 
 @Repository
 public class DocumentPositionService {
@@ -48,7 +48,7 @@ public class DocumentPositionService {
     private DocumentPositionResourcesHelper positionResourcesHelper;
 
     @Autowired
-    private ReservationsService reservationsService;
+    private ReservationsMaintainer reservationsMaintainer;
 
     public GridResponse<DocumentPositionDTO> findAll(final Long documentId, final String _sidx, final String _sord, int page,
             int perPage, final DocumentPositionDTO position) {
@@ -81,13 +81,11 @@ public class DocumentPositionService {
 
         queryBuilder.append("DELETE FROM materialflowresources_position WHERE id = :id ");
 
-        String queryForDocumentId = "SELECT document_id, product_id, resource_id, quantity FROM materialflowresources_position WHERE id = :id";
+        String queryForDocumentId = "SELECT document_id FROM materialflowresources_position WHERE id = :id";
 
-        Map<String, Object> result = jdbcTemplate.queryForMap(queryForDocumentId, params);
+        Long documentId = jdbcTemplate.queryForObject(queryForDocumentId, params, Long.class);
 
-        params.putAll(result);
-
-        reservationsService.deleteReservationFromDocumentPosition(params);
+        reservationsMaintainer.reconcileDocument(documentId, Collections.singletonList(id));
         jdbcTemplate.update(queryBuilder.toString(), params);
     }
 
@@ -112,9 +110,7 @@ public class DocumentPositionService {
         Long positionId = jdbcTemplate.queryForObject(query, params, Long.class);
 
         if (positionId != null) {
-            params.put("id", positionId);
-
-            reservationsService.createReservationFromDocumentPosition(params);
+            reservationsMaintainer.reconcileDocument(getDocumentId(params));
         }
     }
 
@@ -128,8 +124,12 @@ public class DocumentPositionService {
 
         String query = String.format("UPDATE materialflowresources_position " + "SET %s " + "WHERE id = :id ", set);
 
-        reservationsService.updateReservationFromDocumentPosition(params);
         jdbcTemplate.update(query, params);
+        reservationsMaintainer.reconcileDocument(getDocumentId(params));
+    }
+
+    private Long getDocumentId(final Map<String, Object> params) {
+        return Long.valueOf(params.get("document_id").toString());
     }
 
     private List<StorageLocationDTO> getStorageLocations(String preparedQuery, String q, Map<String, Object> paramMap) {
@@ -234,8 +234,10 @@ public class DocumentPositionValidator {
             }
         }
 
-        String query = "SELECT availableQuantity FROM materialflowresources_resourcestockdto "
-                + "WHERE product_id = :product_id AND location_id = :location_id";
+        String query = "SELECT COALESCE(SUM(r.quantity), 0) - COALESCE((SELECT SUM(rs.quantity) "
+                + "FROM materialflowresources_reservedstock rs "
+                + "WHERE rs.product_id = :product_id AND rs.location_id = :location_id), 0) AS availableQuantity "
+                + "FROM materialflowresources_resource r WHERE r.product_id = :product_id AND r.location_id = :location_id";
 
         Map<String, Object> params = Maps.newHashMap();
 
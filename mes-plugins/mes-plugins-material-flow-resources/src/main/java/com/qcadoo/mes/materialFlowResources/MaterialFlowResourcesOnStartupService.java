@@ -9,6 +9,10 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
+import com.qcadoo.mes.materialFlowResources.constants.ParameterFieldsMFR;
+import com.qcadoo.mes.materialFlowResources.costNorms.CostNormsMaintainer;
+import com.qcadoo.mes.materialFlowResources.reservations.ReservationsMaintainer;
+import com.qcadoo.mes.materialFlowResources.service.ReservationsService;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -24,14 +28,31 @@ public class MaterialFlowResourcesOnStartupService extends Module {
     @Autowired
     private ParameterService parameterService;
 
+    @Autowired
+    private CostNormsMaintainer costNormsMaintainer;
+
+    @Autowired
+    private ReservationsMaintainer reservationsMaintainer;
+
+    @Autowired
+    private ReservationsService reservationsService;
+
     @Override
     public void enableOnStartup() {
+        parameterService.cacheBelongsToField(ParameterFieldsMFR.DOCUMENT_POSITION_PARAMETERS);
         setDocumentPositionParameters();
+        costNormsMaintainer.rebuildIfEmpty();
+        reservationsMaintainer.rebuildIfEmpty();
+        reservationsService.cleanReservations();
     }
 
     @Override
     public void enable() {
+        parameterService.cacheBelongsToField(ParameterFieldsMFR.DOCUMENT_POSITION_PARAMETERS);
         setDocumentPositionParameters();
+        costNormsMaintainer.rebuildIfEmpty();
+        reservationsMaintainer.rebuildIfEmpty();
+        reservationsService.cleanReservations();
     }
 
     @Transactional
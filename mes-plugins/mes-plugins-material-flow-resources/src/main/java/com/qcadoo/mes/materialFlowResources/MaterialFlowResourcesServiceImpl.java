@@ -49,6 +49,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.Maps;
 import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.basic.ParameterSnapshot;
 import com.qcadoo.mes.materialFlow.constants.MaterialFlowConstants;
 import com.qcadoo.mes.materialFlowResources.constants.ChangeDateWhenTransferToWarehouseType;
 import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
@@ -340,20 +341,18 @@ public class MaterialFlowResourcesServiceImpl implements MaterialFlowResourcesSe
 
     @Override
     public boolean canChangeDateWhenTransferToWarehouse() {
-        Entity documentPositionParameters = parameterService.getParameter().getBelongsToField(
+        ParameterSnapshot documentPositionParameters = parameterService.getParameters().getBelongsToField(
                 ParameterFieldsMFR.DOCUMENT_POSITION_PARAMETERS);
-        String changeDateWhenTransferToWarehouseType = documentPositionParameters.getStringField(
-                ParameterFieldsMFR.CHANGE_DATE_WHEN_TRANSFER_TO_WAREHOUSE_TYPE);
+        String changeDateWhenTransferToWarehouseType = documentPositionParameters.getChangeDateWhenTransferToWarehouseType();
 
         return !ChangeDateWhenTransferToWarehouseType.NEVER.getStringValue().equals(changeDateWhenTransferToWarehouseType);
     }
 
     @Override
     public boolean shouldValidateDateWhenTransferToWarehouse() {
-        Entity documentPositionParameters = parameterService.getParameter().getBelongsToField(
+        ParameterSnapshot documentPositionParameters = parameterService.getParameters().getBelongsToField(
                 ParameterFieldsMFR.DOCUMENT_POSITION_PARAMETERS);
-        String changeDateWhenTransferToWarehouseType = documentPositionParameters.getStringField(
-                ParameterFieldsMFR.CHANGE_DATE_WHEN_TRANSFER_TO_WAREHOUSE_TYPE);
+        String changeDateWhenTransferToWarehouseType = documentPositionParameters.getChangeDateWhenTransferToWarehouseType();
 
         return ChangeDateWhenTransferToWarehouseType.VALIDATE_WITH_RESOURCES.getStringValue().equals(
                 changeDateWhenTransferToWarehouseType);
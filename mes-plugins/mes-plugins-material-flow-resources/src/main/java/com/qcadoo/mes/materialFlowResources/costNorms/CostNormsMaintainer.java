@@ -0,0 +1,138 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.costNorms;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
+import com.qcadoo.mes.materialFlowResources.costNorms.dao.CostNormsDao;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Keeps per-warehouse cost norm aggregates (price-weighted value and quantity of resources, last purchase cost) up to date
+ * as resources and receipts change, so cost norms can be read without scanning resources and document positions.
+ */
+@Service
+public class CostNormsMaintainer {
+
+    @Autowired
+    private CostNormsDao costNormsDao;
+
+    public void onResourceSaved(final Entity previousResource, final Entity resource) {
+        if (productId(resource) == null || locationId(resource) == null) {
+            return;
+        }
+        if (previousResource != null && sameStockKey(previousResource, resource)) {
+            BigDecimal valueDelta = value(resource).subtract(value(previousResource));
+            BigDecimal quantityDelta = pricedQuantity(resource).subtract(pricedQuantity(previousResource));
+
+            if (valueDelta.signum() != 0 || quantityDelta.signum() != 0) {
+                costNormsDao.addToWarehouseAverageCost(productId(resource), locationId(resource), valueDelta, quantityDelta);
+            }
+        } else {
+            if (previousResource != null) {
+                onResourceDeleted(previousResource);
+            }
+            addResource(resource, BigDecimal.ONE);
+        }
+    }
+
+    public void onResourceDeleted(final Entity resource) {
+        addResource(resource, BigDecimal.ONE.negate());
+    }
+
+    public void onPurchase(final Entity product, final Entity warehouse, final BigDecimal price, final Date time) {
+        if (product == null || warehouse == null || price == null) {
+            return;
+        }
+        costNormsDao.updateWarehouseLastPurchaseCost(product.getId(), warehouse.getId(), price, time);
+    }
+
+    public void rebuild() {
+        costNormsDao.rebuildWarehouseCostNorms();
+    }
+
+    /**
+     * Rebuilds aggregates when there are none yet or when their (product, warehouse) unique key is missing, which is created
+     * first - incremental updates rely on it.
+     */
+    public void rebuildIfEmpty() {
+        if (!costNormsDao.hasWarehouseCostNormsUniqueKey()) {
+            costNormsDao.createWarehouseCostNormsUniqueKey();
+            rebuild();
+        } else if (!costNormsDao.hasWarehouseCostNorms()) {
+            rebuild();
+        }
+    }
+
+    private void addResource(final Entity resource, final BigDecimal sign) {
+        BigDecimal quantity = pricedQuantity(resource);
+
+        if (quantity.signum() != 0 && productId(resource) != null && locationId(resource) != null) {
+            costNormsDao.addToWarehouseAverageCost(productId(resource), locationId(resource), value(resource).multiply(sign),
+                    quantity.multiply(sign));
+        }
+    }
+
+    private boolean sameStockKey(final Entity previousResource, final Entity resource) {
+        return Objects.equals(productId(previousResource), productId(resource))
+                && Objects.equals(locationId(previousResource), locationId(resource));
+    }
+
+    private BigDecimal pricedQuantity(final Entity resource) {
+        BigDecimal quantity = resource.getDecimalField(ResourceFields.QUANTITY);
+
+        if (resource.getDecimalField(ResourceFields.PRICE) == null || quantity == null) {
+            return BigDecimal.ZERO;
+        }
+        return quantity;
+    }
+
+    private BigDecimal value(final Entity resource) {
+        BigDecimal price = resource.getDecimalField(ResourceFields.PRICE);
+
+        if (price == null) {
+            return BigDecimal.ZERO;
+        }
+        return price.multiply(pricedQuantity(resource));
+    }
+
+    private Long productId(final Entity resource) {
+        Entity product = resource.getBelongsToField(ResourceFields.PRODUCT);
+
+        return product == null ? null : product.getId();
+    }
+
+    private Long locationId(final Entity resource) {
+        Entity location = resource.getBelongsToField(ResourceFields.LOCATION);
+
+        return location == null ? null : location.getId();
+    }
+
+}
@@ -31,4 +31,6 @@ public interface CostNormsService {
 
     void updateCostNormsForProductsFromWarehouses(final List<Entity> products, final List<Entity> warehouses);
 
+    void rebuildWarehouseCostNorms();
+
 }
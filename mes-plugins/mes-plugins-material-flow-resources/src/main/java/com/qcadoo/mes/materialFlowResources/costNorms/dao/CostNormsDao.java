@@ -23,7 +23,9 @@
  */
 package com.qcadoo.mes.materialFlowResources.costNorms.dao;
 
+import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import com.qcadoo.mes.materialFlowResources.costNorms.dao.model.CostNorm;
@@ -35,4 +37,18 @@ public interface CostNormsDao {
     public List<CostNorm> getAverageCostForProducts(List<Long> productIds, List<Long> warehousesIds);
 
     public void updateCostNormsForProducts(Collection<CostNorm> costNorms);
+
+    public List<CostNorm> getWarehouseCostNormsForProducts(List<Long> productIds, List<Long> warehousesIds);
+
+    public void addToWarehouseAverageCost(Long productId, Long warehouseId, BigDecimal value, BigDecimal quantity);
+
+    public void updateWarehouseLastPurchaseCost(Long productId, Long warehouseId, BigDecimal lastPurchaseCost, Date time);
+
+    public boolean hasWarehouseCostNorms();
+
+    public boolean hasWarehouseCostNormsUniqueKey();
+
+    public void createWarehouseCostNormsUniqueKey();
+
+    public void rebuildWarehouseCostNorms();
 }
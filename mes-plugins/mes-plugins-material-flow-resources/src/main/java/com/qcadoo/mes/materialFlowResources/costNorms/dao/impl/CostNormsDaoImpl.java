@@ -25,6 +25,7 @@ package com.qcadoo.mes.materialFlowResources.costNorms.dao.impl;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -42,6 +43,8 @@ import com.qcadoo.mes.materialFlowResources.costNorms.dao.model.CostNorm;
 @Repository
 public class CostNormsDaoImpl implements CostNormsDao {
 
+    private static final String L_WAREHOUSE_COST_NORM_UNIQUE_KEY = "materialflowresources_warehousecostnorm_product_location_key";
+
     @Autowired
     private NamedParameterJdbcTemplate jdbcTemplate;
 
@@ -117,9 +120,13 @@ public class CostNormsDaoImpl implements CostNormsDao {
     public void updateCostNormsForProducts(Collection<CostNorm> costNorms) {
 
         for (CostNorm costNorm : costNorms) {
+            String valuesToUpdate = prepareValuesToUpdate(costNorm);
+            if (valuesToUpdate.isEmpty()) {
+                continue;
+            }
             StringBuilder queryBuilder = new StringBuilder();
             queryBuilder.append("UPDATE basic_product SET ");
-            queryBuilder.append(prepareValuesToUpdate(costNorm));
+            queryBuilder.append(valuesToUpdate);
             queryBuilder.append(" WHERE id = :productId");
             SqlParameterSource namedParameters = new MapSqlParameterSource("productId", costNorm.getProductId())
                     .addValue("lastPurchaseCost", costNorm.getLastPurchaseCost())
@@ -158,4 +165,112 @@ public class CostNormsDaoImpl implements CostNormsDao {
         return values.toString();
     }
 
+    @Override
+    public List<CostNorm> getWarehouseCostNormsForProducts(List<Long> productIds, List<Long> warehousesIds) {
+        StringBuilder queryBuilder = new StringBuilder();
+        queryBuilder.append("SELECT wcn.product_id AS productId, ");
+        queryBuilder.append("(array_agg(wcn.lastpurchasecost ORDER BY wcn.lastpurchasetime DESC NULLS LAST))[1] ");
+        queryBuilder.append("AS lastPurchaseCost, ");
+        queryBuilder.append("SUM(wcn.valuesum)/NULLIF(SUM(wcn.quantitysum), 0) AS averageCost ");
+        queryBuilder.append("FROM materialflowresources_warehousecostnorm wcn WHERE true ");
+        if (!productIds.isEmpty()) {
+            queryBuilder.append("AND wcn.product_id IN (:productIds) ");
+        }
+        if (!warehousesIds.isEmpty()) {
+            queryBuilder.append("AND wcn.location_id IN (:warehousesIds) ");
+        }
+        queryBuilder.append("GROUP BY wcn.product_id ");
+        // products with neither a purchase nor priced stock left have nothing to update
+        queryBuilder.append("HAVING bool_or(wcn.lastpurchasecost IS NOT NULL) OR SUM(wcn.quantitysum) <> 0");
+        SqlParameterSource namedParameters = new MapSqlParameterSource("productIds", productIds).addValue("warehousesIds",
+                warehousesIds);
+        List<Map<String, Object>> queryForList = jdbcTemplate.queryForList(queryBuilder.toString(), namedParameters);
+        List<CostNorm> costNorms = Lists.newArrayList();
+        for (Map<String, Object> row : queryForList) {
+            CostNorm costNorm = new CostNorm();
+            costNorm.setProductId((Long) row.get("productId"));
+            costNorm.setLastPurchaseCost((BigDecimal) row.get("lastPurchaseCost"));
+            costNorm.setAverageCost((BigDecimal) row.get("averageCost"));
+            costNorms.add(costNorm);
+        }
+        return costNorms;
+    }
+
+    @Override
+    public void addToWarehouseAverageCost(Long productId, Long warehouseId, BigDecimal value, BigDecimal quantity) {
+        SqlParameterSource namedParameters = new MapSqlParameterSource("productId", productId)
+                .addValue("warehouseId", warehouseId).addValue("value", value).addValue("quantity", quantity);
+
+        jdbcTemplate.update("INSERT INTO materialflowresources_warehousecostnorm AS wcn "
+                + "(product_id, location_id, valuesum, quantitysum) VALUES (:productId, :warehouseId, :value, :quantity) "
+                + "ON CONFLICT (product_id, location_id) DO UPDATE "
+                + "SET valuesum = wcn.valuesum + EXCLUDED.valuesum, quantitysum = wcn.quantitysum + EXCLUDED.quantitysum",
+                namedParameters);
+    }
+
+    @Override
+    public void updateWarehouseLastPurchaseCost(Long productId, Long warehouseId, BigDecimal lastPurchaseCost, Date time) {
+        SqlParameterSource namedParameters = new MapSqlParameterSource("productId", productId)
+                .addValue("warehouseId", warehouseId).addValue("lastPurchaseCost", lastPurchaseCost).addValue("time", time);
+
+        jdbcTemplate.update("INSERT INTO materialflowresources_warehousecostnorm AS wcn "
+                + "(product_id, location_id, lastpurchasecost, lastpurchasetime, valuesum, quantitysum) "
+                + "VALUES (:productId, :warehouseId, :lastPurchaseCost, :time, 0, 0) "
+                + "ON CONFLICT (product_id, location_id) DO UPDATE "
+                + "SET lastpurchasecost = EXCLUDED.lastpurchasecost, lastpurchasetime = EXCLUDED.lastpurchasetime "
+                + "WHERE wcn.lastpurchasetime IS NULL OR wcn.lastpurchasetime <= EXCLUDED.lastpurchasetime", namedParameters);
+    }
+
+    @Override
+    public boolean hasWarehouseCostNorms() {
+        return jdbcTemplate.queryForObject("SELECT EXISTS (SELECT id FROM materialflowresources_warehousecostnorm)",
+                new MapSqlParameterSource(), Boolean.class);
+    }
+
+    @Override
+    public boolean hasWarehouseCostNormsUniqueKey() {
+        return jdbcTemplate.queryForObject("SELECT EXISTS (SELECT indexname FROM pg_indexes WHERE indexname = :indexName)",
+                new MapSqlParameterSource("indexName", L_WAREHOUSE_COST_NORM_UNIQUE_KEY), Boolean.class);
+    }
+
+    @Override
+    public void createWarehouseCostNormsUniqueKey() {
+        SqlParameterSource namedParameters = new MapSqlParameterSource();
+
+        // aggregates may hold duplicates written before the key existed, they are rebuilt from scratch anyway
+        jdbcTemplate.update("DELETE FROM materialflowresources_warehousecostnorm", namedParameters);
+        jdbcTemplate.update("CREATE UNIQUE INDEX IF NOT EXISTS " + L_WAREHOUSE_COST_NORM_UNIQUE_KEY
+                + " ON materialflowresources_warehousecostnorm (product_id, location_id)", namedParameters);
+    }
+
+    @Override
+    public void rebuildWarehouseCostNorms() {
+        SqlParameterSource namedParameters = new MapSqlParameterSource();
+
+        jdbcTemplate.update("DELETE FROM materialflowresources_warehousecostnorm", namedParameters);
+
+        StringBuilder averageCostsBuilder = new StringBuilder();
+        averageCostsBuilder.append("INSERT INTO materialflowresources_warehousecostnorm ");
+        averageCostsBuilder.append("(product_id, location_id, valuesum, quantitysum) ");
+        averageCostsBuilder.append("SELECT r.product_id, r.location_id, SUM(r.price * r.quantity), SUM(r.quantity) ");
+        averageCostsBuilder.append("FROM materialflowresources_resource r WHERE r.price IS NOT NULL ");
+        averageCostsBuilder.append("GROUP BY r.product_id, r.location_id");
+        jdbcTemplate.update(averageCostsBuilder.toString(), namedParameters);
+
+        StringBuilder lastPurchasesBuilder = new StringBuilder();
+        lastPurchasesBuilder.append("SELECT DISTINCT ON (p.product_id, d.locationto_id) ");
+        lastPurchasesBuilder.append("p.product_id AS productId, d.locationto_id AS warehouseId, ");
+        lastPurchasesBuilder.append("p.price AS lastPurchaseCost, d.time AS time ");
+        lastPurchasesBuilder.append("FROM materialflowresources_position p ");
+        lastPurchasesBuilder.append("JOIN materialflowresources_document d ON d.id = p.document_id ");
+        lastPurchasesBuilder.append("AND d.type IN ('01receipt', '02internalInbound') AND d.state = '02accepted' ");
+        lastPurchasesBuilder.append("WHERE p.price IS NOT NULL AND d.locationto_id IS NOT NULL ");
+        lastPurchasesBuilder.append("ORDER BY p.product_id, d.locationto_id, d.time DESC");
+
+        for (Map<String, Object> row : jdbcTemplate.queryForList(lastPurchasesBuilder.toString(), namedParameters)) {
+            updateWarehouseLastPurchaseCost((Long) row.get("productId"), (Long) row.get("warehouseId"),
+                    (BigDecimal) row.get("lastPurchaseCost"), (Date) row.get("time"));
+        }
+    }
+
 }
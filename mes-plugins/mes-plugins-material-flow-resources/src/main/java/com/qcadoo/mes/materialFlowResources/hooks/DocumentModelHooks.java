@@ -34,6 +34,7 @@ import com.qcadoo.localization.api.TranslationService;
 import com.qcadoo.mes.materialFlowResources.constants.DocumentFields;
 import com.qcadoo.mes.materialFlowResources.constants.DocumentType;
 import com.qcadoo.mes.materialFlowResources.constants.PositionFields;
+import com.qcadoo.mes.materialFlowResources.service.DraftDocumentsCounter;
 import com.qcadoo.mes.materialFlowResources.service.ReservationsService;
 import com.qcadoo.mes.materialFlowResources.validators.DocumentValidators;
 import com.qcadoo.model.api.DataDefinition;
@@ -53,6 +54,9 @@ public class DocumentModelHooks {
     @Autowired
     private ReservationsService reservationsService;
 
+    @Autowired
+    private DraftDocumentsCounter draftDocumentsCounter;
+
     public void onCreate(final DataDefinition documentDD, final Entity document) {
         setInitialDocumentNumber(document);
         setInitialDocumentInBuffer(document);
@@ -77,6 +81,12 @@ public class DocumentModelHooks {
         if (document.getBooleanField(DocumentFields.IN_BUFFER) && checkIfLocationsChange(document)) {
             cleanPositionsResource(document);
         }
+        draftDocumentsCounter.documentChanged(document.getId() == null ? null : documentDD.get(document.getId()), document);
+    }
+
+    public boolean onDelete(final DataDefinition documentDD, final Entity document) {
+        draftDocumentsCounter.documentChanged(document, null);
+        return true;
     }
 
     private void cleanPositionsResource(final Entity document) {
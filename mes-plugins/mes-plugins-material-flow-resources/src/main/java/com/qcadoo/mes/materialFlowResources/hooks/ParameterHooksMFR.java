@@ -26,14 +26,19 @@ package com.qcadoo.mes.materialFlowResources.hooks;
 import static com.qcadoo.mes.materialFlowResources.constants.ChangeDateWhenTransferToWarehouseType.NEVER;
 import static com.qcadoo.mes.materialFlowResources.constants.ParameterFieldsMFR.CHANGE_DATE_WHEN_TRANSFER_TO_WAREHOUSE_TYPE;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
 
 @Service
 public class ParameterHooksMFR {
 
+    @Autowired
+    private ParameterService parameterService;
+
     public void setChangeDateWhenTransferToWarehouseTypeDefaultValue(final DataDefinition dataDefinition, final Entity documentPositionParameters) {
         String changeDateWhenTransferToWarehouseType = documentPositionParameters.getStringField(CHANGE_DATE_WHEN_TRANSFER_TO_WAREHOUSE_TYPE);
 
@@ -42,4 +47,8 @@ public class ParameterHooksMFR {
         }
     }
 
+    public void invalidateParameters(final DataDefinition dataDefinition, final Entity documentPositionParameters) {
+        parameterService.invalidateParameters();
+    }
+
 }
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.qcadoo.mes.materialFlowResources.constants.ReservationFields;
+import com.qcadoo.mes.materialFlowResources.reservations.ReservationsMaintainer;
 import com.qcadoo.mes.materialFlowResources.service.ResourceReservationsService;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
@@ -16,6 +17,9 @@ public class ReservationHooks {
     @Autowired
     private ResourceReservationsService resourceReservationsService;
 
+    @Autowired
+    private ReservationsMaintainer reservationsMaintainer;
+
     public void onSave(DataDefinition reservationDD, Entity reservation) {
         Entity newResource = reservation.getBelongsToField(ReservationFields.RESOURCE);
         Entity oldResource = null;
@@ -29,6 +33,8 @@ public class ReservationHooks {
         }
         BigDecimal quantityToAdd = newQuantity.subtract(oldQuantity);
 
+        reservationsMaintainer.onReservationSaved(oldReservation, reservation);
+
         if (oldResource != null && newResource != null) {
             if (oldResource.getId().compareTo(newResource.getId()) != 0) {
                 resourceReservationsService.updateResourceQuantites(reservation, newQuantity);
@@ -46,4 +52,9 @@ public class ReservationHooks {
     public void onCopy(DataDefinition reservationDD, Entity reservation) {
         reservation.setField(ReservationFields.RESOURCE, null);
     }
+
+    public boolean onDelete(DataDefinition reservationDD, Entity reservation) {
+        reservationsMaintainer.onReservationDeleted(reservation);
+        return true;
+    }
 }
@@ -25,6 +25,7 @@ package com.qcadoo.mes.materialFlowResources.hooks;
 
 import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
 import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
+import com.qcadoo.mes.materialFlowResources.costNorms.CostNormsMaintainer;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -52,7 +53,13 @@ public class ResourceModelHooks {
     @Autowired
     private NamedParameterJdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private CostNormsMaintainer costNormsMaintainer;
+
     public void onSave(final DataDefinition resourceDD, final Entity resource) {
+        Entity previousResource = resource.getId() == null ? null : resourceDD.get(resource.getId());
+        costNormsMaintainer.onResourceSaved(previousResource, resource);
+
         if (StringUtils.isEmpty(resource.getStringField(ResourceFields.NUMBER))) {
             Date time = resource.getDateField(ResourceFields.TIME);
             if (time == null) {
@@ -66,6 +73,11 @@ public class ResourceModelHooks {
         }
     }
 
+    public boolean onDelete(final DataDefinition resourceDD, final Entity resource) {
+        costNormsMaintainer.onResourceDeleted(resource);
+        return true;
+    }
+
     public void onCreate(final DataDefinition resourceDD, final Entity resource) {
         resource.setField(ResourceFields.IS_CORRECTED, false);
         if (resource.getField(ResourceFields.WASTE) == null) {
@@ -0,0 +1,176 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.reservations;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
+import com.qcadoo.mes.materialFlowResources.constants.ReservationFields;
+import com.qcadoo.mes.materialFlowResources.reservations.dao.ReservationsDao;
+import com.qcadoo.mes.materialFlowResources.reservations.dao.model.ReservedQuantity;
+import com.qcadoo.mes.materialFlowResources.service.ReservationsService;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Keeps reservations of document positions and the per-location and product reserved quantity totals up to date. A document's
+ * reservations are reconciled with its positions by a set-based diff, so availability checks can read the totals instead of
+ * summing reservations.
+ */
+@Service
+public class ReservationsMaintainer {
+
+    private static final String L_DOCUMENT_ID = "document_id";
+
+    @Autowired
+    private ReservationsDao reservationsDao;
+
+    @Autowired
+    private ReservationsService reservationsService;
+
+    public void reconcileDocument(final Long documentId) {
+        reconcileDocument(documentId, Collections.<Long> emptyList());
+    }
+
+    /**
+     * Inserts, updates and deletes reservations of the given document so they match its positions, and applies the resulting
+     * differences to reserved quantities of resources and to the reserved quantity totals.
+     *
+     * @param documentId
+     *            document id
+     * @param removedPositionIds
+     *            ids of positions which are about to be deleted and should no longer be reserved
+     */
+    public void reconcileDocument(final Long documentId, final Collection<Long> removedPositionIds) {
+        List<ReservedQuantity> previousReservations = reservationsDao.getDocumentReservations(documentId);
+
+        if (reservationsService.reservationsEnabledForDocumentPositions(Collections.<String, Object> singletonMap(
+                L_DOCUMENT_ID, documentId))) {
+            reservationsDao.reconcileDocumentReservations(documentId, removedPositionIds);
+        } else if (!previousReservations.isEmpty()) {
+            reservationsDao.deleteDocumentReservations(documentId);
+        } else {
+            return;
+        }
+
+        Map<Long, BigDecimal> quantitiesByResource = Maps.newHashMap();
+        Table<Long, Long, BigDecimal> quantitiesByLocationAndProduct = HashBasedTable.create();
+
+        for (ReservedQuantity reservation : previousReservations) {
+            addReservation(quantitiesByResource, quantitiesByLocationAndProduct, reservation, reservation.getQuantity().negate());
+        }
+        for (ReservedQuantity reservation : reservationsDao.getDocumentReservations(documentId)) {
+            addReservation(quantitiesByResource, quantitiesByLocationAndProduct, reservation, reservation.getQuantity());
+        }
+
+        quantitiesByResource.values().removeIf(quantity -> quantity.signum() == 0);
+        removeZeros(quantitiesByLocationAndProduct);
+
+        reservationsDao.addToResourceReservedQuantities(quantitiesByResource);
+        reservationsDao.addToReservedStocks(quantitiesByLocationAndProduct);
+    }
+
+    public void onReservationSaved(final Entity previousReservation, final Entity reservation) {
+        Table<Long, Long, BigDecimal> quantitiesByLocationAndProduct = HashBasedTable.create();
+
+        if (previousReservation != null) {
+            addReservation(quantitiesByLocationAndProduct, previousReservation, true);
+        }
+        addReservation(quantitiesByLocationAndProduct, reservation, false);
+
+        removeZeros(quantitiesByLocationAndProduct);
+        reservationsDao.addToReservedStocks(quantitiesByLocationAndProduct);
+    }
+
+    public void onReservationDeleted(final Entity reservation) {
+        Table<Long, Long, BigDecimal> quantitiesByLocationAndProduct = HashBasedTable.create();
+
+        addReservation(quantitiesByLocationAndProduct, reservation, true);
+
+        removeZeros(quantitiesByLocationAndProduct);
+        reservationsDao.addToReservedStocks(quantitiesByLocationAndProduct);
+    }
+
+    public BigDecimal getReservedQuantity(final Entity product, final Entity location) {
+        return reservationsDao.getReservedStockQuantity(product.getId(), location.getId());
+    }
+
+    public void rebuild() {
+        reservationsDao.rebuildReservedStocks();
+    }
+
+    /**
+     * Rebuilds totals when there are none yet or when their (location, product) unique key is missing, which is created first -
+     * incremental updates rely on it.
+     */
+    public void rebuildIfEmpty() {
+        if (!reservationsDao.hasReservedStocksUniqueKey()) {
+            reservationsDao.createReservedStocksUniqueKey();
+            rebuild();
+        } else if (!reservationsDao.hasReservedStocks()) {
+            rebuild();
+        }
+    }
+
+    private void addReservation(final Map<Long, BigDecimal> quantitiesByResource,
+            final Table<Long, Long, BigDecimal> quantitiesByLocationAndProduct, final ReservedQuantity reservation,
+            final BigDecimal quantity) {
+        if (reservation.getResourceId() != null) {
+            quantitiesByResource.merge(reservation.getResourceId(), quantity, BigDecimal::add);
+        }
+        add(quantitiesByLocationAndProduct, reservation.getLocationId(), reservation.getProductId(), quantity);
+    }
+
+    private void addReservation(final Table<Long, Long, BigDecimal> quantitiesByLocationAndProduct, final Entity reservation,
+            final boolean negate) {
+        Entity location = reservation.getBelongsToField(ReservationFields.LOCATION);
+        Entity product = reservation.getBelongsToField(ReservationFields.PRODUCT);
+        BigDecimal quantity = reservation.getDecimalField(ReservationFields.QUANTITY);
+
+        if (location == null || product == null || quantity == null) {
+            return;
+        }
+        add(quantitiesByLocationAndProduct, location.getId(), product.getId(), negate ? quantity.negate() : quantity);
+    }
+
+    private void add(final Table<Long, Long, BigDecimal> quantitiesByLocationAndProduct, final Long locationId,
+            final Long productId, final BigDecimal quantity) {
+        BigDecimal current = quantitiesByLocationAndProduct.get(locationId, productId);
+
+        quantitiesByLocationAndProduct.put(locationId, productId, current == null ? quantity : current.add(quantity));
+    }
+
+    private void removeZeros(final Table<Long, Long, BigDecimal> quantitiesByLocationAndProduct) {
+        quantitiesByLocationAndProduct.cellSet().removeIf(cell -> cell.getValue().signum() == 0);
+    }
+
+}
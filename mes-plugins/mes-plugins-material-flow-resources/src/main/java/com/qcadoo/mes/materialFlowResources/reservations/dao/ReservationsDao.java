@@ -0,0 +1,55 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.reservations.dao;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Table;
+import com.qcadoo.mes.materialFlowResources.reservations.dao.model.ReservedQuantity;
+
+public interface ReservationsDao {
+
+    public List<ReservedQuantity> getDocumentReservations(Long documentId);
+
+    public void deleteDocumentReservations(Long documentId);
+
+    public void reconcileDocumentReservations(Long documentId, Collection<Long> removedPositionIds);
+
+    public void addToResourceReservedQuantities(Map<Long, BigDecimal> quantitiesByResource);
+
+    public void addToReservedStocks(Table<Long, Long, BigDecimal> quantitiesByLocationAndProduct);
+
+    public BigDecimal getReservedStockQuantity(Long productId, Long locationId);
+
+    public boolean hasReservedStocks();
+
+    public boolean hasReservedStocksUniqueKey();
+
+    public void createReservedStocksUniqueKey();
+
+    public void rebuildReservedStocks();
+}
@@ -0,0 +1,190 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.reservations.dao.impl;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Table;
+import com.qcadoo.mes.materialFlowResources.reservations.dao.ReservationsDao;
+import com.qcadoo.mes.materialFlowResources.reservations.dao.model.ReservedQuantity;
+
+@Repository
+public class ReservationsDaoImpl implements ReservationsDao {
+
+    private static final String L_RESERVED_STOCK_UNIQUE_KEY = "materialflowresources_reservedstock_location_product_key";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<ReservedQuantity> getDocumentReservations(Long documentId) {
+        StringBuilder queryBuilder = new StringBuilder();
+        queryBuilder.append("SELECT r.location_id AS locationId, r.product_id AS productId, r.resource_id AS resourceId, ");
+        queryBuilder.append("r.quantity AS quantity ");
+        queryBuilder.append("FROM materialflowresources_reservation r ");
+        queryBuilder.append("JOIN materialflowresources_position p ON p.id = r.position_id ");
+        queryBuilder.append("WHERE p.document_id = :documentId");
+
+        List<ReservedQuantity> reservedQuantities = Lists.newArrayList();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(queryBuilder.toString(), new MapSqlParameterSource(
+                "documentId", documentId))) {
+            reservedQuantities.add(new ReservedQuantity((Long) row.get("locationId"), (Long) row.get("productId"), (Long) row
+                    .get("resourceId"), (BigDecimal) row.get("quantity")));
+        }
+        return reservedQuantities;
+    }
+
+    @Override
+    public void deleteDocumentReservations(Long documentId) {
+        jdbcTemplate.update("DELETE FROM materialflowresources_reservation r USING materialflowresources_position p "
+                + "WHERE r.position_id = p.id AND p.document_id = :documentId", new MapSqlParameterSource("documentId",
+                documentId));
+    }
+
+    @Override
+    public void reconcileDocumentReservations(Long documentId, Collection<Long> removedPositionIds) {
+        SqlParameterSource namedParameters = new MapSqlParameterSource("documentId", documentId).addValue(
+                "removedPositionIds", removedPositionIds);
+
+        StringBuilder reservedPositions = new StringBuilder();
+        reservedPositions.append("FROM materialflowresources_position p ");
+        reservedPositions.append("JOIN materialflowresources_document d ON d.id = p.document_id ");
+        reservedPositions.append("WHERE p.document_id = :documentId AND p.quantity > 0 ");
+        if (!removedPositionIds.isEmpty()) {
+            reservedPositions.append("AND p.id NOT IN (:removedPositionIds) ");
+        }
+
+        StringBuilder deleteBuilder = new StringBuilder();
+        deleteBuilder.append("DELETE FROM materialflowresources_reservation r USING materialflowresources_position p ");
+        deleteBuilder.append("WHERE r.position_id = p.id AND p.document_id = :documentId ");
+        deleteBuilder.append("AND (p.quantity IS NULL OR p.quantity <= 0");
+        if (!removedPositionIds.isEmpty()) {
+            deleteBuilder.append(" OR p.id IN (:removedPositionIds)");
+        }
+        deleteBuilder.append(")");
+        jdbcTemplate.update(deleteBuilder.toString(), namedParameters);
+
+        StringBuilder updateBuilder = new StringBuilder();
+        updateBuilder.append("UPDATE materialflowresources_reservation r SET location_id = d.locationfrom_id, ");
+        updateBuilder.append("product_id = p.product_id, quantity = p.quantity, resource_id = p.resource_id ");
+        updateBuilder.append(reservedPositions);
+        updateBuilder.append("AND r.position_id = p.id ");
+        updateBuilder.append("AND (r.location_id, r.product_id, r.quantity, r.resource_id) ");
+        updateBuilder.append("IS DISTINCT FROM (d.locationfrom_id, p.product_id, p.quantity, p.resource_id)");
+        jdbcTemplate.update(updateBuilder.toString(), namedParameters);
+
+        StringBuilder insertBuilder = new StringBuilder();
+        insertBuilder.append("INSERT INTO materialflowresources_reservation ");
+        insertBuilder.append("(location_id, product_id, quantity, position_id, resource_id) ");
+        insertBuilder.append("SELECT d.locationfrom_id, p.product_id, p.quantity, p.id, p.resource_id ");
+        insertBuilder.append(reservedPositions);
+        insertBuilder.append("AND NOT EXISTS (SELECT id FROM materialflowresources_reservation WHERE position_id = p.id)");
+        jdbcTemplate.update(insertBuilder.toString(), namedParameters);
+    }
+
+    @Override
+    public void addToResourceReservedQuantities(Map<Long, BigDecimal> quantitiesByResource) {
+        List<SqlParameterSource> batchParameters = Lists.newArrayList();
+        for (Map.Entry<Long, BigDecimal> quantityByResource : quantitiesByResource.entrySet()) {
+            batchParameters.add(new MapSqlParameterSource("resourceId", quantityByResource.getKey()).addValue("quantity",
+                    quantityByResource.getValue()));
+        }
+        if (batchParameters.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate("UPDATE materialflowresources_resource "
+                + "SET reservedquantity = reservedquantity + :quantity, availablequantity = availablequantity - :quantity "
+                + "WHERE id = :resourceId", batchParameters.toArray(new SqlParameterSource[batchParameters.size()]));
+    }
+
+    @Override
+    public void addToReservedStocks(Table<Long, Long, BigDecimal> quantitiesByLocationAndProduct) {
+        List<SqlParameterSource> batchParameters = Lists.newArrayList();
+        for (Table.Cell<Long, Long, BigDecimal> quantity : quantitiesByLocationAndProduct.cellSet()) {
+            batchParameters.add(new MapSqlParameterSource("locationId", quantity.getRowKey()).addValue("productId",
+                    quantity.getColumnKey()).addValue("quantity", quantity.getValue()));
+        }
+        if (batchParameters.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO materialflowresources_reservedstock AS rs (location_id, product_id, quantity) "
+                + "VALUES (:locationId, :productId, :quantity) "
+                + "ON CONFLICT (location_id, product_id) DO UPDATE SET quantity = rs.quantity + EXCLUDED.quantity",
+                batchParameters.toArray(new SqlParameterSource[batchParameters.size()]));
+    }
+
+    @Override
+    public BigDecimal getReservedStockQuantity(Long productId, Long locationId) {
+        SqlParameterSource namedParameters = new MapSqlParameterSource("productId", productId).addValue("locationId",
+                locationId);
+
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM materialflowresources_reservedstock "
+                + "WHERE location_id = :locationId AND product_id = :productId", namedParameters, BigDecimal.class);
+    }
+
+    @Override
+    public boolean hasReservedStocks() {
+        return jdbcTemplate.queryForObject("SELECT EXISTS (SELECT id FROM materialflowresources_reservedstock)",
+                new MapSqlParameterSource(), Boolean.class);
+    }
+
+    @Override
+    public boolean hasReservedStocksUniqueKey() {
+        return jdbcTemplate.queryForObject("SELECT EXISTS (SELECT indexname FROM pg_indexes WHERE indexname = :indexName)",
+                new MapSqlParameterSource("indexName", L_RESERVED_STOCK_UNIQUE_KEY), Boolean.class);
+    }
+
+    @Override
+    public void createReservedStocksUniqueKey() {
+        SqlParameterSource namedParameters = new MapSqlParameterSource();
+
+        // totals may hold duplicates written before the key existed, they are rebuilt from scratch anyway
+        jdbcTemplate.update("DELETE FROM materialflowresources_reservedstock", namedParameters);
+        jdbcTemplate.update("CREATE UNIQUE INDEX IF NOT EXISTS " + L_RESERVED_STOCK_UNIQUE_KEY
+                + " ON materialflowresources_reservedstock (location_id, product_id)", namedParameters);
+    }
+
+    @Override
+    public void rebuildReservedStocks() {
+        SqlParameterSource namedParameters = new MapSqlParameterSource();
+
+        jdbcTemplate.update("DELETE FROM materialflowresources_reservedstock", namedParameters);
+        jdbcTemplate.update("INSERT INTO materialflowresources_reservedstock (location_id, product_id, quantity) "
+                + "SELECT r.location_id, r.product_id, SUM(r.quantity) FROM materialflowresources_reservation r "
+                + "GROUP BY r.location_id, r.product_id", namedParameters);
+    }
+
+}
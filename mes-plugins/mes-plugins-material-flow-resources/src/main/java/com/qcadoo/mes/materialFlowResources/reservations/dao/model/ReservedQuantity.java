@@ -0,0 +1,61 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.reservations.dao.model;
+
+import java.math.BigDecimal;
+
+public class ReservedQuantity {
+
+    private final Long locationId;
+
+    private final Long productId;
+
+    private final Long resourceId;
+
+    private final BigDecimal quantity;
+
+    public ReservedQuantity(final Long locationId, final Long productId, final Long resourceId, final BigDecimal quantity) {
+        this.locationId = locationId;
+        this.productId = productId;
+        this.resourceId = resourceId;
+        this.quantity = quantity;
+    }
+
+    public Long getLocationId() {
+        return locationId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Long getResourceId() {
+        return resourceId;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+}
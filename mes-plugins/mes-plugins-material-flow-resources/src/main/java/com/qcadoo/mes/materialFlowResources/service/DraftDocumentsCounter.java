@@ -0,0 +1,267 @@
+package com.qcadoo.mes.materialFlowResources.service;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.qcadoo.mes.materialFlowResources.constants.DocumentFields;
+import com.qcadoo.mes.materialFlowResources.constants.DocumentState;
+import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+/**
+ * Keeps number of active draft documents (not bound to any order) per pair of locations, separately for every tenant.
+ * Counters are loaded with a single grouped query, then maintained by document model hooks after each commit - this covers
+ * creating, accepting, changing, deactivating (qcadoo deactivates through save, so onSave sees the inactive document) and
+ * deleting documents. They are rebuilt from database periodically, which repairs any drift caused by changes done outside
+ * of model hooks (e.g. plain jdbc updates).
+ */
+@Service
+public class DraftDocumentsCounter {
+
+    private static final long REBUILD_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    private static final String L_ORDER = "order";
+
+    private static final String L_LOCATION_FROM_ID = "locationFromId";
+
+    private static final String L_LOCATION_TO_ID = "locationToId";
+
+    private static final String L_DOCUMENTS_COUNT = "documentsCount";
+
+    private final DataDefinitionService dataDefinitionService;
+
+    private final MultiTenantService multiTenantService;
+
+    private final Map<Integer, TenantCounters> tenantCounters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DraftDocumentsCounter(final DataDefinitionService dataDefinitionService,
+            final MultiTenantService multiTenantService) {
+        this.dataDefinitionService = dataDefinitionService;
+        this.multiTenantService = multiTenantService;
+    }
+
+    private DataDefinition documentDataDefinition() {
+        return dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
+                MaterialFlowResourcesConstants.MODEL_DOCUMENT);
+    }
+
+    /**
+     * Counts draft documents which have source or target location in given set. Empty set means all locations.
+     */
+    public int countForLocations(final Set<Long> locationIds) {
+        int count = 0;
+        for (Map.Entry<DocumentLocations, Integer> counter : getTenantCounters().get().entrySet()) {
+            if (locationIds.isEmpty() || counter.getKey().matches(locationIds)) {
+                count += Math.max(counter.getValue(), 0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Registers change of document done in the current transaction. Pass null as previous state for created document and
+     * null as current state for deleted one.
+     */
+    public void documentChanged(final Entity previousDocument, final Entity currentDocument) {
+        final DocumentLocations removed = isCounted(previousDocument) ? DocumentLocations.of(previousDocument) : null;
+        final DocumentLocations added = isCounted(currentDocument) ? DocumentLocations.of(currentDocument) : null;
+
+        if (Objects.equals(removed, added)) {
+            return;
+        }
+
+        final TenantCounters counters = getTenantCounters();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                private boolean committing;
+
+                @Override
+                public void beforeCommit(final boolean readOnly) {
+                    committing = true;
+                    counters.beginChange();
+                }
+
+                @Override
+                public void afterCompletion(final int status) {
+                    if (!committing) {
+                        return;
+                    }
+                    if (TransactionSynchronization.STATUS_COMMITTED == status
+                            && (currentDocument == null || currentDocument.isValid())) {
+                        counters.completeChange(removed, added);
+                    } else {
+                        counters.completeChange(null, null);
+                    }
+                }
+            });
+        } else {
+            counters.beginChange();
+            counters.completeChange(removed, added);
+        }
+    }
+
+    public void invalidate() {
+        getTenantCounters().invalidate();
+    }
+
+    private TenantCounters getTenantCounters() {
+        return tenantCounters.computeIfAbsent(multiTenantService.getCurrentTenantId(), tenantId -> new TenantCounters());
+    }
+
+    private Map<DocumentLocations, Integer> loadCounters() {
+        StringBuilder query = new StringBuilder();
+        query.append("SELECT doc.locationFrom.id AS ").append(L_LOCATION_FROM_ID).append(", ");
+        query.append("doc.locationTo.id AS ").append(L_LOCATION_TO_ID).append(", ");
+        query.append("count(doc.id) AS ").append(L_DOCUMENTS_COUNT).append(" ");
+        query.append("FROM #materialFlowResources_document doc ");
+        query.append("WHERE doc.state = :state AND doc.active = true ");
+        if (hasOrderField()) {
+            query.append("AND doc.order IS NULL ");
+        }
+        query.append("GROUP BY doc.locationFrom.id, doc.locationTo.id");
+
+        Map<DocumentLocations, Integer> loadedCounters = new ConcurrentHashMap<>();
+        for (Entity row : documentDataDefinition().find(query.toString())
+                .setParameter(DocumentFields.STATE, DocumentState.DRAFT.getStringValue()).list().getEntities()) {
+            loadedCounters.put(new DocumentLocations((Long) row.getField(L_LOCATION_FROM_ID),
+                    (Long) row.getField(L_LOCATION_TO_ID)), ((Number) row.getField(L_DOCUMENTS_COUNT)).intValue());
+        }
+        return loadedCounters;
+    }
+
+    private boolean hasOrderField() {
+        return documentDataDefinition().getField(L_ORDER) != null;
+    }
+
+    private boolean isCounted(final Entity document) {
+        if (document == null || !document.isActive()
+                || !DocumentState.DRAFT.getStringValue().equals(document.getStringField(DocumentFields.STATE))) {
+            return false;
+        }
+        return !hasOrderField() || document.getBelongsToField(L_ORDER) == null;
+    }
+
+    /**
+     * Counters of a single tenant. A change is announced before its transaction commits and applied after it, so a rebuild
+     * can tell whether the loaded counters might already contain a change that is about to be applied (or miss one that was
+     * applied to the previous counters). Such counters are served once and rebuilt on the next read.
+     */
+    private final class TenantCounters {
+
+        private final Object rebuildLock = new Object();
+
+        private Map<DocumentLocations, Integer> counters;
+
+        private long rebuildTime;
+
+        private long generation;
+
+        private int pendingChanges;
+
+        Map<DocumentLocations, Integer> get() {
+            synchronized (this) {
+                if (counters != null && System.currentTimeMillis() - rebuildTime <= REBUILD_INTERVAL) {
+                    return counters;
+                }
+            }
+            synchronized (rebuildLock) {
+                long loadGeneration;
+                synchronized (this) {
+                    if (counters != null && System.currentTimeMillis() - rebuildTime <= REBUILD_INTERVAL) {
+                        return counters;
+                    }
+                    loadGeneration = pendingChanges == 0 ? generation : -1L;
+                }
+
+                Map<DocumentLocations, Integer> loadedCounters = loadCounters();
+
+                synchronized (this) {
+                    counters = loadedCounters;
+                    rebuildTime = loadGeneration == generation ? System.currentTimeMillis() : 0L;
+                    return loadedCounters;
+                }
+            }
+        }
+
+        synchronized void beginChange() {
+            generation++;
+            pendingChanges++;
+        }
+
+        synchronized void completeChange(final DocumentLocations removed, final DocumentLocations added) {
+            pendingChanges--;
+            if (counters == null) {
+                return;
+            }
+            if (removed != null) {
+                counters.merge(removed, -1, Integer::sum);
+            }
+            if (added != null) {
+                counters.merge(added, 1, Integer::sum);
+            }
+        }
+
+        synchronized void invalidate() {
+            rebuildTime = 0L;
+        }
+
+    }
+
+    private static final class DocumentLocations {
+
+        private final Long locationFromId;
+
+        private final Long locationToId;
+
+        private DocumentLocations(final Long locationFromId, final Long locationToId) {
+            this.locationFromId = locationFromId;
+            this.locationToId = locationToId;
+        }
+
+        private static DocumentLocations of(final Entity document) {
+            return new DocumentLocations(idOf(document.getBelongsToField(DocumentFields.LOCATION_FROM)),
+                    idOf(document.getBelongsToField(DocumentFields.LOCATION_TO)));
+        }
+
+        private static Long idOf(final Entity entity) {
+            return entity == null ? null : entity.getId();
+        }
+
+        private boolean matches(final Set<Long> locationIds) {
+            return locationIds.contains(locationFromId) || locationIds.contains(locationToId);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            DocumentLocations other = (DocumentLocations) obj;
+            return Objects.equals(locationFromId, other.locationFromId) && Objects.equals(locationToId, other.locationToId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(locationFromId, locationToId);
+        }
+    }
+
+}
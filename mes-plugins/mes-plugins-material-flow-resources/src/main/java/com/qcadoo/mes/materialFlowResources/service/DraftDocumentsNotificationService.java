@@ -1,11 +1,9 @@
 package com.qcadoo.mes.materialFlowResources.service;
 
-import static com.qcadoo.model.api.search.SearchRestrictions.eq;
-import static com.qcadoo.model.api.search.SearchRestrictions.in;
-import static com.qcadoo.model.api.search.SearchRestrictions.isNull;
-import static com.qcadoo.model.api.search.SearchRestrictions.or;
-
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,44 +11,43 @@ import org.springframework.stereotype.Service;
 
 import com.qcadoo.mes.materialFlow.constants.UserFieldsMF;
 import com.qcadoo.mes.materialFlow.constants.UserLocationFields;
-import com.qcadoo.mes.materialFlowResources.constants.DocumentFields;
-import com.qcadoo.mes.materialFlowResources.constants.DocumentState;
-import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
-import com.qcadoo.model.api.EntityList;
-import com.qcadoo.model.api.search.JoinType;
-import com.qcadoo.model.api.search.SearchConjunction;
-import com.qcadoo.model.api.search.SearchCriteriaBuilder;
-import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.security.constants.QcadooSecurityConstants;
+import com.qcadoo.tenant.api.MultiTenantService;
 
 @Service
 public class DraftDocumentsNotificationService {
 
     static final String ROLE_DOCUMENTS_NOTIFICATION = "ROLE_DOCUMENTS_NOTIFICATION";
 
+    private static final long USER_COUNT_TIME_TO_LIVE = TimeUnit.SECONDS.toMillis(15);
+
     private final SecurityService securityService;
 
     private final DataDefinitionService dataDefinitionService;
 
+    private final DraftDocumentsCounter draftDocumentsCounter;
+
+    private final MultiTenantService multiTenantService;
+
+    private final Map<Integer, Map<Long, UserCount>> userCountsByTenant = new ConcurrentHashMap<>();
+
     @Autowired
-    public DraftDocumentsNotificationService(SecurityService securityService, DataDefinitionService dataDefinitionService) {
+    public DraftDocumentsNotificationService(SecurityService securityService, DataDefinitionService dataDefinitionService,
+            DraftDocumentsCounter draftDocumentsCounter, MultiTenantService multiTenantService) {
         this.securityService = securityService;
         this.dataDefinitionService = dataDefinitionService;
+        this.draftDocumentsCounter = draftDocumentsCounter;
+        this.multiTenantService = multiTenantService;
     }
 
     private DataDefinition userDataDefinition() {
         return dataDefinitionService.get(QcadooSecurityConstants.PLUGIN_IDENTIFIER, QcadooSecurityConstants.MODEL_USER);
     }
 
-    private DataDefinition documentDataDefinition() {
-        return dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
-                MaterialFlowResourcesConstants.MODEL_DOCUMENT);
-    }
-
     public boolean shouldNotifyCurrentUser() {
         Long currentUserId = securityService.getCurrentUserId();
         return currentUserId != null && securityService.hasCurrentUserRole(ROLE_DOCUMENTS_NOTIFICATION)
@@ -58,23 +55,37 @@ public class DraftDocumentsNotificationService {
     }
 
     int countDraftDocumentsForUser(Long currentUserId) {
-        EntityList userLocations = userDataDefinition().get(currentUserId).getHasManyField(UserFieldsMF.USER_LOCATIONS);
-        SearchConjunction conjunction = SearchRestrictions.conjunction();
-        conjunction.add(eq(DocumentFields.STATE, DocumentState.DRAFT.getStringValue()));
-        conjunction.add(eq(DocumentFields.ACTIVE, Boolean.TRUE));
-        conjunction.add(isNull("order.id"));
-
-        SearchCriteriaBuilder criteriaBuilder = documentDataDefinition().find();
-        if (!userLocations.isEmpty()) {
-            criteriaBuilder.createAlias(DocumentFields.LOCATION_FROM, "locFrom", JoinType.LEFT);
-            criteriaBuilder.createAlias(DocumentFields.LOCATION_TO, "locTo", JoinType.LEFT);
-
-            Set<Long> locationIds = userLocations.stream().map(ul -> ul.getBelongsToField(UserLocationFields.LOCATION))
-                    .map(Entity::getId).collect(Collectors.toSet());
-            conjunction.add(or(in("locFrom.id", locationIds), in("locTo.id", locationIds)));
+        long now = System.currentTimeMillis();
+        Map<Long, UserCount> userCounts = userCountsByTenant.computeIfAbsent(multiTenantService.getCurrentTenantId(),
+                tenantId -> new ConcurrentHashMap<>());
+        UserCount userCount = userCounts.get(currentUserId);
+        if (userCount == null || userCount.isExpired(now)) {
+            userCount = new UserCount(draftDocumentsCounter.countForLocations(getUserLocationIds(currentUserId)), now
+                    + USER_COUNT_TIME_TO_LIVE);
+            userCounts.put(currentUserId, userCount);
+        }
+        return userCount.count;
+    }
+
+    private Set<Long> getUserLocationIds(Long userId) {
+        return userDataDefinition().get(userId).getHasManyField(UserFieldsMF.USER_LOCATIONS).stream()
+                .map(ul -> ul.getBelongsToField(UserLocationFields.LOCATION)).map(Entity::getId).collect(Collectors.toSet());
+    }
+
+    private static final class UserCount {
+
+        private final int count;
+
+        private final long expirationTime;
+
+        private UserCount(final int count, final long expirationTime) {
+            this.count = count;
+            this.expirationTime = expirationTime;
+        }
+
+        private boolean isExpired(final long now) {
+            return now > expirationTime;
         }
-        criteriaBuilder.add(conjunction);
-        return criteriaBuilder.list().getTotalNumberOfEntities();
     }
 
 }
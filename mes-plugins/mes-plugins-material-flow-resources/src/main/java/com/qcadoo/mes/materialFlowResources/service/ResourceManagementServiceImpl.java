@@ -45,6 +45,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.qcadoo.mes.basic.CalculationQuantityService;
 import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.basic.ParameterSnapshot;
 import com.qcadoo.mes.basic.constants.ProductFields;
 import com.qcadoo.mes.materialFlowResources.constants.DocumentFields;
 import com.qcadoo.mes.materialFlowResources.constants.DocumentType;
@@ -56,6 +57,7 @@ import com.qcadoo.mes.materialFlowResources.constants.ReservationFields;
 import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
 import com.qcadoo.mes.materialFlowResources.constants.StorageLocationFields;
 import com.qcadoo.mes.materialFlowResources.constants.WarehouseAlgorithm;
+import com.qcadoo.mes.materialFlowResources.costNorms.CostNormsMaintainer;
 import com.qcadoo.mes.materialFlowResources.exceptions.InvalidResourceException;
 import com.qcadoo.mes.materialFlowResources.helpers.NotEnoughResourcesErrorMessageCopyToEntityHelper;
 import com.qcadoo.mes.materialFlowResources.helpers.NotEnoughResourcesErrorMessageHolder;
@@ -96,6 +98,9 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
     @Autowired
     private ResourceStockService resourceStockService;
 
+    @Autowired
+    private CostNormsMaintainer costNormsMaintainer;
+
     @Autowired
     private ReservationsService reservationsService;
 
@@ -197,6 +202,9 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
             throw new InvalidResourceException(resource);
         }
 
+        costNormsMaintainer.onPurchase(product, warehouse, position.getDecimalField(PositionFields.PRICE),
+                resource.getDateField(ResourceFields.TIME));
+
         position.setField("resourceReceiptDocument", resource.getId().toString());
     }
 
@@ -813,12 +821,10 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
             final Entity additionalCode, final Entity position, SearchOrder... searchOrders) {
         List<Entity> resources = getResourcesForLocationCommonCodeConversion(warehouse, product, additionalCode, position, false,
                 searchOrders);
-        Entity documentPositionParameters = parameterService.getParameter().getBelongsToField(
+        ParameterSnapshot documentPositionParameters = parameterService.getParameters().getBelongsToField(
                 ParameterFieldsMFR.DOCUMENT_POSITION_PARAMETERS);
 
-        boolean fillResourceIrrespectiveOfConversion = documentPositionParameters
-                .getBooleanField("fillResourceIrrespectiveOfConversion");
-        if (fillResourceIrrespectiveOfConversion) {
+        if (documentPositionParameters.isFillResourceIrrespectiveOfConversion()) {
             resources.addAll(getResourcesForLocationCommonCodeConversion(warehouse, product, additionalCode, position, true,
                     searchOrders));
         }
@@ -22,6 +22,7 @@ import com.qcadoo.mes.materialFlowResources.constants.PositionFields;
 import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
 import com.qcadoo.mes.materialFlowResources.constants.ResourceStockFields;
 import com.qcadoo.mes.materialFlowResources.dto.ResourceStockDto;
+import com.qcadoo.mes.materialFlowResources.reservations.ReservationsMaintainer;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -35,6 +36,9 @@ public class ResourceStockServiceImpl implements ResourceStockService {
     @Autowired
     private NamedParameterJdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private ReservationsMaintainer reservationsMaintainer;
+
     @Override
     public void createResourceStock(final Entity resource) {
         Entity product = resource.getBelongsToField(ResourceFields.PRODUCT);
@@ -52,12 +56,15 @@ public class ResourceStockServiceImpl implements ResourceStockService {
 
     @Override
     public BigDecimal getResourceStockAvailableQuantity(final Entity product, final Entity location) {
-        BigDecimal availableQuantity = BigDecimal.ZERO;
-        Optional<ResourceStockDto> resourceStock = getResourceStockForProductAndLocation(product, location);
-        if (resourceStock.isPresent()) {
-            availableQuantity = resourceStock.get().getAvailableQuantity();
-        }
-        return availableQuantity;
+        String query = "SELECT COALESCE(SUM(quantity), 0) FROM materialflowresources_resource "
+                + "WHERE location_id = :locationId AND product_id = :productId";
+
+        Map<String, Object> params = Maps.newHashMap();
+        params.put("locationId", location.getId());
+        params.put("productId", product.getId());
+        BigDecimal quantity = jdbcTemplate.queryForObject(query, params, BigDecimal.class);
+
+        return quantity.subtract(reservationsMaintainer.getReservedQuantity(product, location));
     }
 
     @Override
@@ -0,0 +1,215 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.costNorms;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
+import com.qcadoo.mes.materialFlowResources.costNorms.dao.CostNormsDao;
+import com.qcadoo.model.api.Entity;
+
+public class CostNormsMaintainerTest {
+
+    private static final Long L_PRODUCT_ID = 1L;
+
+    private static final Long L_WAREHOUSE_ID = 11L;
+
+    private static final Long L_OTHER_WAREHOUSE_ID = 12L;
+
+    private CostNormsMaintainer costNormsMaintainer;
+
+    @Mock
+    private CostNormsDao costNormsDao;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        costNormsMaintainer = new CostNormsMaintainer();
+
+        ReflectionTestUtils.setField(costNormsMaintainer, "costNormsDao", costNormsDao);
+    }
+
+    @Test
+    public final void shouldAddValueAndQuantityOfNewResource() {
+        // when
+        costNormsMaintainer.onResourceSaved(null, resource(L_WAREHOUSE_ID, "2.5", "4"));
+
+        // then
+        verifyAdded(L_WAREHOUSE_ID, "10", "4");
+    }
+
+    @Test
+    public final void shouldAddOnlyDeltaOfChangedResource() {
+        // when
+        costNormsMaintainer.onResourceSaved(resource(L_WAREHOUSE_ID, "2.5", "4"), resource(L_WAREHOUSE_ID, "2.5", "3"));
+
+        // then
+        verifyAdded(L_WAREHOUSE_ID, "-2.5", "-1");
+    }
+
+    @Test
+    public final void shouldSkipResourceSavedWithoutChanges() {
+        // when
+        costNormsMaintainer.onResourceSaved(resource(L_WAREHOUSE_ID, "2.5", "4"), resource(L_WAREHOUSE_ID, "2.50", "4.000"));
+
+        // then
+        verify(costNormsDao, never()).addToWarehouseAverageCost(anyLong(), anyLong(), any(BigDecimal.class),
+                any(BigDecimal.class));
+    }
+
+    @Test
+    public final void shouldMoveResourceBetweenWarehouses() {
+        // when
+        costNormsMaintainer.onResourceSaved(resource(L_WAREHOUSE_ID, "2", "4"), resource(L_OTHER_WAREHOUSE_ID, "2", "4"));
+
+        // then
+        InOrder inOrder = inOrder(costNormsDao);
+        inOrder.verify(costNormsDao).addToWarehouseAverageCost(eq(L_PRODUCT_ID), eq(L_WAREHOUSE_ID),
+                any(BigDecimal.class), any(BigDecimal.class));
+        inOrder.verify(costNormsDao).addToWarehouseAverageCost(eq(L_PRODUCT_ID), eq(L_OTHER_WAREHOUSE_ID),
+                any(BigDecimal.class), any(BigDecimal.class));
+    }
+
+    @Test
+    public final void shouldSubtractDeletedResource() {
+        // when
+        costNormsMaintainer.onResourceDeleted(resource(L_WAREHOUSE_ID, "2.5", "4"));
+
+        // then
+        verifyAdded(L_WAREHOUSE_ID, "-10", "-4");
+    }
+
+    @Test
+    public final void shouldIgnoreResourceWithoutPrice() {
+        // when
+        costNormsMaintainer.onResourceSaved(null, resource(L_WAREHOUSE_ID, null, "4"));
+
+        // then
+        verify(costNormsDao, never()).addToWarehouseAverageCost(anyLong(), anyLong(), any(BigDecimal.class),
+                any(BigDecimal.class));
+    }
+
+    @Test
+    public final void shouldCountResourceWhenPriceIsSet() {
+        // when
+        costNormsMaintainer.onResourceSaved(resource(L_WAREHOUSE_ID, null, "4"), resource(L_WAREHOUSE_ID, "3", "4"));
+
+        // then
+        verifyAdded(L_WAREHOUSE_ID, "12", "4");
+    }
+
+    @Test
+    public final void shouldUpdateLastPurchaseCost() {
+        // given
+        Date time = new Date();
+        BigDecimal price = new BigDecimal("7.5");
+
+        // when
+        costNormsMaintainer.onPurchase(entity(L_PRODUCT_ID), entity(L_WAREHOUSE_ID), price, time);
+        costNormsMaintainer.onPurchase(entity(L_PRODUCT_ID), entity(L_WAREHOUSE_ID), null, time);
+
+        // then
+        verify(costNormsDao).updateWarehouseLastPurchaseCost(L_PRODUCT_ID, L_WAREHOUSE_ID, price, time);
+    }
+
+    @Test
+    public final void shouldCreateUniqueKeyAndRebuildWhenKeyIsMissing() {
+        // given
+        given(costNormsDao.hasWarehouseCostNormsUniqueKey()).willReturn(false);
+
+        // when
+        costNormsMaintainer.rebuildIfEmpty();
+
+        // then
+        InOrder inOrder = inOrder(costNormsDao);
+        inOrder.verify(costNormsDao).createWarehouseCostNormsUniqueKey();
+        inOrder.verify(costNormsDao).rebuildWarehouseCostNorms();
+    }
+
+    @Test
+    public final void shouldNotRebuildExistingAggregates() {
+        // given
+        given(costNormsDao.hasWarehouseCostNormsUniqueKey()).willReturn(true);
+        given(costNormsDao.hasWarehouseCostNorms()).willReturn(true);
+
+        // when
+        costNormsMaintainer.rebuildIfEmpty();
+
+        // then
+        verify(costNormsDao, never()).createWarehouseCostNormsUniqueKey();
+        verify(costNormsDao, never()).rebuildWarehouseCostNorms();
+    }
+
+    private void verifyAdded(final Long warehouseId, final String value, final String quantity) {
+        ArgumentCaptor<BigDecimal> valueCaptor = ArgumentCaptor.forClass(BigDecimal.class);
+        ArgumentCaptor<BigDecimal> quantityCaptor = ArgumentCaptor.forClass(BigDecimal.class);
+
+        verify(costNormsDao).addToWarehouseAverageCost(eq(L_PRODUCT_ID), eq(warehouseId), valueCaptor.capture(),
+                quantityCaptor.capture());
+
+        assertEquals(0, new BigDecimal(value).compareTo(valueCaptor.getValue()));
+        assertEquals(0, new BigDecimal(quantity).compareTo(quantityCaptor.getValue()));
+    }
+
+    private Entity resource(final Long warehouseId, final String price, final String quantity) {
+        Entity resource = mock(Entity.class);
+        Entity product = entity(L_PRODUCT_ID);
+        Entity warehouse = entity(warehouseId);
+
+        when(resource.getBelongsToField(ResourceFields.PRODUCT)).thenReturn(product);
+        when(resource.getBelongsToField(ResourceFields.LOCATION)).thenReturn(warehouse);
+        when(resource.getDecimalField(ResourceFields.PRICE)).thenReturn(price == null ? null : new BigDecimal(price));
+        when(resource.getDecimalField(ResourceFields.QUANTITY)).thenReturn(new BigDecimal(quantity));
+
+        return resource;
+    }
+
+    private Entity entity(final Long id) {
+        Entity entity = mock(Entity.class);
+        when(entity.getId()).thenReturn(id);
+        return entity;
+    }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.reservations;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Table;
+import com.qcadoo.mes.materialFlowResources.reservations.dao.ReservationsDao;
+import com.qcadoo.mes.materialFlowResources.reservations.dao.model.ReservedQuantity;
+import com.qcadoo.mes.materialFlowResources.service.ReservationsService;
+
+public class ReservationsMaintainerTest {
+
+    private static final Long L_DOCUMENT_ID = 1L;
+
+    private static final Long L_LOCATION_ID = 11L;
+
+    private static final Long L_PRODUCT_ID = 21L;
+
+    private static final Long L_OTHER_PRODUCT_ID = 22L;
+
+    private static final Long L_RESOURCE_ID = 31L;
+
+    private static final Long L_OTHER_RESOURCE_ID = 32L;
+
+    private ReservationsMaintainer reservationsMaintainer;
+
+    @Mock
+    private ReservationsDao reservationsDao;
+
+    @Mock
+    private ReservationsService reservationsService;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        reservationsMaintainer = new ReservationsMaintainer();
+
+        ReflectionTestUtils.setField(reservationsMaintainer, "reservationsDao", reservationsDao);
+        ReflectionTestUtils.setField(reservationsMaintainer, "reservationsService", reservationsService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldApplyOnlyDifferencesOfReconciledReservations() {
+        // given
+        given(reservationsService.reservationsEnabledForDocumentPositions(anyMapOf(String.class, Object.class))).willReturn(
+                true);
+        given(reservationsDao.getDocumentReservations(L_DOCUMENT_ID)).willReturn(
+                Lists.newArrayList(reservation(L_PRODUCT_ID, L_RESOURCE_ID, "5"), reservation(L_PRODUCT_ID, null, "2")),
+                Lists.newArrayList(reservation(L_PRODUCT_ID, L_OTHER_RESOURCE_ID, "5"), reservation(L_PRODUCT_ID, null, "2"),
+                        reservation(L_OTHER_PRODUCT_ID, null, "3")));
+
+        // when
+        reservationsMaintainer.reconcileDocument(L_DOCUMENT_ID);
+
+        // then
+        verify(reservationsDao).reconcileDocumentReservations(L_DOCUMENT_ID, Collections.<Long> emptyList());
+
+        ArgumentCaptor<Map> resourcesCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(reservationsDao).addToResourceReservedQuantities(resourcesCaptor.capture());
+        Map<Long, BigDecimal> quantitiesByResource = resourcesCaptor.getValue();
+        assertEquals(2, quantitiesByResource.size());
+        assertEquals(0, new BigDecimal("-5").compareTo(quantitiesByResource.get(L_RESOURCE_ID)));
+        assertEquals(0, new BigDecimal("5").compareTo(quantitiesByResource.get(L_OTHER_RESOURCE_ID)));
+
+        ArgumentCaptor<Table> stocksCaptor = ArgumentCaptor.forClass(Table.class);
+        verify(reservationsDao).addToReservedStocks(stocksCaptor.capture());
+        Table<Long, Long, BigDecimal> quantitiesByLocationAndProduct = stocksCaptor.getValue();
+        assertEquals(1, quantitiesByLocationAndProduct.size());
+        assertEquals(0, new BigDecimal("3").compareTo(quantitiesByLocationAndProduct.get(L_LOCATION_ID, L_OTHER_PRODUCT_ID)));
+    }
+
+    @Test
+    public void shouldDeleteReservationsWhenDocumentDoesNotReserve() {
+        // given
+        given(reservationsService.reservationsEnabledForDocumentPositions(anyMapOf(String.class, Object.class))).willReturn(
+                false);
+        given(reservationsDao.getDocumentReservations(L_DOCUMENT_ID)).willReturn(
+                Lists.newArrayList(reservation(L_PRODUCT_ID, L_RESOURCE_ID, "5")),
+                Lists.<ReservedQuantity> newArrayList());
+
+        // when
+        reservationsMaintainer.reconcileDocument(L_DOCUMENT_ID);
+
+        // then
+        verify(reservationsDao).deleteDocumentReservations(L_DOCUMENT_ID);
+        verify(reservationsDao, never()).reconcileDocumentReservations(L_DOCUMENT_ID, Collections.<Long> emptyList());
+    }
+
+    @Test
+    public void shouldSkipDocumentWithoutReservationsWhenDocumentDoesNotReserve() {
+        // given
+        given(reservationsService.reservationsEnabledForDocumentPositions(anyMapOf(String.class, Object.class))).willReturn(
+                false);
+        given(reservationsDao.getDocumentReservations(L_DOCUMENT_ID)).willReturn(Lists.<ReservedQuantity> newArrayList());
+
+        // when
+        reservationsMaintainer.reconcileDocument(L_DOCUMENT_ID);
+
+        // then
+        verify(reservationsDao, never()).deleteDocumentReservations(L_DOCUMENT_ID);
+        verify(reservationsDao, never()).addToReservedStocks(anyTableOf());
+    }
+
+    @Test
+    public void shouldCreateUniqueKeyAndRebuildWhenKeyIsMissing() {
+        // given
+        given(reservationsDao.hasReservedStocksUniqueKey()).willReturn(false);
+
+        // when
+        reservationsMaintainer.rebuildIfEmpty();
+
+        // then
+        InOrder inOrder = inOrder(reservationsDao);
+        inOrder.verify(reservationsDao).createReservedStocksUniqueKey();
+        inOrder.verify(reservationsDao).rebuildReservedStocks();
+    }
+
+    @Test
+    public void shouldNotRebuildExistingTotals() {
+        // given
+        given(reservationsDao.hasReservedStocksUniqueKey()).willReturn(true);
+        given(reservationsDao.hasReservedStocks()).willReturn(true);
+
+        // when
+        reservationsMaintainer.rebuildIfEmpty();
+
+        // then
+        verify(reservationsDao, never()).createReservedStocksUniqueKey();
+        verify(reservationsDao, never()).rebuildReservedStocks();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Table<Long, Long, BigDecimal> anyTableOf() {
+        return any(Table.class);
+    }
+
+    private ReservedQuantity reservation(final Long productId, final Long resourceId, final String quantity) {
+        return new ReservedQuantity(L_LOCATION_ID, productId, resourceId, new BigDecimal(quantity));
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.qcadoo.mes.materialFlowResources.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.qcadoo.mes.materialFlowResources.constants.DocumentFields;
+import com.qcadoo.mes.materialFlowResources.constants.DocumentState;
+import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchQueryBuilder;
+import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+public class DraftDocumentsCounterTest {
+
+    private static final Set<Long> ALL_LOCATIONS = Collections.emptySet();
+
+    private DraftDocumentsCounter draftDocumentsCounter;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private MultiTenantService multiTenantService;
+
+    @Mock
+    private DataDefinition documentDD;
+
+    @Mock
+    private SearchQueryBuilder searchQueryBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        draftDocumentsCounter = new DraftDocumentsCounter(dataDefinitionService, multiTenantService);
+
+        when(dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
+                MaterialFlowResourcesConstants.MODEL_DOCUMENT)).thenReturn(documentDD);
+        when(documentDD.find(anyString())).thenReturn(searchQueryBuilder);
+        when(searchQueryBuilder.setParameter(anyString(), anyString())).thenReturn(searchQueryBuilder);
+        when(searchQueryBuilder.list()).thenReturn(searchResult);
+        when(multiTenantService.getCurrentTenantId()).thenReturn(1);
+
+        stubLoadedCounters(row(1L, 2L, 3));
+    }
+
+    @After
+    public void cleanUp() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public final void shouldCountDocumentsByLocations() {
+        // given
+        stubLoadedCounters(row(1L, 2L, 3), row(3L, null, 2));
+
+        // when & then
+        assertEquals(5, draftDocumentsCounter.countForLocations(ALL_LOCATIONS));
+        assertEquals(3, draftDocumentsCounter.countForLocations(Sets.newHashSet(1L, 2L)));
+        assertEquals(2, draftDocumentsCounter.countForLocations(Sets.newHashSet(3L)));
+        assertEquals(0, draftDocumentsCounter.countForLocations(Sets.newHashSet(4L)));
+    }
+
+    @Test
+    public final void shouldApplyCreatedAndDeletedDocuments() {
+        // given
+        draftDocumentsCounter.countForLocations(ALL_LOCATIONS);
+
+        // when
+        draftDocumentsCounter.documentChanged(null, document(1L, 2L, DocumentState.DRAFT, true));
+        draftDocumentsCounter.documentChanged(null, document(5L, 6L, DocumentState.DRAFT, true));
+        draftDocumentsCounter.documentChanged(document(1L, 2L, DocumentState.DRAFT, true), null);
+
+        // then
+        assertEquals(4, draftDocumentsCounter.countForLocations(ALL_LOCATIONS));
+        assertEquals(1, draftDocumentsCounter.countForLocations(Sets.newHashSet(6L)));
+    }
+
+    @Test
+    public final void shouldNotCountDeactivatedOrAcceptedDocuments() {
+        // given
+        draftDocumentsCounter.countForLocations(ALL_LOCATIONS);
+
+        // when
+        draftDocumentsCounter.documentChanged(document(1L, 2L, DocumentState.DRAFT, true),
+                document(1L, 2L, DocumentState.DRAFT, false));
+        draftDocumentsCounter.documentChanged(document(1L, 2L, DocumentState.DRAFT, true),
+                document(1L, 2L, DocumentState.ACCEPTED, true));
+
+        // then
+        assertEquals(1, draftDocumentsCounter.countForLocations(ALL_LOCATIONS));
+    }
+
+    @Test
+    public final void shouldApplyChangeOnlyAfterCommit() {
+        // given
+        draftDocumentsCounter.countForLocations(ALL_LOCATIONS);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // when
+        draftDocumentsCounter.documentChanged(null, document(1L, 2L, DocumentState.DRAFT, true));
+        draftDocumentsCounter.documentChanged(null, document(1L, 2L, DocumentState.DRAFT, true));
+
+        // then
+        assertEquals(3, draftDocumentsCounter.countForLocations(ALL_LOCATIONS));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.get(0).beforeCommit(false);
+        synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        synchronizations.get(1).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(4, draftDocumentsCounter.countForLocations(ALL_LOCATIONS));
+    }
+
+    @Test
+    public final void shouldRebuildAgainWhenChangeWasCommittedDuringRebuild() {
+        // given
+        Entity row = row(1L, 2L, 3);
+        when(searchResult.getEntities()).thenAnswer(invocation -> {
+            draftDocumentsCounter.documentChanged(null, document(1L, 2L, DocumentState.DRAFT, true));
+            return Lists.newArrayList(row);
+        }).thenReturn(Lists.newArrayList(row(1L, 2L, 4)));
+
+        // when
+        draftDocumentsCounter.countForLocations(ALL_LOCATIONS);
+        int count = draftDocumentsCounter.countForLocations(ALL_LOCATIONS);
+
+        // then
+        assertEquals(4, count);
+        verify(searchQueryBuilder, times(2)).list();
+    }
+
+    @Test
+    public final void shouldRebuildAgainWhenChangeWasPendingDuringRebuild() {
+        // given
+        TransactionSynchronizationManager.initSynchronization();
+        draftDocumentsCounter.documentChanged(null, document(1L, 2L, DocumentState.DRAFT, true));
+        TransactionSynchronization synchronization = TransactionSynchronizationManager.getSynchronizations().get(0);
+        synchronization.beforeCommit(false);
+
+        draftDocumentsCounter.countForLocations(ALL_LOCATIONS);
+        synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+        // when
+        draftDocumentsCounter.countForLocations(ALL_LOCATIONS);
+
+        // then
+        verify(searchQueryBuilder, times(2)).list();
+    }
+
+    @Test
+    public final void shouldKeepCountersPerTenant() {
+        // given
+        draftDocumentsCounter.countForLocations(ALL_LOCATIONS);
+        draftDocumentsCounter.documentChanged(null, document(1L, 2L, DocumentState.DRAFT, true));
+
+        // when
+        when(multiTenantService.getCurrentTenantId()).thenReturn(2);
+        stubLoadedCounters();
+        int otherTenantCount = draftDocumentsCounter.countForLocations(ALL_LOCATIONS);
+
+        // then
+        assertEquals(0, otherTenantCount);
+
+        when(multiTenantService.getCurrentTenantId()).thenReturn(1);
+        assertEquals(4, draftDocumentsCounter.countForLocations(ALL_LOCATIONS));
+    }
+
+    private void stubLoadedCounters(final Entity... rows) {
+        when(searchResult.getEntities()).thenReturn(Lists.newArrayList(rows));
+    }
+
+    private Entity row(final Long locationFromId, final Long locationToId, final long count) {
+        Entity row = mock(Entity.class);
+        when(row.getField("locationFromId")).thenReturn(locationFromId);
+        when(row.getField("locationToId")).thenReturn(locationToId);
+        when(row.getField("documentsCount")).thenReturn(count);
+        return row;
+    }
+
+    private Entity document(final Long locationFromId, final Long locationToId, final DocumentState state,
+            final boolean active) {
+        Entity document = mock(Entity.class);
+        when(document.isActive()).thenReturn(active);
+        when(document.isValid()).thenReturn(true);
+        when(document.getStringField(DocumentFields.STATE)).thenReturn(state.getStringValue());
+        when(document.getBelongsToField(DocumentFields.LOCATION_FROM)).thenReturn(location(locationFromId));
+        when(document.getBelongsToField(DocumentFields.LOCATION_TO)).thenReturn(location(locationToId));
+        return document;
+    }
+
+    private Entity location(final Long id) {
+        if (id == null) {
+            return null;
+        }
+        Entity location = mock(Entity.class);
+        when(location.getId()).thenReturn(id);
+        return location;
+    }
+
+}
@@ -20,6 +20,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.security.api.SecurityService;
+import com.qcadoo.tenant.api.MultiTenantService;
 
 @RunWith(MockitoJUnitRunner.class)
 @PrepareForTest(SearchRestrictions.class)
@@ -35,10 +36,17 @@ public class DraftDocumentsNotificationServiceTest {
     @Mock
     private SecurityService securityService;
 
+    @Mock
+    private DraftDocumentsCounter draftDocumentsCounter;
+
+    @Mock
+    private MultiTenantService multiTenantService;
+
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
-        draftDocumentsNotificationService = new DraftDocumentsNotificationService(securityService, dataDefinitionService);
+        draftDocumentsNotificationService = new DraftDocumentsNotificationService(securityService, dataDefinitionService,
+                draftDocumentsCounter, multiTenantService);
     }
 
     @Test
@@ -0,0 +1,150 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlow;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Maps;
+import com.qcadoo.model.api.NumberService;
+
+/**
+ * Answers "how much of a product should be in a location at a given time" from the latest stock correction and the transfers
+ * after it. Transfers are summed as the running balance of the latest checkpoint before the day (see
+ * {@link StockBalanceCheckpointService}) plus the transfers of the remaining part of that day, so each cell reads one
+ * checkpoint and at most one day of transfers, however long its history is.
+ */
+@Service
+public class StockAtDateService {
+
+    private static final String L_STOCK_AT_DATE = "WITH cell AS (SELECT l.id AS location_id, p.id AS product_id, "
+            + "sc.stockcorrectiondate, sc.found FROM materialflow_location l CROSS JOIN basic_product p "
+            + "LEFT JOIN (SELECT DISTINCT ON (location_id, product_id) location_id, product_id, stockcorrectiondate, found "
+            + "FROM materialflow_stockcorrection WHERE location_id IN (:locationIds) AND product_id IN (:productIds) "
+            + "ORDER BY location_id, product_id, stockcorrectiondate DESC) sc "
+            + "ON sc.location_id = l.id AND sc.product_id = p.id "
+            + "WHERE l.id IN (:locationIds) AND p.id IN (:productIds)), "
+            + "checkpointBalance AS (SELECT c.location_id, c.product_id, "
+            + "(SELECT cp.balance FROM materialflow_stockbalancecheckpoint cp WHERE cp.location_id = c.location_id "
+            + "AND cp.product_id = c.product_id AND cp.balancedate < CAST(:forDate AS date) "
+            + "ORDER BY cp.balancedate DESC LIMIT 1) AS atDate, "
+            + "(SELECT cp.balance FROM materialflow_stockbalancecheckpoint cp WHERE cp.location_id = c.location_id "
+            + "AND cp.product_id = c.product_id AND cp.balancedate < CAST(c.stockcorrectiondate AS date) "
+            + "ORDER BY cp.balancedate DESC LIMIT 1) AS atCorrection FROM cell c), "
+            + "transferMove AS (SELECT t.locationto_id AS location_id, t.product_id, t.time, t.quantity FROM materialflow_transfer t "
+            + "WHERE t.locationto_id IN (:locationIds) AND t.product_id IN (:productIds) "
+            + "UNION ALL SELECT t.locationfrom_id, t.product_id, t.time, -t.quantity FROM materialflow_transfer t "
+            + "WHERE t.locationfrom_id IN (:locationIds) AND t.product_id IN (:productIds)), "
+            + "dayMove AS (SELECT c.location_id, c.product_id, "
+            + "SUM(CASE WHEN m.time >= CAST(:forDate AS date) AND m.time <= CAST(:forDate AS timestamp) "
+            + "THEN m.quantity ELSE 0 END) AS atDate, "
+            + "SUM(CASE WHEN m.time >= CAST(c.stockcorrectiondate AS date) AND m.time <= c.stockcorrectiondate "
+            + "THEN m.quantity ELSE 0 END) AS atCorrection "
+            + "FROM cell c JOIN transferMove m ON m.location_id = c.location_id AND m.product_id = c.product_id "
+            + "WHERE (m.time >= CAST(:forDate AS date) AND m.time <= CAST(:forDate AS timestamp)) "
+            + "OR (m.time >= CAST(c.stockcorrectiondate AS date) AND m.time <= c.stockcorrectiondate) "
+            + "GROUP BY c.location_id, c.product_id) "
+            + "SELECT c.location_id AS locationId, c.product_id AS productId, c.found AS found, "
+            + "c.stockcorrectiondate AS correctionDate, "
+            + "COALESCE(cp.atDate, 0) + COALESCE(dm.atDate, 0) AS netTransfersAtDate, "
+            + "COALESCE(cp.atCorrection, 0) + COALESCE(dm.atCorrection, 0) AS netTransfersAtCorrection FROM cell c "
+            + "LEFT JOIN checkpointBalance cp ON cp.location_id = c.location_id AND cp.product_id = c.product_id "
+            + "LEFT JOIN dayMove dm ON dm.location_id = c.location_id AND dm.product_id = c.product_id";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NumberService numberService;
+
+    public BigDecimal calculateShouldBeInLocation(final Long locationId, final Long productId, final Date forDate) {
+        BigDecimal quantity = calculateShouldBeInLocation(locationId, Collections.singleton(productId), forDate).get(productId);
+
+        return quantity == null ? BigDecimal.ZERO : quantity;
+    }
+
+    public Map<Long, BigDecimal> calculateShouldBeInLocation(final Long locationId, final Collection<Long> productIds,
+            final Date forDate) {
+        Map<Long, BigDecimal> quantities = calculateShouldBeInLocations(Collections.singleton(locationId), productIds, forDate)
+                .get(locationId);
+
+        return quantities == null ? Maps.newHashMap() : quantities;
+    }
+
+    /**
+     * Computes the whole location &times; product matrix in a single query, reading the latest checkpoint of each cell and
+     * summing the transfers of the remaining day with one grouped aggregation.
+     * 
+     * @return quantities by location id and product id
+     */
+    public Map<Long, Map<Long, BigDecimal>> calculateShouldBeInLocations(final Collection<Long> locationIds,
+            final Collection<Long> productIds, final Date forDate) {
+        Map<Long, Map<Long, BigDecimal>> quantities = Maps.newHashMap();
+
+        if (locationIds.isEmpty() || productIds.isEmpty()) {
+            return quantities;
+        }
+
+        SqlParameterSource parameters = new MapSqlParameterSource("locationIds", locationIds)
+                .addValue("productIds", productIds).addValue("forDate", forDate);
+
+        jdbcTemplate.query(L_STOCK_AT_DATE, parameters, resultSet -> {
+            Date correctionDate = resultSet.getTimestamp("correctionDate");
+            BigDecimal quantity = resultSet.getBigDecimal("netTransfersAtDate");
+
+            if (correctionDate != null) {
+                BigDecimal found = resultSet.getBigDecimal("found");
+
+                if (found == null) {
+                    found = BigDecimal.ZERO;
+                }
+                if (correctionDate.before(forDate)) {
+                    quantity = found.add(quantity, numberService.getMathContext())
+                            .subtract(resultSet.getBigDecimal("netTransfersAtCorrection"), numberService.getMathContext());
+                } else {
+                    quantity = found;
+                }
+            }
+
+            if (quantity.compareTo(BigDecimal.ZERO) < 0) {
+                quantity = BigDecimal.ZERO;
+            }
+
+            quantities.computeIfAbsent(resultSet.getLong("locationId"), locationId -> Maps.newHashMap())
+                    .put(resultSet.getLong("productId"), quantity);
+        });
+
+        return quantities;
+    }
+
+}
@@ -0,0 +1,213 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlow;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.materialFlow.constants.TransferFields;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Maintains per location and product daily checkpoints holding the running balance of transfers (in minus out) up to the end
+ * of the checkpoint day. A checkpoint exists only for days with at least one transfer, so the balance up to a day is read from
+ * the single latest checkpoint before it. A transfer adds its quantity to the checkpoint of its day and to the later ones of
+ * its location and product - usually none, as transfers are rarely entered for past days.
+ * 
+ * Writers of a location and product are serialized with a transaction scoped advisory lock, so a checkpoint inserted by one
+ * transaction can't miss a concurrent transfer of an earlier day.
+ */
+@Service
+public class StockBalanceCheckpointService {
+
+    private static final String L_UNIQUE_KEY = "materialflow_stockbalancecheckpoint_running_balance_key";
+
+    private static final String L_DAILY_BALANCE_UNIQUE_KEY = "materialflow_stockbalancecheckpoint_location_product_date_key";
+
+    private static final String L_LOCK_CELLS = "SELECT pg_advisory_xact_lock(hashtext('materialflow_stockbalancecheckpoint'), "
+            + "hashtext(cells.cell)) FROM (SELECT DISTINCT cell FROM unnest(ARRAY[:cells]) AS cell ORDER BY cell) cells";
+
+    private static final String L_ADD_TO_CHECKPOINTS = "WITH laterCheckpoint AS (UPDATE materialflow_stockbalancecheckpoint "
+            + "SET balance = balance + :quantity WHERE location_id = :locationId AND product_id = :productId "
+            + "AND balancedate >= CAST(:time AS date) RETURNING balancedate) "
+            + "INSERT INTO materialflow_stockbalancecheckpoint (location_id, product_id, balancedate, balance) "
+            + "SELECT :locationId, :productId, CAST(:time AS date), COALESCE((SELECT cp.balance "
+            + "FROM materialflow_stockbalancecheckpoint cp WHERE cp.location_id = :locationId AND cp.product_id = :productId "
+            + "AND cp.balancedate < CAST(:time AS date) ORDER BY cp.balancedate DESC LIMIT 1), 0) + :quantity "
+            + "WHERE NOT EXISTS (SELECT balancedate FROM laterCheckpoint WHERE balancedate = CAST(:time AS date))";
+
+    private static final String L_REBUILD_CHECKPOINTS = "INSERT INTO materialflow_stockbalancecheckpoint "
+            + "(location_id, product_id, balancedate, balance) "
+            + "SELECT location_id, product_id, balancedate, "
+            + "SUM(SUM(quantity)) OVER (PARTITION BY location_id, product_id ORDER BY balancedate) "
+            + "FROM (SELECT locationto_id AS location_id, product_id, CAST(time AS date) AS balancedate, quantity "
+            + "FROM materialflow_transfer WHERE locationto_id IS NOT NULL AND time IS NOT NULL "
+            + "UNION ALL SELECT locationfrom_id, product_id, CAST(time AS date), -quantity "
+            + "FROM materialflow_transfer WHERE locationfrom_id IS NOT NULL AND time IS NOT NULL) flows "
+            + "GROUP BY location_id, product_id, balancedate";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void onTransferSaved(final Entity previousTransfer, final Entity transfer) {
+        if (previousTransfer != null && !affectsSameBalances(previousTransfer, transfer)) {
+            onTransferDeleted(previousTransfer);
+            applyTransfer(transfer, BigDecimal.ONE);
+        } else if (previousTransfer != null) {
+            BigDecimal quantityDelta = quantity(transfer).subtract(quantity(previousTransfer));
+
+            if (quantityDelta.signum() != 0) {
+                Date time = transfer.getDateField(TransferFields.TIME);
+                Long productId = id(transfer, TransferFields.PRODUCT);
+
+                addToCheckpoints(productId, time, id(transfer, TransferFields.LOCATION_TO),
+                        id(transfer, TransferFields.LOCATION_FROM), quantityDelta);
+            }
+        } else {
+            applyTransfer(transfer, BigDecimal.ONE);
+        }
+    }
+
+    public void onTransferDeleted(final Entity transfer) {
+        applyTransfer(transfer, BigDecimal.ONE.negate());
+    }
+
+    public void rebuild() {
+        SqlParameterSource parameters = new MapSqlParameterSource();
+
+        jdbcTemplate.update("DELETE FROM materialflow_stockbalancecheckpoint", parameters);
+        jdbcTemplate.update(L_REBUILD_CHECKPOINTS, parameters);
+    }
+
+    /**
+     * Rebuilds checkpoints when there are none yet or when their running balance unique key is missing. Checkpoints without the
+     * key hold balances of an older format (daily deltas, or running balances which could be duplicated), so they are dropped
+     * and the key is created first.
+     */
+    public void rebuildIfEmpty() {
+        SqlParameterSource parameters = new MapSqlParameterSource("indexName", L_UNIQUE_KEY);
+
+        Boolean hasUniqueKey = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT indexname FROM pg_indexes WHERE indexname = :indexName)", parameters, Boolean.class);
+
+        if (!hasUniqueKey) {
+            jdbcTemplate.update("DELETE FROM materialflow_stockbalancecheckpoint", parameters);
+            jdbcTemplate.update("DROP INDEX IF EXISTS " + L_DAILY_BALANCE_UNIQUE_KEY, parameters);
+            jdbcTemplate.update("CREATE UNIQUE INDEX IF NOT EXISTS " + L_UNIQUE_KEY
+                    + " ON materialflow_stockbalancecheckpoint (location_id, product_id, balancedate)", parameters);
+            rebuild();
+
+            return;
+        }
+
+        Boolean exists = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT id FROM materialflow_stockbalancecheckpoint)",
+                parameters, Boolean.class);
+
+        if (!exists) {
+            rebuild();
+        }
+    }
+
+    private void applyTransfer(final Entity transfer, final BigDecimal sign) {
+        Date time = transfer.getDateField(TransferFields.TIME);
+        Long productId = id(transfer, TransferFields.PRODUCT);
+        BigDecimal quantity = quantity(transfer).multiply(sign);
+
+        addToCheckpoints(productId, time, id(transfer, TransferFields.LOCATION_TO), id(transfer, TransferFields.LOCATION_FROM),
+                quantity);
+    }
+
+    private void addToCheckpoints(final Long productId, final Date time, final Long locationToId, final Long locationFromId,
+            final BigDecimal quantity) {
+        List<SqlParameterSource> parameters = Lists.newArrayList();
+
+        addParameters(parameters, locationToId, productId, time, quantity);
+        addParameters(parameters, locationFromId, productId, time, quantity.negate());
+
+        if (parameters.isEmpty()) {
+            return;
+        }
+
+        lockCells(parameters);
+
+        for (SqlParameterSource parameter : parameters) {
+            jdbcTemplate.update(L_ADD_TO_CHECKPOINTS, parameter);
+        }
+    }
+
+    private void lockCells(final List<SqlParameterSource> parameters) {
+        List<String> cells = Lists.newArrayListWithCapacity(parameters.size());
+
+        for (SqlParameterSource parameter : parameters) {
+            cells.add(parameter.getValue("locationId") + "/" + parameter.getValue("productId"));
+        }
+
+        jdbcTemplate.queryForList(L_LOCK_CELLS, new MapSqlParameterSource("cells", cells));
+    }
+
+    private void addParameters(final List<SqlParameterSource> parameters, final Long locationId, final Long productId,
+            final Date time, final BigDecimal quantity) {
+        if (locationId == null || productId == null || time == null || quantity.signum() == 0) {
+            return;
+        }
+
+        parameters.add(new MapSqlParameterSource("locationId", locationId).addValue("productId", productId)
+                .addValue("time", time).addValue("quantity", quantity));
+    }
+
+    private boolean affectsSameBalances(final Entity previousTransfer, final Entity transfer) {
+        return Objects.equals(id(previousTransfer, TransferFields.LOCATION_TO), id(transfer, TransferFields.LOCATION_TO))
+                && Objects.equals(id(previousTransfer, TransferFields.LOCATION_FROM), id(transfer, TransferFields.LOCATION_FROM))
+                && Objects.equals(id(previousTransfer, TransferFields.PRODUCT), id(transfer, TransferFields.PRODUCT))
+                && Objects.equals(millis(previousTransfer), millis(transfer));
+    }
+
+    private Long millis(final Entity transfer) {
+        Date time = transfer.getDateField(TransferFields.TIME);
+
+        return time == null ? null : time.getTime();
+    }
+
+    private BigDecimal quantity(final Entity transfer) {
+        BigDecimal quantity = transfer.getDecimalField(TransferFields.QUANTITY);
+
+        return quantity == null ? BigDecimal.ZERO : quantity;
+    }
+
+    private Long id(final Entity transfer, final String belongsToField) {
+        Entity entity = transfer.getBelongsToField(belongsToField);
+
+        return entity == null ? null : entity.getId();
+    }
+
+}
@@ -33,14 +33,19 @@ import static com.qcadoo.mes.materialFlow.constants.TransferFields.TYPE;
 import static com.qcadoo.mes.materialFlow.constants.TransferType.CONSUMPTION;
 import static com.qcadoo.mes.materialFlow.constants.TransferType.PRODUCTION;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.qcadoo.mes.materialFlow.StockBalanceCheckpointService;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
 
 @Service
 public class TransferModelHooks {
 
+    @Autowired
+    private StockBalanceCheckpointService stockBalanceCheckpointService;
+
     public void copyProductionOrConsumptionDataFromBelongingTransformation(final DataDefinition dd, final Entity transfer) {
         Entity transformations = transfer.getBelongsToField(TRANSFORMATIONS_PRODUCTION);
 
@@ -63,4 +68,16 @@ public class TransferModelHooks {
         transfer.setField(STAFF, transformations.getBelongsToField(STAFF));
     }
 
+    public void updateStockBalanceCheckpoints(final DataDefinition transferDD, final Entity transfer) {
+        Entity previousTransfer = transfer.getId() == null ? null : transferDD.get(transfer.getId());
+
+        stockBalanceCheckpointService.onTransferSaved(previousTransfer, transfer);
+    }
+
+    public boolean onDelete(final DataDefinition transferDD, final Entity transfer) {
+        stockBalanceCheckpointService.onTransferDeleted(transfer);
+
+        return true;
+    }
+
 }
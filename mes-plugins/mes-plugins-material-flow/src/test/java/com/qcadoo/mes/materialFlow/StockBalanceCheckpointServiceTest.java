@@ -0,0 +1,214 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlow;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.materialFlow.constants.TransferFields;
+import com.qcadoo.model.api.Entity;
+
+public class StockBalanceCheckpointServiceTest {
+
+    private static final Long L_LOCATION_FROM_ID = 1L;
+
+    private static final Long L_LOCATION_TO_ID = 2L;
+
+    private static final Long L_PRODUCT_ID = 11L;
+
+    private static final Date L_TIME = new Date(1_500_000_000_000L);
+
+    private static final Date L_OTHER_TIME = new Date(1_600_000_000_000L);
+
+    private StockBalanceCheckpointService stockBalanceCheckpointService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        stockBalanceCheckpointService = new StockBalanceCheckpointService();
+
+        ReflectionTestUtils.setField(stockBalanceCheckpointService, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    public final void shouldAddNewTransferToSingleDayOfBothLocations() {
+        // when
+        stockBalanceCheckpointService.onTransferSaved(null, transfer(L_TIME, "5"));
+
+        // then
+        List<SqlParameterSource> parameters = captureUpserts(2);
+
+        assertParameters(parameters.get(0), L_LOCATION_TO_ID, L_TIME, "5");
+        assertParameters(parameters.get(1), L_LOCATION_FROM_ID, L_TIME, "-5");
+    }
+
+    @Test
+    public final void shouldAddQuantityDeltaOfChangedTransfer() {
+        // when
+        stockBalanceCheckpointService.onTransferSaved(transfer(L_TIME, "5"), transfer(L_TIME, "3"));
+
+        // then
+        List<SqlParameterSource> parameters = captureUpserts(2);
+
+        assertParameters(parameters.get(0), L_LOCATION_TO_ID, L_TIME, "-2");
+        assertParameters(parameters.get(1), L_LOCATION_FROM_ID, L_TIME, "2");
+    }
+
+    @Test
+    public final void shouldMoveTransferToOtherDay() {
+        // when
+        stockBalanceCheckpointService.onTransferSaved(transfer(L_TIME, "5"), transfer(L_OTHER_TIME, "5"));
+
+        // then
+        List<SqlParameterSource> parameters = captureUpserts(4);
+
+        assertParameters(parameters.get(0), L_LOCATION_TO_ID, L_TIME, "-5");
+        assertParameters(parameters.get(1), L_LOCATION_FROM_ID, L_TIME, "5");
+        assertParameters(parameters.get(2), L_LOCATION_TO_ID, L_OTHER_TIME, "5");
+        assertParameters(parameters.get(3), L_LOCATION_FROM_ID, L_OTHER_TIME, "-5");
+    }
+
+    @Test
+    public final void shouldSubtractDeletedTransfer() {
+        // when
+        stockBalanceCheckpointService.onTransferDeleted(transfer(L_TIME, "5"));
+
+        // then
+        List<SqlParameterSource> parameters = captureUpserts(2);
+
+        assertParameters(parameters.get(0), L_LOCATION_TO_ID, L_TIME, "-5");
+        assertParameters(parameters.get(1), L_LOCATION_FROM_ID, L_TIME, "5");
+    }
+
+    @Test
+    public final void shouldLockBothLocationsBeforeUpdatingCheckpoints() {
+        // when
+        stockBalanceCheckpointService.onTransferSaved(null, transfer(L_TIME, "5"));
+
+        // then
+        ArgumentCaptor<SqlParameterSource> lockParameters = ArgumentCaptor.forClass(SqlParameterSource.class);
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).queryForList(startsWith("SELECT pg_advisory_xact_lock"), lockParameters.capture());
+        inOrder.verify(jdbcTemplate, times(2)).update(startsWith("WITH"), any(SqlParameterSource.class));
+
+        assertEquals(Lists.newArrayList(L_LOCATION_TO_ID + "/" + L_PRODUCT_ID, L_LOCATION_FROM_ID + "/" + L_PRODUCT_ID),
+                lockParameters.getValue().getValue("cells"));
+    }
+
+    @Test
+    public final void shouldRecreateCheckpointsWhenUniqueKeyIsMissing() {
+        // given
+        given(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Boolean.class))).willReturn(false);
+
+        // when
+        stockBalanceCheckpointService.rebuildIfEmpty();
+
+        // then
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).update(startsWith("DELETE"), any(SqlParameterSource.class));
+        inOrder.verify(jdbcTemplate).update(startsWith("DROP INDEX"), any(SqlParameterSource.class));
+        inOrder.verify(jdbcTemplate).update(startsWith("CREATE UNIQUE INDEX"), any(SqlParameterSource.class));
+        inOrder.verify(jdbcTemplate).update(startsWith("DELETE"), any(SqlParameterSource.class));
+        inOrder.verify(jdbcTemplate).update(contains("OVER (PARTITION BY"), any(SqlParameterSource.class));
+    }
+
+    @Test
+    public final void shouldKeepExistingCheckpoints() {
+        // given
+        given(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Boolean.class))).willReturn(true);
+
+        // when
+        stockBalanceCheckpointService.rebuildIfEmpty();
+
+        // then
+        verify(jdbcTemplate, never()).update(anyString(), any(SqlParameterSource.class));
+    }
+
+    private List<SqlParameterSource> captureUpserts(final int count) {
+        ArgumentCaptor<SqlParameterSource> parameters = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate, times(count)).update(startsWith("WITH"), parameters.capture());
+
+        return parameters.getAllValues();
+    }
+
+    private void assertParameters(final SqlParameterSource parameters, final Long locationId, final Date time,
+            final String quantity) {
+        assertEquals(locationId, parameters.getValue("locationId"));
+        assertEquals(L_PRODUCT_ID, parameters.getValue("productId"));
+        assertEquals(time, parameters.getValue("time"));
+        assertEquals(0, new BigDecimal(quantity).compareTo((BigDecimal) parameters.getValue("quantity")));
+    }
+
+    private Entity transfer(final Date time, final String quantity) {
+        Entity transfer = mock(Entity.class);
+        Entity locationFrom = entity(L_LOCATION_FROM_ID);
+        Entity locationTo = entity(L_LOCATION_TO_ID);
+        Entity product = entity(L_PRODUCT_ID);
+
+        when(transfer.getBelongsToField(TransferFields.LOCATION_FROM)).thenReturn(locationFrom);
+        when(transfer.getBelongsToField(TransferFields.LOCATION_TO)).thenReturn(locationTo);
+        when(transfer.getBelongsToField(TransferFields.PRODUCT)).thenReturn(product);
+        when(transfer.getDateField(TransferFields.TIME)).thenReturn(time);
+        when(transfer.getDecimalField(TransferFields.QUANTITY)).thenReturn(new BigDecimal(quantity));
+
+        return transfer;
+    }
+
+    private Entity entity(final Long id) {
+        Entity entity = mock(Entity.class);
+        when(entity.getId()).thenReturn(id);
+        return entity;
+    }
+
+}
@@ -29,7 +29,6 @@ import org.springframework.stereotype.Service;
 import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.mes.materialRequirements.MaterialRequirementService;
 import com.qcadoo.mes.materialRequirements.constants.OrderFieldsMR;
-import com.qcadoo.mes.materialRequirements.constants.ParameterFieldsMR;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
 
@@ -56,7 +55,7 @@ public class OrderHooksMR {
     }
 
     private String getInputProductsRequiredForType() {
-        return parameterService.getParameter().getStringField(ParameterFieldsMR.INPUT_PRODUCTS_REQUIRED_FOR_TYPE);
+        return parameterService.getParameters().getInputProductsRequiredForType();
     }
 
 }
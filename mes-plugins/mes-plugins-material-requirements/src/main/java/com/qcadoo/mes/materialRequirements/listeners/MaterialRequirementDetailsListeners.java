@@ -71,6 +71,20 @@ public class MaterialRequirementDetailsListeners {
                 MaterialRequirementsConstants.MODEL_MATERIAL_REQUIREMENT });
     }
 
+    public void printMaterialRequirementXlsx(final ViewDefinitionState view, final ComponentState state, final String[] args) {
+        FormComponent form = (FormComponent) view.getComponentByReference("form");
+
+        if (form.getEntityId() == null) {
+            return;
+        }
+
+        StringBuilder redirectUrl = new StringBuilder();
+        redirectUrl.append("/").append(MaterialRequirementsConstants.PLUGIN_IDENTIFIER).append("/materialRequirement.xlsx");
+        redirectUrl.append("?id=").append(form.getEntityId());
+
+        view.redirectTo(redirectUrl.toString(), true, false);
+    }
+
     // TODO KRNA generic candidate
     @Transactional
     public void generateMaterialRequirement(final ViewDefinitionState view, final ComponentState state,
@@ -0,0 +1,133 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialRequirements.print;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
+import com.qcadoo.mes.materialRequirements.constants.MaterialRequirementFields;
+import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchRestrictions;
+
+/**
+ * Needed products of a material requirement, with all products resolved in bulk, shared by the PDF, XLS and XLSX documents.
+ */
+@Service
+public class MaterialRequirementDataService {
+
+    private static final String L_ID = "id";
+
+    private static final int L_PRODUCTS_PER_QUERY = 1000;
+
+    private static final int L_MAX_SAMPLED_ROWS = 1000;
+
+    private static final int L_MIN_COLUMN_WIDTH = 8;
+
+    private static final int L_MAX_COLUMN_WIDTH = 60;
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private BasicProductionCountingService basicProductionCountingService;
+
+    public List<MaterialRequirementEntry> getMaterialRequirementEntries(final Entity materialRequirement) {
+        List<Entity> orders = materialRequirement.getManyToManyField(MaterialRequirementFields.ORDERS);
+        MrpAlgorithm algorithm = MrpAlgorithm.parseString(materialRequirement
+                .getStringField(MaterialRequirementFields.MRP_ALGORITHM));
+
+        Map<Long, BigDecimal> neededProductQuantities = basicProductionCountingService.getNeededProductQuantities(orders,
+                algorithm);
+        Map<Long, Entity> products = getProducts(Lists.newArrayList(neededProductQuantities.keySet()));
+
+        List<MaterialRequirementEntry> entries = Lists.newArrayListWithCapacity(neededProductQuantities.size());
+
+        for (Entry<Long, BigDecimal> neededProductQuantity : neededProductQuantities.entrySet()) {
+            Entity product = products.get(neededProductQuantity.getKey());
+
+            entries.add(new MaterialRequirementEntry(product.getStringField(ProductFields.NUMBER), product
+                    .getStringField(ProductFields.NAME), StringUtils.defaultString(product.getStringField(ProductFields.UNIT)),
+                    neededProductQuantity.getValue()));
+        }
+
+        return entries;
+    }
+
+    private Map<Long, Entity> getProducts(final List<Long> productIds) {
+        DataDefinition productDD = dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT);
+
+        Map<Long, Entity> products = Maps.newHashMapWithExpectedSize(productIds.size());
+
+        for (List<Long> productIdsPart : Lists.partition(productIds, L_PRODUCTS_PER_QUERY)) {
+            for (Entity product : productDD.find().add(SearchRestrictions.in(L_ID, productIdsPart)).list().getEntities()) {
+                products.put(product.getId(), product);
+            }
+        }
+
+        return products;
+    }
+
+    /**
+     * Estimates column widths, in characters, from the headers and evenly sampled entries instead of measuring every cell.
+     */
+    public int[] getColumnWidths(final List<String> headers, final List<MaterialRequirementEntry> entries) {
+        int[] widths = new int[headers.size()];
+
+        for (int column = 0; column < headers.size(); column++) {
+            widths[column] = headers.get(column).length();
+        }
+
+        int step = Math.max(1, entries.size() / L_MAX_SAMPLED_ROWS);
+
+        for (int index = 0; index < entries.size(); index += step) {
+            MaterialRequirementEntry entry = entries.get(index);
+
+            widths[0] = Math.max(widths[0], StringUtils.length(entry.getNumber()));
+            widths[1] = Math.max(widths[1], StringUtils.length(entry.getName()));
+            widths[2] = Math.max(widths[2], entry.getQuantity().toPlainString().length());
+            widths[3] = Math.max(widths[3], StringUtils.length(entry.getUnit()));
+        }
+
+        for (int column = 0; column < widths.length; column++) {
+            widths[column] = Math.min(Math.max(widths[column] + 2, L_MIN_COLUMN_WIDTH), L_MAX_COLUMN_WIDTH);
+        }
+
+        return widths;
+    }
+
+}
@@ -28,7 +28,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,12 +43,11 @@ import com.lowagie.text.Phrase;
 import com.lowagie.text.pdf.PdfPTable;
 import com.qcadoo.localization.api.TranslationService;
 import com.qcadoo.mes.basic.constants.ProductFields;
-import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
 import com.qcadoo.mes.materialRequirements.constants.MaterialRequirementFields;
+import com.qcadoo.mes.materialRequirements.print.MaterialRequirementDataService;
+import com.qcadoo.mes.materialRequirements.print.MaterialRequirementEntry;
 import com.qcadoo.mes.materialRequirements.util.EntityOrderNumberComparator;
 import com.qcadoo.mes.orders.constants.OrderFields;
-import com.qcadoo.mes.technologies.ProductQuantitiesService;
-import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.NumberService;
 import com.qcadoo.report.api.FontUtils;
@@ -60,13 +58,12 @@ import com.qcadoo.report.api.pdf.PdfHelper;
 @Service
 public final class MaterialRequirementPdfService extends PdfDocumentService {
 
+    private static final int L_ROWS_PER_FLUSH = 100;
+
     private final int[] defaultMatReqHeaderColumnWidth = new int[] { 25, 25, 24, 13, 13 };
 
     private final int[] defaultOrderHeaderColumnWidth = new int[] { 37, 37, 13, 13 };
 
-    @Autowired
-    private ProductQuantitiesService productQuantitiesService;
-
     @Autowired
     private TranslationService translationService;
 
@@ -77,7 +74,7 @@ public final class MaterialRequirementPdfService extends PdfDocumentService {
     private PdfHelper pdfHelper;
 
     @Autowired
-    private BasicProductionCountingService basicProductionCountingService;
+    private MaterialRequirementDataService materialRequirementDataService;
 
     @Override
     protected void buildPdfContent(final Document document, final Entity materialRequirement, final Locale locale)
@@ -147,34 +144,37 @@ public final class MaterialRequirementPdfService extends PdfDocumentService {
 
     private void addTechnologySeries(final Document document, final Entity materialRequirement,
             final Map<String, HeaderAlignment> headersWithAlignments) throws DocumentException {
-        List<Entity> orders = materialRequirement.getManyToManyField(MaterialRequirementFields.ORDERS);
-        MrpAlgorithm algorithm = MrpAlgorithm.parseString(materialRequirement
-                .getStringField(MaterialRequirementFields.MRP_ALGORITHM));
-
-        Map<Long, BigDecimal> neededProductQuantities = basicProductionCountingService.getNeededProductQuantities(orders,
-                algorithm);
+        List<MaterialRequirementEntry> entries = materialRequirementDataService
+                .getMaterialRequirementEntries(materialRequirement);
 
         List<String> headers = Lists.newLinkedList(headersWithAlignments.keySet());
         PdfPTable table = pdfHelper.createTableWithHeader(headersWithAlignments.size(), headers, true,
                 defaultOrderHeaderColumnWidth, headersWithAlignments);
+        table.setComplete(false);
 
-        for (Entry<Long, BigDecimal> neededProductQuantity : neededProductQuantities.entrySet()) {
-            Entity product = productQuantitiesService.getProduct(neededProductQuantity.getKey());
-            table.addCell(new Phrase(product.getStringField(ProductFields.NUMBER), FontUtils.getDejavuRegular7Dark()));
-            table.addCell(new Phrase(product.getStringField(ProductFields.NAME), FontUtils.getDejavuRegular7Dark()));
+        int rows = 0;
+        for (MaterialRequirementEntry entry : entries) {
+            table.addCell(new Phrase(entry.getNumber(), FontUtils.getDejavuRegular7Dark()));
+            table.addCell(new Phrase(entry.getName(), FontUtils.getDejavuRegular7Dark()));
             table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_RIGHT);
-            table.addCell(new Phrase(numberService.format(neededProductQuantity.getValue()), FontUtils.getDejavuBold7Dark()));
+            table.addCell(new Phrase(numberService.format(entry.getQuantity()), FontUtils.getDejavuBold7Dark()));
             table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_LEFT);
-            String unit = product.getStringField(ProductFields.UNIT);
-            if (unit == null) {
-                table.addCell(new Phrase("", FontUtils.getDejavuRegular7Dark()));
-            } else {
-                table.addCell(new Phrase(unit, FontUtils.getDejavuRegular7Dark()));
-            }
+            table.addCell(new Phrase(entry.getUnit(), FontUtils.getDejavuRegular7Dark()));
+
+            flushEveryRowsPerFlush(document, table, ++rows);
         }
+
+        table.setComplete(true);
         document.add(table);
     }
 
+    private void flushEveryRowsPerFlush(final Document document, final PdfPTable table, final int rows)
+            throws DocumentException {
+        if (rows % L_ROWS_PER_FLUSH == 0) {
+            document.add(table);
+        }
+    }
+
     private void addOrderSeries(final Document document, final Entity materialRequirement,
             final Map<String, HeaderAlignment> headersWithAlignments) throws DocumentException {
         List<Entity> orders = materialRequirement.getManyToManyField(MaterialRequirementFields.ORDERS);
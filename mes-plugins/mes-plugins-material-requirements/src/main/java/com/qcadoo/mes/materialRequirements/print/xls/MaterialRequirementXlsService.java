@@ -23,24 +23,20 @@
  */
 package com.qcadoo.mes.materialRequirements.print.xls;
 
-import java.math.BigDecimal;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import org.apache.poi.hssf.usermodel.HSSFCell;
 import org.apache.poi.hssf.usermodel.HSSFRow;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.Lists;
 import com.qcadoo.localization.api.TranslationService;
-import com.qcadoo.mes.basic.constants.ProductFields;
-import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
-import com.qcadoo.mes.materialRequirements.constants.MaterialRequirementFields;
-import com.qcadoo.mes.technologies.ProductQuantitiesService;
-import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
+import com.qcadoo.mes.materialRequirements.print.MaterialRequirementDataService;
+import com.qcadoo.mes.materialRequirements.print.MaterialRequirementEntry;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.NumberService;
 import com.qcadoo.report.api.xls.XlsDocumentService;
@@ -49,6 +45,10 @@ import com.qcadoo.report.api.xls.XlsHelper;
 @Service
 public final class MaterialRequirementXlsService extends XlsDocumentService {
 
+    private static final int L_COLUMNS = 4;
+
+    private static final int L_CHARACTER_WIDTH = 256;
+
     @Autowired
     private TranslationService translationService;
 
@@ -59,10 +59,7 @@ public final class MaterialRequirementXlsService extends XlsDocumentService {
     private XlsHelper xlsHelper;
 
     @Autowired
-    private ProductQuantitiesService productQuantitiesService;
-
-    @Autowired
-    private BasicProductionCountingService basicProductionCountingService;
+    private MaterialRequirementDataService materialRequirementDataService;
 
     @Override
     protected void addHeader(final HSSFSheet sheet, final Locale locale, final Entity materialRequirement) {
@@ -83,32 +80,60 @@ public final class MaterialRequirementXlsService extends XlsDocumentService {
 
     @Override
     protected void addSeries(final HSSFSheet sheet, final Entity materialRequirement) {
+        List<MaterialRequirementEntry> entries = materialRequirementDataService
+                .getMaterialRequirementEntries(materialRequirement);
+        int[] columnWidths = materialRequirementDataService.getColumnWidths(getHeaders(sheet), entries);
+
+        HSSFSheet currentSheet = sheet;
         int rowNum = 1;
-        List<Entity> orders = materialRequirement.getManyToManyField(MaterialRequirementFields.ORDERS);
-        MrpAlgorithm algorithm = MrpAlgorithm.parseString(materialRequirement
-                .getStringField(MaterialRequirementFields.MRP_ALGORITHM));
-
-        Map<Long, BigDecimal> neededProductQuantities = basicProductionCountingService.getNeededProductQuantities(orders,
-                algorithm);
-
-        for (Entry<Long, BigDecimal> neededProductQuantity : neededProductQuantities.entrySet()) {
-            Entity product = productQuantitiesService.getProduct(neededProductQuantity.getKey());
-
-            HSSFRow row = sheet.createRow(rowNum++);
-            row.createCell(0).setCellValue(product.getStringField(ProductFields.NUMBER));
-            row.createCell(1).setCellValue(product.getStringField(ProductFields.NAME));
-            row.createCell(2).setCellValue(numberService.setScaleWithDefaultMathContext(neededProductQuantity.getValue()).doubleValue());
-            String unit = product.getStringField(ProductFields.UNIT);
-            if (unit == null) {
-                row.createCell(3).setCellValue("");
-            } else {
-                row.createCell(3).setCellValue(unit);
+        int sheetNum = 1;
+
+        setColumnWidths(currentSheet, columnWidths);
+
+        for (MaterialRequirementEntry entry : entries) {
+            if (rowNum > SpreadsheetVersion.EXCEL97.getLastRowIndex()) {
+                currentSheet = createContinuationSheet(sheet, ++sheetNum);
+                setColumnWidths(currentSheet, columnWidths);
+                rowNum = 1;
             }
+
+            HSSFRow row = currentSheet.createRow(rowNum++);
+            row.createCell(0).setCellValue(entry.getNumber());
+            row.createCell(1).setCellValue(entry.getName());
+            row.createCell(2).setCellValue(numberService.setScaleWithDefaultMathContext(entry.getQuantity()).doubleValue());
+            row.createCell(3).setCellValue(entry.getUnit());
+        }
+    }
+
+    private List<String> getHeaders(final HSSFSheet sheet) {
+        List<String> headers = Lists.newArrayList();
+
+        for (int column = 0; column < L_COLUMNS; column++) {
+            headers.add(sheet.getRow(0).getCell(column).getStringCellValue());
+        }
+
+        return headers;
+    }
+
+    private HSSFSheet createContinuationSheet(final HSSFSheet sheet, final int sheetNum) {
+        HSSFSheet continuationSheet = sheet.getWorkbook().createSheet(sheet.getSheetName() + " (" + sheetNum + ")");
+        HSSFRow header = continuationSheet.createRow(0);
+
+        for (int column = 0; column < L_COLUMNS; column++) {
+            HSSFCell headerCell = sheet.getRow(0).getCell(column);
+            HSSFCell cell = header.createCell(column);
+
+            cell.setCellValue(headerCell.getStringCellValue());
+            cell.setCellStyle(headerCell.getCellStyle());
+        }
+
+        return continuationSheet;
+    }
+
+    private void setColumnWidths(final HSSFSheet sheet, final int[] columnWidths) {
+        for (int column = 0; column < columnWidths.length; column++) {
+            sheet.setColumnWidth(column, columnWidths[column] * L_CHARACTER_WIDTH);
         }
-        sheet.autoSizeColumn((short) 0);
-        sheet.autoSizeColumn((short) 1);
-        sheet.autoSizeColumn((short) 2);
-        sheet.autoSizeColumn((short) 3);
     }
 
     @Override
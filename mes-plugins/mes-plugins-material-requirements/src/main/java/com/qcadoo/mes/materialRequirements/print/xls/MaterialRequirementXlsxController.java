@@ -0,0 +1,95 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialRequirements.print.xls;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import com.qcadoo.mes.materialRequirements.constants.MaterialRequirementFields;
+import com.qcadoo.mes.materialRequirements.constants.MaterialRequirementsConstants;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+
+@Controller
+final class MaterialRequirementXlsxController {
+
+    private static final String L_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private MaterialRequirementXlsxService materialRequirementXlsxService;
+
+    @RequestMapping(value = "/" + MaterialRequirementsConstants.PLUGIN_IDENTIFIER + "/materialRequirement.xlsx",
+            method = RequestMethod.GET)
+    public void generateMaterialRequirementReport(@RequestParam("id") final Long id, final HttpServletResponse response)
+            throws IOException {
+        Entity materialRequirement = dataDefinitionService.get(MaterialRequirementsConstants.PLUGIN_IDENTIFIER,
+                MaterialRequirementsConstants.MODEL_MATERIAL_REQUIREMENT).get(id);
+
+        if ((materialRequirement == null) || !materialRequirement.getBooleanField(MaterialRequirementFields.GENERATED)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Locale locale = LocaleContextHolder.getLocale();
+
+        response.setContentType(L_CONTENT_TYPE);
+        response.setHeader("Content-disposition", getContentDisposition(materialRequirementXlsxService.getReportTitle(locale)
+                + "_" + materialRequirement.getStringField(MaterialRequirementFields.NUMBER) + ".xlsx"));
+
+        materialRequirementXlsxService.generateDocument(materialRequirement, locale, response.getOutputStream());
+
+        response.flushBuffer();
+    }
+
+    /**
+     * Builds an attachment header with a quoted ASCII file name for old clients and an RFC 5987 encoded one, so numbers with
+     * quotes, semicolons or national characters can't break the header.
+     */
+    static String getContentDisposition(final String fileName) {
+        String asciiFileName = fileName.replaceAll("[^\\x20-\\x7E]", "_").replace("\\", "\\\\").replace("\"", "\\\"");
+
+        try {
+            return "attachment; filename=\"" + asciiFileName + "\"; filename*=UTF-8''"
+                    + URLEncoder.encode(fileName, StandardCharsets.UTF_8.name()).replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
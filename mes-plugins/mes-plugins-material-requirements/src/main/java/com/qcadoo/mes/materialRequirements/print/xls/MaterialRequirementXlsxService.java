@@ -0,0 +1,129 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialRequirements.print.xls;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.localization.api.TranslationService;
+import com.qcadoo.mes.materialRequirements.print.MaterialRequirementDataService;
+import com.qcadoo.mes.materialRequirements.print.MaterialRequirementEntry;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.NumberService;
+
+/**
+ * Writes the material requirement straight to the given stream as XLSX, keeping only a window of rows in memory.
+ */
+@Service
+public class MaterialRequirementXlsxService {
+
+    private static final int L_ROW_ACCESS_WINDOW_SIZE = 100;
+
+    private static final int L_CHARACTER_WIDTH = 256;
+
+    @Autowired
+    private TranslationService translationService;
+
+    @Autowired
+    private NumberService numberService;
+
+    @Autowired
+    private MaterialRequirementDataService materialRequirementDataService;
+
+    public void generateDocument(final Entity materialRequirement, final Locale locale, final OutputStream outputStream)
+            throws IOException {
+        List<MaterialRequirementEntry> entries = materialRequirementDataService
+                .getMaterialRequirementEntries(materialRequirement);
+        List<String> headers = getHeaders(locale);
+        int[] columnWidths = materialRequirementDataService.getColumnWidths(headers, entries);
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(L_ROW_ACCESS_WINDOW_SIZE);
+
+        try {
+            Sheet sheet = workbook.createSheet(getReportTitle(locale));
+
+            addHeader(workbook, sheet, headers, columnWidths);
+            addSeries(sheet, entries);
+
+            workbook.write(outputStream);
+        } finally {
+            workbook.dispose();
+        }
+    }
+
+    public String getReportTitle(final Locale locale) {
+        return translationService.translate("materialRequirements.materialRequirement.report.title", locale);
+    }
+
+    private List<String> getHeaders(final Locale locale) {
+        return Lists.newArrayList(translationService.translate("basic.product.number.label", locale),
+                translationService.translate("basic.product.name.label", locale),
+                translationService.translate("technologies.technologyOperationComponent.quantity.label", locale),
+                translationService.translate("basic.product.unit.label", locale));
+    }
+
+    private void addHeader(final SXSSFWorkbook workbook, final Sheet sheet, final List<String> headers,
+            final int[] columnWidths) {
+        Font font = workbook.createFont();
+        font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+
+        CellStyle style = workbook.createCellStyle();
+        style.setFont(font);
+
+        Row header = sheet.createRow(0);
+
+        for (int column = 0; column < headers.size(); column++) {
+            Cell cell = header.createCell(column);
+            cell.setCellValue(headers.get(column));
+            cell.setCellStyle(style);
+
+            sheet.setColumnWidth(column, columnWidths[column] * L_CHARACTER_WIDTH);
+        }
+    }
+
+    private void addSeries(final Sheet sheet, final List<MaterialRequirementEntry> entries) {
+        int rowNum = 1;
+
+        for (MaterialRequirementEntry entry : entries) {
+            Row row = sheet.createRow(rowNum++);
+            row.createCell(0).setCellValue(entry.getNumber());
+            row.createCell(1).setCellValue(entry.getName());
+            row.createCell(2).setCellValue(numberService.setScaleWithDefaultMathContext(entry.getQuantity()).doubleValue());
+            row.createCell(3).setCellValue(entry.getUnit());
+        }
+    }
+
+}
@@ -25,6 +25,8 @@ package com.qcadoo.mes.materialRequirements.hooks;
 
 import static org.mockito.BDDMockito.given;
 
+import java.util.Map;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -32,7 +34,9 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.google.common.collect.ImmutableMap;
 import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.basic.ParameterSnapshot;
 import com.qcadoo.mes.materialRequirements.MaterialRequirementService;
 import com.qcadoo.mes.materialRequirements.constants.InputProductsRequiredForType;
 import com.qcadoo.mes.materialRequirements.constants.OrderFieldsMR;
@@ -69,9 +73,7 @@ public class OrderHooksMRTest {
     @Test
     public void shouldOnCreateSetInputProductsRequiredForTypeDefaultValue() {
         // given
-        given(parameterService.getParameter()).willReturn(parameter);
-        given(parameter.getStringField(ParameterFieldsMR.INPUT_PRODUCTS_REQUIRED_FOR_TYPE)).willReturn(
-                InputProductsRequiredForType.START_ORDER.getStringValue());
+        given(parameterService.getParameters()).willReturn(parameters(InputProductsRequiredForType.START_ORDER));
 
         // when
         orderHooksMR.onCreate(orderDD, order);
@@ -84,9 +86,7 @@ public class OrderHooksMRTest {
     @Test
     public void shouldOnCopySetInputProductsRequiredForTypeDefaultValue() {
         // given
-        given(parameterService.getParameter()).willReturn(parameter);
-        given(parameter.getStringField(ParameterFieldsMR.INPUT_PRODUCTS_REQUIRED_FOR_TYPE)).willReturn(
-                InputProductsRequiredForType.START_ORDER.getStringValue());
+        given(parameterService.getParameters()).willReturn(parameters(InputProductsRequiredForType.START_ORDER));
 
         // when
         orderHooksMR.onCopy(orderDD, order);
@@ -96,4 +96,12 @@ public class OrderHooksMRTest {
                 OrderFieldsMR.INPUT_PRODUCTS_REQUIRED_FOR_TYPE, InputProductsRequiredForType.START_ORDER.getStringValue());
     }
 
+    private ParameterSnapshot parameters(final InputProductsRequiredForType inputProductsRequiredForType) {
+        Map<String, Object> fields = ImmutableMap.<String, Object> of(ParameterFieldsMR.INPUT_PRODUCTS_REQUIRED_FOR_TYPE,
+                inputProductsRequiredForType.getStringValue());
+        given(parameter.getFields()).willReturn(fields);
+
+        return new ParameterSnapshot(parameter);
+    }
+
 }
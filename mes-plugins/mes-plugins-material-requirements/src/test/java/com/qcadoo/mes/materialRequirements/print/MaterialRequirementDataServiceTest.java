@@ -0,0 +1,194 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialRequirements.print;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
+import com.qcadoo.mes.materialRequirements.constants.MaterialRequirementFields;
+import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchResult;
+
+public class MaterialRequirementDataServiceTest {
+
+    private MaterialRequirementDataService materialRequirementDataService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private BasicProductionCountingService basicProductionCountingService;
+
+    @Mock
+    private DataDefinition productDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Mock
+    private Entity materialRequirement;
+
+    private List<Entity> orders;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        materialRequirementDataService = new MaterialRequirementDataService();
+
+        ReflectionTestUtils.setField(materialRequirementDataService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(materialRequirementDataService, "basicProductionCountingService",
+                basicProductionCountingService);
+
+        given(dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT)).willReturn(productDD);
+        given(productDD.find()).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.add(any(SearchCriterion.class))).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.list()).willReturn(searchResult);
+
+        orders = Lists.newArrayList(mock(Entity.class));
+        given(materialRequirement.getManyToManyField(MaterialRequirementFields.ORDERS)).willReturn(orders);
+        given(materialRequirement.getStringField(MaterialRequirementFields.MRP_ALGORITHM)).willReturn(
+                MrpAlgorithm.ONLY_COMPONENTS.getStringValue());
+    }
+
+    @Test
+    public final void shouldResolveNeededProductsInChunks() {
+        // given
+        Map<Long, BigDecimal> neededProductQuantities = Maps.newLinkedHashMap();
+        List<Entity> firstChunk = Lists.newArrayList();
+        List<Entity> secondChunk = Lists.newArrayList();
+
+        for (long productId = 1; productId <= 1500; productId++) {
+            neededProductQuantities.put(productId, BigDecimal.valueOf(productId));
+            (productId <= 1000 ? firstChunk : secondChunk).add(product(productId, "P" + productId, "Product " + productId,
+                    "szt"));
+        }
+
+        given(basicProductionCountingService.getNeededProductQuantities(orders, MrpAlgorithm.ONLY_COMPONENTS)).willReturn(
+                neededProductQuantities);
+        given(searchResult.getEntities()).willReturn(firstChunk, secondChunk);
+
+        // when
+        List<MaterialRequirementEntry> entries = materialRequirementDataService
+                .getMaterialRequirementEntries(materialRequirement);
+
+        // then
+        verify(productDD, times(2)).find();
+
+        assertEquals(1500, entries.size());
+        assertEntry(entries.get(0), "P1", "Product 1", "szt", BigDecimal.valueOf(1));
+        assertEntry(entries.get(1499), "P1500", "Product 1500", "szt", BigDecimal.valueOf(1500));
+    }
+
+    @Test
+    public final void shouldUseEmptyUnitForProductsWithoutUnit() {
+        // given
+        Map<Long, BigDecimal> neededProductQuantities = Maps.newLinkedHashMap();
+        neededProductQuantities.put(1L, BigDecimal.TEN);
+
+        given(basicProductionCountingService.getNeededProductQuantities(orders, MrpAlgorithm.ONLY_COMPONENTS)).willReturn(
+                neededProductQuantities);
+        given(searchResult.getEntities()).willReturn(Lists.newArrayList(product(1L, "P1", "Product 1", null)));
+
+        // when
+        List<MaterialRequirementEntry> entries = materialRequirementDataService
+                .getMaterialRequirementEntries(materialRequirement);
+
+        // then
+        assertEquals(1, entries.size());
+        assertEntry(entries.get(0), "P1", "Product 1", "", BigDecimal.TEN);
+    }
+
+    @Test
+    public final void shouldEstimateColumnWidthsWithinBounds() {
+        // given
+        List<String> headers = Lists.newArrayList("Number", "Name", "Quantity", "Unit");
+        List<MaterialRequirementEntry> entries = Lists.newArrayList(
+                new MaterialRequirementEntry("P1", "A product with a rather long name", "szt", new BigDecimal("12.5")),
+                new MaterialRequirementEntry("P2", repeat('x', 100), "kg", BigDecimal.ONE));
+
+        // when
+        int[] columnWidths = materialRequirementDataService.getColumnWidths(headers, entries);
+
+        // then
+        assertArrayEquals(new int[] { 8, 60, 10, 8 }, columnWidths);
+    }
+
+    private void assertEntry(final MaterialRequirementEntry entry, final String number, final String name, final String unit,
+            final BigDecimal quantity) {
+        assertEquals(number, entry.getNumber());
+        assertEquals(name, entry.getName());
+        assertEquals(unit, entry.getUnit());
+        assertEquals(quantity, entry.getQuantity());
+    }
+
+    private Entity product(final Long id, final String number, final String name, final String unit) {
+        Entity product = mock(Entity.class);
+        given(product.getId()).willReturn(id);
+        given(product.getStringField(ProductFields.NUMBER)).willReturn(number);
+        given(product.getStringField(ProductFields.NAME)).willReturn(name);
+        given(product.getStringField(ProductFields.UNIT)).willReturn(unit);
+
+        return product;
+    }
+
+    private String repeat(final char character, final int count) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int index = 0; index < count; index++) {
+            builder.append(character);
+        }
+
+        return builder.toString();
+    }
+
+}
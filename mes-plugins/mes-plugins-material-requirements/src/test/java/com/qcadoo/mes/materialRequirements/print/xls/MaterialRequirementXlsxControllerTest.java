@@ -0,0 +1,62 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialRequirements.print.xls;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MaterialRequirementXlsxControllerTest {
+
+    @Test
+    public final void shouldQuoteFileName() {
+        // when
+        String contentDisposition = MaterialRequirementXlsxController.getContentDisposition("Report_MR 1.xlsx");
+
+        // then
+        assertEquals("attachment; filename=\"Report_MR 1.xlsx\"; filename*=UTF-8''Report_MR%201.xlsx", contentDisposition);
+    }
+
+    @Test
+    public final void shouldEscapeQuotesAndControlCharactersInFileName() {
+        // when
+        String contentDisposition = MaterialRequirementXlsxController.getContentDisposition("Report_\"MR\";\r\n1.xlsx");
+
+        // then
+        assertEquals("attachment; filename=\"Report_\\\"MR\\\";__1.xlsx\"; filename*=UTF-8''Report_%22MR%22%3B%0D%0A1.xlsx",
+                contentDisposition);
+    }
+
+    @Test
+    public final void shouldEncodeNationalCharactersInFileName() {
+        // when
+        String contentDisposition = MaterialRequirementXlsxController
+                .getContentDisposition("Zapotrzebowanie_\u0141\u00f3d\u017a.xlsx");
+
+        // then
+        assertEquals("attachment; filename=\"Zapotrzebowanie__d_.xlsx\"; "
+                + "filename*=UTF-8''Zapotrzebowanie_%C5%81%C3%B3d%C5%BA.xlsx", contentDisposition);
+    }
+
+}
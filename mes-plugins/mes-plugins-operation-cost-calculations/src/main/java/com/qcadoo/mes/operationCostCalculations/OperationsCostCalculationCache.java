@@ -0,0 +1,65 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.operationCostCalculations;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.operationTimeCalculations.dto.OperationTimesContainer;
+import com.qcadoo.mes.technologies.dto.ProductQuantitiesHolder;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Product quantities, operation runs and operation times shared between operation cost calculations of the same technology
+ * and quantity. Quantities are compared regardless of their scale.
+ */
+public class OperationsCostCalculationCache {
+
+    private final Map<List<Object>, ProductQuantitiesHolder> productQuantities = Maps.newHashMap();
+
+    private final Map<List<Object>, OperationTimesContainer> operationTimes = Maps.newHashMap();
+
+    public ProductQuantitiesHolder getProductQuantities(final Entity technology, final BigDecimal quantity,
+            final Supplier<ProductQuantitiesHolder> loader) {
+        return productQuantities.computeIfAbsent(key(technology, quantity), k -> loader.get());
+    }
+
+    public OperationTimesContainer getOperationTimes(final Entity technology, final BigDecimal quantity,
+            final Entity productionLine, final boolean includeTPZ, final boolean includeAdditionalTime,
+            final Supplier<OperationTimesContainer> loader) {
+        List<Object> key = Arrays.asList(technology.getId(), quantity.stripTrailingZeros(),
+                productionLine == null ? null : productionLine.getId(), includeTPZ, includeAdditionalTime);
+
+        return operationTimes.computeIfAbsent(key, k -> loader.get());
+    }
+
+    private List<Object> key(final Entity technology, final BigDecimal quantity) {
+        return Arrays.asList(technology.getId(), quantity.stripTrailingZeros());
+    }
+
+}
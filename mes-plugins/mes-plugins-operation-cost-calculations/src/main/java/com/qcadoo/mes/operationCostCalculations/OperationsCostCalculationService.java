@@ -43,6 +43,17 @@ public interface OperationsCostCalculationService {
      */
     void calculateOperationsCost(final Entity costCalculationOrProductionBalance, boolean hourlyCostFromOperation);
 
+    /**
+     * 
+     * @param costCalculationOrProductionBalance
+     *            cost calculation or production balance
+     * @param hourlyCostFromOperation
+     * @param cache
+     *            product quantities and operation times shared with other calculations
+     */
+    void calculateOperationsCost(final Entity costCalculationOrProductionBalance, boolean hourlyCostFromOperation,
+            final OperationsCostCalculationCache cache);
+
     /**
      * 
      * @param calculationOperationComponent
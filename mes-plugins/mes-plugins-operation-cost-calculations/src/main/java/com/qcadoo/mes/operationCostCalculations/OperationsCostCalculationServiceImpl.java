@@ -136,6 +136,13 @@ public class OperationsCostCalculationServiceImpl implements OperationsCostCalcu
 
     @Override
     public void calculateOperationsCost(final Entity costCalculationOrProductionBalance, boolean hourlyCostFromOperation) {
+        calculateOperationsCost(costCalculationOrProductionBalance, hourlyCostFromOperation,
+                new OperationsCostCalculationCache());
+    }
+
+    @Override
+    public void calculateOperationsCost(final Entity costCalculationOrProductionBalance, boolean hourlyCostFromOperation,
+            final OperationsCostCalculationCache cache) {
         checkArgument(costCalculationOrProductionBalance != null, "entity is null");
         String modelName = costCalculationOrProductionBalance.getDataDefinition().getName();
         checkArgument(L_COST_CALCULATION.equals(modelName) || L_PRODUCTION_BALANCE.equals(modelName), "unsupported entity type");
@@ -159,7 +166,7 @@ public class OperationsCostCalculationServiceImpl implements OperationsCostCalcu
         }
 
         ProductQuantitiesHolder productQuantitiesAndOperationRuns = getProductQuantitiesAndOperationRuns(technology, quantity,
-                costCalculationOrProductionBalance);
+                cache);
 
         if (order != null) {
             order.setField(L_TECHNOLOGY, technology);
@@ -199,10 +206,15 @@ public class OperationsCostCalculationServiceImpl implements OperationsCostCalcu
             Map<Long, Integer> workstations = getWorkstationsMapsForOperationsComponent(copyCostCalculationOrProductionBalance,
                     productionLine);
 
-            List<Entity> tocs = calculationOperationComponents.stream()
-                    .map(e -> e.getBelongsToField("technologyOperationComponent")).collect(Collectors.toList());
-            OperationTimesContainer operationTimes = operationWorkTimeService.estimateOperationsWorkTimes(tocs,
-                    productQuantitiesAndOperationRuns.getOperationRuns(), includeTPZ, includeAdditionalTime, workstations, true);
+            OperationTimesContainer operationTimes = cache.getOperationTimes(technology, quantity, productionLine, includeTPZ,
+                    includeAdditionalTime, () -> {
+                        List<Entity> tocs = calculationOperationComponents.stream()
+                                .map(e -> e.getBelongsToField("technologyOperationComponent")).collect(Collectors.toList());
+
+                        return operationWorkTimeService.estimateOperationsWorkTimes(tocs,
+                                productQuantitiesAndOperationRuns.getOperationRuns(), includeTPZ, includeAdditionalTime,
+                                workstations, true);
+                    });
 
             Map<String, BigDecimal> resultsMap = estimateCostCalculationForHourly(calculationOperationComponents.getRoot(),
                     productionCostMargin, quantity, operationTimes, hourlyCostFromOperation);
@@ -219,8 +231,9 @@ public class OperationsCostCalculationServiceImpl implements OperationsCostCalcu
     }
 
     private ProductQuantitiesHolder getProductQuantitiesAndOperationRuns(final Entity technology, final BigDecimal quantity,
-            final Entity costCalculationOrProductionBalance) {
-        return productQuantitiesService.getProductComponentQuantities(technology, quantity);
+            final OperationsCostCalculationCache cache) {
+        return cache.getProductQuantities(technology, quantity,
+                () -> productQuantitiesService.getProductComponentQuantities(technology, quantity));
     }
 
     @Override
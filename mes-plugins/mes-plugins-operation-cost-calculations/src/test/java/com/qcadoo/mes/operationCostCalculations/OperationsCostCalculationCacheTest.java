@@ -0,0 +1,132 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.operationCostCalculations;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.qcadoo.mes.operationTimeCalculations.dto.OperationTimesContainer;
+import com.qcadoo.mes.technologies.dto.ProductQuantitiesHolder;
+import com.qcadoo.model.api.Entity;
+
+public class OperationsCostCalculationCacheTest {
+
+    private OperationsCostCalculationCache cache;
+
+    @Mock
+    private Supplier<ProductQuantitiesHolder> productQuantitiesLoader;
+
+    @Mock
+    private Supplier<OperationTimesContainer> operationTimesLoader;
+
+    private Entity technology, otherTechnology, productionLine, otherProductionLine;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        cache = new OperationsCostCalculationCache();
+
+        technology = mockEntity(1L);
+        otherTechnology = mockEntity(2L);
+        productionLine = mockEntity(10L);
+        otherProductionLine = mockEntity(11L);
+
+        when(productQuantitiesLoader.get()).thenAnswer(invocation -> new ProductQuantitiesHolder());
+        when(operationTimesLoader.get()).thenAnswer(invocation -> new OperationTimesContainer());
+    }
+
+    @Test
+    public final void shouldShareProductQuantitiesRegardlessOfQuantityScale() {
+        // when
+        ProductQuantitiesHolder first = cache.getProductQuantities(technology, new BigDecimal("10"), productQuantitiesLoader);
+        ProductQuantitiesHolder second = cache.getProductQuantities(technology, new BigDecimal("10.00000"),
+                productQuantitiesLoader);
+
+        // then
+        assertSame(first, second);
+        verify(productQuantitiesLoader, times(1)).get();
+    }
+
+    @Test
+    public final void shouldNotShareProductQuantitiesOfDifferentTechnologiesOrQuantities() {
+        // when
+        ProductQuantitiesHolder first = cache.getProductQuantities(technology, BigDecimal.TEN, productQuantitiesLoader);
+        ProductQuantitiesHolder otherTechnologyQuantities = cache.getProductQuantities(otherTechnology, BigDecimal.TEN,
+                productQuantitiesLoader);
+        ProductQuantitiesHolder otherQuantity = cache.getProductQuantities(technology, BigDecimal.ONE, productQuantitiesLoader);
+
+        // then
+        assertNotSame(first, otherTechnologyQuantities);
+        assertNotSame(first, otherQuantity);
+        verify(productQuantitiesLoader, times(3)).get();
+    }
+
+    @Test
+    public final void shouldShareOperationTimesOnlyForSameProductionLineAndTpzFlags() {
+        // given
+        BigDecimal quantity = new BigDecimal("5.0");
+
+        // when
+        OperationTimesContainer operationTimes = cache.getOperationTimes(technology, quantity, productionLine, true, true,
+                operationTimesLoader);
+        OperationTimesContainer sameTimes = cache.getOperationTimes(technology, new BigDecimal("5"), productionLine, true, true,
+                operationTimesLoader);
+        OperationTimesContainer otherLineTimes = cache.getOperationTimes(technology, quantity, otherProductionLine, true, true,
+                operationTimesLoader);
+        OperationTimesContainer noLineTimes = cache.getOperationTimes(technology, quantity, null, true, true,
+                operationTimesLoader);
+        OperationTimesContainer withoutTpzTimes = cache.getOperationTimes(technology, quantity, productionLine, false, true,
+                operationTimesLoader);
+        OperationTimesContainer withoutAdditionalTimeTimes = cache.getOperationTimes(technology, quantity, productionLine, true,
+                false, operationTimesLoader);
+
+        // then
+        assertSame(operationTimes, sameTimes);
+        assertNotSame(operationTimes, otherLineTimes);
+        assertNotSame(operationTimes, noLineTimes);
+        assertNotSame(operationTimes, withoutTpzTimes);
+        assertNotSame(operationTimes, withoutAdditionalTimeTimes);
+        verify(operationTimesLoader, times(5)).get();
+    }
+
+    private Entity mockEntity(final Long id) {
+        Entity entity = mock(Entity.class);
+        when(entity.getId()).thenReturn(id);
+        return entity;
+    }
+
+}
@@ -239,7 +239,7 @@ public class OrderRealizationTimeServiceImpl implements OrderRealizationTimeServ
     private Integer retrieveWorkstationTypesCount(final Entity operationComponent, final Entity productionLine) {
         if (StringUtils.isEmpty(operationComponent.getBelongsToField(TechnologyOperationComponentFields.TECHNOLOGY)
                 .getStringField(TechnologyFields.TECHNOLOGY_TYPE))) {
-            if (parameterService.getParameter().getBooleanField("workstationsQuantityFromProductionLine")) {
+            if (parameterService.getParameters().isWorkstationsQuantityFromProductionLine()) {
                 return productionLinesService.getWorkstationTypesCount(operationComponent, productionLine);
             } else {
                 return getIntegerValue(operationComponent
@@ -0,0 +1,63 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.orders;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.basic.numbering.NumberAllocationService;
+import com.qcadoo.mes.basic.numbering.NumberSequence;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.constants.OrdersConstants;
+import com.qcadoo.view.api.ViewDefinitionState;
+
+@Service
+public class OrderNumberGenerator {
+
+    private static final String L_FORM = "form";
+
+    private static final NumberSequence L_ORDER_NUMBER_SEQUENCE = new NumberSequence(OrdersConstants.PLUGIN_IDENTIFIER,
+            OrdersConstants.MODEL_ORDER, "", 6);
+
+    @Autowired
+    private NumberAllocationService numberAllocationService;
+
+    /**
+     * Synchronize order number sequence with existing order numbers
+     */
+    public void synchronizeNumberSequence() {
+        numberAllocationService.synchronize(L_ORDER_NUMBER_SEQUENCE);
+    }
+
+    /**
+     * Generate and insert number into order form
+     *
+     * @param view
+     *            View
+     */
+    public void generateAndInsertNumber(final ViewDefinitionState view) {
+        numberAllocationService.generateAndInsertNumber(view, L_ORDER_NUMBER_SEQUENCE, L_FORM, OrderFields.NUMBER);
+    }
+
+}
@@ -28,6 +28,7 @@ import com.qcadoo.mes.basic.ShiftsService;
 import com.qcadoo.mes.basic.constants.ProductFields;
 import com.qcadoo.mes.orders.constants.OrderFields;
 import com.qcadoo.mes.orders.constants.OrderType;
+import com.qcadoo.mes.orders.constants.TechnologyFieldsO;
 import com.qcadoo.mes.states.StateChangeContext;
 import com.qcadoo.mes.states.constants.StateChangeStatus;
 import com.qcadoo.mes.states.service.StateChangeContextBuilder;
@@ -157,7 +158,8 @@ public class TechnologyServiceO {
                 deleteTechnology(technology);
 
                 if (orderService.isPktEnabled()) {
-                    order.setField(OrderFields.TECHNOLOGY, copyTechnology(order, technologyPrototype, changeTechnologyStateToChecked));
+                    order.setField(OrderFields.TECHNOLOGY,
+                            shareOrCopyTechnology(order, technologyPrototype, changeTechnologyStateToChecked));
                 } else {
                     order.setField(OrderFields.TECHNOLOGY, technologyPrototype);
                 }
@@ -165,7 +167,7 @@ public class TechnologyServiceO {
             }
         } else {
                 if (orderService.isPktEnabled()) {
-                    order.setField(OrderFields.TECHNOLOGY, copyTechnology(order, technologyPrototype,
+                    order.setField(OrderFields.TECHNOLOGY, shareOrCopyTechnology(order, technologyPrototype,
                             changeTechnologyStateToChecked));
                 } else {
                     order.setField(OrderFields.TECHNOLOGY, technologyPrototype);
@@ -176,7 +178,10 @@ public class TechnologyServiceO {
     private void createOrUpdateForOwnTechnology(final Entity order, final Entity technologyPrototype) {
         Entity existingOrder = getExistingOrder(order);
 
-        if (isTechnologyCopied(order)) {
+        if (isTechnologyShared(order)) {
+            order.setField(OrderFields.TECHNOLOGY, createTechnology(order));
+            order.setField(OrderFields.TECHNOLOGY_PROTOTYPE, null);
+        } else if (isTechnologyCopied(order)) {
             if (technologyPrototype != null) {
                 Entity technology = order.getBelongsToField(OrderFields.TECHNOLOGY);
 
@@ -231,6 +236,27 @@ public class TechnologyServiceO {
         return true;
     }
 
+    // orders with the same accepted pattern technology reference one accepted copy of it until someone edits order technology
+    public boolean isTechnologyShared(final Entity order) {
+        Entity technology = order.getBelongsToField(OrderFields.TECHNOLOGY);
+
+        return (technology != null) && technology.getBooleanField(TechnologyFieldsO.SHARED_BY_ORDERS);
+    }
+
+    @Transactional
+    public Entity materializeTechnologyIfShared(final Entity order) {
+        if (!orderService.isPktEnabled() || (OrderType.of(order) != OrderType.WITH_PATTERN_TECHNOLOGY)
+                || !isTechnologyShared(order)) {
+            return order;
+        }
+
+        Entity technologyPrototype = order.getBelongsToField(OrderFields.TECHNOLOGY_PROTOTYPE);
+
+        order.setField(OrderFields.TECHNOLOGY, copyTechnology(order, technologyPrototype, true));
+
+        return order.getDataDefinition().fastSave(order);
+    }
+
     private boolean isTechnologySet(final Entity order) {
         Entity existingOrder = getExistingOrder(order);
 
@@ -312,6 +338,42 @@ public class TechnologyServiceO {
         return newTechnology;
     }
 
+    private Entity shareOrCopyTechnology(final Entity order, final Entity technologyPrototype,
+            final boolean changeTechnologyStateToChecked) {
+        if (!TechnologyStateStringValues.ACCEPTED.equals(technologyPrototype.getStringField(TechnologyFields.STATE))) {
+            return copyTechnology(order, technologyPrototype, changeTechnologyStateToChecked);
+        }
+
+        Entity sharedTechnology = getTechnologyDD().find()
+                .add(SearchRestrictions.belongsTo(TechnologyFields.TECHNOLOGY_PROTOTYPE, technologyPrototype))
+                .add(SearchRestrictions.eq(TechnologyFieldsO.SHARED_BY_ORDERS, true)).setMaxResults(1).uniqueResult();
+
+        if (sharedTechnology == null) {
+            sharedTechnology = createSharedTechnology(technologyPrototype);
+        }
+
+        return sharedTechnology;
+    }
+
+    private Entity createSharedTechnology(final Entity technologyPrototype) {
+        Entity sharedTechnology = getTechnologyDD().copy(technologyPrototype.getId()).get(0);
+
+        String number = numberGeneratorService.generateNumberWithPrefix(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_TECHNOLOGY, 3, technologyPrototype.getStringField(TechnologyFields.NUMBER) + " - ");
+
+        sharedTechnology.setField(TechnologyFields.NUMBER, number);
+        sharedTechnology.setField(TechnologyFields.TECHNOLOGY_PROTOTYPE, technologyPrototype);
+        sharedTechnology.setField(TechnologyFields.TECHNOLOGY_TYPE, TechnologyType.WITH_PATTERN_TECHNOLOGY.getStringValue());
+        sharedTechnology.setField(TechnologyFieldsO.SHARED_BY_ORDERS, true);
+
+        sharedTechnology = sharedTechnology.getDataDefinition().save(sharedTechnology);
+
+        changeTechnologyStateToChecked(sharedTechnology);
+        changeTechnologyStateToAccepted(sharedTechnology);
+
+        return sharedTechnology;
+    }
+
     private Entity copyTechnology(final Entity order, final Entity technologyPrototype, boolean changeTechnologyStateToChecked) {
         Entity copyOfTechnology = getTechnologyDD().create();
 
@@ -454,7 +516,7 @@ public class TechnologyServiceO {
     public void setTechnologyNumber(final DataDefinition orderDD, final Entity order) {
         String orderType = order.getStringField(OrderFields.ORDER_TYPE);
         Entity technology = order.getBelongsToField(OrderFields.TECHNOLOGY);
-        if (technology == null) {
+        if (technology == null || isTechnologyShared(order)) {
             return;
         }
         String number = "";
@@ -32,4 +32,6 @@ public final class TechnologyFieldsO {
 
     public static final String ORDERS = "orders";
 
+    public static final String SHARED_BY_ORDERS = "sharedByOrders";
+
 }
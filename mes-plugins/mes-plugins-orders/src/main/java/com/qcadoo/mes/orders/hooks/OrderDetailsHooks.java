@@ -29,6 +29,7 @@ import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.mes.basic.constants.BasicConstants;
 import com.qcadoo.mes.basic.constants.ProductFields;
 import com.qcadoo.mes.basic.util.UnitService;
+import com.qcadoo.mes.orders.OrderNumberGenerator;
 import com.qcadoo.mes.orders.OrderService;
 import com.qcadoo.mes.orders.TechnologyServiceO;
 import com.qcadoo.mes.orders.constants.OrderFields;
@@ -66,7 +67,6 @@ import com.qcadoo.view.api.components.WindowComponent;
 import com.qcadoo.view.api.ribbon.Ribbon;
 import com.qcadoo.view.api.ribbon.RibbonActionItem;
 import com.qcadoo.view.api.ribbon.RibbonGroup;
-import com.qcadoo.view.api.utils.NumberGeneratorService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -97,7 +97,7 @@ public class OrderDetailsHooks {
     private DataDefinitionService dataDefinitionService;
 
     @Autowired
-    private NumberGeneratorService numberGeneratorService;
+    private OrderNumberGenerator orderNumberGenerator;
 
     @Autowired
     private ExpressionService expressionService;
@@ -185,8 +185,7 @@ public class OrderDetailsHooks {
     }
 
     public void generateOrderNumber(final ViewDefinitionState view) {
-        numberGeneratorService.generateAndInsertNumber(view, OrdersConstants.PLUGIN_IDENTIFIER, OrdersConstants.MODEL_ORDER,
-                L_FORM, OrderFields.NUMBER);
+        orderNumberGenerator.generateAndInsertNumber(view);
     }
 
     public void fillDefaultTechnology(final ViewDefinitionState view) {
@@ -28,6 +28,7 @@ import com.google.common.collect.Lists;
 import com.qcadoo.commons.dateTime.DateRange;
 import com.qcadoo.localization.api.utils.DateUtils;
 import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.basic.ParameterSnapshot;
 import com.qcadoo.mes.basic.ProductService;
 import com.qcadoo.mes.orders.OrderService;
 import com.qcadoo.mes.orders.OrderStateChangeReasonService;
@@ -144,8 +145,10 @@ public class OrderHooks {
 
     private void setAdditionalFields(final Entity order) {
         if (Objects.isNull(order.getId())) {
-            order.setField("includeTpz", parameterService.getParameter().getBooleanField("includeTpzPS"));
-            order.setField("includeAdditionalTime", parameterService.getParameter().getBooleanField("includeAdditionalTimePS"));
+            ParameterSnapshot parameters = parameterService.getParameters();
+
+            order.setField("includeTpz", parameters.isIncludeTpz());
+            order.setField("includeAdditionalTime", parameters.isIncludeAdditionalTime());
         }
     }
 
@@ -241,7 +244,7 @@ public class OrderHooks {
 
     private void backupTechnology(final Entity order) {
         Entity technology = order.getBelongsToField(OrderFields.TECHNOLOGY);
-        if (technology != null && orderService.isPktEnabled()) {
+        if (technology != null && orderService.isPktEnabled() && !technologyServiceO.isTechnologyShared(order)) {
             String bNumber = BACKUP_TECHNOLOGY_PREFIX + new Date().getTime() + "_"
                     + technology.getStringField(TechnologyFields.NUMBER);
             bNumber = bNumber.substring(0, Math.min(bNumber.length(), 255));
@@ -577,8 +580,7 @@ public class OrderHooks {
     }
 
     public boolean neededWhenCorrectingTheRequestedVolume() {
-        return parameterService.getParameter().getBooleanField(
-                ParameterFieldsO.REASON_NEEDED_WHEN_CORRECTING_THE_REQUESTED_VOLUME);
+        return parameterService.getParameters().isReasonNeededWhenCorrectingTheRequestedVolume();
     }
 
     public void setCommissionedPlannedQuantity(final DataDefinition orderDD, final Entity order) {
@@ -626,7 +628,9 @@ public class OrderHooks {
 
     void setCopyOfTechnology(final Entity order) {
         if (orderService.isPktEnabled()) {
-            order.setField(OrderFields.TECHNOLOGY, copyTechnology(order).orNull());
+            if (!technologyServiceO.isTechnologyShared(order)) {
+                order.setField(OrderFields.TECHNOLOGY, copyTechnology(order).orNull());
+            }
         } else {
             Entity prototypeTechnology = order.getBelongsToField(OrderFields.TECHNOLOGY_PROTOTYPE);
             if (prototypeTechnology != null && TechnologyState.of(prototypeTechnology).compareTo(TechnologyState.ACCEPTED) == 0) {
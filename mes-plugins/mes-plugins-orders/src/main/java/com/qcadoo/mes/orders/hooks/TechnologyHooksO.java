@@ -35,6 +35,21 @@ import com.qcadoo.model.api.Entity;
 @Service
 public class TechnologyHooksO {
 
+    public boolean checkIfTechnologyIsNotSharedByOrders(final DataDefinition technologyDD, final Entity technology) {
+        if (technology.getId() == null) {
+            return true;
+        }
+
+        Entity technologyFromDB = technologyDD.get(technology.getId());
+
+        if ((technologyFromDB != null) && technologyFromDB.getBooleanField(TechnologyFieldsO.SHARED_BY_ORDERS)) {
+            technology.addGlobalError("orders.technology.sharedByOrders.cannotBeEdited",
+                    technology.getStringField(TechnologyFields.NUMBER));
+            return false;
+        }
+        return true;
+    }
+
     public boolean checkIfTechnologyIsPrototypeForOrders(final DataDefinition technologyDD, final Entity technology) {
         List<Entity> orders = technology.getHasManyField(TechnologyFieldsO.ORDERS_USING_PROTOTYPE);
 
@@ -144,6 +144,8 @@ public class OrderDetailsListeners {
                 }
             }
 
+            order = technologyServiceO.materializeTechnologyIfShared(order);
+
             Long technologyId = order.getBelongsToField(OrderFields.TECHNOLOGY).getId();
             Map<String, Object> parameters = Maps.newHashMap();
             parameters.put("form.id", technologyId);
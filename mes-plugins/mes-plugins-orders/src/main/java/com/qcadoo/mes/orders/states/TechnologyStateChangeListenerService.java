@@ -33,8 +33,10 @@ import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.qcadoo.mes.orders.constants.TechnologyFieldsO;
 import com.qcadoo.mes.states.StateChangeContext;
 import com.qcadoo.mes.states.messages.constants.StateMessageType;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -68,4 +70,13 @@ public class TechnologyStateChangeListenerService {
         }
     }
 
+    public void checkIfTechnologyIsNotSharedByOrders(final StateChangeContext stateChangeContext) {
+        final Entity technology = stateChangeContext.getOwner();
+
+        if (technology.getBooleanField(TechnologyFieldsO.SHARED_BY_ORDERS)) {
+            stateChangeContext.addValidationError("orders.technology.sharedByOrders.cannotChangeState",
+                    technology.getStringField(TechnologyFields.NUMBER));
+        }
+    }
+
 }
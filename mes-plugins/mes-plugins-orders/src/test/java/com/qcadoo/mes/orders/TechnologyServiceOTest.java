@@ -0,0 +1,272 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.orders;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.ShiftsService;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.constants.OrderType;
+import com.qcadoo.mes.orders.constants.TechnologyFieldsO;
+import com.qcadoo.mes.states.StateChangeEntityDescriber;
+import com.qcadoo.mes.technologies.BarcodeOperationComponentService;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.constants.TechnologyType;
+import com.qcadoo.mes.technologies.states.aop.TechnologyStateChangeAspect;
+import com.qcadoo.mes.technologies.states.constants.TechnologyStateStringValues;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.security.api.SecurityService;
+import com.qcadoo.view.api.utils.NumberGeneratorService;
+
+public class TechnologyServiceOTest {
+
+    private static final Long L_PROTOTYPE_ID = 1L;
+
+    private TechnologyServiceO technologyServiceO;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private NumberGeneratorService numberGeneratorService;
+
+    @Mock
+    private TechnologyStateChangeAspect technologyStateChangeAspect;
+
+    @Mock
+    private StateChangeEntityDescriber describer;
+
+    @Mock
+    private ShiftsService shiftsService;
+
+    @Mock
+    private SecurityService securityService;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private BarcodeOperationComponentService barcodeOperationComponentService;
+
+    @Mock
+    private DataDefinition orderDD, technologyDD, technologyStateChangeDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private Entity order, prototype, product;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        technologyServiceO = new TechnologyServiceO();
+
+        setField(technologyServiceO, "dataDefinitionService", dataDefinitionService);
+        setField(technologyServiceO, "numberGeneratorService", numberGeneratorService);
+        setField(technologyServiceO, "technologyStateChangeAspect", technologyStateChangeAspect);
+        setField(technologyServiceO, "shiftsService", shiftsService);
+        setField(technologyServiceO, "securityService", securityService);
+        setField(technologyServiceO, "orderService", orderService);
+        setField(technologyServiceO, "barcodeOperationComponentService", barcodeOperationComponentService);
+
+        when(dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_TECHNOLOGY))
+                .thenReturn(technologyDD);
+        when(dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_TECHNOLOGY_STATE_CHANGE)).thenReturn(technologyStateChangeDD);
+        when(technologyStateChangeDD.create()).thenReturn(mock(Entity.class));
+        when(technologyStateChangeAspect.getChangeEntityDescriber()).thenReturn(describer);
+        when(technologyDD.find()).thenReturn(searchCriteriaBuilder);
+        when(searchCriteriaBuilder.add(any(SearchCriterion.class))).thenReturn(searchCriteriaBuilder);
+        when(searchCriteriaBuilder.setMaxResults(anyInt())).thenReturn(searchCriteriaBuilder);
+        when(numberGeneratorService.generateNumberWithPrefix(anyString(), anyString(), anyInt(), anyString())).thenReturn(
+                "T - 001");
+
+        when(orderService.isPktEnabled()).thenReturn(true);
+
+        when(order.getDataDefinition()).thenReturn(orderDD);
+        when(order.getBelongsToField(OrderFields.PRODUCT)).thenReturn(product);
+        when(order.getBelongsToField(OrderFields.TECHNOLOGY_PROTOTYPE)).thenReturn(prototype);
+        when(orderDD.fastSave(order)).thenReturn(order);
+
+        when(prototype.getId()).thenReturn(L_PROTOTYPE_ID);
+        when(prototype.getStringField(TechnologyFields.NUMBER)).thenReturn("T");
+        when(product.getStringField(ProductFields.NUMBER)).thenReturn("P");
+    }
+
+    @Test
+    public final void shouldShareExistingAcceptedCopyOfAcceptedPatternTechnology() {
+        // given
+        Entity sharedTechnology = mockTechnology(2L, true);
+        stubNewOrderWithPatternTechnology(TechnologyStateStringValues.ACCEPTED);
+        when(searchCriteriaBuilder.uniqueResult()).thenReturn(sharedTechnology);
+
+        // when
+        technologyServiceO.createOrUpdateTechnology(orderDD, order);
+
+        // then
+        verify(order).setField(OrderFields.TECHNOLOGY, sharedTechnology);
+        verify(technologyDD, never()).copy(Matchers.<Long> anyVararg());
+    }
+
+    @Test
+    public final void shouldCreateSharedCopyOfAcceptedPatternTechnology() {
+        // given
+        Entity sharedTechnology = mockTechnology(2L, false);
+        stubNewOrderWithPatternTechnology(TechnologyStateStringValues.ACCEPTED);
+        when(searchCriteriaBuilder.uniqueResult()).thenReturn(null);
+        when(technologyDD.copy(L_PROTOTYPE_ID)).thenReturn(Lists.newArrayList(sharedTechnology));
+
+        // when
+        technologyServiceO.createOrUpdateTechnology(orderDD, order);
+
+        // then
+        verify(sharedTechnology).setField(TechnologyFields.TECHNOLOGY_PROTOTYPE, prototype);
+        verify(sharedTechnology).setField(TechnologyFields.TECHNOLOGY_TYPE,
+                TechnologyType.WITH_PATTERN_TECHNOLOGY.getStringValue());
+        verify(sharedTechnology).setField(TechnologyFieldsO.SHARED_BY_ORDERS, true);
+        verify(sharedTechnology).setField(TechnologyFields.STATE, TechnologyStateStringValues.ACCEPTED);
+        verify(order).setField(OrderFields.TECHNOLOGY, sharedTechnology);
+    }
+
+    @Test
+    public final void shouldCopyPatternTechnologyWhichIsNotAccepted() {
+        // given
+        Entity copyOfTechnology = mockTechnology(3L, false);
+        stubNewOrderWithPatternTechnology(TechnologyStateStringValues.CHECKED);
+        when(technologyDD.create()).thenReturn(copyOfTechnology);
+        when(technologyDD.copy(L_PROTOTYPE_ID)).thenReturn(Lists.newArrayList(copyOfTechnology));
+
+        // when
+        technologyServiceO.createOrUpdateTechnology(orderDD, order);
+
+        // then
+        verify(technologyDD, never()).find();
+        verify(copyOfTechnology, never()).setField(eq(TechnologyFieldsO.SHARED_BY_ORDERS), any());
+        verify(copyOfTechnology).setField(TechnologyFields.TECHNOLOGY_TYPE,
+                TechnologyType.WITH_PATTERN_TECHNOLOGY.getStringValue());
+        verify(order).setField(OrderFields.TECHNOLOGY, copyOfTechnology);
+    }
+
+    @Test
+    public final void shouldMaterializeSharedTechnologyBeforeEditing() {
+        // given
+        Entity sharedTechnology = mockTechnology(2L, true);
+        Entity copyOfTechnology = mockTechnology(3L, false);
+        stubOrder(OrderType.WITH_PATTERN_TECHNOLOGY, sharedTechnology);
+        when(technologyDD.create()).thenReturn(copyOfTechnology);
+        when(technologyDD.copy(L_PROTOTYPE_ID)).thenReturn(Lists.newArrayList(copyOfTechnology));
+
+        // when
+        Entity result = technologyServiceO.materializeTechnologyIfShared(order);
+
+        // then
+        assertSame(order, result);
+        verify(order).setField(OrderFields.TECHNOLOGY, copyOfTechnology);
+        verify(copyOfTechnology).setField(TechnologyFields.STATE, TechnologyStateStringValues.CHECKED);
+        verify(orderDD).fastSave(order);
+        verify(sharedTechnology, never()).setField(anyString(), any());
+    }
+
+    @Test
+    public final void shouldNotMaterializeCopiedTechnology() {
+        // given
+        Entity copyOfTechnology = mockTechnology(3L, false);
+        stubOrder(OrderType.WITH_PATTERN_TECHNOLOGY, copyOfTechnology);
+
+        // when
+        technologyServiceO.materializeTechnologyIfShared(order);
+
+        // then
+        verify(technologyDD, never()).copy(Matchers.<Long> anyVararg());
+        verify(orderDD, never()).fastSave(order);
+    }
+
+    @Test
+    public final void shouldNotModifySharedTechnologyWhenOrderSwitchesToOwnTechnology() {
+        // given
+        Entity sharedTechnology = mockTechnology(2L, true);
+        Entity newTechnology = mockTechnology(4L, false);
+        stubOrder(OrderType.WITH_OWN_TECHNOLOGY, sharedTechnology);
+        when(technologyDD.create()).thenReturn(newTechnology);
+
+        // when
+        technologyServiceO.createOrUpdateTechnology(orderDD, order);
+
+        // then
+        verify(order).setField(OrderFields.TECHNOLOGY, newTechnology);
+        verify(order).setField(OrderFields.TECHNOLOGY_PROTOTYPE, null);
+        verify(newTechnology).setField(TechnologyFields.TECHNOLOGY_TYPE, TechnologyType.WITH_OWN_TECHNOLOGY.getStringValue());
+        verify(sharedTechnology, never()).setField(anyString(), any());
+        verify(technologyDD, never()).save(sharedTechnology);
+    }
+
+    private void stubNewOrderWithPatternTechnology(final String prototypeState) {
+        when(prototype.getStringField(TechnologyFields.STATE)).thenReturn(prototypeState);
+        when(order.getStringField(OrderFields.ORDER_TYPE)).thenReturn(OrderType.WITH_PATTERN_TECHNOLOGY.getStringValue());
+        when(order.getField(OrderFields.TECHNOLOGY_PROTOTYPE)).thenReturn(prototype);
+        when(order.getBelongsToField(OrderFields.TECHNOLOGY)).thenReturn(prototype);
+    }
+
+    private void stubOrder(final OrderType orderType, final Entity technology) {
+        when(order.getId()).thenReturn(10L);
+        when(orderDD.get(10L)).thenReturn(order);
+        when(order.getStringField(OrderFields.ORDER_TYPE)).thenReturn(orderType.getStringValue());
+        when(order.getBelongsToField(OrderFields.TECHNOLOGY)).thenReturn(technology);
+    }
+
+    private Entity mockTechnology(final Long id, final boolean sharedByOrders) {
+        Entity technology = mock(Entity.class);
+        when(technology.getId()).thenReturn(id);
+        when(technology.getDataDefinition()).thenReturn(technologyDD);
+        when(technology.getBooleanField(TechnologyFieldsO.SHARED_BY_ORDERS)).thenReturn(sharedByOrders);
+        when(technologyDD.save(technology)).thenReturn(technology);
+        when(technologyDD.fastSave(technology)).thenReturn(technology);
+        return technology;
+    }
+
+}
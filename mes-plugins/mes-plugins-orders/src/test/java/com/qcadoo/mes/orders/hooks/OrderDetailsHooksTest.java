@@ -24,6 +24,7 @@
 package com.qcadoo.mes.orders.hooks;
 
 import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.orders.OrderNumberGenerator;
 import com.qcadoo.mes.orders.OrderService;
 import com.qcadoo.mes.orders.TechnologyServiceO;
 import com.qcadoo.mes.orders.constants.OrderFields;
@@ -43,7 +44,6 @@ import com.qcadoo.view.api.components.AwesomeDynamicListComponent;
 import com.qcadoo.view.api.components.FieldComponent;
 import com.qcadoo.view.api.components.FormComponent;
 import com.qcadoo.view.api.components.LookupComponent;
-import com.qcadoo.view.api.utils.NumberGeneratorService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -74,7 +74,7 @@ public class OrderDetailsHooksTest {
     private DataDefinitionService dataDefinitionService;
 
     @Mock
-    private NumberGeneratorService numberGeneratorService;
+    private OrderNumberGenerator orderNumberGenerator;
 
     @Mock
     private ExpressionService expressionService;
@@ -123,7 +123,7 @@ public class OrderDetailsHooksTest {
         orderDetailsHooks = new OrderDetailsHooks();
 
         setField(orderDetailsHooks, "dataDefinitionService", dataDefinitionService);
-        setField(orderDetailsHooks, "numberGeneratorService", numberGeneratorService);
+        setField(orderDetailsHooks, "orderNumberGenerator", orderNumberGenerator);
         setField(orderDetailsHooks, "expressionService", expressionService);
         setField(orderDetailsHooks, "parameterService", parameterService);
         setField(orderDetailsHooks, "technologyServiceO", technologyServiceO);
@@ -188,8 +188,7 @@ public class OrderDetailsHooksTest {
         orderDetailsHooks.generateOrderNumber(view);
 
         // then
-        verify(numberGeneratorService).generateAndInsertNumber(view, OrdersConstants.PLUGIN_IDENTIFIER,
-                OrdersConstants.MODEL_ORDER, L_FORM, OrderFields.NUMBER);
+        verify(orderNumberGenerator).generateAndInsertNumber(view);
     }
 
     @Test
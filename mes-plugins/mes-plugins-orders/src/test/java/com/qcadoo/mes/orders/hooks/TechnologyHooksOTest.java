@@ -0,0 +1,109 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.orders.hooks;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.qcadoo.mes.orders.constants.TechnologyFieldsO;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+
+public class TechnologyHooksOTest {
+
+    private static final Long L_ID = 1L;
+
+    private static final String L_NUMBER = "T-001 - 001";
+
+    private TechnologyHooksO technologyHooksO;
+
+    @Mock
+    private DataDefinition technologyDD;
+
+    @Mock
+    private Entity technology, technologyFromDB;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        technologyHooksO = new TechnologyHooksO();
+
+        given(technology.getId()).willReturn(L_ID);
+        given(technology.getStringField(TechnologyFields.NUMBER)).willReturn(L_NUMBER);
+        given(technologyDD.get(L_ID)).willReturn(technologyFromDB);
+    }
+
+    @Test
+    public void shouldRejectEditOfTechnologySharedByOrders() {
+        // given
+        given(technologyFromDB.getBooleanField(TechnologyFieldsO.SHARED_BY_ORDERS)).willReturn(true);
+
+        // when
+        boolean result = technologyHooksO.checkIfTechnologyIsNotSharedByOrders(technologyDD, technology);
+
+        // then
+        assertFalse(result);
+        verify(technology).addGlobalError("orders.technology.sharedByOrders.cannotBeEdited", L_NUMBER);
+    }
+
+    @Test
+    public void shouldAllowEditOfTechnologyNotSharedByOrders() {
+        // given
+        given(technologyFromDB.getBooleanField(TechnologyFieldsO.SHARED_BY_ORDERS)).willReturn(false);
+
+        // when
+        boolean result = technologyHooksO.checkIfTechnologyIsNotSharedByOrders(technologyDD, technology);
+
+        // then
+        assertTrue(result);
+        verify(technology, never()).addGlobalError(anyString(), eq(L_NUMBER));
+    }
+
+    @Test
+    public void shouldAllowSaveOfNewTechnology() {
+        // given
+        given(technology.getId()).willReturn(null);
+
+        // when
+        boolean result = technologyHooksO.checkIfTechnologyIsNotSharedByOrders(technologyDD, technology);
+
+        // then
+        assertTrue(result);
+        verifyZeroInteractions(technologyDD);
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.orders.states;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.qcadoo.mes.orders.constants.TechnologyFieldsO;
+import com.qcadoo.mes.states.StateChangeContext;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.model.api.Entity;
+
+public class TechnologyStateChangeListenerServiceTest {
+
+    private static final String L_NUMBER = "T-001 - 001";
+
+    private TechnologyStateChangeListenerService technologyStateChangeListenerService;
+
+    @Mock
+    private StateChangeContext stateChangeContext;
+
+    @Mock
+    private Entity technology;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        technologyStateChangeListenerService = new TechnologyStateChangeListenerService();
+
+        given(stateChangeContext.getOwner()).willReturn(technology);
+        given(technology.getStringField(TechnologyFields.NUMBER)).willReturn(L_NUMBER);
+    }
+
+    @Test
+    public void shouldRejectStateChangeOfTechnologySharedByOrders() {
+        // given
+        given(technology.getBooleanField(TechnologyFieldsO.SHARED_BY_ORDERS)).willReturn(true);
+
+        // when
+        technologyStateChangeListenerService.checkIfTechnologyIsNotSharedByOrders(stateChangeContext);
+
+        // then
+        verify(stateChangeContext).addValidationError("orders.technology.sharedByOrders.cannotChangeState", L_NUMBER);
+    }
+
+    @Test
+    public void shouldAllowStateChangeOfTechnologyNotSharedByOrders() {
+        // given
+        given(technology.getBooleanField(TechnologyFieldsO.SHARED_BY_ORDERS)).willReturn(false);
+
+        // when
+        technologyStateChangeListenerService.checkIfTechnologyIsNotSharedByOrders(stateChangeContext);
+
+        // then
+        verify(stateChangeContext, never()).addValidationError(anyString(), anyString());
+    }
+
+}
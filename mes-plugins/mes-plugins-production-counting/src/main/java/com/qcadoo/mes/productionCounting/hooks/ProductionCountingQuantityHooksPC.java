@@ -29,7 +29,6 @@ import com.qcadoo.mes.basic.constants.ProductFields;
 import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityFields;
 import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityRole;
 import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityTypeOfMaterial;
-import com.qcadoo.mes.orders.constants.ParameterFieldsO;
 import com.qcadoo.mes.productionCounting.SetTechnologyInComponentsService;
 import com.qcadoo.mes.productionCounting.constants.ProductionCountingConstants;
 import com.qcadoo.mes.productionCounting.constants.ProductionCountingQuantityFieldsPC;
@@ -99,7 +98,7 @@ public class ProductionCountingQuantityHooksPC {
     }
 
     public void onCreate(final DataDefinition productionCountingQuantityDD, final Entity productionCountingQuantity) {
-       if(parameterService.getParameter().getBooleanField(ParameterFieldsO.CREATE_SET_ELEMENTS_ON_ACCEPT)) {
+       if(parameterService.getParameters().isCreateSetElementsOnAccept()) {
            String typeOfMaterial = productionCountingQuantity.getStringField(ProductionCountingQuantityFields.TYPE_OF_MATERIAL);
            String role = productionCountingQuantity.getStringField(ProductionCountingQuantityFields.ROLE);
 
@@ -116,7 +115,7 @@ public class ProductionCountingQuantityHooksPC {
     }
 
     public void onSave(final DataDefinition productionCountingQuantityDD, final Entity productionCountingQuantity) {
-        if(parameterService.getParameter().getBooleanField(ParameterFieldsO.CREATE_SET_ELEMENTS_ON_ACCEPT)) {
+        if(parameterService.getParameters().isCreateSetElementsOnAccept()) {
             recalculateProductionCountingQuantities(productionCountingQuantity);
         }
     }
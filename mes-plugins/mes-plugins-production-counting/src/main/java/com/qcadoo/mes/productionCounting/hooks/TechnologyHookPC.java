@@ -30,6 +30,7 @@ import org.springframework.stereotype.Service;
 
 import com.google.common.collect.Lists;
 import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.basic.ParameterSnapshot;
 import com.qcadoo.mes.productionCounting.constants.TechnologyFieldsPC;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
@@ -50,9 +51,11 @@ public class TechnologyHookPC {
     }
 
     public void setOrderWithDefaultProductionCountingValues(final DataDefinition technologyDD, final Entity technology) {
+        ParameterSnapshot parameters = parameterService.getParameters();
+
         for (String fieldName : L_ORDER_FIELD_NAMES) {
             if (technology.getField(fieldName) == null) {
-                technology.setField(fieldName, parameterService.getParameter().getField(fieldName));
+                technology.setField(fieldName, parameters.getField(fieldName));
             }
         }
     }
@@ -34,12 +34,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.basic.ParameterSnapshot;
 import com.qcadoo.mes.basic.constants.ProductFields;
 import com.qcadoo.mes.basic.util.ProductUnitsConversionService;
 import com.qcadoo.mes.orders.constants.OrderFields;
 import com.qcadoo.mes.productionCounting.SetTrackingOperationProductsComponentsService;
 import com.qcadoo.mes.productionCounting.constants.OrderFieldsPC;
-import com.qcadoo.mes.productionCounting.constants.ParameterFieldsPC;
 import com.qcadoo.mes.productionCounting.constants.ProductionCountingConstants;
 import com.qcadoo.mes.productionCounting.constants.ProductionTrackingFields;
 import com.qcadoo.mes.productionCounting.constants.TrackingOperationProductInComponentDtoFields;
@@ -125,10 +125,10 @@ public class TrackingOperationProductOutComponentHooks {
         boolean enteredFromTerminal = BooleanUtils.isTrue(trackingOperationProductOutComponent
                 .getBooleanField(TrackingOperationProductOutComponentFields.ENTERED_FROM_TERMINAL));
 
-        boolean allowToOverrideQuantitiesFromTerminal = BooleanUtils.isTrue(
-                parameterService.getParameter().getBooleanField(ParameterFieldsPC.ALLOW_CHANGES_TO_USED_QUANTITY_ON_TERMINAL));
+        ParameterSnapshot parameters = parameterService.getParameters();
+        boolean allowToOverrideQuantitiesFromTerminal = parameters.isAllowChangesToUsedQuantityOnTerminal();
 
-        return (parameterService.getParameter().getBooleanField(ParameterFieldsPC.CONSUMPTION_OF_RAW_MATERIALS_BASED_ON_STANDARDS)
+        return (parameters.isConsumptionOfRawMaterialsBasedOnStandards()
                 && !(enteredFromTerminal && allowToOverrideQuantitiesFromTerminal)
                 && (TypeOfProductionRecording.FOR_EACH.getStringValue().equals(typeOfProductionRecording)
                         || (TypeOfProductionRecording.CUMULATED.getStringValue().equals(typeOfProductionRecording)
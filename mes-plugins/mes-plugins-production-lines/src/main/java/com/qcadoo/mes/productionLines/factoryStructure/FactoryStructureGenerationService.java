@@ -33,21 +33,19 @@ import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.mes.basic.constants.BasicConstants;
 import com.qcadoo.mes.basic.constants.CompanyFields;
 import com.qcadoo.mes.basic.constants.DivisionFields;
-import com.qcadoo.mes.basic.constants.FactoryFields;
 import com.qcadoo.mes.basic.constants.ParameterFields;
 import com.qcadoo.mes.basic.constants.SubassemblyFields;
 import com.qcadoo.mes.basic.constants.WorkstationFields;
-import com.qcadoo.mes.productionLines.constants.DivisionFieldsPL;
 import com.qcadoo.mes.productionLines.constants.FactoryStructureElementFields;
 import com.qcadoo.mes.productionLines.constants.FactoryStructureElementType;
 import com.qcadoo.mes.productionLines.constants.ProductionLineFields;
 import com.qcadoo.mes.productionLines.constants.ProductionLinesConstants;
+import com.qcadoo.mes.productionLines.factoryStructure.FactoryStructureSnapshot.Element;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.EntityList;
 import com.qcadoo.model.api.EntityTree;
-import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.model.api.utils.EntityTreeUtilsService;
 
 @Service
@@ -59,6 +57,9 @@ public class FactoryStructureGenerationService {
     @Autowired
     private ParameterService parameterService;
 
+    @Autowired
+    private FactoryStructureSnapshotService factoryStructureSnapshotService;
+
     public EntityTree generateFactoryStructureForWorkstation(final Entity workstationEntity) {
         Entity workstation = dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_WORKSTATION)
                 .get(workstationEntity.getId());
@@ -122,72 +123,28 @@ public class FactoryStructureGenerationService {
 
     private void generateFactoryStructure(List<Entity> tree, final Entity root, final Entity belongsToEntity,
             final String belongsToField) {
-        List<Entity> factories = getFactories();
-        for (Entity factory : factories) {
-            if (!factory.isActive()) {
-                continue;
-            }
-            Entity factoryNode = createNode(belongsToEntity, belongsToField, factory.getStringField(FactoryFields.NUMBER),
-                    factory.getStringField(FactoryFields.NAME), FactoryStructureElementType.FACTORY, factory.getId());
+        FactoryStructureSnapshot structure = factoryStructureSnapshotService.getSnapshot();
+
+        for (Element factory : structure.getFactories()) {
+            Entity factoryNode = createNode(belongsToEntity, belongsToField, factory);
             addChild(tree, factoryNode, root);
 
-            List<Entity> divisions = getDivisionsForFactory(factory);
-            for (Entity division : divisions) {
-                if (!division.isActive()) {
-                    continue;
-                }
-                Entity divisionNode = createNode(belongsToEntity, belongsToField, division.getStringField(DivisionFields.NUMBER),
-                        division.getStringField(DivisionFields.NAME), FactoryStructureElementType.DIVISION, division.getId());
+            for (Element division : structure.getDivisions(factory.getId())) {
+                Entity divisionNode = createNode(belongsToEntity, belongsToField, division);
                 addChild(tree, divisionNode, factoryNode);
 
-                List<Entity> productionLines = getProductionLinesForDivision(division);
-
-                for (Entity productionLine : productionLines) {
-                    if (!productionLine.isActive()) {
-                        continue;
-                    }
-                    Entity productionLineNode = createNode(belongsToEntity, belongsToField,
-                            productionLine.getStringField(ProductionLineFields.NUMBER),
-                            productionLine.getStringField(ProductionLineFields.NAME), FactoryStructureElementType.PRODUCTION_LINE,
-                            productionLine.getId());
-                    if (areEntitiesEqual(productionLine, belongsToEntity)) {
-                        productionLineNode.setField(FactoryStructureElementFields.CURRENT, true);
-                    }
+                for (Element productionLine : structure.getProductionLines(division.getId())) {
+                    Entity productionLineNode = createNode(belongsToEntity, belongsToField, productionLine);
                     addChild(tree, productionLineNode, divisionNode);
 
-                    List<Entity> workstations = getWorkstationsForProductionLineAndDivision(productionLine, division);
-
-                    for (Entity workstation : workstations) {
-                        if (!workstation.isActive()) {
-                            continue;
-                        }
-                        Entity workstationNode = createNode(belongsToEntity, belongsToField,
-                                workstation.getStringField(WorkstationFields.NUMBER),
-                                workstation.getStringField(WorkstationFields.NAME), FactoryStructureElementType.WORKSTATION,
-                                workstation.getId());
-                        if (areEntitiesEqual(workstation, belongsToEntity)) {
-                            workstationNode.setField(FactoryStructureElementFields.CURRENT, true);
-                        }
-
+                    for (Element workstation : structure.getWorkstations(productionLine.getId(), division.getId())) {
+                        Entity workstationNode = createNode(belongsToEntity, belongsToField, workstation);
                         addChild(tree, workstationNode, productionLineNode);
 
-                        List<Entity> subassemblies = getSubassembliesForWorkstation(workstation);
-                        for (Entity subassembly : subassemblies) {
-                            if (!subassembly.isActive()) {
-                                continue;
-                            }
-                            Entity subassemblyNode = createNode(belongsToEntity, belongsToField,
-                                    subassembly.getStringField(SubassemblyFields.NUMBER),
-                                    subassembly.getStringField(SubassemblyFields.NAME), FactoryStructureElementType.SUBASSEMBLY,
-                                    subassembly.getId());
-                            if (areEntitiesEqual(subassembly, belongsToEntity)) {
-                                subassemblyNode.setField(FactoryStructureElementFields.CURRENT, true);
-                            }
-
+                        for (Element subassembly : structure.getSubassemblies(workstation.getId())) {
+                            Entity subassemblyNode = createNode(belongsToEntity, belongsToField, subassembly);
                             addChild(tree, subassemblyNode, workstationNode);
-
                         }
-
                     }
                 }
             }
@@ -213,6 +170,17 @@ public class FactoryStructureGenerationService {
         tree.add(child);
     }
 
+    private Entity createNode(final Entity belongsToEntity, final String belongsToField, final Element element) {
+        Entity node = createNode(belongsToEntity, belongsToField, element.getNumber(), element.getName(), element.getType(),
+                element.getId());
+
+        if (isCurrent(element, belongsToEntity)) {
+            node.setField(FactoryStructureElementFields.CURRENT, true);
+        }
+
+        return node;
+    }
+
     private Entity createNode(final Entity belongsToEntity, final String belongsToField, final String number, final String name,
             final FactoryStructureElementType entityType, final Long entityId) {
 
@@ -229,32 +197,8 @@ public class FactoryStructureGenerationService {
         return node;
     }
 
-    private List<Entity> getFactories() {
-        return dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_FACTORY).find().list()
-                .getEntities();
-    }
-
-    private List<Entity> getDivisionsForFactory(final Entity factory) {
-        return factory.getHasManyField(FactoryFields.DIVISIONS);
-    }
-
-    private List<Entity> getProductionLinesForDivision(final Entity division) {
-        return division.getManyToManyField(DivisionFieldsPL.PRODUCTION_LINES);
-    }
-
-    private List<Entity> getWorkstationsForProductionLineAndDivision(final Entity productionLine, final Entity division) {
-        return productionLine.getHasManyField(ProductionLineFields.WORKSTATIONS).find()
-                .add(SearchRestrictions.belongsTo(WorkstationFields.DIVISION, division)).list().getEntities();
-    }
-
-    private List<Entity> getSubassembliesForWorkstation(final Entity workstation) {
-        return workstation.getHasManyField(WorkstationFields.SUBASSEMBLIES);
-    }
-
-    private boolean areEntitiesEqual(final Entity firstEntity, final Entity secondEntity) {
-        return firstEntity.getDataDefinition().getName().equals(secondEntity.getDataDefinition().getName())
-                && firstEntity.getDataDefinition().getPluginIdentifier()
-                        .equals(secondEntity.getDataDefinition().getPluginIdentifier())
-                && firstEntity.getId().equals(secondEntity.getId());
+    private boolean isCurrent(final Element element, final Entity belongsToEntity) {
+        return element.getType().getStringValue().equals(belongsToEntity.getDataDefinition().getName())
+                && element.getId().equals(belongsToEntity.getId());
     }
 }
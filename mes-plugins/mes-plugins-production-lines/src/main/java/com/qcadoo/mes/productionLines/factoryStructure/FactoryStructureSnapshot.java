@@ -0,0 +1,258 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionLines.factoryStructure;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.qcadoo.mes.productionLines.constants.FactoryStructureElementType;
+
+/**
+ * Immutable view of active factories, divisions, production lines, workstations and subassemblies with their relations. Changes
+ * produce a new snapshot sharing the untouched element maps; elements whose parent is gone are simply not reachable.
+ */
+public final class FactoryStructureSnapshot {
+
+    private static final Comparator<Element> BY_ID = Comparator.comparing(Element::getId);
+
+    private final Map<FactoryStructureElementType, Map<Long, Element>> elements;
+
+    private final SetMultimap<Long, Long> productionLinesByDivision;
+
+    private final ListMultimap<Long, Element> divisionsByFactory;
+
+    private final ListMultimap<Long, Element> workstationsByProductionLine;
+
+    private final ListMultimap<Long, Element> subassembliesByWorkstation;
+
+    public FactoryStructureSnapshot(final Map<FactoryStructureElementType, Map<Long, Element>> elements,
+            final SetMultimap<Long, Long> productionLinesByDivision) {
+        EnumMap<FactoryStructureElementType, Map<Long, Element>> immutableElements = Maps
+                .newEnumMap(FactoryStructureElementType.class);
+
+        for (FactoryStructureElementType type : FactoryStructureElementType.values()) {
+            Map<Long, Element> elementsOfType = elements.get(type);
+
+            immutableElements.put(type, (elementsOfType == null) ? ImmutableMap.<Long, Element> of() : ImmutableMap
+                    .copyOf(elementsOfType));
+        }
+
+        this.elements = Collections.unmodifiableMap(immutableElements);
+        this.productionLinesByDivision = ImmutableSetMultimap.copyOf(productionLinesByDivision);
+        this.divisionsByFactory = indexByParent(FactoryStructureElementType.DIVISION);
+        this.workstationsByProductionLine = indexWorkstationsByProductionLine();
+        this.subassembliesByWorkstation = indexByParent(FactoryStructureElementType.SUBASSEMBLY);
+    }
+
+    public List<Element> getFactories() {
+        return sorted(elements.get(FactoryStructureElementType.FACTORY).values());
+    }
+
+    public List<Element> getDivisions(final Long factoryId) {
+        return divisionsByFactory.get(factoryId);
+    }
+
+    public List<Element> getProductionLines(final Long divisionId) {
+        Map<Long, Element> productionLines = elements.get(FactoryStructureElementType.PRODUCTION_LINE);
+        List<Element> result = Lists.newArrayList();
+
+        for (Long productionLineId : productionLinesByDivision.get(divisionId)) {
+            Element productionLine = productionLines.get(productionLineId);
+
+            if (productionLine != null) {
+                result.add(productionLine);
+            }
+        }
+
+        return sorted(result);
+    }
+
+    public List<Element> getWorkstations(final Long productionLineId, final Long divisionId) {
+        List<Element> result = Lists.newArrayList();
+
+        for (Element workstation : workstationsByProductionLine.get(productionLineId)) {
+            if (Objects.equals(workstation.getParentId(), divisionId)) {
+                result.add(workstation);
+            }
+        }
+
+        return result;
+    }
+
+    public List<Element> getSubassemblies(final Long workstationId) {
+        return subassembliesByWorkstation.get(workstationId);
+    }
+
+    public FactoryStructureSnapshot withElement(final FactoryStructureElementType type, final Element element) {
+        Map<FactoryStructureElementType, Map<Long, Element>> changedElements = Maps.newEnumMap(elements);
+        Map<Long, Element> elementsOfType = Maps.newHashMap(elements.get(type));
+
+        elementsOfType.put(element.getId(), element);
+        changedElements.put(type, elementsOfType);
+
+        return new FactoryStructureSnapshot(changedElements, productionLinesByDivision);
+    }
+
+    public FactoryStructureSnapshot withoutElement(final FactoryStructureElementType type, final Long id) {
+        if (!elements.get(type).containsKey(id)) {
+            return this;
+        }
+
+        Map<FactoryStructureElementType, Map<Long, Element>> changedElements = Maps.newEnumMap(elements);
+        Map<Long, Element> elementsOfType = Maps.newHashMap(elements.get(type));
+
+        elementsOfType.remove(id);
+        changedElements.put(type, elementsOfType);
+
+        return new FactoryStructureSnapshot(changedElements, productionLinesByDivision);
+    }
+
+    public FactoryStructureSnapshot withProductionLinesOfDivision(final Long divisionId,
+            final Collection<Long> productionLineIds) {
+        SetMultimap<Long, Long> changedProductionLinesByDivision = HashMultimap.create(productionLinesByDivision);
+
+        changedProductionLinesByDivision.replaceValues(divisionId, productionLineIds);
+
+        return new FactoryStructureSnapshot(elements, changedProductionLinesByDivision);
+    }
+
+    public FactoryStructureSnapshot withDivisionsOfProductionLine(final Long productionLineId,
+            final Collection<Long> divisionIds) {
+        SetMultimap<Long, Long> changedProductionLinesByDivision = HashMultimap.create();
+
+        for (Map.Entry<Long, Long> entry : productionLinesByDivision.entries()) {
+            if (!productionLineId.equals(entry.getValue())) {
+                changedProductionLinesByDivision.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Long divisionId : divisionIds) {
+            changedProductionLinesByDivision.put(divisionId, productionLineId);
+        }
+
+        return new FactoryStructureSnapshot(elements, changedProductionLinesByDivision);
+    }
+
+    private ListMultimap<Long, Element> indexByParent(final FactoryStructureElementType type) {
+        ImmutableListMultimap.Builder<Long, Element> index = ImmutableListMultimap.builder();
+
+        for (Element element : sorted(elements.get(type).values())) {
+            if (element.getParentId() != null) {
+                index.put(element.getParentId(), element);
+            }
+        }
+
+        return index.build();
+    }
+
+    private ListMultimap<Long, Element> indexWorkstationsByProductionLine() {
+        ImmutableListMultimap.Builder<Long, Element> index = ImmutableListMultimap.builder();
+
+        for (Element workstation : sorted(elements.get(FactoryStructureElementType.WORKSTATION).values())) {
+            if (workstation.getProductionLineId() != null) {
+                index.put(workstation.getProductionLineId(), workstation);
+            }
+        }
+
+        return index.build();
+    }
+
+    private static List<Element> sorted(final Collection<Element> elements) {
+        List<Element> result = Lists.newArrayList(elements);
+
+        result.sort(BY_ID);
+
+        return result;
+    }
+
+    public static final class Element {
+
+        private final FactoryStructureElementType type;
+
+        private final Long id;
+
+        private final String number;
+
+        private final String name;
+
+        private final Long parentId;
+
+        private final Long productionLineId;
+
+        public Element(final FactoryStructureElementType type, final Long id, final String number, final String name,
+                final Long parentId, final Long productionLineId) {
+            this.type = type;
+            this.id = id;
+            this.number = number;
+            this.name = name;
+            this.parentId = parentId;
+            this.productionLineId = productionLineId;
+        }
+
+        public FactoryStructureElementType getType() {
+            return type;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getNumber() {
+            return number;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return factory of a division, division of a workstation, workstation of a subassembly
+         */
+        public Long getParentId() {
+            return parentId;
+        }
+
+        /**
+         * @return production line of a workstation
+         */
+        public Long getProductionLineId() {
+            return productionLineId;
+        }
+
+    }
+
+}
@@ -0,0 +1,308 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionLines.factoryStructure;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.qcadoo.mes.basic.constants.DivisionFields;
+import com.qcadoo.mes.basic.constants.FactoryFields;
+import com.qcadoo.mes.basic.constants.SubassemblyFields;
+import com.qcadoo.mes.basic.constants.WorkstationFields;
+import com.qcadoo.mes.productionLines.constants.DivisionFieldsPL;
+import com.qcadoo.mes.productionLines.constants.FactoryStructureElementType;
+import com.qcadoo.mes.productionLines.constants.ProductionLineFields;
+import com.qcadoo.mes.productionLines.constants.WorkstationFieldsPL;
+import com.qcadoo.mes.productionLines.factoryStructure.FactoryStructureSnapshot.Element;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+/**
+ * Keeps the {@link FactoryStructureSnapshot} used to generate factory structure trees. The snapshot is loaded with one query per
+ * level and then patched from the entities passed to model hooks once their transaction commits. A new member can't be patched in
+ * because its id is unknown in hooks, so creating one drops the snapshot instead. Each tenant has its own snapshot.
+ */
+@Service
+public class FactoryStructureSnapshotService {
+
+    private static final String L_ID = "id";
+
+    private static final String L_NUMBER = "number";
+
+    private static final String L_NAME = "name";
+
+    private static final String L_PARENT_ID = "parent_id";
+
+    private static final String L_PRODUCTION_LINE_ID = "productionline_id";
+
+    private static final String L_DIVISION_ID = "division_id";
+
+    private static final String L_GET_FACTORIES = "SELECT id, number, name FROM basic_factory WHERE active";
+
+    private static final String L_GET_DIVISIONS = "SELECT id, number, name, factory_id AS parent_id "
+            + "FROM basic_division WHERE active";
+
+    private static final String L_GET_PRODUCTION_LINES = "SELECT id, number, name "
+            + "FROM productionlines_productionline WHERE active";
+
+    private static final String L_GET_DIVISIONS_PRODUCTION_LINES = "SELECT division_id, productionline_id "
+            + "FROM jointable_division_productionline";
+
+    private static final String L_GET_WORKSTATIONS = "SELECT id, number, name, division_id AS parent_id, productionline_id "
+            + "FROM basic_workstation WHERE active";
+
+    private static final String L_GET_SUBASSEMBLIES = "SELECT id, number, name, workstation_id AS parent_id "
+            + "FROM basic_subassembly WHERE active";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    private final ConcurrentMap<Integer, TenantSnapshot> tenantSnapshots = new ConcurrentHashMap<>();
+
+    public FactoryStructureSnapshot getSnapshot() {
+        return getTenantSnapshot().get();
+    }
+
+    public void onSave(final Entity entity) {
+        FactoryStructureElementType type = FactoryStructureElementType.parseString(entity.getDataDefinition().getName());
+
+        if (entity.getId() == null) {
+            applyOnCommit(current -> null);
+
+            return;
+        }
+
+        Long id = entity.getId();
+        Element element = entity.isActive() ? createElement(type, entity) : null;
+        Collection<Long> relatedIds = getRelatedIds(type, entity);
+
+        applyOnCommit(current -> {
+            FactoryStructureSnapshot changed;
+
+            if (element == null) {
+                changed = current.withoutElement(type, id);
+            } else {
+                changed = current.withElement(type, element);
+            }
+
+            if (relatedIds == null) {
+                return changed;
+            } else if (FactoryStructureElementType.DIVISION.equals(type)) {
+                return changed.withProductionLinesOfDivision(id, relatedIds);
+            } else {
+                return changed.withDivisionsOfProductionLine(id, relatedIds);
+            }
+        });
+    }
+
+    public void onDelete(final Entity entity) {
+        FactoryStructureElementType type = FactoryStructureElementType.parseString(entity.getDataDefinition().getName());
+        Long id = entity.getId();
+
+        applyOnCommit(current -> current.withoutElement(type, id));
+    }
+
+    public void invalidate() {
+        applyOnCommit(current -> null);
+    }
+
+    private void applyOnCommit(final UnaryOperator<FactoryStructureSnapshot> change) {
+        TenantSnapshot tenantSnapshot = getTenantSnapshot();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                        tenantSnapshot.apply(change);
+                    }
+                }
+
+            });
+        } else {
+            tenantSnapshot.apply(change);
+        }
+    }
+
+    private TenantSnapshot getTenantSnapshot() {
+        return tenantSnapshots.computeIfAbsent(multiTenantService.getCurrentTenantId(), tenantId -> new TenantSnapshot());
+    }
+
+    private Element createElement(final FactoryStructureElementType type, final Entity entity) {
+        switch (type) {
+            case DIVISION:
+                return new Element(type, entity.getId(), entity.getStringField(DivisionFields.NUMBER),
+                        entity.getStringField(DivisionFields.NAME), getId(entity, DivisionFields.FACTORY), null);
+            case PRODUCTION_LINE:
+                return new Element(type, entity.getId(), entity.getStringField(ProductionLineFields.NUMBER),
+                        entity.getStringField(ProductionLineFields.NAME), null, null);
+            case WORKSTATION:
+                return new Element(type, entity.getId(), entity.getStringField(WorkstationFields.NUMBER),
+                        entity.getStringField(WorkstationFields.NAME), getId(entity, WorkstationFields.DIVISION),
+                        getId(entity, WorkstationFieldsPL.PRODUCTION_LINE));
+            case SUBASSEMBLY:
+                return new Element(type, entity.getId(), entity.getStringField(SubassemblyFields.NUMBER),
+                        entity.getStringField(SubassemblyFields.NAME), getId(entity, SubassemblyFields.WORKSTATION), null);
+            default:
+                return new Element(type, entity.getId(), entity.getStringField(FactoryFields.NUMBER),
+                        entity.getStringField(FactoryFields.NAME), null, null);
+        }
+    }
+
+    /**
+     * @return production lines of a division or divisions of a production line, null if not given or not applicable
+     */
+    private Collection<Long> getRelatedIds(final FactoryStructureElementType type, final Entity entity) {
+        String field;
+
+        if (FactoryStructureElementType.DIVISION.equals(type)) {
+            field = DivisionFieldsPL.PRODUCTION_LINES;
+        } else if (FactoryStructureElementType.PRODUCTION_LINE.equals(type)) {
+            field = ProductionLineFields.DIVISIONS;
+        } else {
+            return null;
+        }
+
+        if (entity.getField(field) == null) {
+            return null;
+        }
+
+        List<Long> ids = Lists.newArrayList();
+
+        for (Entity related : entity.getManyToManyField(field)) {
+            ids.add(related.getId());
+        }
+
+        return ids;
+    }
+
+    private Long getId(final Entity entity, final String belongsToField) {
+        Entity belongsTo = entity.getBelongsToField(belongsToField);
+
+        return (belongsTo == null) ? null : belongsTo.getId();
+    }
+
+    private FactoryStructureSnapshot loadSnapshot() {
+        Map<FactoryStructureElementType, Map<Long, Element>> elements = Maps.newEnumMap(FactoryStructureElementType.class);
+
+        elements.put(FactoryStructureElementType.FACTORY, loadElements(FactoryStructureElementType.FACTORY, L_GET_FACTORIES));
+        elements.put(FactoryStructureElementType.DIVISION, loadElements(FactoryStructureElementType.DIVISION, L_GET_DIVISIONS));
+        elements.put(FactoryStructureElementType.PRODUCTION_LINE,
+                loadElements(FactoryStructureElementType.PRODUCTION_LINE, L_GET_PRODUCTION_LINES));
+        elements.put(FactoryStructureElementType.WORKSTATION,
+                loadElements(FactoryStructureElementType.WORKSTATION, L_GET_WORKSTATIONS));
+        elements.put(FactoryStructureElementType.SUBASSEMBLY,
+                loadElements(FactoryStructureElementType.SUBASSEMBLY, L_GET_SUBASSEMBLIES));
+
+        SetMultimap<Long, Long> productionLinesByDivision = HashMultimap.create();
+
+        for (Map<String, Object> row : jdbcTemplate.queryForList(L_GET_DIVISIONS_PRODUCTION_LINES, new MapSqlParameterSource())) {
+            productionLinesByDivision.put(getLong(row, L_DIVISION_ID), getLong(row, L_PRODUCTION_LINE_ID));
+        }
+
+        return new FactoryStructureSnapshot(elements, productionLinesByDivision);
+    }
+
+    private Map<Long, Element> loadElements(final FactoryStructureElementType type, final String query) {
+        Map<Long, Element> elements = Maps.newHashMap();
+
+        for (Map<String, Object> row : jdbcTemplate.queryForList(query, new MapSqlParameterSource())) {
+            Element element = new Element(type, getLong(row, L_ID), (String) row.get(L_NUMBER), (String) row.get(L_NAME),
+                    getLong(row, L_PARENT_ID), getLong(row, L_PRODUCTION_LINE_ID));
+
+            elements.put(element.getId(), element);
+        }
+
+        return elements;
+    }
+
+    private Long getLong(final Map<String, Object> row, final String column) {
+        Number value = (Number) row.get(column);
+
+        return (value == null) ? null : value.longValue();
+    }
+
+    /**
+     * Snapshot of a single tenant. A snapshot loaded while a change was applied is returned to its caller but not kept, so a load
+     * racing with a commit can't hide that change.
+     */
+    private final class TenantSnapshot {
+
+        private FactoryStructureSnapshot snapshot;
+
+        private long version;
+
+        private FactoryStructureSnapshot get() {
+            long loadedVersion;
+
+            synchronized (this) {
+                if (snapshot != null) {
+                    return snapshot;
+                }
+
+                loadedVersion = version;
+            }
+
+            FactoryStructureSnapshot loadedSnapshot = loadSnapshot();
+
+            synchronized (this) {
+                if ((snapshot == null) && (version == loadedVersion)) {
+                    snapshot = loadedSnapshot;
+                }
+            }
+
+            return loadedSnapshot;
+        }
+
+        private synchronized void apply(final UnaryOperator<FactoryStructureSnapshot> change) {
+            version++;
+
+            if (snapshot != null) {
+                snapshot = change.apply(snapshot);
+            }
+        }
+
+    }
+
+}
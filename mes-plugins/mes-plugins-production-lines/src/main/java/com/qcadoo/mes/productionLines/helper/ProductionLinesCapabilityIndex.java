@@ -0,0 +1,146 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionLines.helper;
+
+import static com.qcadoo.model.api.search.SearchProjections.alias;
+import static com.qcadoo.model.api.search.SearchProjections.id;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.ImmutableSet;
+import com.qcadoo.mes.productionLines.constants.ProductionLinesConstants;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+/**
+ * Immutable snapshot of production lines able to run technologies, loaded per tenant with one projection query on first use and
+ * dropped by the production line model hooks. Every production line supports all technologies and technology groups, so the
+ * snapshot is the set of all line ids.
+ */
+@Service
+public class ProductionLinesCapabilityIndex {
+
+    private static final String L_ID = "id";
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    private final ConcurrentMap<Integer, TenantLines> tenantLines = new ConcurrentHashMap<>();
+
+    public Set<Long> getAllLines() {
+        return getTenantLines().get();
+    }
+
+    public Set<Long> getLinesSupportingTechnology(final Long technologyId) {
+        return getAllLines();
+    }
+
+    public Set<Long> getLinesSupportingTechnologyGroup(final Long technologyGroupId) {
+        return getAllLines();
+    }
+
+    public void invalidate() {
+        TenantLines lines = getTenantLines();
+
+        lines.invalidate();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    lines.invalidate();
+                }
+
+            });
+        }
+    }
+
+    private TenantLines getTenantLines() {
+        return tenantLines.computeIfAbsent(multiTenantService.getCurrentTenantId(), tenantId -> new TenantLines());
+    }
+
+    private Set<Long> loadAllLines() {
+        ImmutableSet.Builder<Long> lines = ImmutableSet.builder();
+
+        for (Entity projection : dataDefinitionService
+                .get(ProductionLinesConstants.PLUGIN_IDENTIFIER, ProductionLinesConstants.MODEL_PRODUCTION_LINE).find()
+                .setProjection(alias(id(), L_ID)).list().getEntities()) {
+            lines.add((Long) projection.getField(L_ID));
+        }
+
+        return lines.build();
+    }
+
+    /**
+     * Lines of a single tenant. A set loaded while the generation changed is returned to its caller but not kept, so a load racing
+     * with a line create or delete can't hide that change.
+     */
+    private final class TenantLines {
+
+        private Set<Long> lines;
+
+        private long generation;
+
+        private Set<Long> get() {
+            long loadedGeneration;
+
+            synchronized (this) {
+                if (lines != null) {
+                    return lines;
+                }
+
+                loadedGeneration = generation;
+            }
+
+            Set<Long> loadedLines = loadAllLines();
+
+            synchronized (this) {
+                if (generation == loadedGeneration) {
+                    lines = loadedLines;
+                }
+            }
+
+            return loadedLines;
+        }
+
+        private synchronized void invalidate() {
+            generation++;
+            lines = null;
+        }
+
+    }
+
+}
@@ -23,19 +23,35 @@
  */
 package com.qcadoo.mes.productionLines.hooks;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.qcadoo.mes.productionLines.constants.ProductionLineFields;
+import com.qcadoo.mes.productionLines.factoryStructure.FactoryStructureSnapshotService;
+import com.qcadoo.mes.productionLines.helper.ProductionLinesCapabilityIndex;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
 
 @Service
 public class ProductionLineHooks {
 
+    @Autowired
+    private ProductionLinesCapabilityIndex productionLinesCapabilityIndex;
+
+    @Autowired
+    private FactoryStructureSnapshotService factoryStructureSnapshotService;
+
+    public void onCreate(final DataDefinition dataDefinition, final Entity productionLine) {
+        productionLinesCapabilityIndex.invalidate();
+    }
+
     public boolean onDelete(final DataDefinition dataDefinition, final Entity productionLine) {
         boolean canDelete = productionLine.getManyToManyField(ProductionLineFields.DIVISIONS).isEmpty();
         if (!canDelete) {
             productionLine.addGlobalError("productionLines.productionLine.onDelete.hasDivisions");
+        } else {
+            productionLinesCapabilityIndex.invalidate();
+            factoryStructureSnapshotService.onDelete(productionLine);
         }
         return canDelete;
     }
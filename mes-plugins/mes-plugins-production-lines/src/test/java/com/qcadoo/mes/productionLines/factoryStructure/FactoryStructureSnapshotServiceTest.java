@@ -0,0 +1,124 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionLines.factoryStructure;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.qcadoo.tenant.api.MultiTenantService;
+
+public class FactoryStructureSnapshotServiceTest {
+
+    private static final List<Map<String, Object>> L_NO_ROWS = Collections.emptyList();
+
+    private FactoryStructureSnapshotService factoryStructureSnapshotService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private MultiTenantService multiTenantService;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        factoryStructureSnapshotService = new FactoryStructureSnapshotService();
+
+        ReflectionTestUtils.setField(factoryStructureSnapshotService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(factoryStructureSnapshotService, "multiTenantService", multiTenantService);
+
+        given(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class))).willReturn(L_NO_ROWS);
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+    }
+
+    @Test
+    public void shouldKeepSnapshotsPerTenant() {
+        // given
+        FactoryStructureSnapshot snapshot = factoryStructureSnapshotService.getSnapshot();
+
+        // when
+        given(multiTenantService.getCurrentTenantId()).willReturn(2);
+        FactoryStructureSnapshot otherTenantSnapshot = factoryStructureSnapshotService.getSnapshot();
+
+        // then
+        assertNotSame(snapshot, otherTenantSnapshot);
+        assertSame(otherTenantSnapshot, factoryStructureSnapshotService.getSnapshot());
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        assertSame(snapshot, factoryStructureSnapshotService.getSnapshot());
+    }
+
+    @Test
+    public void shouldDropSnapshotOnlyOfTenantOfChange() {
+        // given
+        FactoryStructureSnapshot snapshot = factoryStructureSnapshotService.getSnapshot();
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(2);
+        FactoryStructureSnapshot otherTenantSnapshot = factoryStructureSnapshotService.getSnapshot();
+
+        // when
+        factoryStructureSnapshotService.invalidate();
+
+        // then
+        assertNotSame(otherTenantSnapshot, factoryStructureSnapshotService.getSnapshot());
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        assertSame(snapshot, factoryStructureSnapshotService.getSnapshot());
+    }
+
+    @Test
+    public void shouldNotKeepSnapshotLoadedWhileChangeWasApplied() {
+        // given
+        given(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class))).willAnswer(invocation -> {
+            factoryStructureSnapshotService.invalidate();
+            return L_NO_ROWS;
+        }).willReturn(L_NO_ROWS);
+
+        // when
+        FactoryStructureSnapshot snapshot = factoryStructureSnapshotService.getSnapshot();
+
+        // then
+        FactoryStructureSnapshot reloadedSnapshot = factoryStructureSnapshotService.getSnapshot();
+
+        assertNotSame(snapshot, reloadedSnapshot);
+        assertSame(reloadedSnapshot, factoryStructureSnapshotService.getSnapshot());
+    }
+
+}
@@ -0,0 +1,158 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionLines.factoryStructure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.qcadoo.mes.productionLines.constants.FactoryStructureElementType;
+import com.qcadoo.mes.productionLines.factoryStructure.FactoryStructureSnapshot.Element;
+
+public class FactoryStructureSnapshotTest {
+
+    private static final Long L_FACTORY = 1L;
+
+    private static final Long L_DIVISION = 2L;
+
+    private static final Long L_OTHER_DIVISION = 3L;
+
+    private static final Long L_PRODUCTION_LINE = 4L;
+
+    private static final Long L_WORKSTATION = 5L;
+
+    private static final Long L_OTHER_WORKSTATION = 6L;
+
+    private static final Long L_SUBASSEMBLY = 7L;
+
+    private FactoryStructureSnapshot snapshot;
+
+    @Before
+    public final void init() {
+        Map<FactoryStructureElementType, Map<Long, Element>> elements = Maps.newEnumMap(FactoryStructureElementType.class);
+
+        elements.put(FactoryStructureElementType.FACTORY,
+                elements(element(FactoryStructureElementType.FACTORY, L_FACTORY, null, null)));
+        elements.put(FactoryStructureElementType.DIVISION,
+                elements(element(FactoryStructureElementType.DIVISION, L_DIVISION, L_FACTORY, null),
+                        element(FactoryStructureElementType.DIVISION, L_OTHER_DIVISION, L_FACTORY, null)));
+        elements.put(FactoryStructureElementType.PRODUCTION_LINE,
+                elements(element(FactoryStructureElementType.PRODUCTION_LINE, L_PRODUCTION_LINE, null, null)));
+        elements.put(FactoryStructureElementType.WORKSTATION,
+                elements(element(FactoryStructureElementType.WORKSTATION, L_WORKSTATION, L_DIVISION, L_PRODUCTION_LINE),
+                        element(FactoryStructureElementType.WORKSTATION, L_OTHER_WORKSTATION, L_OTHER_DIVISION,
+                                L_PRODUCTION_LINE)));
+        elements.put(FactoryStructureElementType.SUBASSEMBLY,
+                elements(element(FactoryStructureElementType.SUBASSEMBLY, L_SUBASSEMBLY, L_WORKSTATION, null)));
+
+        SetMultimap<Long, Long> productionLinesByDivision = HashMultimap.create();
+
+        productionLinesByDivision.put(L_DIVISION, L_PRODUCTION_LINE);
+
+        snapshot = new FactoryStructureSnapshot(elements, productionLinesByDivision);
+    }
+
+    @Test
+    public final void shouldReturnWorkstationsOfProductionLineInDivision() {
+        // when
+        List<Element> workstations = snapshot.getWorkstations(L_PRODUCTION_LINE, L_DIVISION);
+
+        // then
+        assertEquals(1, workstations.size());
+        assertEquals(L_WORKSTATION, workstations.get(0).getId());
+        assertEquals(L_SUBASSEMBLY, snapshot.getSubassemblies(L_WORKSTATION).get(0).getId());
+    }
+
+    @Test
+    public final void shouldPatchChangedElementWithoutTouchingOriginal() {
+        // given
+        Element renamed = new Element(FactoryStructureElementType.DIVISION, L_DIVISION, "D2", "renamed", L_FACTORY, null);
+
+        // when
+        FactoryStructureSnapshot changed = snapshot.withElement(FactoryStructureElementType.DIVISION, renamed);
+
+        // then
+        assertEquals("renamed", changed.getDivisions(L_FACTORY).get(0).getName());
+        assertEquals("name" + L_DIVISION, snapshot.getDivisions(L_FACTORY).get(0).getName());
+    }
+
+    @Test
+    public final void shouldHideChildrenOfRemovedElement() {
+        // when
+        FactoryStructureSnapshot changed = snapshot.withoutElement(FactoryStructureElementType.PRODUCTION_LINE,
+                L_PRODUCTION_LINE);
+
+        // then
+        assertTrue(changed.getProductionLines(L_DIVISION).isEmpty());
+        assertEquals(1, snapshot.getProductionLines(L_DIVISION).size());
+    }
+
+    @Test
+    public final void shouldMoveProductionLineBetweenDivisions() {
+        // when
+        FactoryStructureSnapshot changed = snapshot.withDivisionsOfProductionLine(L_PRODUCTION_LINE,
+                ImmutableList.of(L_OTHER_DIVISION));
+
+        // then
+        assertTrue(changed.getProductionLines(L_DIVISION).isEmpty());
+        assertEquals(L_PRODUCTION_LINE, changed.getProductionLines(L_OTHER_DIVISION).get(0).getId());
+        assertEquals(L_OTHER_WORKSTATION, changed.getWorkstations(L_PRODUCTION_LINE, L_OTHER_DIVISION).get(0).getId());
+    }
+
+    @Test
+    public final void shouldReplaceProductionLinesOfDivision() {
+        // when
+        FactoryStructureSnapshot changed = snapshot.withProductionLinesOfDivision(L_DIVISION, Collections.<Long> emptyList());
+
+        // then
+        assertTrue(changed.getProductionLines(L_DIVISION).isEmpty());
+    }
+
+    private Element element(final FactoryStructureElementType type, final Long id, final Long parentId,
+            final Long productionLineId) {
+        return new Element(type, id, "number" + id, "name" + id, parentId, productionLineId);
+    }
+
+    private Map<Long, Element> elements(final Element... elements) {
+        ImmutableMap.Builder<Long, Element> builder = ImmutableMap.builder();
+
+        for (Element element : elements) {
+            builder.put(element.getId(), element);
+        }
+
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,143 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionLines.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.productionLines.constants.ProductionLinesConstants;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchProjection;
+import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+public class ProductionLinesCapabilityIndexTest {
+
+    private ProductionLinesCapabilityIndex productionLinesCapabilityIndex;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private MultiTenantService multiTenantService;
+
+    @Mock
+    private DataDefinition productionLineDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        productionLinesCapabilityIndex = new ProductionLinesCapabilityIndex();
+
+        ReflectionTestUtils.setField(productionLinesCapabilityIndex, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(productionLinesCapabilityIndex, "multiTenantService", multiTenantService);
+
+        given(dataDefinitionService.get(ProductionLinesConstants.PLUGIN_IDENTIFIER,
+                ProductionLinesConstants.MODEL_PRODUCTION_LINE)).willReturn(productionLineDD);
+        given(productionLineDD.find()).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.setProjection(any(SearchProjection.class))).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.list()).willReturn(searchResult);
+        given(searchResult.getEntities()).willReturn(Lists.newArrayList(line(1L), line(2L)));
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+    }
+
+    @Test
+    public void shouldLoadLinesOnce() {
+        // when
+        productionLinesCapabilityIndex.getAllLines();
+
+        // then
+        assertEquals(ImmutableSet.of(1L, 2L), productionLinesCapabilityIndex.getLinesSupportingTechnology(5L));
+        verify(searchCriteriaBuilder, times(1)).list();
+    }
+
+    @Test
+    public void shouldKeepLinesPerTenant() {
+        // given
+        productionLinesCapabilityIndex.getAllLines();
+
+        // when
+        given(multiTenantService.getCurrentTenantId()).willReturn(2);
+        given(searchResult.getEntities()).willReturn(Collections.<Entity> emptyList());
+
+        // then
+        assertTrue(productionLinesCapabilityIndex.getAllLines().isEmpty());
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        assertEquals(ImmutableSet.of(1L, 2L), productionLinesCapabilityIndex.getAllLines());
+        verify(searchCriteriaBuilder, times(2)).list();
+    }
+
+    @Test
+    public void shouldNotKeepLinesLoadedWhileTheyWereInvalidated() {
+        // given
+        Entity line = line(1L);
+        given(searchResult.getEntities()).willAnswer(invocation -> {
+            productionLinesCapabilityIndex.invalidate();
+            return Lists.newArrayList(line);
+        }).willReturn(Lists.newArrayList(line, line(3L)));
+
+        // when
+        productionLinesCapabilityIndex.getAllLines();
+        productionLinesCapabilityIndex.getAllLines();
+
+        // then
+        assertEquals(ImmutableSet.of(1L, 3L), productionLinesCapabilityIndex.getAllLines());
+        verify(searchCriteriaBuilder, times(2)).list();
+    }
+
+    private Entity line(final Long id) {
+        Entity line = mock(Entity.class);
+
+        given(line.getField("id")).willReturn(id);
+
+        return line;
+    }
+
+}
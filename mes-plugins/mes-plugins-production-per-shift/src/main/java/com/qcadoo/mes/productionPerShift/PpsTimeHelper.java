@@ -96,7 +96,10 @@ public class PpsTimeHelper {
         Entity shiftEntity = shift.getEntity();
         Shift shiftForDay = new Shift(shiftEntity, new DateTime(dateOfDay), false);
 
-        List<Entity> exceptions = timetableExceptionService.findForLineAndShift(productionLine, shiftEntity);
+        LocalDate day = new LocalDate(dateOfDay);
+
+        List<Entity> exceptions = timetableExceptionService.findForLineAndShift(productionLine, shiftEntity, day.toDate(),
+                day.plusDays(1).toDate());
 
         if (!exceptions.isEmpty()) {
             for (Entity exception : exceptions) {
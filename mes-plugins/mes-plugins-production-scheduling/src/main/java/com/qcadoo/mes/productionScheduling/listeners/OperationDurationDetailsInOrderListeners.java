@@ -28,6 +28,7 @@ import com.qcadoo.mes.basic.ShiftsServiceImpl;
 import com.qcadoo.mes.operationTimeCalculations.OperationWorkTime;
 import com.qcadoo.mes.operationTimeCalculations.OperationWorkTimeService;
 import com.qcadoo.mes.operationTimeCalculations.OrderRealizationTimeService;
+import com.qcadoo.mes.orders.TechnologyServiceO;
 import com.qcadoo.mes.orders.constants.OrderFields;
 import com.qcadoo.mes.orders.constants.OrderType;
 import com.qcadoo.mes.orders.constants.OrdersConstants;
@@ -85,6 +86,9 @@ public class OperationDurationDetailsInOrderListeners {
     @Autowired
     private OperationWorkTimeService operationWorkTimeService;
 
+    @Autowired
+    private TechnologyServiceO technologyServiceO;
+
     public void showCopyOfTechnology(final ViewDefinitionState view, final ComponentState state, final String[] args) {
         Long orderId = (Long) state.getFieldValue();
 
@@ -98,6 +102,8 @@ public class OperationDurationDetailsInOrderListeners {
                 return;
             }
 
+            order = technologyServiceO.materializeTechnologyIfShared(order);
+
             Long technologyId = order.getBelongsToField(OrderFields.TECHNOLOGY).getId();
             Map<String, Object> parameters = Maps.newHashMap();
             parameters.put("form.id", technologyId);
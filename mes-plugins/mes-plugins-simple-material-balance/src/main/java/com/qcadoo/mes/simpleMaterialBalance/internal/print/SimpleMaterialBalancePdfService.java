@@ -23,7 +23,6 @@
  */
 package com.qcadoo.mes.simpleMaterialBalance.internal.print;
 
-import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -31,7 +30,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -45,11 +43,8 @@ import com.lowagie.text.Paragraph;
 import com.lowagie.text.Phrase;
 import com.lowagie.text.pdf.PdfPTable;
 import com.qcadoo.localization.api.TranslationService;
-import com.qcadoo.mes.materialFlow.MaterialFlowService;
 import com.qcadoo.mes.simpleMaterialBalance.util.EntityLocationNumberComparator;
 import com.qcadoo.mes.simpleMaterialBalance.util.EntityOrderNumberComparator;
-import com.qcadoo.mes.technologies.ProductQuantitiesService;
-import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.NumberService;
 import com.qcadoo.report.api.FontUtils;
@@ -79,10 +74,7 @@ public final class SimpleMaterialBalancePdfService extends PdfDocumentService {
     private static final String L_UNIT = "unit";
 
     @Autowired
-    private ProductQuantitiesService productQuantitiesService;
-
-    @Autowired
-    private MaterialFlowService materialFlowService;
+    private SimpleMaterialBalanceReportDataService simpleMaterialBalanceReportDataService;
 
     @Autowired
     private NumberService numberService;
@@ -100,7 +92,7 @@ public final class SimpleMaterialBalancePdfService extends PdfDocumentService {
         String documentAuthor = translationService.translate("qcadooReport.commons.generatedBy.label", locale);
         pdfHelper.addDocumentHeader(document, "", documentTitle, documentAuthor, (Date) simpleMaterialBalance.getField(L_DATE));
         addPanel(document, simpleMaterialBalance, locale);
-        addBalance(document, simpleMaterialBalance, locale);
+        addBalance(document, simpleMaterialBalanceReportDataService.getRows(simpleMaterialBalance), locale);
         addOrders(document, simpleMaterialBalance, locale);
         addLocations(document, simpleMaterialBalance, locale);
     }
@@ -129,8 +121,8 @@ public final class SimpleMaterialBalancePdfService extends PdfDocumentService {
         document.add(panelTable);
     }
 
-    private void addBalance(final Document document, final Entity simpleMaterialBalance, final Locale locale)
-            throws DocumentException {
+    private void addBalance(final Document document, final List<SimpleMaterialBalanceRow> simpleMaterialBalanceRows,
+            final Locale locale) throws DocumentException {
         document.add(new Paragraph(translationService.translate("simpleMaterialBalance.simpleMaterialBalance.report.paragrah",
                 locale), FontUtils.getDejavuBold11Dark()));
 
@@ -165,31 +157,19 @@ public final class SimpleMaterialBalancePdfService extends PdfDocumentService {
         alignments.put(translationService.translate("basic.product.unit.label", locale), HeaderAlignment.LEFT);
 
         PdfPTable table = pdfHelper.createTableWithHeader(6, simpleMaterialBalanceTableHeader, false, alignments);
-        List<Entity> simpleMaterialBalanceOrdersComponents = simpleMaterialBalance
-                .getHasManyField(L_SIMPLE_MATERIAL_BALANCE_ORDERS_COMPONENTS);
-        MrpAlgorithm mrpAlgorithm = MrpAlgorithm.parseString(simpleMaterialBalance.getStringField("mrpAlgorithm"));
-
-        Map<Long, BigDecimal> neededProductQuantities = productQuantitiesService.getNeededProductQuantitiesForComponents(
-                simpleMaterialBalanceOrdersComponents, mrpAlgorithm);
 
-        List<Entity> simpleMaterialBalanceLocationComponents = simpleMaterialBalance
-                .getHasManyField(L_SIMPLE_MATERIAL_BALANCE_LOCATIONS_COMPONENTS);
-
-        for (Entry<Long, BigDecimal> neededProductQuantity : neededProductQuantities.entrySet()) {
-            Entity product = productQuantitiesService.getProduct(neededProductQuantity.getKey());
+        for (SimpleMaterialBalanceRow simpleMaterialBalanceRow : simpleMaterialBalanceRows) {
+            Entity product = simpleMaterialBalanceRow.getProduct();
 
             table.addCell(new Phrase(product.getField(L_NUMBER).toString(), FontUtils.getDejavuRegular7Dark()));
             table.addCell(new Phrase(product.getField(L_NAME).toString(), FontUtils.getDejavuRegular7Dark()));
             table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_RIGHT);
-            table.addCell(new Phrase(numberService.format(neededProductQuantity.getValue()), FontUtils.getDejavuRegular7Dark()));
-            BigDecimal available = BigDecimal.ZERO;
-            for (Entity simpleMaterialBalanceLocationComponent : simpleMaterialBalanceLocationComponents) {
-                available = available.add(materialFlowService.calculateShouldBeInLocation(simpleMaterialBalanceLocationComponent
-                        .getBelongsToField(L_LOCATION).getId(), product.getId(), (Date) simpleMaterialBalance.getField(L_DATE)));
-            }
-            table.addCell(new Phrase(numberService.format(available), FontUtils.getDejavuRegular7Dark()));
-            table.addCell(new Phrase(numberService.format(available.subtract(neededProductQuantity.getValue(),
-                    numberService.getMathContext())), FontUtils.getDejavuBold7Dark()));
+            table.addCell(new Phrase(numberService.format(simpleMaterialBalanceRow.getNeeded()),
+                    FontUtils.getDejavuRegular7Dark()));
+            table.addCell(new Phrase(numberService.format(simpleMaterialBalanceRow.getAvailable()),
+                    FontUtils.getDejavuRegular7Dark()));
+            table.addCell(new Phrase(numberService.format(simpleMaterialBalanceRow.getBalance()),
+                    FontUtils.getDejavuBold7Dark()));
             table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_LEFT);
             table.addCell(new Phrase(product.getField(L_UNIT).toString(), FontUtils.getDejavuRegular7Dark()));
 
@@ -0,0 +1,132 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.simpleMaterialBalance.internal.print;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.materialFlow.MaterialFlowService;
+import com.qcadoo.mes.technologies.ProductQuantitiesService;
+import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.NumberService;
+import com.qcadoo.model.api.search.SearchRestrictions;
+
+/**
+ * Computes the rows of a simple material balance with one query for the products and one for the availability of all products
+ * in all selected locations.
+ */
+@Service
+public class SimpleMaterialBalanceReportDataService {
+
+    private static final String L_ID = "id";
+
+    private static final String L_DATE = "date";
+
+    private static final String L_LOCATION = "location";
+
+    private static final String L_MRP_ALGORITHM = "mrpAlgorithm";
+
+    private static final String L_SIMPLE_MATERIAL_BALANCE_ORDERS_COMPONENTS = "simpleMaterialBalanceOrdersComponents";
+
+    private static final String L_SIMPLE_MATERIAL_BALANCE_LOCATIONS_COMPONENTS = "simpleMaterialBalanceLocationsComponents";
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private ProductQuantitiesService productQuantitiesService;
+
+    @Autowired
+    private MaterialFlowService materialFlowService;
+
+    @Autowired
+    private NumberService numberService;
+
+    public List<SimpleMaterialBalanceRow> getRows(final Entity simpleMaterialBalance) {
+        List<Entity> simpleMaterialBalanceOrdersComponents = simpleMaterialBalance
+                .getHasManyField(L_SIMPLE_MATERIAL_BALANCE_ORDERS_COMPONENTS);
+        MrpAlgorithm mrpAlgorithm = MrpAlgorithm.parseString(simpleMaterialBalance.getStringField(L_MRP_ALGORITHM));
+
+        Map<Long, BigDecimal> neededProductQuantities = productQuantitiesService.getNeededProductQuantitiesForComponents(
+                simpleMaterialBalanceOrdersComponents, mrpAlgorithm);
+
+        if (neededProductQuantities.isEmpty()) {
+            return Lists.newArrayList();
+        }
+
+        Set<Long> locationIds = simpleMaterialBalance.getHasManyField(L_SIMPLE_MATERIAL_BALANCE_LOCATIONS_COMPONENTS).stream()
+                .map(simpleMaterialBalanceLocationComponent -> simpleMaterialBalanceLocationComponent
+                        .getBelongsToField(L_LOCATION).getId()).collect(Collectors.toSet());
+
+        Map<Long, Entity> products = getProducts(neededProductQuantities.keySet());
+        Map<Long, BigDecimal> availableQuantities = getAvailableQuantities(locationIds, neededProductQuantities.keySet(),
+                (Date) simpleMaterialBalance.getField(L_DATE));
+
+        List<SimpleMaterialBalanceRow> rows = Lists.newArrayListWithCapacity(neededProductQuantities.size());
+
+        for (Entry<Long, BigDecimal> neededProductQuantity : neededProductQuantities.entrySet()) {
+            BigDecimal needed = neededProductQuantity.getValue();
+            BigDecimal available = availableQuantities.getOrDefault(neededProductQuantity.getKey(), BigDecimal.ZERO);
+
+            rows.add(new SimpleMaterialBalanceRow(products.get(neededProductQuantity.getKey()), needed, available, available
+                    .subtract(needed, numberService.getMathContext())));
+        }
+
+        return rows;
+    }
+
+    private Map<Long, Entity> getProducts(final Set<Long> productIds) {
+        return dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT).find()
+                .add(SearchRestrictions.in(L_ID, productIds)).list().getEntities().stream()
+                .collect(Collectors.toMap(Entity::getId, Function.identity()));
+    }
+
+    private Map<Long, BigDecimal> getAvailableQuantities(final Set<Long> locationIds, final Set<Long> productIds,
+            final Date forDate) {
+        Map<Long, BigDecimal> availableQuantities = productIds.stream().collect(
+                Collectors.toMap(Function.identity(), productId -> BigDecimal.ZERO));
+
+        for (Map<Long, BigDecimal> quantitiesInLocation : materialFlowService.calculateShouldBeInLocations(locationIds,
+                productIds, forDate).values()) {
+            quantitiesInLocation.forEach((productId, quantity) -> availableQuantities.merge(productId, quantity,
+                    (sum, value) -> sum.add(value, numberService.getMathContext())));
+        }
+
+        return availableQuantities;
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.simpleMaterialBalance.internal.print;
+
+import java.math.BigDecimal;
+
+import com.qcadoo.model.api.Entity;
+
+public class SimpleMaterialBalanceRow {
+
+    private final Entity product;
+
+    private final BigDecimal needed;
+
+    private final BigDecimal available;
+
+    private final BigDecimal balance;
+
+    public SimpleMaterialBalanceRow(final Entity product, final BigDecimal needed, final BigDecimal available,
+            final BigDecimal balance) {
+        this.product = product;
+        this.needed = needed;
+        this.available = available;
+        this.balance = balance;
+    }
+
+    public Entity getProduct() {
+        return product;
+    }
+
+    public BigDecimal getNeeded() {
+        return needed;
+    }
+
+    public BigDecimal getAvailable() {
+        return available;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+}
@@ -23,12 +23,8 @@
  */
 package com.qcadoo.mes.simpleMaterialBalance.internal.print;
 
-import java.math.BigDecimal;
-import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import org.apache.poi.hssf.usermodel.HSSFCell;
 import org.apache.poi.hssf.usermodel.HSSFRow;
@@ -37,9 +33,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.qcadoo.localization.api.TranslationService;
-import com.qcadoo.mes.materialFlow.MaterialFlowService;
-import com.qcadoo.mes.technologies.ProductQuantitiesService;
-import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.NumberService;
 import com.qcadoo.report.api.xls.XlsDocumentService;
@@ -52,21 +45,10 @@ public final class SimpleMaterialBalanceXlsService extends XlsDocumentService {
 
     private static final String L_NAME = "name";
 
-    private static final String L_DATE = "date";
-
-    private static final String L_SIMPLE_MATERIAL_BALANCE_ORDERS_COMPONENTS = "simpleMaterialBalanceOrdersComponents";
-
-    private static final String L_SIMPLE_MATERIAL_BALANCE_LOCATIONS_COMPONENTS = "simpleMaterialBalanceLocationsComponents";
-
-    private static final String L_LOCATION = "location";
-
     private static final String L_UNIT = "unit";
 
     @Autowired
-    private ProductQuantitiesService productQuantitiesService;
-
-    @Autowired
-    private MaterialFlowService materialFlowService;
+    private SimpleMaterialBalanceReportDataService simpleMaterialBalanceReportDataService;
 
     @Autowired
     private NumberService numberService;
@@ -107,36 +89,22 @@ public final class SimpleMaterialBalanceXlsService extends XlsDocumentService {
 
     @Override
     protected void addSeries(final HSSFSheet sheet, final Entity simpleMaterialBalance) {
-        int rowNum = 1;
-        List<Entity> simpleMaterialBalanceOrdersComponents = simpleMaterialBalance
-                .getHasManyField(L_SIMPLE_MATERIAL_BALANCE_ORDERS_COMPONENTS);
-        MrpAlgorithm mrpAlgorithm = MrpAlgorithm.parseString(simpleMaterialBalance.getStringField("mrpAlgorithm"));
-
-        Map<Long, BigDecimal> neededProductQuantities = productQuantitiesService.getNeededProductQuantitiesForComponents(
-                simpleMaterialBalanceOrdersComponents, mrpAlgorithm);
+        addSeries(sheet, simpleMaterialBalanceReportDataService.getRows(simpleMaterialBalance));
+    }
 
-        List<Entity> simpleMaterialBalanceLocationComponents = simpleMaterialBalance
-                .getHasManyField(L_SIMPLE_MATERIAL_BALANCE_LOCATIONS_COMPONENTS);
+    private void addSeries(final HSSFSheet sheet, final List<SimpleMaterialBalanceRow> simpleMaterialBalanceRows) {
+        int rowNum = 1;
 
-        for (Entry<Long, BigDecimal> neededProductQuantity : neededProductQuantities.entrySet()) {
-            Entity product = productQuantitiesService.getProduct(neededProductQuantity.getKey());
+        for (SimpleMaterialBalanceRow simpleMaterialBalanceRow : simpleMaterialBalanceRows) {
+            Entity product = simpleMaterialBalanceRow.getProduct();
 
             HSSFRow row = sheet.createRow(rowNum++);
             row.createCell(0).setCellValue(product.getField(L_NUMBER).toString());
             row.createCell(1).setCellValue(product.getField(L_NAME).toString());
             row.createCell(2).setCellValue(product.getField(L_UNIT).toString());
-            row.createCell(3).setCellValue(numberService.format(neededProductQuantity.getValue()));
-            BigDecimal available = BigDecimal.ZERO;
-            for (Entity simpleMaterialBalanceLocationComponent : simpleMaterialBalanceLocationComponents) {
-                available = available.add(materialFlowService.calculateShouldBeInLocation(simpleMaterialBalanceLocationComponent
-                        .getBelongsToField(L_LOCATION).getId(), product.getId(), (Date) simpleMaterialBalance.getField(L_DATE)),
-                        numberService.getMathContext());
-            }
-            row.createCell(4).setCellValue(numberService.format(available));
-            row.createCell(5)
-                    .setCellValue(
-                            numberService.format(available.subtract(neededProductQuantity.getValue(),
-                                    numberService.getMathContext())));
+            row.createCell(3).setCellValue(numberService.format(simpleMaterialBalanceRow.getNeeded()));
+            row.createCell(4).setCellValue(numberService.format(simpleMaterialBalanceRow.getAvailable()));
+            row.createCell(5).setCellValue(numberService.format(simpleMaterialBalanceRow.getBalance()));
         }
         sheet.autoSizeColumn((short) 0);
         sheet.autoSizeColumn((short) 1);
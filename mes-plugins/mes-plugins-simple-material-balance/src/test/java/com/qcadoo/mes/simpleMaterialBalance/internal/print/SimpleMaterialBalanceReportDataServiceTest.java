@@ -0,0 +1,232 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.simpleMaterialBalance.internal.print;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.materialFlow.MaterialFlowService;
+import com.qcadoo.mes.technologies.ProductQuantitiesService;
+import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.EntityList;
+import com.qcadoo.model.api.NumberService;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchResult;
+
+public class SimpleMaterialBalanceReportDataServiceTest {
+
+    private static final Long L_PRODUCT_ID = 11L;
+
+    private static final Long L_OTHER_PRODUCT_ID = 12L;
+
+    private static final Long L_LOCATION_ID = 1L;
+
+    private static final Long L_OTHER_LOCATION_ID = 2L;
+
+    private static final Date L_DATE = new Date(1_500_000_000_000L);
+
+    private SimpleMaterialBalanceReportDataService simpleMaterialBalanceReportDataService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private ProductQuantitiesService productQuantitiesService;
+
+    @Mock
+    private MaterialFlowService materialFlowService;
+
+    @Mock
+    private NumberService numberService;
+
+    @Mock
+    private DataDefinition productDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Mock
+    private EntityList ordersComponents, locationsComponents;
+
+    @Mock
+    private Entity simpleMaterialBalance;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        simpleMaterialBalanceReportDataService = new SimpleMaterialBalanceReportDataService();
+
+        ReflectionTestUtils.setField(simpleMaterialBalanceReportDataService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(simpleMaterialBalanceReportDataService, "productQuantitiesService",
+                productQuantitiesService);
+        ReflectionTestUtils.setField(simpleMaterialBalanceReportDataService, "materialFlowService", materialFlowService);
+        ReflectionTestUtils.setField(simpleMaterialBalanceReportDataService, "numberService", numberService);
+
+        given(dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT)).willReturn(productDD);
+        given(productDD.find()).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.add(any(SearchCriterion.class))).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.list()).willReturn(searchResult);
+        given(numberService.getMathContext()).willReturn(MathContext.DECIMAL64);
+
+        given(simpleMaterialBalance.getHasManyField("simpleMaterialBalanceOrdersComponents")).willReturn(ordersComponents);
+        given(simpleMaterialBalance.getHasManyField("simpleMaterialBalanceLocationsComponents")).willReturn(
+                locationsComponents);
+        given(simpleMaterialBalance.getStringField("mrpAlgorithm")).willReturn(MrpAlgorithm.ALL_PRODUCTS_IN.getStringValue());
+        given(simpleMaterialBalance.getField("date")).willReturn(L_DATE);
+
+        List<Entity> locations = Lists.newArrayList(locationComponent(L_LOCATION_ID), locationComponent(L_OTHER_LOCATION_ID));
+        given(locationsComponents.stream()).willAnswer(invocation -> locations.stream());
+    }
+
+    @Test
+    public final void shouldSumAvailableQuantitiesOfAllLocationsWithSingleQuery() {
+        // given
+        Entity product = entity(L_PRODUCT_ID);
+        Entity otherProduct = entity(L_OTHER_PRODUCT_ID);
+        given(searchResult.getEntities()).willReturn(Lists.newArrayList(product, otherProduct));
+
+        Map<Long, BigDecimal> neededQuantities = Maps.newLinkedHashMap();
+        neededQuantities.put(L_PRODUCT_ID, new BigDecimal("10"));
+        neededQuantities.put(L_OTHER_PRODUCT_ID, new BigDecimal("4"));
+        given(productQuantitiesService.getNeededProductQuantitiesForComponents(ordersComponents, MrpAlgorithm.ALL_PRODUCTS_IN))
+                .willReturn(neededQuantities);
+
+        Map<Long, Map<Long, BigDecimal>> availableQuantities = ImmutableMap.<Long, Map<Long, BigDecimal>> of(L_LOCATION_ID,
+                ImmutableMap.of(L_PRODUCT_ID, new BigDecimal("3")), L_OTHER_LOCATION_ID,
+                ImmutableMap.of(L_PRODUCT_ID, new BigDecimal("2.5"), L_OTHER_PRODUCT_ID, new BigDecimal("6")));
+        given(materialFlowService.calculateShouldBeInLocations(ImmutableSet.of(L_LOCATION_ID, L_OTHER_LOCATION_ID),
+                ImmutableSet.of(L_PRODUCT_ID, L_OTHER_PRODUCT_ID), L_DATE)).willReturn(availableQuantities);
+
+        // when
+        List<SimpleMaterialBalanceRow> rows = simpleMaterialBalanceReportDataService.getRows(simpleMaterialBalance);
+
+        // then
+        assertEquals(2, rows.size());
+
+        assertSame(product, rows.get(0).getProduct());
+        assertDecimal("10", rows.get(0).getNeeded());
+        assertDecimal("5.5", rows.get(0).getAvailable());
+        assertDecimal("-4.5", rows.get(0).getBalance());
+
+        assertSame(otherProduct, rows.get(1).getProduct());
+        assertDecimal("4", rows.get(1).getNeeded());
+        assertDecimal("6", rows.get(1).getAvailable());
+        assertDecimal("2", rows.get(1).getBalance());
+
+        verify(productDD, times(1)).find();
+        verify(materialFlowService, times(1)).calculateShouldBeInLocations(anyCollectionOf(Long.class),
+                anyCollectionOf(Long.class), any(Date.class));
+    }
+
+    @Test
+    public final void shouldTreatProductsMissingInLocationsAsUnavailable() {
+        // given
+        Entity product = entity(L_PRODUCT_ID);
+        given(searchResult.getEntities()).willReturn(Lists.newArrayList(product));
+        given(productQuantitiesService.getNeededProductQuantitiesForComponents(ordersComponents, MrpAlgorithm.ALL_PRODUCTS_IN))
+                .willReturn(ImmutableMap.of(L_PRODUCT_ID, new BigDecimal("7")));
+        given(materialFlowService.calculateShouldBeInLocations(anyCollectionOf(Long.class), anyCollectionOf(Long.class),
+                any(Date.class))).willReturn(Maps.<Long, Map<Long, BigDecimal>> newHashMap());
+
+        // when
+        List<SimpleMaterialBalanceRow> rows = simpleMaterialBalanceReportDataService.getRows(simpleMaterialBalance);
+
+        // then
+        assertEquals(1, rows.size());
+        assertDecimal("0", rows.get(0).getAvailable());
+        assertDecimal("-7", rows.get(0).getBalance());
+    }
+
+    @Test
+    public final void shouldNotQueryProductsNorLocationsWithoutNeededProducts() {
+        // given
+        given(productQuantitiesService.getNeededProductQuantitiesForComponents(anyListOf(Entity.class),
+                any(MrpAlgorithm.class))).willReturn(Maps.<Long, BigDecimal> newHashMap());
+
+        // when
+        List<SimpleMaterialBalanceRow> rows = simpleMaterialBalanceReportDataService.getRows(simpleMaterialBalance);
+
+        // then
+        assertTrue(rows.isEmpty());
+
+        verify(productDD, never()).find();
+        verify(materialFlowService, never()).calculateShouldBeInLocations(anyCollectionOf(Long.class),
+                anyCollectionOf(Long.class), any(Date.class));
+    }
+
+    private void assertDecimal(final String expected, final BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual));
+    }
+
+    private Entity locationComponent(final Long locationId) {
+        Entity locationComponent = mock(Entity.class);
+        Entity location = entity(locationId);
+
+        given(locationComponent.getBelongsToField("location")).willReturn(location);
+
+        return locationComponent;
+    }
+
+    private Entity entity(final Long id) {
+        Entity entity = mock(Entity.class);
+        given(entity.getId()).willReturn(id);
+
+        return entity;
+    }
+
+}
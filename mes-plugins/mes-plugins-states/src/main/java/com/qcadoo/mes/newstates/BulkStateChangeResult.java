@@ -0,0 +1,41 @@
+package com.qcadoo.mes.newstates;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.view.api.ComponentMessagesHolder;
+
+/**
+ * Per-entity outcomes of a {@link BulkStateExecutorService} run, in the order the entities were given.
+ */
+public class BulkStateChangeResult {
+
+    private final List<StateChangeResult> results = Lists.newArrayList();
+
+    void add(final StateChangeResult result) {
+        results.add(result);
+    }
+
+    public List<StateChangeResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public List<StateChangeResult> getSuccessful() {
+        return results.stream().filter(StateChangeResult::isSuccessful).collect(Collectors.toList());
+    }
+
+    public List<StateChangeResult> getFailed() {
+        return results.stream().filter(result -> !result.isSuccessful()).collect(Collectors.toList());
+    }
+
+    public boolean isSuccessful() {
+        return results.stream().allMatch(StateChangeResult::isSuccessful);
+    }
+
+    public void copyMessagesTo(final ComponentMessagesHolder messagesHolder) {
+        results.forEach(result -> result.copyMessagesTo(messagesHolder));
+    }
+
+}
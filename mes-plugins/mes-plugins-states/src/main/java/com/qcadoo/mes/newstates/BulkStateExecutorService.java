@@ -0,0 +1,303 @@
+package com.qcadoo.mes.newstates;
+
+import static com.qcadoo.mes.states.constants.StateChangeStatus.IN_PROGRESS;
+import static com.qcadoo.mes.states.constants.StateChangeStatus.PAUSED;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.qcadoo.mes.basic.ShiftsService;
+import com.qcadoo.mes.states.StateChangeEntityDescriber;
+import com.qcadoo.mes.states.StateEnum;
+import com.qcadoo.mes.states.constants.StateChangeStatus;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.exception.EntityRuntimeException;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchRestrictions;
+import com.qcadoo.plugin.api.PluginUtils;
+import com.qcadoo.plugin.api.RunIfEnabled;
+import com.qcadoo.security.api.SecurityService;
+
+/**
+ * Changes the state of many entities at once. Listeners are resolved once per state machine marker and the whole selection is
+ * checked for forbidden transitions and unfinished changes up front. Before any transition runs, the state change history of
+ * the whole selection is saved, with {@link StateChangeStatus#IN_PROGRESS} for every entity that is going to be changed, so
+ * concurrent single and bulk changes of the same entity are rejected the same way as for a single change. State change
+ * entities are saved through their data definition, so their model hooks run and messages added by listeners are persisted;
+ * each started change is saved again with its final status once its entity was processed. Outcomes are returned in a
+ * {@link BulkStateChangeResult}, so the service keeps no per-request state and can be shared between concurrent users.
+ */
+@Service
+public class BulkStateExecutorService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkStateExecutorService.class);
+
+    private static final String L_TRANSITION_NOT_ALLOWED = "states.messages.change.failure.transitionNotAllowed";
+
+    private static final String L_ANOTHER_CHANGE_IN_PROGRESS = "states.messages.change.failure.anotherChangeInProgress";
+
+    private static final String L_INTERNAL_SERVER_ERROR = "states.messages.change.failure.internalServerError";
+
+    private final ConcurrentMap<Class<?>, List<StateService>> servicesByMarker = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private ShiftsService shiftsService;
+
+    @Autowired
+    private SecurityService securityService;
+
+    public <M extends StateService> BulkStateChangeResult changeState(final Class<M> serviceMarker, final List<Entity> entities,
+            final String userLogin, final String targetState) {
+        BulkStateChangeResult bulkResult = new BulkStateChangeResult();
+
+        if (entities.isEmpty()) {
+            return bulkResult;
+        }
+
+        List<M> services = lookupChangeStateServices(serviceMarker);
+        StateChangeEntityDescriber describer = services.stream().findFirst().get().getChangeEntityDescriber();
+        String worker = StringUtils.isEmpty(userLogin) ? securityService.getCurrentUserName() : userLogin;
+        Date dateTime = new Date();
+        Entity shift = shiftsService.getShiftFromDateWithTime(dateTime);
+        Set<Long> ownersWithUnfinishedChanges = findOwnersWithUnfinishedStateChange(describer, entities);
+        Set<Long> ownersInSelection = Sets.newHashSet();
+
+        List<StateChangeResult> results = Lists.newArrayListWithCapacity(entities.size());
+        List<Entity> stateChangeEntities = Lists.newArrayListWithCapacity(entities.size());
+
+        for (Entity entity : entities) {
+            StateChangeResult result = new StateChangeResult(entity);
+            String sourceState = entity.getStringField(describer.getOwnerStateFieldName());
+            Entity stateChangeEntity = buildStateChangeEntity(describer, entity, worker, sourceState, targetState, dateTime,
+                    shift);
+
+            if (!isTransitionAllowed(describer, sourceState, targetState)) {
+                result.fail(L_TRANSITION_NOT_ALLOWED);
+                LOG.info(String.format("State change - transition not allowed. Entity name : %S id : %d. Target state : %S",
+                        entity.getDataDefinition().getName(), entity.getId(), targetState));
+            } else if (ownersWithUnfinishedChanges.contains(entity.getId()) || !ownersInSelection.add(entity.getId())) {
+                result.fail(L_ANOTHER_CHANGE_IN_PROGRESS);
+                LOG.info(String.format("Another state change in progress. Entity name : %S id : %d. Target state : %S", entity
+                        .getDataDefinition().getName(), entity.getId(), targetState));
+            }
+
+            stateChangeEntity.setField(describer.getStatusFieldName(),
+                    result.isSuccessful() ? IN_PROGRESS.getStringValue() : result.getStatus().getStringValue());
+
+            results.add(result);
+            stateChangeEntities.add(stateChangeEntity);
+        }
+
+        List<Entity> savedStateChangeEntities = Lists.newArrayListWithCapacity(stateChangeEntities.size());
+
+        for (Entity stateChangeEntity : stateChangeEntities) {
+            savedStateChangeEntities.add(saveStateChangeEntity(stateChangeEntity));
+        }
+
+        Iterator<Entity> stateChangeEntitiesIterator = savedStateChangeEntities.iterator();
+
+        for (StateChangeResult result : results) {
+            Entity stateChangeEntity = stateChangeEntitiesIterator.next();
+
+            if (result.isSuccessful()) {
+                Entity entity = result.getEntity();
+                String sourceState = entity.getStringField(describer.getOwnerStateFieldName());
+
+                performChangeState(services, entity, stateChangeEntity, describer, sourceState, targetState, result);
+
+                stateChangeEntity.setField(describer.getStatusFieldName(), result.getStatus().getStringValue());
+                saveStateChangeEntity(stateChangeEntity);
+            }
+
+            bulkResult.add(result);
+        }
+
+        return bulkResult;
+    }
+
+    @SuppressWarnings("unchecked")
+    <M extends StateService> List<M> lookupChangeStateServices(final Class<M> serviceMarker) {
+        List<StateService> services = servicesByMarker.computeIfAbsent(serviceMarker, marker -> {
+            List<StateService> beans = Lists.<StateService> newArrayList(applicationContext.getBeansOfType(serviceMarker).values());
+
+            AnnotationAwareOrderComparator.sort(beans);
+
+            return Collections.unmodifiableList(beans);
+        });
+
+        return (List<M>) services.stream().filter(this::serviceEnabled).collect(Collectors.toList());
+    }
+
+    private <M extends StateService> void performChangeState(final List<M> services, final Entity entity,
+            final Entity stateChangeEntity, final StateChangeEntityDescriber describer, final String sourceState,
+            final String targetState, final StateChangeResult result) {
+        Entity changedEntity = entity;
+
+        try {
+            changedEntity = hookOnValidate(changedEntity, services, sourceState, targetState, stateChangeEntity, describer);
+
+            if (changedEntity.isValid()) {
+                changedEntity.setField(describer.getOwnerStateFieldName(), targetState);
+                changedEntity = hookOnBeforeSave(changedEntity, services, sourceState, targetState, stateChangeEntity,
+                        describer);
+
+                if (!changedEntity.isValid()) {
+                    throw new EntityRuntimeException(changedEntity);
+                }
+
+                changedEntity = changedEntity.getDataDefinition().save(changedEntity);
+
+                if (changedEntity.isValid()) {
+                    changedEntity = hookOnAfterSave(changedEntity, services, sourceState, targetState, stateChangeEntity,
+                            describer);
+
+                    if (!changedEntity.isValid()) {
+                        throw new EntityRuntimeException(changedEntity);
+                    }
+                }
+            }
+
+            result.collectMessages(changedEntity);
+
+            if (changedEntity.isValid()) {
+                LOG.info(String.format("Change state successful. Entity name : %S id : %d. Target state : %S", changedEntity
+                        .getDataDefinition().getName(), changedEntity.getId(), targetState));
+            } else {
+                result.fail(null);
+                changedEntity.setField(describer.getOwnerStateFieldName(), sourceState);
+                LOG.info(String.format("Change state failure. Entity name : %S id : %d. Target state : %S", changedEntity
+                        .getDataDefinition().getName(), changedEntity.getId(), targetState));
+            }
+        } catch (EntityRuntimeException entityException) {
+            result.collectMessages(entityException.getEntity());
+            result.fail(null);
+            changedEntity.setField(describer.getOwnerStateFieldName(), sourceState);
+        } catch (Exception exception) {
+            result.fail(L_INTERNAL_SERVER_ERROR);
+            changedEntity.setField(describer.getOwnerStateFieldName(), sourceState);
+            LOG.warn(String.format("Can't perform state change. Entity name : %S id : %d. Target state : %S", entity
+                    .getDataDefinition().getName(), entity.getId(), targetState), exception);
+        }
+
+        result.setEntity(changedEntity);
+    }
+
+    private <M extends StateService> Entity hookOnValidate(Entity entity, final Collection<M> services,
+            final String sourceState, final String targetState, final Entity stateChangeEntity,
+            final StateChangeEntityDescriber describer) {
+        for (StateService service : services) {
+            entity = service.onValidate(entity, sourceState, targetState, stateChangeEntity, describer);
+        }
+
+        return entity;
+    }
+
+    private <M extends StateService> Entity hookOnBeforeSave(Entity entity, final Collection<M> services,
+            final String sourceState, final String targetState, final Entity stateChangeEntity,
+            final StateChangeEntityDescriber describer) {
+        for (StateService service : services) {
+            entity = service.onBeforeSave(entity, sourceState, targetState, stateChangeEntity, describer);
+        }
+
+        return entity;
+    }
+
+    private <M extends StateService> Entity hookOnAfterSave(Entity entity, final Collection<M> services,
+            final String sourceState, final String targetState, final Entity stateChangeEntity,
+            final StateChangeEntityDescriber describer) {
+        for (StateService service : services) {
+            entity = service.onAfterSave(entity, sourceState, targetState, stateChangeEntity, describer);
+        }
+
+        return entity;
+    }
+
+    private boolean isTransitionAllowed(final StateChangeEntityDescriber describer, final String sourceStateString,
+            final String targetStateString) {
+        final StateEnum sourceState = describer.parseStateEnum(sourceStateString);
+        final StateEnum targetState = describer.parseStateEnum(targetStateString);
+
+        return sourceState == null || sourceState.canChangeTo(targetState);
+    }
+
+    private Set<Long> findOwnersWithUnfinishedStateChange(final StateChangeEntityDescriber describer,
+            final List<Entity> owners) {
+        final String ownerFieldName = describer.getOwnerFieldName();
+        final Set<String> unfinishedStatuses = Sets.newHashSet(IN_PROGRESS.getStringValue(), PAUSED.getStringValue());
+        final List<Long> ownerIds = owners.stream().map(Entity::getId).filter(Objects::nonNull).collect(Collectors.toList());
+
+        if (ownerIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        final SearchCriteriaBuilder searchCriteria = describer.getDataDefinition().find();
+        searchCriteria.createAlias(ownerFieldName, ownerFieldName);
+        searchCriteria.add(SearchRestrictions.in(ownerFieldName + ".id", ownerIds));
+        searchCriteria.add(SearchRestrictions.in(describer.getStatusFieldName(), unfinishedStatuses));
+
+        return searchCriteria.list().getEntities().stream()
+                .map(stateChange -> stateChange.getBelongsToField(ownerFieldName).getId()).collect(Collectors.toSet());
+    }
+
+    private Entity buildStateChangeEntity(final StateChangeEntityDescriber describer, final Entity owner, final String worker,
+            final String sourceState, final String targetState, final Date dateTime, final Entity shift) {
+        final Entity stateChangeEntity = describer.getDataDefinition().create();
+
+        stateChangeEntity.setField(describer.getDateTimeFieldName(), dateTime);
+        stateChangeEntity.setField(describer.getSourceStateFieldName(), sourceState);
+        stateChangeEntity.setField(describer.getTargetStateFieldName(), targetState);
+        stateChangeEntity.setField(describer.getShiftFieldName(), shift);
+        stateChangeEntity.setField(describer.getWorkerFieldName(), worker);
+        stateChangeEntity.setField(describer.getPhaseFieldName(), 0);
+        stateChangeEntity.setField(describer.getOwnerFieldName(), owner);
+
+        return stateChangeEntity;
+    }
+
+    private Entity saveStateChangeEntity(final Entity stateChangeEntity) {
+        Entity savedStateChangeEntity = stateChangeEntity.getDataDefinition().save(stateChangeEntity);
+
+        if (!savedStateChangeEntity.isValid()) {
+            throw new IllegalStateException(String.format("Error on save state entity: %s", savedStateChangeEntity.getErrors()));
+        }
+
+        return savedStateChangeEntity;
+    }
+
+    private boolean serviceEnabled(final StateService service) {
+        RunIfEnabled runIfEnabled = service.getClass().getAnnotation(RunIfEnabled.class);
+
+        if (runIfEnabled == null) {
+            return true;
+        }
+        for (String pluginIdentifier : runIfEnabled.value()) {
+            if (!PluginUtils.isEnabled(pluginIdentifier)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
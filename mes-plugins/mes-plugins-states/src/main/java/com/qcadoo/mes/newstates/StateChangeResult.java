@@ -0,0 +1,88 @@
+package com.qcadoo.mes.newstates;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.states.constants.StateChangeStatus;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.validators.ErrorMessage;
+import com.qcadoo.model.api.validators.GlobalMessage;
+import com.qcadoo.view.api.ComponentMessagesHolder;
+import com.qcadoo.view.api.ComponentState;
+
+/**
+ * Outcome of a single entity state change performed by {@link BulkStateExecutorService}, together with the messages which
+ * should be presented to the user.
+ */
+public class StateChangeResult {
+
+    private static final String L_SUCCESSFUL = "states.messages.change.successful";
+
+    private static final String L_FAILURE = "states.messages.change.failure";
+
+    private Entity entity;
+
+    private StateChangeStatus status = StateChangeStatus.SUCCESSFUL;
+
+    private final List<String> failureReasons = Lists.newArrayList();
+
+    private final List<ErrorMessage> errorMessages = Lists.newArrayList();
+
+    private final List<GlobalMessage> globalMessages = Lists.newArrayList();
+
+    StateChangeResult(final Entity entity) {
+        this.entity = entity;
+    }
+
+    public Long getEntityId() {
+        return entity.getId();
+    }
+
+    public Entity getEntity() {
+        return entity;
+    }
+
+    void setEntity(final Entity entity) {
+        this.entity = entity;
+    }
+
+    public StateChangeStatus getStatus() {
+        return status;
+    }
+
+    public boolean isSuccessful() {
+        return StateChangeStatus.SUCCESSFUL.equals(status);
+    }
+
+    void fail(final String failureReason) {
+        status = StateChangeStatus.FAILURE;
+
+        if (failureReason != null) {
+            failureReasons.add(failureReason);
+        }
+    }
+
+    public List<String> getFailureReasons() {
+        return Collections.unmodifiableList(failureReasons);
+    }
+
+    void collectMessages(final Entity entity) {
+        errorMessages.addAll(entity.getGlobalErrors());
+        errorMessages.addAll(entity.getErrors().values());
+        globalMessages.addAll(entity.getGlobalMessages());
+    }
+
+    public void copyMessagesTo(final ComponentMessagesHolder messagesHolder) {
+        errorMessages.forEach(messagesHolder::addMessage);
+        globalMessages.forEach(messagesHolder::addMessage);
+
+        if (isSuccessful()) {
+            messagesHolder.addMessage(L_SUCCESSFUL, ComponentState.MessageType.SUCCESS);
+        } else {
+            messagesHolder.addMessage(L_FAILURE, ComponentState.MessageType.FAILURE);
+            failureReasons.forEach(reason -> messagesHolder.addMessage(reason, ComponentState.MessageType.FAILURE));
+        }
+    }
+
+}
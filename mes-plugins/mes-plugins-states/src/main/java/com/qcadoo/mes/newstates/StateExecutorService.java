@@ -3,21 +3,18 @@ package com.qcadoo.mes.newstates;
 import static com.qcadoo.mes.states.constants.StateChangeStatus.IN_PROGRESS;
 import static com.qcadoo.mes.states.constants.StateChangeStatus.PAUSED;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
-import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -36,8 +33,6 @@ import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.model.api.validators.ErrorMessage;
 import com.qcadoo.model.api.validators.GlobalMessage;
-import com.qcadoo.plugin.api.PluginUtils;
-import com.qcadoo.plugin.api.RunIfEnabled;
 import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.view.api.ComponentMessagesHolder;
 import com.qcadoo.view.api.ComponentState;
@@ -53,15 +48,15 @@ public class StateExecutorService {
 
     public static final String USER_CHANGE_STATE = "user";
 
-    @Autowired
-    private ApplicationContext applicationContext;
-
     @Autowired
     private ShiftsService shiftsService;
 
     @Autowired
     private SecurityService securityService;
 
+    @Autowired
+    private BulkStateExecutorService bulkStateExecutorService;
+
     private ComponentMessagesHolder componentMessagesHolder;
 
     private static final Logger LOGGER = Logger.getLogger(StateExecutorService.class);
@@ -73,14 +68,14 @@ public class StateExecutorService {
 
         Optional<GridComponent> maybeGridComponent = view.tryFindComponentByReference("grid");
         if (maybeGridComponent.isPresent()) {
-            maybeGridComponent.get().getSelectedEntities().forEach(entity -> {
-                entity = entity.getDataDefinition().getMasterModelEntity(entity.getId());
-                entity.setField(USER_CHANGE_STATE, userId);
+            List<Entity> entities = maybeGridComponent.get().getSelectedEntities().stream().map(entity -> {
+                Entity masterEntity = entity.getDataDefinition().getMasterModelEntity(entity.getId());
+                masterEntity.setField(USER_CHANGE_STATE, userId);
 
-                entity = changeState(serviceMarker, entity, userLogin, args[0]);
+                return masterEntity;
+            }).collect(Collectors.toList());
 
-                copyMessages(entity);
-            });
+            bulkStateExecutorService.changeState(serviceMarker, entities, userLogin, args[0]).copyMessagesTo(view);
 
         } else {
             Optional<FormComponent> maybeForm = view.tryFindComponentByReference("form");
@@ -283,19 +278,7 @@ public class StateExecutorService {
     }
 
     private <M extends StateService> List<M> lookupChangeStateServices(Class<M> serviceMarker) {
-        Map<String, M> stateServices = applicationContext.getBeansOfType(serviceMarker);
-
-        List<M> services = new ArrayList<>();
-
-        for (M service : stateServices.values()) {
-            if (serviceEnabled(service)) {
-                services.add(service);
-            }
-        }
-
-        AnnotationAwareOrderComparator.sort(services);
-
-        return services;
+        return bulkStateExecutorService.lookupChangeStateServices(serviceMarker);
     }
 
     public <M extends StateService> void buildInitial(Class<M> serviceMarker, Entity entity, String initialState) {
@@ -310,20 +293,6 @@ public class StateExecutorService {
 
     }
 
-    private <M extends Object & StateService> boolean serviceEnabled(M service) {
-        RunIfEnabled runIfEnabled = service.getClass().getAnnotation(RunIfEnabled.class);
-        if (runIfEnabled == null) {
-            return true;
-        }
-        for (String pluginIdentifier : runIfEnabled.value()) {
-            if (!PluginUtils.isEnabled(pluginIdentifier)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
     private void copyMessages(Entity entity, Entity mainEntity) {
         if (mainEntity != null && mainEntity.equals(entity) && entity.getGlobalErrors() == mainEntity.getGlobalErrors()) {
             return;
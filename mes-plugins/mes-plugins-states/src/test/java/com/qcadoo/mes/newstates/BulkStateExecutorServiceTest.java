@@ -0,0 +1,301 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.newstates;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.ShiftsService;
+import com.qcadoo.mes.states.StateChangeEntityDescriber;
+import com.qcadoo.mes.states.StateEnum;
+import com.qcadoo.mes.states.constants.StateChangeStatus;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.security.api.SecurityService;
+
+public class BulkStateExecutorServiceTest {
+
+    private static final String L_SOURCE_STATE = "01draft";
+
+    private static final String L_TARGET_STATE = "02accepted";
+
+    private interface TestStateServiceMarker extends StateService {
+    }
+
+    private BulkStateExecutorService bulkStateExecutorService;
+
+    @Mock
+    private ApplicationContext applicationContext;
+
+    @Mock
+    private ShiftsService shiftsService;
+
+    @Mock
+    private SecurityService securityService;
+
+    @Mock
+    private TestStateServiceMarker stateService;
+
+    @Mock
+    private StateChangeEntityDescriber describer;
+
+    @Mock
+    private DataDefinition stateChangeDD, ownerDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Mock
+    private StateEnum sourceState, targetState;
+
+    private final List<String> savedStatuses = Lists.newArrayList();
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        bulkStateExecutorService = new BulkStateExecutorService();
+
+        ReflectionTestUtils.setField(bulkStateExecutorService, "applicationContext", applicationContext);
+        ReflectionTestUtils.setField(bulkStateExecutorService, "shiftsService", shiftsService);
+        ReflectionTestUtils.setField(bulkStateExecutorService, "securityService", securityService);
+
+        when(applicationContext.getBeansOfType(TestStateServiceMarker.class)).thenReturn(
+                ImmutableMap.of("stateService", stateService));
+        when(stateService.getChangeEntityDescriber()).thenReturn(describer);
+        when(stateService.onValidate(any(Entity.class), anyString(), anyString(), any(Entity.class), eq(describer)))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(stateService.onBeforeSave(any(Entity.class), anyString(), anyString(), any(Entity.class), eq(describer)))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(stateService.onAfterSave(any(Entity.class), anyString(), anyString(), any(Entity.class), eq(describer)))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
+
+        when(describer.getDataDefinition()).thenReturn(stateChangeDD);
+        when(describer.getOwnerFieldName()).thenReturn("owner");
+        when(describer.getOwnerStateFieldName()).thenReturn("state");
+        when(describer.getStatusFieldName()).thenReturn("status");
+        when(describer.getDateTimeFieldName()).thenReturn("dateAndTime");
+        when(describer.getSourceStateFieldName()).thenReturn("sourceState");
+        when(describer.getTargetStateFieldName()).thenReturn("targetState");
+        when(describer.getShiftFieldName()).thenReturn("shift");
+        when(describer.getWorkerFieldName()).thenReturn("worker");
+        when(describer.getPhaseFieldName()).thenReturn("phase");
+        when(describer.parseStateEnum(L_SOURCE_STATE)).thenReturn(sourceState);
+        when(describer.parseStateEnum(L_TARGET_STATE)).thenReturn(targetState);
+        when(sourceState.canChangeTo(targetState)).thenReturn(true);
+
+        when(stateChangeDD.getPluginIdentifier()).thenReturn("test");
+        when(stateChangeDD.getName()).thenReturn("ownerStateChange");
+        when(stateChangeDD.create()).thenAnswer(invocation -> mockStateChangeEntity());
+        when(stateChangeDD.find()).thenReturn(searchCriteriaBuilder);
+        when(searchCriteriaBuilder.createAlias(anyString(), anyString())).thenReturn(searchCriteriaBuilder);
+        when(searchCriteriaBuilder.add(any(SearchCriterion.class))).thenReturn(searchCriteriaBuilder);
+        when(searchCriteriaBuilder.list()).thenReturn(searchResult);
+        when(searchResult.getEntities()).thenReturn(Collections.<Entity> emptyList());
+
+        when(ownerDD.getName()).thenReturn("owner");
+        when(ownerDD.save(any(Entity.class))).thenAnswer(invocation -> invocation.getArguments()[0]);
+
+        AtomicLong sequence = new AtomicLong(100L);
+        when(stateChangeDD.save(any(Entity.class))).thenAnswer(invocation -> {
+            Entity stateChangeEntity = (Entity) invocation.getArguments()[0];
+            if (stateChangeEntity.getId() == null) {
+                stateChangeEntity.setId(sequence.incrementAndGet());
+            }
+            savedStatuses.add(stateChangeEntity.getStringField("status"));
+            return stateChangeEntity;
+        });
+    }
+
+    @Test
+    public final void shouldSaveInProgressHistoryBeforeChangingStateAndFinalizeItAfterwards() {
+        // given
+        Entity first = mockOwner(1L);
+        Entity second = mockOwner(2L);
+
+        // when
+        BulkStateChangeResult result = bulkStateExecutorService.changeState(TestStateServiceMarker.class,
+                Lists.newArrayList(first, second), "admin", L_TARGET_STATE);
+
+        // then
+        assertTrue(result.isSuccessful());
+
+        ArgumentCaptor<Entity> saved = ArgumentCaptor.forClass(Entity.class);
+        InOrder inOrder = inOrder(stateChangeDD, ownerDD);
+        inOrder.verify(stateChangeDD, times(2)).save(saved.capture());
+        inOrder.verify(ownerDD).save(first);
+        inOrder.verify(stateChangeDD).save(saved.capture());
+        inOrder.verify(ownerDD).save(second);
+        inOrder.verify(stateChangeDD).save(saved.capture());
+
+        assertEquals(Lists.newArrayList(StateChangeStatus.IN_PROGRESS.getStringValue(),
+                StateChangeStatus.IN_PROGRESS.getStringValue(), StateChangeStatus.SUCCESSFUL.getStringValue(),
+                StateChangeStatus.SUCCESSFUL.getStringValue()), savedStatuses);
+        assertEquals(first, saved.getAllValues().get(0).getBelongsToField("owner"));
+        assertEquals(Long.valueOf(101L), saved.getAllValues().get(2).getId());
+        assertEquals(Long.valueOf(102L), saved.getAllValues().get(3).getId());
+    }
+
+    @Test
+    public final void shouldPersistMessagesAddedToStateChangeEntityByListeners() {
+        // given
+        Entity owner = mockOwner(1L);
+        List<Entity> messages = Lists.newArrayList(mock(Entity.class));
+        when(stateService.onBeforeSave(any(Entity.class), anyString(), anyString(), any(Entity.class), eq(describer)))
+                .thenAnswer(invocation -> {
+                    ((Entity) invocation.getArguments()[3]).setField("messages", messages);
+                    return invocation.getArguments()[0];
+                });
+
+        // when
+        bulkStateExecutorService.changeState(TestStateServiceMarker.class, Lists.newArrayList(owner), "admin",
+                L_TARGET_STATE);
+
+        // then
+        ArgumentCaptor<Entity> saved = ArgumentCaptor.forClass(Entity.class);
+        verify(stateChangeDD, times(2)).save(saved.capture());
+        assertEquals(messages, saved.getAllValues().get(1).getField("messages"));
+        assertEquals(StateChangeStatus.SUCCESSFUL.getStringValue(), savedStatuses.get(1));
+    }
+
+    @Test
+    public final void shouldRejectEntityWithUnfinishedStateChange() {
+        // given
+        Entity owner = mockOwner(1L);
+        Entity unfinishedStateChange = mock(Entity.class);
+        when(unfinishedStateChange.getBelongsToField("owner")).thenReturn(owner);
+        when(searchResult.getEntities()).thenReturn(Lists.newArrayList(unfinishedStateChange));
+
+        // when
+        BulkStateChangeResult result = bulkStateExecutorService.changeState(TestStateServiceMarker.class,
+                Lists.newArrayList(owner), "admin", L_TARGET_STATE);
+
+        // then
+        assertFalse(result.isSuccessful());
+        verify(ownerDD, never()).save(any(Entity.class));
+        verify(stateChangeDD).save(any(Entity.class));
+        assertEquals(Lists.newArrayList(StateChangeStatus.FAILURE.getStringValue()), savedStatuses);
+    }
+
+    @Test
+    public final void shouldChangeEntitySelectedTwiceOnlyOnce() {
+        // given
+        Entity owner = mockOwner(1L);
+
+        // when
+        bulkStateExecutorService.changeState(TestStateServiceMarker.class, Lists.newArrayList(owner, owner), "admin",
+                L_TARGET_STATE);
+
+        // then
+        verify(ownerDD).save(owner);
+
+        assertEquals(Lists.newArrayList(StateChangeStatus.IN_PROGRESS.getStringValue(),
+                StateChangeStatus.FAILURE.getStringValue(), StateChangeStatus.SUCCESSFUL.getStringValue()), savedStatuses);
+    }
+
+    @Test
+    public final void shouldRecordFailureWhenTransitionIsNotAllowed() {
+        // given
+        when(sourceState.canChangeTo(targetState)).thenReturn(false);
+        Entity owner = mockOwner(1L);
+
+        // when
+        BulkStateChangeResult result = bulkStateExecutorService.changeState(TestStateServiceMarker.class,
+                Lists.newArrayList(owner), "admin", L_TARGET_STATE);
+
+        // then
+        assertFalse(result.isSuccessful());
+        verify(ownerDD, never()).save(any(Entity.class));
+        assertEquals(Lists.newArrayList(StateChangeStatus.FAILURE.getStringValue()), savedStatuses);
+    }
+
+    private Entity mockOwner(final Long id) {
+        Entity owner = mock(Entity.class);
+        when(owner.getId()).thenReturn(id);
+        when(owner.getDataDefinition()).thenReturn(ownerDD);
+        when(owner.getStringField("state")).thenReturn(L_SOURCE_STATE);
+        when(owner.isValid()).thenReturn(true);
+        return owner;
+    }
+
+    private Entity mockStateChangeEntity() {
+        Map<String, Object> fields = Maps.newHashMap();
+        Long[] id = new Long[1];
+        Entity stateChangeEntity = mock(Entity.class);
+
+        when(stateChangeEntity.getDataDefinition()).thenReturn(stateChangeDD);
+        when(stateChangeEntity.getId()).thenAnswer(invocation -> id[0]);
+        when(stateChangeEntity.getField(anyString())).thenAnswer(invocation -> fields.get(invocation.getArguments()[0]));
+        when(stateChangeEntity.isValid()).thenReturn(true);
+        when(stateChangeEntity.getStringField(anyString())).thenAnswer(
+                invocation -> (String) fields.get(invocation.getArguments()[0]));
+        when(stateChangeEntity.getBelongsToField(anyString())).thenAnswer(
+                invocation -> (Entity) fields.get(invocation.getArguments()[0]));
+        doAnswer(invocation -> {
+            fields.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+        }).when(stateChangeEntity).setField(anyString(), any());
+        doAnswer(invocation -> {
+            id[0] = (Long) invocation.getArguments()[0];
+            return null;
+        }).when(stateChangeEntity).setId(any(Long.class));
+
+        return stateChangeEntity;
+    }
+
+}
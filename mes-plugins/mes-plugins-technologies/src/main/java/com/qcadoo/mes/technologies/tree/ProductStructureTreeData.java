@@ -0,0 +1,243 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.tree;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.qcadoo.mes.technologies.constants.OperationProductInComponentFields;
+import com.qcadoo.mes.technologies.constants.OperationProductOutComponentFields;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchOrders;
+import com.qcadoo.model.api.search.SearchRestrictions;
+
+/**
+ * Operations, operation products and product technologies needed to build a product structure tree, loaded level by level
+ * with a fixed number of queries per level of the BOM.
+ */
+final class ProductStructureTreeData {
+
+    private static final String L_ID = "id";
+
+    private final DataDefinitionService dataDefinitionService;
+
+    private final Set<Long> loadedTechnologies = Sets.newHashSet();
+
+    private final ListMultimap<Long, Entity> operationsByTechnology = ArrayListMultimap.create();
+
+    private final ListMultimap<Long, Entity> childrenByOperation = ArrayListMultimap.create();
+
+    private final ListMultimap<Long, Entity> outComponentsByOperation = ArrayListMultimap.create();
+
+    private final ListMultimap<Long, Entity> inComponentsByOperation = ArrayListMultimap.create();
+
+    private final Map<Long, Entity> technologiesByProduct = Maps.newHashMap();
+
+    ProductStructureTreeData(final DataDefinitionService dataDefinitionService, final Entity technology) {
+        this.dataDefinitionService = dataDefinitionService;
+
+        load(technology.getId());
+    }
+
+    Entity findOperationForProductAndTechnology(final Entity product, final Entity technology) {
+        return findOperationProducing(product, operationsByTechnology.get(technology.getId()));
+    }
+
+    Entity findOperationForProductWithinChildren(final Entity product, final Entity operation) {
+        return findOperationProducing(product, childrenByOperation.get(operation.getId()));
+    }
+
+    Entity findTechnologyForProduct(final Entity product) {
+        return product == null ? null : technologiesByProduct.get(product.getId());
+    }
+
+    BigDecimal findQuantityOfProductInOperation(final Entity product, final Entity operation) {
+        Entity productComponent = findComponentForProduct(product, outComponentsByOperation.get(operation.getId()));
+
+        if (productComponent == null) {
+            productComponent = findComponentForProduct(product, inComponentsByOperation.get(operation.getId()));
+        }
+
+        return productComponent == null ? null : productComponent.getDecimalField(OperationProductInComponentFields.QUANTITY);
+    }
+
+    List<Entity> getInComponents(final Entity operation) {
+        return Collections.unmodifiableList(inComponentsByOperation.get(operation.getId()));
+    }
+
+    private Entity findOperationProducing(final Entity product, final List<Entity> operations) {
+        for (Entity operation : operations) {
+            if (findComponentForProduct(product, outComponentsByOperation.get(operation.getId())) != null) {
+                return operation;
+            }
+        }
+
+        return null;
+    }
+
+    private Entity findComponentForProduct(final Entity product, final List<Entity> productComponents) {
+        Long productId = product == null ? null : product.getId();
+
+        for (Entity productComponent : productComponents) {
+            if (Objects.equals(productId, getId(productComponent, OperationProductInComponentFields.PRODUCT))) {
+                return productComponent;
+            }
+        }
+
+        return null;
+    }
+
+    private void load(final Long technologyId) {
+        Set<Long> technologyIds = Sets.newHashSet(technologyId);
+
+        while (!technologyIds.isEmpty()) {
+            loadedTechnologies.addAll(technologyIds);
+
+            Set<Long> productIds = loadOperations(technologyIds);
+
+            productIds.removeAll(technologiesByProduct.keySet());
+
+            technologyIds = loadTechnologiesForProducts(productIds).stream()
+                    .filter(id -> !loadedTechnologies.contains(id)).collect(Collectors.toSet());
+        }
+    }
+
+    private Set<Long> loadOperations(final Collection<Long> technologyIds) {
+        List<Entity> operations = dataDefinitionService
+                .get(TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_TECHNOLOGY_OPERATION_COMPONENT).find()
+                .add(SearchRestrictions.in(TechnologyOperationComponentFields.TECHNOLOGY + "." + L_ID, technologyIds))
+                .addOrder(SearchOrders.asc(L_ID)).list().getEntities();
+
+        if (operations.isEmpty()) {
+            return Sets.newHashSet();
+        }
+
+        for (Entity operation : operations) {
+            operationsByTechnology.put(getId(operation, TechnologyOperationComponentFields.TECHNOLOGY), operation);
+
+            Long parentId = getId(operation, TechnologyOperationComponentFields.PARENT);
+
+            if (parentId != null) {
+                childrenByOperation.put(parentId, operation);
+            }
+        }
+
+        List<Long> operationIds = operations.stream().map(Entity::getId).collect(Collectors.toList());
+
+        for (Entity outComponent : findProductComponents(TechnologiesConstants.MODEL_OPERATION_PRODUCT_OUT_COMPONENT,
+                operationIds)) {
+            outComponentsByOperation.put(getId(outComponent, OperationProductOutComponentFields.OPERATION_COMPONENT),
+                    outComponent);
+        }
+
+        Set<Long> productIds = Sets.newHashSet();
+
+        for (Entity inComponent : findProductComponents(TechnologiesConstants.MODEL_OPERATION_PRODUCT_IN_COMPONENT,
+                operationIds)) {
+            inComponentsByOperation.put(getId(inComponent, OperationProductInComponentFields.OPERATION_COMPONENT), inComponent);
+
+            Long productId = getId(inComponent, OperationProductInComponentFields.PRODUCT);
+
+            if (productId != null) {
+                productIds.add(productId);
+            }
+        }
+
+        return productIds;
+    }
+
+    private List<Entity> findProductComponents(final String modelName, final List<Long> operationIds) {
+        return dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER, modelName).find()
+                .add(SearchRestrictions.in(OperationProductInComponentFields.OPERATION_COMPONENT + "." + L_ID, operationIds))
+                .addOrder(SearchOrders.asc(L_ID)).list().getEntities();
+    }
+
+    private Set<Long> loadTechnologiesForProducts(final Set<Long> productIds) {
+        Set<Long> technologyIds = Sets.newHashSet();
+
+        if (productIds.isEmpty()) {
+            return technologyIds;
+        }
+
+        List<Entity> technologies = dataDefinitionService
+                .get(TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_TECHNOLOGY)
+                .find()
+                .add(SearchRestrictions.isNull(TechnologyFields.TECHNOLOGY_TYPE))
+                .add(SearchRestrictions.in(TechnologyFields.PRODUCT + "." + L_ID, productIds))
+                .add(SearchRestrictions.or(SearchRestrictions.eq(TechnologyFields.STATE, "02accepted"),
+                        SearchRestrictions.eq(TechnologyFields.STATE, "05checked"))).addOrder(SearchOrders.asc(L_ID)).list()
+                .getEntities();
+
+        for (Long productId : productIds) {
+            technologiesByProduct.put(productId, null);
+        }
+
+        for (Entity technology : technologies) {
+            Long productId = getId(technology, TechnologyFields.PRODUCT);
+            Entity chosen = technologiesByProduct.get(productId);
+
+            if (chosen == null || (!chosen.getBooleanField(TechnologyFields.MASTER) && isPreferred(technology, chosen))) {
+                technologiesByProduct.put(productId, technology);
+            }
+        }
+
+        for (Long productId : productIds) {
+            Entity technology = technologiesByProduct.get(productId);
+
+            if (technology != null) {
+                technologyIds.add(technology.getId());
+            }
+        }
+
+        return technologyIds;
+    }
+
+    private boolean isPreferred(final Entity technology, final Entity chosen) {
+        String chosenNumber = chosen.getStringField(TechnologyFields.NUMBER);
+
+        return technology.getBooleanField(TechnologyFields.MASTER)
+                || chosenNumber.compareTo(technology.getStringField(TechnologyFields.NUMBER)) < 0;
+    }
+
+    private Long getId(final Entity entity, final String belongsToField) {
+        Entity belongsTo = entity.getBelongsToField(belongsToField);
+
+        return belongsTo == null ? null : belongsTo.getId();
+    }
+
+}
@@ -26,6 +26,11 @@ package com.qcadoo.mes.technologies.tree;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -61,10 +66,6 @@ public class ProductStructureTreeService {
 
     private static final String L_NUMBER = "number";
 
-    private static final String L_OPERATION_PRODUCT_OUT_COMPONENTS = "operationProductOutComponents";
-
-    private static final String L_OPERATION_PRODUCT_IN_COMPONENTS = "operationProductInComponents";
-
     private static final String L_FINAL_PRODUCT = "finalProduct";
 
     private static final String L_INTERMEDIATE = "intermediate";
@@ -93,94 +94,22 @@ public class ProductStructureTreeService {
         tree.add(child);
     }
 
-    private Entity findOperationForProductAndTechnology(final Entity product, final Entity technology) {
-        DataDefinition operationComponentsDD = dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
-                TechnologiesConstants.MODEL_TECHNOLOGY_OPERATION_COMPONENT);
-        List<Entity> operations = operationComponentsDD.find().add(SearchRestrictions.belongsTo(L_TECHNOLOGY, technology)).list()
-                .getEntities();
-        for (Entity operation : operations) {
-
-            Entity isResult = operation.getHasManyField(L_OPERATION_PRODUCT_OUT_COMPONENTS).find()
-                    .add(SearchRestrictions.belongsTo(L_PRODUCT, product)).setMaxResults(1).uniqueResult();
-            if (isResult != null) {
-                return operation;
-            }
-        }
-        return null;
-    }
-
-    private Entity findOperationForProductWithinChildren(final Entity product, final Entity toc) {
-        List<Entity> operations = toc.getHasManyField(TechnologyOperationComponentFields.CHILDREN);
-        for (Entity operation : operations) {
-
-            Entity isResult = operation.getHasManyField(L_OPERATION_PRODUCT_OUT_COMPONENTS).find()
-                    .add(SearchRestrictions.belongsTo(L_PRODUCT, product)).setMaxResults(1).uniqueResult();
-            if (isResult != null) {
-                return operation;
-            }
-        }
-        return null;
-    }
-
-    private Entity findTechnologyForProduct(final Entity product) {
-        DataDefinition technologyDD = dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
-                TechnologiesConstants.MODEL_TECHNOLOGY);
-        List<Entity> technologiesForProduct = technologyDD
-                .find()
-                .add(SearchRestrictions.isNull(TechnologyFields.TECHNOLOGY_TYPE))
-                .add(SearchRestrictions.and(
-                        SearchRestrictions.belongsTo(L_PRODUCT, product),
-                        SearchRestrictions.or(SearchRestrictions.eq("state", "02accepted"),
-                                SearchRestrictions.eq("state", "05checked")))).list().getEntities();
-        Entity result = null;
-        for (Entity technology : technologiesForProduct) {
-            boolean isMaster = technology.getBooleanField("master");
-            if (isMaster) {
-                return technology;
-            } else if (result != null) {
-                if (result.getStringField(L_NUMBER).compareTo(technology.getStringField(L_NUMBER)) < 0) {
-                    result = technology;
-                }
-            } else {
-                result = technology;
-            }
-        }
-        return result;
-    }
-
-    private BigDecimal findQuantityOfProductInOperation(final Entity product, final Entity operation) {
-        EntityList outProducts = operation.getHasManyField(L_OPERATION_PRODUCT_OUT_COMPONENTS);
-
-        Entity productComponent = outProducts.find().add(SearchRestrictions.belongsTo(L_PRODUCT, product)).setMaxResults(1)
-                .uniqueResult();
-        if (productComponent != null) {
-            return productComponent.getDecimalField(L_QUANTITY);
-        }
-        EntityList inProducts = operation.getHasManyField(L_OPERATION_PRODUCT_IN_COMPONENTS);
-        productComponent = inProducts.find().add(SearchRestrictions.belongsTo(L_PRODUCT, product)).setMaxResults(1)
-                .uniqueResult();
-        if (productComponent != null) {
-            return productComponent.getDecimalField(L_QUANTITY);
-        }
-        return null;
-    }
-
-    private void generateTreeForSubproducts(final Entity operation, final Entity technology, final List<Entity> tree,
-            final Entity parent, final ViewDefinitionState view, final List<Long> usedTechnologies) {
-        EntityList productInComponents = operation.getHasManyField(L_OPERATION_PRODUCT_IN_COMPONENTS);
+    private void generateTreeForSubproducts(final ProductStructureTreeData data, final Entity operation, final Entity technology,
+            final List<Entity> tree, final Entity parent, final ViewDefinitionState view, final List<Long> usedTechnologies) {
+        List<Entity> productInComponents = data.getInComponents(operation);
         DataDefinition treeNodeDD = dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
                 TechnologiesConstants.MODEL_PRODUCT_STRUCTURE_TREE_NODE);
         for (Entity productInComp : productInComponents) {
             Entity child = treeNodeDD.create();
             Entity product = productInComp.getBelongsToField(L_PRODUCT);
-            Entity subOperation = findOperationForProductWithinChildren(product, operation);
-            BigDecimal quantity = findQuantityOfProductInOperation(product, operation);
-            Entity subTechnology = findTechnologyForProduct(product);
+            Entity subOperation = data.findOperationForProductWithinChildren(product, operation);
+            BigDecimal quantity = data.findQuantityOfProductInOperation(product, operation);
+            Entity subTechnology = data.findTechnologyForProduct(product);
 
             if (subTechnology != null) {
                 if (!usedTechnologies.contains(subTechnology.getId())) {
                     if (subOperation == null) {
-                        Entity operationForTechnology = findOperationForProductAndTechnology(product, subTechnology);
+                        Entity operationForTechnology = data.findOperationForProductAndTechnology(product, subTechnology);
                         Entity technologyGroup = subTechnology.getBelongsToField(TechnologyFields.TECHNOLOGY_GROUP);
                         BigDecimal standardPerformanceTechnology = subTechnology
                                 .getDecimalField(TechnologyFields.STANDARD_PERFORMANCE_TECHNOLOGY);
@@ -195,7 +124,8 @@ public class ProductStructureTreeService {
                         child.setField(L_STANDARD_PERFORMANCE_TECHNOLOGY, standardPerformanceTechnology);
                         addChild(tree, child, parent, L_COMPONENT);
                         usedTechnologies.add(subTechnology.getId());
-                        generateTreeForSubproducts(operationForTechnology, subTechnology, tree, child, view, usedTechnologies);
+                        generateTreeForSubproducts(data, operationForTechnology, subTechnology, tree, child, view,
+                                usedTechnologies);
                     } else {
 
                         child.setField(L_TECHNOLOGY, technology);
@@ -213,7 +143,7 @@ public class ProductStructureTreeService {
                                             MessageType.INFO, false,
                                             product.getStringField("number") + " " + product.getStringField("name"));
                         }
-                        generateTreeForSubproducts(subOperation, technology, tree, child, view, usedTechnologies);
+                        generateTreeForSubproducts(data, subOperation, technology, tree, child, view, usedTechnologies);
                     }
                 } else if (view != null) {
                     FormComponent productStructureForm = (FormComponent) view.getComponentByReference("productStructureForm");
@@ -238,7 +168,7 @@ public class ProductStructureTreeService {
                     child.setField(L_DIVISION, subOperation.getBelongsToField(TechnologyOperationComponentFields.DIVISION));
 
                     addChild(tree, child, parent, L_INTERMEDIATE);
-                    generateTreeForSubproducts(subOperation, technology, tree, child, view, usedTechnologies);
+                    generateTreeForSubproducts(data, subOperation, technology, tree, child, view, usedTechnologies);
                 } else {
                     child.setField(L_OPERATION, operation);
                     child.setField(L_DIVISION, operation.getBelongsToField(TechnologyOperationComponentFields.DIVISION));
@@ -255,10 +185,11 @@ public class ProductStructureTreeService {
     public EntityTree generateProductStructureTree(final ViewDefinitionState view, final Entity technology) {
         DataDefinition treeNodeDD = dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
                 TechnologiesConstants.MODEL_PRODUCT_STRUCTURE_TREE_NODE);
+        ProductStructureTreeData data = new ProductStructureTreeData(dataDefinitionService, technology);
         Entity root = treeNodeDD.create();
         Entity product = technology.getBelongsToField(L_PRODUCT);
-        Entity operation = findOperationForProductAndTechnology(product, technology);
-        BigDecimal quantity = findQuantityOfProductInOperation(product, operation);
+        Entity operation = data.findOperationForProductAndTechnology(product, technology);
+        BigDecimal quantity = data.findQuantityOfProductInOperation(product, operation);
         Entity technologyGroup = technology.getBelongsToField(TechnologyFields.TECHNOLOGY_GROUP);
         BigDecimal standardPerformanceTechnology = technology.getDecimalField(TechnologyFields.STANDARD_PERFORMANCE_TECHNOLOGY);
         root.setField(L_TECHNOLOGY, technology);
@@ -275,7 +206,7 @@ public class ProductStructureTreeService {
         List<Long> usedTechnologies = new ArrayList<>();
         usedTechnologies.add(technology.getId());
 
-        generateTreeForSubproducts(operation, technology, productStructureList, root, view, usedTechnologies);
+        generateTreeForSubproducts(data, operation, technology, productStructureList, root, view, usedTechnologies);
 
         return EntityTreeUtilsService.getDetachedEntityTree(productStructureList);
     }
@@ -293,12 +224,13 @@ public class ProductStructureTreeService {
         Entity parent = null;
         Entity root = productStructureTree.getRoot();
         Long rootTocID = root.getBelongsToField(L_OPERATION).getId();
-        addChildTOC(tocTree, tocDD.get(rootTocID), parent, root.getBelongsToField(L_PRODUCT), L_FINAL_PRODUCT);
+        Map<Long, Entity> tocsById = getOperationComponentsByIds(tocDD, productStructureTree);
+        addChildTOC(tocTree, tocsById.get(rootTocID).copy(), parent, root.getBelongsToField(L_PRODUCT), L_FINAL_PRODUCT);
         for (Entity node : productStructureTree) {
             String entityType = node.getStringField(ENTITY_TYPE);
             if (!entityType.equals(L_MATERIAL) && !entityType.equals(L_FINAL_PRODUCT)) {
                 Long tocId = node.getBelongsToField(L_OPERATION).getId();
-                Entity toc = tocDD.get(tocId);
+                Entity toc = tocsById.get(tocId).copy();
                 Long parentId = node.getBelongsToField(L_PARENT) != null ? node.getBelongsToField(L_PARENT)
                         .getBelongsToField(L_OPERATION).getId() : node.getBelongsToField(L_OPERATION).getId();
                 parent = getEntityById(tocTree, parentId);
@@ -308,6 +240,14 @@ public class ProductStructureTreeService {
         return EntityTreeUtilsService.getDetachedEntityTree(tocTree);
     }
 
+    private Map<Long, Entity> getOperationComponentsByIds(final DataDefinition tocDD, final EntityTree productStructureTree) {
+        Set<Long> tocIds = productStructureTree.stream().map(node -> node.getBelongsToField(L_OPERATION))
+                .filter(Objects::nonNull).map(Entity::getId).collect(Collectors.toSet());
+
+        return tocDD.find().add(SearchRestrictions.in("id", tocIds)).list().getEntities().stream()
+                .collect(Collectors.toMap(Entity::getId, Function.identity()));
+    }
+
     private Entity getEntityById(final List<Entity> tree, final Long id) {
         for (Entity entity : tree) {
             if (entity.getId().equals(id)) {
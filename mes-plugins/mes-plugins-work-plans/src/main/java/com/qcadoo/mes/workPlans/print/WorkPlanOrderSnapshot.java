@@ -0,0 +1,59 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.workPlans.print;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentWithQuantityContainer;
+import com.qcadoo.model.api.Entity;
+
+public final class WorkPlanOrderSnapshot {
+
+    private final Entity order;
+
+    private final OperationProductComponentWithQuantityContainer productQuantities;
+
+    private final List<Entity> operationComponents;
+
+    public WorkPlanOrderSnapshot(final Entity order, final OperationProductComponentWithQuantityContainer productQuantities,
+            final List<Entity> operationComponents) {
+        this.order = order;
+        this.productQuantities = productQuantities;
+        this.operationComponents = ImmutableList.copyOf(operationComponents);
+    }
+
+    public Entity getOrder() {
+        return order;
+    }
+
+    public OperationProductComponentWithQuantityContainer getProductQuantities() {
+        return productQuantities;
+    }
+
+    public List<Entity> getOperationComponents() {
+        return operationComponents;
+    }
+
+}
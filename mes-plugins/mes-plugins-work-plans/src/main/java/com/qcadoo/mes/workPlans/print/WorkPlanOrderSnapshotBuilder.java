@@ -0,0 +1,332 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.workPlans.print;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basicProductionCounting.constants.BasicProductionCountingConstants;
+import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityFields;
+import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityRole;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.states.constants.OrderState;
+import com.qcadoo.mes.technologies.ProductQuantitiesServiceImpl;
+import com.qcadoo.mes.technologies.constants.OperationProductInComponentFields;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentWithQuantityContainer;
+import com.qcadoo.mes.technologies.grouping.OperationMergeService;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchRestrictions;
+import com.qcadoo.model.api.utils.EntityTreeUtilsService;
+
+/**
+ * Prepares work plan orders in two phases. First phase builds {@link WorkPlanOrderSnapshot} for every order: everything that
+ * needs the database (product quantities, sorted operations, their product components and production counting quantities of
+ * all orders, loaded with a single query) is read and copied on the calling thread, within its transaction and tenant, then
+ * operations are matched with production counting quantities on a bounded worker pool. Workers only work on those detached
+ * copies, so live entities are never modified and no session is touched outside the calling thread. Second phase -
+ * done by caller on a single thread - feeds snapshots to the grouping container and the pdf.
+ */
+@Service
+public class WorkPlanOrderSnapshotBuilder {
+
+    private static final String L_ORDER_ALIAS = "o";
+
+    private static final int MAX_PREPARATION_THREADS = 8;
+
+    @Autowired
+    private ProductQuantitiesServiceImpl productQuantitiesServiceImpl;
+
+    @Autowired
+    private OperationMergeService operationMergeService;
+
+    @Autowired
+    private EntityTreeUtilsService entityTreeUtilsService;
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    public List<WorkPlanOrderSnapshot> build(final List<Entity> orders) {
+        for (Entity order : orders) {
+            removeAlreadyExistsMergesForOrder(order);
+        }
+
+        Map<Long, ListMultimap<Long, Entity>> productionCountingQuantities = getProductionCountingQuantities(orders);
+
+        DataDefinition inComponentDD = dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_OPERATION_PRODUCT_IN_COMPONENT);
+        DataDefinition outComponentDD = dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_OPERATION_PRODUCT_OUT_COMPONENT);
+
+        List<LoadedOrder> loadedOrders = Lists.newArrayList();
+
+        for (Entity order : orders) {
+            loadedOrders.add(load(order, productionCountingQuantities.get(order.getId())));
+        }
+
+        int threads = Math.min(loadedOrders.size(),
+                Math.min(MAX_PREPARATION_THREADS, Runtime.getRuntime().availableProcessors()));
+
+        if (threads < 2) {
+            List<WorkPlanOrderSnapshot> snapshots = Lists.newArrayList();
+
+            for (LoadedOrder loadedOrder : loadedOrders) {
+                snapshots.add(prepare(loadedOrder, inComponentDD, outComponentDD));
+            }
+
+            return snapshots;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<WorkPlanOrderSnapshot>> futures = Lists.newArrayList();
+
+            for (LoadedOrder loadedOrder : loadedOrders) {
+                futures.add(executor.submit(() -> prepare(loadedOrder, inComponentDD, outComponentDD)));
+            }
+
+            List<WorkPlanOrderSnapshot> snapshots = Lists.newArrayList();
+
+            for (Future<WorkPlanOrderSnapshot> future : futures) {
+                snapshots.add(future.get());
+            }
+
+            return snapshots;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException("Work plan preparation interrupted", e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private LoadedOrder load(final Entity order, final ListMultimap<Long, Entity> productionCountingQuantities) {
+        OperationProductComponentWithQuantityContainer productQuantities = productQuantitiesServiceImpl
+                .getProductComponentQuantities(order);
+        List<Entity> operationComponents = operationComponents(technology(order));
+
+        if (productionCountingQuantities == null) {
+            return new LoadedOrder(order, productQuantities, operationComponents, null, null, null);
+        }
+
+        List<Entity> operationComponentCopies = Lists.newArrayList();
+        Map<Long, List<Entity>> inComponents = Maps.newHashMap();
+        Map<Long, List<Entity>> outComponents = Maps.newHashMap();
+
+        for (Entity operationComponent : operationComponents) {
+            operationComponentCopies.add(operationComponent.copy());
+            inComponents.put(operationComponent.getId(), copyProductComponents(operationComponent,
+                    TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS));
+            outComponents.put(operationComponent.getId(), copyProductComponents(operationComponent,
+                    TechnologyOperationComponentFields.OPERATION_PRODUCT_OUT_COMPONENTS));
+        }
+
+        return new LoadedOrder(order, productQuantities, operationComponentCopies, productionCountingQuantities, inComponents,
+                outComponents);
+    }
+
+    private List<Entity> copyProductComponents(final Entity operationComponent, final String componentsField) {
+        List<Entity> productComponents = Lists.newArrayList();
+
+        for (Entity productComponent : operationComponent.getHasManyField(componentsField)) {
+            productComponents.add(productComponent.copy());
+        }
+
+        return ImmutableList.copyOf(productComponents);
+    }
+
+    private WorkPlanOrderSnapshot prepare(final LoadedOrder loadedOrder, final DataDefinition inComponentDD,
+            final DataDefinition outComponentDD) {
+        if (loadedOrder.productionCountingQuantities == null) {
+            return new WorkPlanOrderSnapshot(loadedOrder.order, loadedOrder.productQuantities,
+                    loadedOrder.operationComponents);
+        }
+
+        List<Entity> operationComponents = Lists.newArrayList();
+
+        for (Entity operationComponent : loadedOrder.operationComponents) {
+            Long operationComponentId = operationComponent.getId();
+            List<Entity> productionCountingQuantities = loadedOrder.productionCountingQuantities.get(operationComponentId);
+
+            operationComponent.setField(TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS,
+                    matchProductComponents(operationComponent, loadedOrder.inComponents.get(operationComponentId),
+                            productionCountingQuantities, ProductionCountingQuantityRole.USED.getStringValue(),
+                            inComponentDD));
+            operationComponent.setField(TechnologyOperationComponentFields.OPERATION_PRODUCT_OUT_COMPONENTS,
+                    matchProductComponents(operationComponent, loadedOrder.outComponents.get(operationComponentId),
+                            productionCountingQuantities, ProductionCountingQuantityRole.PRODUCED.getStringValue(),
+                            outComponentDD));
+
+            operationComponents.add(operationComponent);
+        }
+
+        return new WorkPlanOrderSnapshot(loadedOrder.order, loadedOrder.productQuantities, operationComponents);
+    }
+
+    private List<Entity> matchProductComponents(final Entity operationComponent, final List<Entity> productComponents,
+            final List<Entity> productionCountingQuantities, final String role, final DataDefinition dataDefinition) {
+        Map<Long, Entity> existingProductComponents = Maps.newHashMap();
+
+        for (Entity productComponent : productComponents) {
+            existingProductComponents.putIfAbsent(
+                    productComponent.getBelongsToField(OperationProductInComponentFields.PRODUCT).getId(), productComponent);
+        }
+
+        List<Entity> matchedProductComponents = Lists.newArrayList();
+
+        for (Entity pcq : productionCountingQuantities) {
+            if (!role.equals(pcq.getStringField(ProductionCountingQuantityFields.ROLE))) {
+                continue;
+            }
+
+            Entity product = pcq.getBelongsToField(ProductionCountingQuantityFields.PRODUCT);
+            BigDecimal plannedQuantity = pcq.getDecimalField(ProductionCountingQuantityFields.PLANNED_QUANTITY);
+            Entity existingComponent = existingProductComponents.get(product.getId());
+
+            Entity productComponent;
+
+            if (existingComponent != null) {
+                productComponent = existingComponent;
+            } else {
+                productComponent = dataDefinition.create();
+                productComponent.setField(OperationProductInComponentFields.PRODUCT, product);
+            }
+
+            productComponent.setField(OperationProductInComponentFields.QUANTITY, plannedQuantity);
+            productComponent.setField(OperationProductInComponentFields.OPERATION_COMPONENT, operationComponent);
+
+            matchedProductComponents.add(productComponent);
+        }
+
+        return ImmutableList.copyOf(matchedProductComponents);
+    }
+
+    private Map<Long, ListMultimap<Long, Entity>> getProductionCountingQuantities(final List<Entity> orders) {
+        Map<Long, ListMultimap<Long, Entity>> productionCountingQuantities = Maps.newHashMap();
+
+        for (Entity order : orders) {
+            if (!isPending(order)) {
+                productionCountingQuantities.put(order.getId(), ArrayListMultimap.create());
+            }
+        }
+
+        if (productionCountingQuantities.isEmpty()) {
+            return productionCountingQuantities;
+        }
+
+        List<Entity> pcqs = getProductionCountingQuantityDD().find()
+                .createAlias(ProductionCountingQuantityFields.ORDER, L_ORDER_ALIAS)
+                .add(SearchRestrictions.in(L_ORDER_ALIAS + ".id", productionCountingQuantities.keySet())).list()
+                .getEntities();
+
+        for (Entity pcq : pcqs) {
+            Entity operationComponent = pcq.getBelongsToField(ProductionCountingQuantityFields.TECHNOLOGY_OPERATION_COMPONENT);
+
+            if (operationComponent != null) {
+                productionCountingQuantities.get(pcq.getBelongsToField(ProductionCountingQuantityFields.ORDER).getId())
+                        .put(operationComponent.getId(), pcq);
+            }
+        }
+        return productionCountingQuantities;
+    }
+
+    private DataDefinition getProductionCountingQuantityDD() {
+        return dataDefinitionService.get(BasicProductionCountingConstants.PLUGIN_IDENTIFIER,
+                BasicProductionCountingConstants.MODEL_PRODUCTION_COUNTING_QUANTITY);
+    }
+
+    private boolean isPending(final Entity order) {
+        return OrderState.PENDING.getStringValue().equals(order.getStringField(OrderFields.STATE));
+    }
+
+    private List<Entity> operationComponents(final Entity technology) {
+        return entityTreeUtilsService.getSortedEntities(technology.getTreeField(TechnologyFields.OPERATION_COMPONENTS));
+    }
+
+    private Entity technology(final Entity order) {
+        return order.getBelongsToField(OrderFields.TECHNOLOGY);
+    }
+
+    private void removeAlreadyExistsMergesForOrder(final Entity order) {
+        List<Entity> mergedProductInsByOrder = operationMergeService.findMergedProductInByOrder(order);
+        for (Entity entity : mergedProductInsByOrder) {
+            entity.getDataDefinition().delete(entity.getId());
+        }
+
+        List<Entity> mergedProductOutsByOrder = operationMergeService.findMergedProductOutByOrder(order);
+        for (Entity entity : mergedProductOutsByOrder) {
+            entity.getDataDefinition().delete(entity.getId());
+        }
+    }
+
+    private static final class LoadedOrder {
+
+        private final Entity order;
+
+        private final OperationProductComponentWithQuantityContainer productQuantities;
+
+        private final List<Entity> operationComponents;
+
+        private final ListMultimap<Long, Entity> productionCountingQuantities;
+
+        private final Map<Long, List<Entity>> inComponents;
+
+        private final Map<Long, List<Entity>> outComponents;
+
+        private LoadedOrder(final Entity order, final OperationProductComponentWithQuantityContainer productQuantities,
+                final List<Entity> operationComponents, final ListMultimap<Long, Entity> productionCountingQuantities,
+                final Map<Long, List<Entity>> inComponents, final Map<Long, List<Entity>> outComponents) {
+            this.order = order;
+            this.productQuantities = productQuantities;
+            this.operationComponents = operationComponents;
+            this.productionCountingQuantities = productionCountingQuantities;
+            this.inComponents = inComponents;
+            this.outComponents = outComponents;
+        }
+
+    }
+
+}
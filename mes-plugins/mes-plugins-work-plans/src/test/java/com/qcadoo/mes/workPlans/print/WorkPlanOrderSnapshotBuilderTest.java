@@ -0,0 +1,254 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.workPlans.print;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basicProductionCounting.constants.BasicProductionCountingConstants;
+import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityFields;
+import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityRole;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.states.constants.OrderState;
+import com.qcadoo.mes.technologies.ProductQuantitiesServiceImpl;
+import com.qcadoo.mes.technologies.constants.OperationProductInComponentFields;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentWithQuantityContainer;
+import com.qcadoo.mes.technologies.grouping.OperationMergeService;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.EntityList;
+import com.qcadoo.model.api.EntityTree;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.model.api.utils.EntityTreeUtilsService;
+
+public class WorkPlanOrderSnapshotBuilderTest {
+
+    private WorkPlanOrderSnapshotBuilder workPlanOrderSnapshotBuilder;
+
+    @Mock
+    private ProductQuantitiesServiceImpl productQuantitiesServiceImpl;
+
+    @Mock
+    private OperationMergeService operationMergeService;
+
+    @Mock
+    private EntityTreeUtilsService entityTreeUtilsService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private DataDefinition pcqDD, inComponentDD, outComponentDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Mock
+    private OperationProductComponentWithQuantityContainer productQuantities;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        workPlanOrderSnapshotBuilder = new WorkPlanOrderSnapshotBuilder();
+
+        ReflectionTestUtils.setField(workPlanOrderSnapshotBuilder, "productQuantitiesServiceImpl", productQuantitiesServiceImpl);
+        ReflectionTestUtils.setField(workPlanOrderSnapshotBuilder, "operationMergeService", operationMergeService);
+        ReflectionTestUtils.setField(workPlanOrderSnapshotBuilder, "entityTreeUtilsService", entityTreeUtilsService);
+        ReflectionTestUtils.setField(workPlanOrderSnapshotBuilder, "dataDefinitionService", dataDefinitionService);
+
+        when(dataDefinitionService.get(BasicProductionCountingConstants.PLUGIN_IDENTIFIER,
+                BasicProductionCountingConstants.MODEL_PRODUCTION_COUNTING_QUANTITY)).thenReturn(pcqDD);
+        when(dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_OPERATION_PRODUCT_IN_COMPONENT)).thenReturn(inComponentDD);
+        when(dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_OPERATION_PRODUCT_OUT_COMPONENT)).thenReturn(outComponentDD);
+
+        when(pcqDD.find()).thenReturn(searchCriteriaBuilder);
+        when(searchCriteriaBuilder.createAlias(anyString(), anyString())).thenReturn(searchCriteriaBuilder);
+        when(searchCriteriaBuilder.add(any(SearchCriterion.class))).thenReturn(searchCriteriaBuilder);
+        when(searchCriteriaBuilder.list()).thenReturn(searchResult);
+
+        when(operationMergeService.findMergedProductInByOrder(any(Entity.class))).thenReturn(Collections.<Entity> emptyList());
+        when(operationMergeService.findMergedProductOutByOrder(any(Entity.class))).thenReturn(
+                Collections.<Entity> emptyList());
+        when(productQuantitiesServiceImpl.getProductComponentQuantities(any(Entity.class))).thenReturn(productQuantities);
+    }
+
+    @Test
+    public final void shouldNotLoadProductionCountingQuantitiesForPendingOrders() {
+        // given
+        Entity operationComponent = mockEntity(10L);
+        Entity order = mockOrder(1L, OrderState.PENDING, operationComponent);
+
+        // when
+        List<WorkPlanOrderSnapshot> snapshots = workPlanOrderSnapshotBuilder.build(Lists.newArrayList(order));
+
+        // then
+        assertEquals(1, snapshots.size());
+        assertSame(order, snapshots.get(0).getOrder());
+        assertSame(productQuantities, snapshots.get(0).getProductQuantities());
+        assertEquals(Lists.newArrayList(operationComponent), snapshots.get(0).getOperationComponents());
+
+        verify(pcqDD, never()).find();
+        verify(operationComponent, never()).setField(any(String.class), any());
+    }
+
+    @Test
+    public final void shouldLoadProductionCountingQuantitiesOfAllOrdersWithOneQuery() {
+        // given
+        Entity product = mockEntity(100L);
+        Entity otherProduct = mockEntity(101L);
+
+        Entity existingInComponent = mockEntity(20L);
+        Entity existingInComponentCopy = mockCopy(existingInComponent);
+        when(existingInComponentCopy.getBelongsToField(OperationProductInComponentFields.PRODUCT)).thenReturn(product);
+
+        Entity firstOperationComponent = mockEntity(10L);
+        Entity secondOperationComponent = mockEntity(11L);
+        Entity firstOperationComponentCopy = mockCopy(firstOperationComponent);
+        Entity secondOperationComponentCopy = mockCopy(secondOperationComponent);
+        mockProductComponents(firstOperationComponent, TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS,
+                existingInComponent);
+        mockProductComponents(firstOperationComponent, TechnologyOperationComponentFields.OPERATION_PRODUCT_OUT_COMPONENTS);
+        mockProductComponents(secondOperationComponent, TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS);
+        mockProductComponents(secondOperationComponent, TechnologyOperationComponentFields.OPERATION_PRODUCT_OUT_COMPONENTS);
+
+        Entity firstOrder = mockOrder(1L, OrderState.IN_PROGRESS, firstOperationComponent);
+        Entity secondOrder = mockOrder(2L, OrderState.ACCEPTED, secondOperationComponent);
+
+        Entity usedPcq = mockPcq(firstOrder, firstOperationComponent, product, ProductionCountingQuantityRole.USED,
+                BigDecimal.TEN);
+        Entity producedPcq = mockPcq(secondOrder, secondOperationComponent, otherProduct,
+                ProductionCountingQuantityRole.PRODUCED, BigDecimal.ONE);
+        when(searchResult.getEntities()).thenReturn(Lists.newArrayList(usedPcq, producedPcq));
+
+        Entity newOutComponent = mock(Entity.class);
+        when(outComponentDD.create()).thenReturn(newOutComponent);
+
+        // when
+        List<WorkPlanOrderSnapshot> snapshots = workPlanOrderSnapshotBuilder.build(Lists.newArrayList(firstOrder,
+                secondOrder));
+
+        // then
+        verify(pcqDD, times(1)).find();
+
+        assertEquals(Lists.newArrayList(firstOperationComponentCopy), snapshots.get(0).getOperationComponents());
+        assertEquals(Lists.newArrayList(secondOperationComponentCopy), snapshots.get(1).getOperationComponents());
+
+        verify(existingInComponentCopy).setField(OperationProductInComponentFields.QUANTITY, BigDecimal.TEN);
+        verify(firstOperationComponentCopy).setField(TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS,
+                Lists.newArrayList(existingInComponentCopy));
+
+        verify(newOutComponent).setField(OperationProductInComponentFields.PRODUCT, otherProduct);
+        verify(newOutComponent).setField(OperationProductInComponentFields.QUANTITY, BigDecimal.ONE);
+
+        ArgumentCaptor<Object> outComponents = ArgumentCaptor.forClass(Object.class);
+        verify(secondOperationComponentCopy).setField(
+                eq(TechnologyOperationComponentFields.OPERATION_PRODUCT_OUT_COMPONENTS),
+                outComponents.capture());
+        assertEquals(Lists.newArrayList(newOutComponent), outComponents.getValue());
+
+        verify(existingInComponent, never()).setField(any(String.class), any());
+        verify(firstOperationComponent, never()).setField(any(String.class), any());
+        verify(secondOperationComponent, never()).setField(any(String.class), any());
+    }
+
+    private Entity mockOrder(final Long id, final OrderState state, final Entity... operationComponents) {
+        Entity order = mockEntity(id);
+        Entity technology = mock(Entity.class);
+        EntityTree operationComponentsTree = mock(EntityTree.class);
+
+        when(order.getStringField(OrderFields.STATE)).thenReturn(state.getStringValue());
+        when(order.getBelongsToField(OrderFields.TECHNOLOGY)).thenReturn(technology);
+        when(technology.getTreeField(TechnologyFields.OPERATION_COMPONENTS)).thenReturn(operationComponentsTree);
+        when(entityTreeUtilsService.getSortedEntities(operationComponentsTree)).thenReturn(
+                Lists.newArrayList(operationComponents));
+
+        return order;
+    }
+
+    private Entity mockPcq(final Entity order, final Entity operationComponent, final Entity product,
+            final ProductionCountingQuantityRole role, final BigDecimal plannedQuantity) {
+        Entity pcq = mock(Entity.class);
+
+        when(pcq.getBelongsToField(ProductionCountingQuantityFields.ORDER)).thenReturn(order);
+        when(pcq.getBelongsToField(ProductionCountingQuantityFields.TECHNOLOGY_OPERATION_COMPONENT)).thenReturn(
+                operationComponent);
+        when(pcq.getBelongsToField(ProductionCountingQuantityFields.PRODUCT)).thenReturn(product);
+        when(pcq.getStringField(ProductionCountingQuantityFields.ROLE)).thenReturn(role.getStringValue());
+        when(pcq.getDecimalField(ProductionCountingQuantityFields.PLANNED_QUANTITY)).thenReturn(plannedQuantity);
+
+        return pcq;
+    }
+
+    private void mockProductComponents(final Entity operationComponent, final String field, final Entity... productComponents) {
+        EntityList list = mock(EntityList.class);
+        when(list.iterator()).thenReturn(Lists.newArrayList(productComponents).iterator());
+        when(operationComponent.getHasManyField(field)).thenReturn(list);
+    }
+
+    private Entity mockCopy(final Entity entity) {
+        Long id = entity.getId();
+        Entity copy = mockEntity(id);
+        when(entity.copy()).thenReturn(copy);
+        return copy;
+    }
+
+    private Entity mockEntity(final Long id) {
+        Entity entity = mock(Entity.class);
+        when(entity.getId()).thenReturn(id);
+        return entity;
+    }
+
+}